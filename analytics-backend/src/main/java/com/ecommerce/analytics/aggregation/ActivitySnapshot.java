@@ -0,0 +1,93 @@
+package com.ecommerce.analytics.aggregation;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * User, session and page-view figures for a set of windows, from one lane or
+ * merged across lanes. Per-window figures are indexed in the order the
+ * windows were requested. Sessions are not split by window: each user's
+ * sessions carry their last-seen time (within the longest window) so readers
+ * can filter. Lanes own disjoint sets of users, so distinct-user counts and
+ * per-user sessions merge by plain addition and union. The active user ids
+ * themselves are only collected when asked for (cluster mode feeds them into
+ * HyperLogLogs so replicas can be merged).
+ */
+public class ActivitySnapshot {
+
+    private final long[] activeUsers;
+    private final List<Map<String, Long>> pageViews;
+    private final Map<String, Map<String, Long>> userSessions;
+    private final List<List<String>> activeUserIds;
+
+    public ActivitySnapshot(long[] activeUsers, List<Map<String, Long>> pageViews,
+            Map<String, Map<String, Long>> userSessions, List<List<String>> activeUserIds) {
+        this.activeUsers = activeUsers;
+        this.pageViews = pageViews;
+        this.userSessions = userSessions;
+        this.activeUserIds = activeUserIds;
+    }
+
+    /**
+     * Empty snapshot for the given number of windows
+     */
+    public static ActivitySnapshot empty(int windows) {
+        List<Map<String, Long>> pageViews = new ArrayList<>(windows);
+        List<List<String>> activeUserIds = new ArrayList<>(windows);
+        for (int w = 0; w < windows; w++) {
+            pageViews.add(new HashMap<>());
+            activeUserIds.add(new ArrayList<>());
+        }
+        return new ActivitySnapshot(new long[windows], pageViews, new HashMap<>(), activeUserIds);
+    }
+
+    public int getWindowCount() {
+        return activeUsers.length;
+    }
+
+    public long getActiveUsers(int window) {
+        return activeUsers[window];
+    }
+
+    public void setActiveUsers(int window, long count) {
+        activeUsers[window] = count;
+    }
+
+    public Map<String, Long> getPageViews(int window) {
+        return pageViews.get(window);
+    }
+
+    /**
+     * Active user ids per window; empty unless they were asked for
+     */
+    public List<String> getActiveUserIds(int window) {
+        return activeUserIds.get(window);
+    }
+
+    /**
+     * userId to sessionId to last-seen epoch millis
+     */
+    public Map<String, Map<String, Long>> getUserSessions() {
+        return userSessions;
+    }
+
+    /**
+     * Merge per-lane partial snapshots over the same windows
+     */
+    public static ActivitySnapshot merge(List<ActivitySnapshot> partials) {
+        int windows = partials.isEmpty() ? 0 : partials.get(0).getWindowCount();
+        ActivitySnapshot merged = empty(windows);
+        for (ActivitySnapshot partial : partials) {
+            for (int w = 0; w < windows; w++) {
+                merged.activeUsers[w] += partial.activeUsers[w];
+                merged.activeUserIds.get(w).addAll(partial.activeUserIds.get(w));
+                Map<String, Long> pageViews = merged.pageViews.get(w);
+                partial.pageViews.get(w).forEach((page, views) -> pageViews.merge(page, views, Long::sum));
+            }
+            merged.userSessions.putAll(partial.userSessions);
+        }
+        return merged;
+    }
+}
@@ -0,0 +1,533 @@
+package com.ecommerce.analytics.aggregation;
+
+import com.ecommerce.analytics.model.UserEvent;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.Function;
+import java.util.function.ToLongFunction;
+
+/**
+ * In-process event bus that partitions events by userId onto single-threaded lanes.
+ *
+ * Producers hash each event onto one of N lanes and enqueue it on that lane's
+ * lock-free MPSC queue. Each lane thread drains its queue into the handlers it
+ * owns, so per-user and per-session state is only ever touched by one thread.
+ * Reads go through the same queues: {@link #query} enqueues a task on every
+ * lane, each lane answers from its own state, and the caller merges the
+ * per-lane partial results.
+ *
+ * Events are applied under the time the clock function gives them (their
+ * event time). Each lane keeps an {@link EventTimeWatermark}: events later
+ * than the allowed lateness are dropped, earlier late ones are applied to the
+ * buckets of their own time, and handlers are ticked with the watermark so
+ * windows close in event time.
+ *
+ * {@link #checkpoint} serializes every {@link CheckpointableHandler} on its
+ * lane thread, together with the ids of the events applied since a given
+ * arrival time, so a restore can replay exactly the events it is missing.
+ */
+@Slf4j
+public class AggregationLanes implements Closeable {
+
+    private static final long TICK_INTERVAL_MS = 1000;
+
+    private final Lane[] lanes;
+    private final ToLongFunction<UserEvent> clock;
+    private final AtomicLong backpressureWaits = new AtomicLong();
+    private volatile boolean running;
+    private long appliedIdRetentionMillis;
+
+    /**
+     * Lanes that never drop late events and keep no disorder margin
+     */
+    public AggregationLanes(int laneCount, int queueCapacity, List<? extends LaneHandlerFactory> factories,
+            ToLongFunction<UserEvent> clock) {
+        this(laneCount, queueCapacity, factories, clock, 0, Long.MAX_VALUE);
+    }
+
+    public AggregationLanes(int laneCount, int queueCapacity, List<? extends LaneHandlerFactory> factories,
+            ToLongFunction<UserEvent> clock, long maxOutOfOrdernessMillis, long allowedLatenessMillis) {
+        this.clock = clock;
+        this.lanes = new Lane[laneCount];
+        for (int i = 0; i < laneCount; i++) {
+            Map<Class<?>, LaneHandler> handlers = new LinkedHashMap<>();
+            for (LaneHandlerFactory factory : factories) {
+                LaneHandler handler = factory.createHandler(i);
+                handlers.put(handler.getClass(), handler);
+            }
+            lanes[i] = new Lane(i, queueCapacity, handlers,
+                    new EventTimeWatermark(maxOutOfOrdernessMillis, allowedLatenessMillis));
+        }
+    }
+
+    /**
+     * Remember the ids of events applied within the given span of arrival
+     * time, for {@link #checkpoint}. Call before {@link #start}.
+     */
+    public void trackAppliedEvents(long retentionMillis) {
+        this.appliedIdRetentionMillis = retentionMillis;
+        for (Lane lane : lanes) {
+            lane.applied = new AppliedEvents();
+        }
+    }
+
+    /**
+     * Name the lane threads after the owner of these lanes. Call before {@link #start}.
+     */
+    public void setName(String name) {
+        for (Lane lane : lanes) {
+            lane.thread.setName("aggregation-lane-" + name + "-" + lane.index);
+        }
+    }
+
+    public void start() {
+        running = true;
+        for (Lane lane : lanes) {
+            lane.thread.start();
+        }
+    }
+
+    /**
+     * Route an event to the lane owning its user. Blocks briefly while that lane's queue is full.
+     */
+    public void publish(UserEvent event) {
+        lanes[laneFor(event.getUserId())].enqueue(event);
+    }
+
+    /**
+     * Route a replayed historical event to its lane; it is applied however late it is
+     */
+    public void backfill(UserEvent event) {
+        lanes[laneFor(event.getUserId())].enqueue(new Backfill(event));
+    }
+
+    /**
+     * Lane owning the given user
+     */
+    public int laneFor(String userId) {
+        int hash = userId == null ? 0 : userId.hashCode();
+        hash ^= (hash >>> 16);
+        hash *= 0x9E3779B9;
+        return Math.floorMod(hash ^ (hash >>> 15), lanes.length);
+    }
+
+    /**
+     * Run a read on every lane's own thread and collect the partial results in lane order
+     */
+    public <H extends LaneHandler, R> List<R> query(Class<H> handlerType, Function<H, R> reader, long timeoutMillis)
+            throws TimeoutException, InterruptedException {
+        List<CompletableFuture<R>> futures = new ArrayList<>(lanes.length);
+        for (Lane lane : lanes) {
+            QueryTask<H, R> task = new QueryTask<>(handlerType, reader);
+            lane.enqueue(task);
+            futures.add(task.result);
+        }
+
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeoutMillis);
+        List<R> results = new ArrayList<>(lanes.length);
+        for (CompletableFuture<R> future : futures) {
+            try {
+                results.add(future.get(Math.max(0, deadline - System.nanoTime()), TimeUnit.NANOSECONDS));
+            } catch (ExecutionException e) {
+                throw new IllegalStateException("Lane query failed", e.getCause());
+            }
+        }
+        return results;
+    }
+
+    /**
+     * Run a read on a single lane's thread
+     */
+    public <H extends LaneHandler, R> R queryLane(int laneIndex, Class<H> handlerType, Function<H, R> reader,
+            long timeoutMillis) throws TimeoutException, InterruptedException {
+        QueryTask<H, R> task = new QueryTask<>(handlerType, reader);
+        lanes[laneIndex].enqueue(task);
+        try {
+            return task.result.get(timeoutMillis, TimeUnit.MILLISECONDS);
+        } catch (ExecutionException e) {
+            throw new IllegalStateException("Lane query failed", e.getCause());
+        }
+    }
+
+    /**
+     * Serialize every lane's checkpointable handlers on the lane threads
+     *
+     * @param appliedSinceMillis also list the events applied that arrived at or after this time
+     * @return one state per lane, in lane order
+     */
+    public List<byte[]> checkpoint(long appliedSinceMillis, long timeoutMillis)
+            throws TimeoutException, InterruptedException {
+        List<CompletableFuture<byte[]>> futures = new ArrayList<>(lanes.length);
+        for (Lane lane : lanes) {
+            StateTask task = new StateTask(appliedSinceMillis);
+            lane.enqueue(task);
+            futures.add(task.result);
+        }
+
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeoutMillis);
+        List<byte[]> states = new ArrayList<>(lanes.length);
+        for (CompletableFuture<byte[]> future : futures) {
+            try {
+                states.add(future.get(Math.max(0, deadline - System.nanoTime()), TimeUnit.NANOSECONDS));
+            } catch (ExecutionException e) {
+                throw new IllegalStateException("Lane checkpoint failed", e.getCause());
+            }
+        }
+        return states;
+    }
+
+    /**
+     * Load states written by {@link #checkpoint} into lanes that haven't started.
+     * Checkpointed handlers no lane has any more are skipped; lane handlers
+     * missing from the checkpoint stay empty.
+     *
+     * @return ids of the events listed as applied in the checkpoint
+     * @throws IOException if a state is corrupt or a handler refuses it; the lanes are then unusable
+     */
+    public Set<String> restore(List<byte[]> states) throws IOException {
+        if (running) {
+            throw new IllegalStateException("Lanes already started");
+        }
+        if (states.size() != lanes.length) {
+            throw new IOException("Checkpoint has " + states.size() + " lanes, running " + lanes.length);
+        }
+        Set<String> appliedIds = new HashSet<>();
+        for (int i = 0; i < lanes.length; i++) {
+            lanes[i].restore(states.get(i), appliedIds);
+        }
+        return appliedIds;
+    }
+
+    public int laneCount() {
+        return lanes.length;
+    }
+
+    public int queueDepth(int lane) {
+        return lanes[lane].queue.size();
+    }
+
+    public long processedEvents(int lane) {
+        return lanes[lane].processed;
+    }
+
+    /**
+     * Event-time watermark of a lane, or {@link EventTimeWatermark#NONE} before its first event
+     */
+    public long watermark(int lane) {
+        return lanes[lane].watermark.watermark();
+    }
+
+    public long lateEvents(int lane) {
+        return lanes[lane].watermark.lateEvents();
+    }
+
+    public long droppedEvents(int lane) {
+        return lanes[lane].watermark.droppedEvents();
+    }
+
+    /**
+     * Times a producer found its lane's queue full and had to wait
+     */
+    public long backpressureWaits() {
+        return backpressureWaits.get();
+    }
+
+    @Override
+    public void close() {
+        running = false;
+        for (Lane lane : lanes) {
+            LockSupport.unpark(lane.thread);
+            try {
+                lane.thread.join(TimeUnit.SECONDS.toMillis(5));
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    private final class Lane implements Runnable {
+
+        private final int index;
+        private final MpscArrayQueue<Object> queue;
+        private final Map<Class<?>, LaneHandler> handlers;
+        private final LaneHandler[] handlerArray;
+        private final EventTimeWatermark watermark;
+        private final Thread thread;
+        private AppliedEvents applied;
+        private volatile boolean parked;
+        private volatile long processed;
+
+        private Lane(int index, int queueCapacity, Map<Class<?>, LaneHandler> handlers,
+                EventTimeWatermark watermark) {
+            this.index = index;
+            this.watermark = watermark;
+            this.queue = new MpscArrayQueue<>(queueCapacity);
+            this.handlers = handlers;
+            this.handlerArray = handlers.values().toArray(new LaneHandler[0]);
+            this.thread = new Thread(this, "aggregation-lane-" + index);
+            this.thread.setDaemon(true);
+        }
+
+        private void enqueue(Object item) {
+            if (!queue.offer(item)) {
+                backpressureWaits.incrementAndGet();
+                int spins = 0;
+                while (!queue.offer(item)) {
+                    if (++spins < 100) {
+                        Thread.onSpinWait();
+                    } else {
+                        LockSupport.parkNanos(50_000);
+                    }
+                }
+            }
+            if (parked) {
+                LockSupport.unpark(thread);
+            }
+        }
+
+        @Override
+        public void run() {
+            long nextTick = System.currentTimeMillis() + TICK_INTERVAL_MS;
+            long count = 0;
+            while (running || queue.size() > 0) {
+                Object item = queue.poll();
+                if (item == null) {
+                    nextTick = tickIfDue(nextTick);
+                    parked = true;
+                    if (queue.size() == 0 && running) {
+                        // Producers unpark a parked lane, so an idle one only wakes for its next tick
+                        long untilTick = nextTick - System.currentTimeMillis();
+                        LockSupport.parkNanos(TimeUnit.MILLISECONDS.toNanos(Math.max(1, untilTick)));
+                    }
+                    parked = false;
+                    continue;
+                }
+
+                try {
+                    if (item instanceof UserEvent || item instanceof Backfill) {
+                        boolean backfill = item instanceof Backfill;
+                        UserEvent event = backfill ? ((Backfill) item).event() : (UserEvent) item;
+                        long time = clock.applyAsLong(event);
+                        if (watermark.observe(time, backfill) != EventTimeWatermark.Lateness.DROPPED) {
+                            for (LaneHandler handler : handlerArray) {
+                                handler.onEvent(event, time);
+                            }
+                        }
+                        if (applied != null) {
+                            applied.add(event);
+                        }
+                        processed = ++count;
+                        if ((count & 1023) == 0) {
+                            nextTick = tickIfDue(nextTick);
+                        }
+                    } else if (item instanceof StateTask task) {
+                        task.run(this);
+                    } else {
+                        ((QueryTask<?, ?>) item).run(handlers);
+                    }
+                } catch (Exception e) {
+                    log.error("Aggregation lane {} failed to process {}: {}", index,
+                            item.getClass().getSimpleName(), e.getMessage(), e);
+                }
+            }
+        }
+
+        private long tickIfDue(long nextTick) {
+            long now = System.currentTimeMillis();
+            if (now < nextTick) {
+                return nextTick;
+            }
+            if (applied != null) {
+                applied.evict(now - appliedIdRetentionMillis);
+            }
+            long eventTime = watermark.advance(now);
+            if (eventTime == EventTimeWatermark.NONE) {
+                return now + TICK_INTERVAL_MS;
+            }
+            for (LaneHandler handler : handlerArray) {
+                try {
+                    handler.onTick(eventTime);
+                } catch (Exception e) {
+                    log.error("Aggregation lane {} tick failed in {}: {}", index,
+                            handler.getClass().getSimpleName(), e.getMessage(), e);
+                }
+            }
+            return now + TICK_INTERVAL_MS;
+        }
+
+        private byte[] checkpoint(long appliedSinceMillis) throws IOException {
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            DataOutputStream out = new DataOutputStream(bytes);
+            List<CheckpointableHandler> checkpointable = new ArrayList<>();
+            for (LaneHandler handler : handlerArray) {
+                if (handler instanceof CheckpointableHandler c) {
+                    checkpointable.add(c);
+                }
+            }
+
+            out.writeInt(checkpointable.size());
+            ByteArrayOutputStream handlerBytes = new ByteArrayOutputStream();
+            for (CheckpointableHandler handler : checkpointable) {
+                handlerBytes.reset();
+                handler.writeState(new DataOutputStream(handlerBytes));
+                // Length-prefixed so a restore can skip handlers that no longer exist
+                out.writeUTF(handler.getClass().getName());
+                out.writeInt(handlerBytes.size());
+                handlerBytes.writeTo(out);
+            }
+
+            List<String> ids = applied == null ? List.of() : applied.since(appliedSinceMillis);
+            out.writeInt(ids.size());
+            for (String id : ids) {
+                out.writeUTF(id);
+            }
+            out.flush();
+            return bytes.toByteArray();
+        }
+
+        private void restore(byte[] state, Set<String> appliedIds) throws IOException {
+            DataInputStream in = new DataInputStream(new ByteArrayInputStream(state));
+            int count = in.readInt();
+            for (int n = 0; n < count; n++) {
+                String type = in.readUTF();
+                byte[] handlerState = new byte[in.readInt()];
+                in.readFully(handlerState);
+                LaneHandler handler = null;
+                for (LaneHandler candidate : handlerArray) {
+                    if (candidate.getClass().getName().equals(type)) {
+                        handler = candidate;
+                    }
+                }
+                if (handler instanceof CheckpointableHandler c) {
+                    c.readState(new DataInputStream(new ByteArrayInputStream(handlerState)));
+                } else {
+                    log.info("Lane {} skips checkpointed state of {}, which it no longer runs", index, type);
+                }
+            }
+            int ids = in.readInt();
+            for (int n = 0; n < ids; n++) {
+                appliedIds.add(in.readUTF());
+            }
+        }
+    }
+
+    /**
+     * Ids of recently applied events with their arrival times, oldest first
+     */
+    private static final class AppliedEvents {
+
+        private String[] ids = new String[1024];
+        private long[] arrivals = new long[1024];
+        private int head;
+        private int size;
+
+        private void add(UserEvent event) {
+            if (event.getId() == null || event.getCreatedAt() == null) {
+                return;
+            }
+            if (size == ids.length) {
+                grow();
+            }
+            int tail = (head + size) & (ids.length - 1);
+            ids[tail] = event.getId();
+            arrivals[tail] = event.getCreatedAt().toEpochMilli();
+            size++;
+        }
+
+        private void evict(long olderThanMillis) {
+            // Arrivals are nearly ordered; stop at the first entry young enough
+            while (size > 0 && arrivals[head] < olderThanMillis) {
+                ids[head] = null;
+                head = (head + 1) & (ids.length - 1);
+                size--;
+            }
+        }
+
+        private List<String> since(long arrivalMillis) {
+            List<String> since = new ArrayList<>();
+            for (int n = 0; n < size; n++) {
+                int i = (head + n) & (ids.length - 1);
+                if (arrivals[i] >= arrivalMillis) {
+                    since.add(ids[i]);
+                }
+            }
+            return since;
+        }
+
+        private void grow() {
+            String[] grownIds = new String[ids.length * 2];
+            long[] grownArrivals = new long[ids.length * 2];
+            for (int n = 0; n < size; n++) {
+                int i = (head + n) & (ids.length - 1);
+                grownIds[n] = ids[i];
+                grownArrivals[n] = arrivals[i];
+            }
+            ids = grownIds;
+            arrivals = grownArrivals;
+            head = 0;
+        }
+    }
+
+    private static final class StateTask {
+
+        private final long appliedSinceMillis;
+        private final CompletableFuture<byte[]> result = new CompletableFuture<>();
+
+        private StateTask(long appliedSinceMillis) {
+            this.appliedSinceMillis = appliedSinceMillis;
+        }
+
+        private void run(Lane lane) {
+            try {
+                result.complete(lane.checkpoint(appliedSinceMillis));
+            } catch (Exception e) {
+                result.completeExceptionally(e);
+            }
+        }
+    }
+
+    private record Backfill(UserEvent event) {
+    }
+
+    private static final class QueryTask<H extends LaneHandler, R> {
+
+        private final Class<H> handlerType;
+        private final Function<H, R> reader;
+        private final CompletableFuture<R> result = new CompletableFuture<>();
+
+        private QueryTask(Class<H> handlerType, Function<H, R> reader) {
+            this.handlerType = handlerType;
+            this.reader = reader;
+        }
+
+        private void run(Map<Class<?>, LaneHandler> handlers) {
+            try {
+                LaneHandler handler = handlers.get(handlerType);
+                if (handler == null) {
+                    throw new IllegalArgumentException("No lane handler of type " + handlerType.getSimpleName());
+                }
+                result.complete(reader.apply(handlerType.cast(handler)));
+            } catch (Exception e) {
+                result.completeExceptionally(e);
+            }
+        }
+    }
+}
@@ -0,0 +1,128 @@
+package com.ecommerce.analytics.aggregation;
+
+import lombok.Value;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.CRC32;
+
+/**
+ * On-disk form of an aggregation checkpoint: {@code int magic | byte version |
+ * long takenAtMillis | long replayFromMillis | int lanes | (int length | bytes)
+ * per lane | long crc32}. The file is written under a temporary name, forced
+ * to disk and renamed over the previous checkpoint, so a crash leaves either
+ * the old or the new one; a torn or corrupt file fails its checksum.
+ */
+public final class CheckpointFile {
+
+    private static final int MAGIC = 0x41434B50; // "ACKP"
+    private static final byte VERSION = 1;
+
+    private CheckpointFile() {
+    }
+
+    /**
+     * A read checkpoint
+     */
+    @Value
+    public static class Contents {
+        /**
+         * When the lanes were serialized
+         */
+        long takenAtMillis;
+        /**
+         * Events that arrived from here on are either in the listed applied ids or must be replayed
+         */
+        long replayFromMillis;
+        List<byte[]> laneStates;
+    }
+
+    /**
+     * Atomically replace {@code file} with a new checkpoint
+     *
+     * @return the size of the written file in bytes
+     */
+    public static long write(Path file, long takenAtMillis, long replayFromMillis, List<byte[]> laneStates)
+            throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(bytes);
+        out.writeInt(MAGIC);
+        out.writeByte(VERSION);
+        out.writeLong(takenAtMillis);
+        out.writeLong(replayFromMillis);
+        out.writeInt(laneStates.size());
+        for (byte[] state : laneStates) {
+            out.writeInt(state.length);
+            out.write(state);
+        }
+        CRC32 crc = new CRC32();
+        crc.update(bytes.toByteArray());
+        out.writeLong(crc.getValue());
+        out.flush();
+
+        Path directory = file.toAbsolutePath().getParent();
+        Files.createDirectories(directory);
+        Path temp = directory.resolve(file.getFileName() + ".tmp");
+        try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+            ByteBuffer buffer = ByteBuffer.wrap(bytes.toByteArray());
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+            channel.force(true);
+        }
+        Files.move(temp, file, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        return bytes.size();
+    }
+
+    /**
+     * Read a checkpoint
+     *
+     * @return the checkpoint, or null if there is none
+     * @throws IOException if the file is unreadable, of another version or fails its checksum
+     */
+    public static Contents read(Path file) throws IOException {
+        if (!Files.exists(file)) {
+            return null;
+        }
+        byte[] bytes = Files.readAllBytes(file);
+        if (bytes.length < Integer.BYTES + 1 + Long.BYTES) {
+            throw new IOException("Checkpoint " + file + " is truncated");
+        }
+        CRC32 crc = new CRC32();
+        crc.update(bytes, 0, bytes.length - Long.BYTES);
+        if (crc.getValue() != ByteBuffer.wrap(bytes, bytes.length - Long.BYTES, Long.BYTES).getLong()) {
+            throw new IOException("Checkpoint " + file + " fails its checksum");
+        }
+
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(bytes, 0, bytes.length - Long.BYTES));
+        if (in.readInt() != MAGIC) {
+            throw new IOException(file + " is not an aggregation checkpoint");
+        }
+        byte version = in.readByte();
+        if (version != VERSION) {
+            throw new IOException("Unsupported checkpoint version " + version);
+        }
+        long takenAt = in.readLong();
+        long replayFrom = in.readLong();
+        int lanes = in.readInt();
+        List<byte[]> states = new ArrayList<>(lanes);
+        for (int i = 0; i < lanes; i++) {
+            byte[] state = new byte[in.readInt()];
+            in.readFully(state);
+            states.add(state);
+        }
+        return new Contents(takenAt, replayFrom, states);
+    }
+}
@@ -0,0 +1,24 @@
+package com.ecommerce.analytics.aggregation;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+
+/**
+ * Lane handler whose state is saved in aggregation checkpoints.
+ * Both methods run on the lane's own thread, or before the lanes start.
+ * Handlers that don't implement it start empty after a restart and are
+ * filled by the events replayed after the checkpoint.
+ */
+public interface CheckpointableHandler extends LaneHandler {
+
+    void writeState(DataOutput out) throws IOException;
+
+    /**
+     * Replace this handler's state with a checkpointed one
+     *
+     * @throws IOException if the checkpoint is corrupt or was written under a
+     *                     configuration this handler can't take over (e.g. another retention)
+     */
+    void readState(DataInput in) throws IOException;
+}
@@ -0,0 +1,88 @@
+package com.ecommerce.analytics.aggregation;
+
+import com.ecommerce.analytics.model.UserEvent;
+import lombok.Getter;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Per-lane event counters for the current interval: overall, by page and by
+ * event type. {@link #drain()} hands the interval's counts to the caller and
+ * starts a new one; counter cells are reused across intervals and only keys
+ * that stayed at zero for a whole interval are dropped.
+ */
+public class EventRateCounter implements LaneHandler {
+
+    private long total;
+    private final Map<String, long[]> pages = new HashMap<>();
+    private final Map<String, long[]> eventTypes = new HashMap<>();
+
+    @Override
+    public void onEvent(UserEvent event, long timeMillis) {
+        total++;
+        increment(pages, event.getPageUrl());
+        increment(eventTypes, event.getEventType());
+    }
+
+    /**
+     * Counts since the previous drain
+     */
+    public Rates drain() {
+        Rates rates = new Rates(total, drain(pages), drain(eventTypes));
+        total = 0;
+        return rates;
+    }
+
+    private static void increment(Map<String, long[]> counts, String key) {
+        if (key == null) {
+            return;
+        }
+        long[] cell = counts.get(key);
+        if (cell == null) {
+            counts.put(key, new long[]{1});
+        } else {
+            cell[0]++;
+        }
+    }
+
+    private static Map<String, Long> drain(Map<String, long[]> counts) {
+        Map<String, Long> drained = new HashMap<>();
+        counts.entrySet().removeIf(entry -> {
+            long count = entry.getValue()[0];
+            if (count == 0) {
+                return true;
+            }
+            drained.put(entry.getKey(), count);
+            entry.getValue()[0] = 0;
+            return false;
+        });
+        return drained;
+    }
+
+    /**
+     * Counts for one interval; merged across lanes by addition
+     */
+    @Getter
+    public static final class Rates {
+        private long total;
+        private final Map<String, Long> pages;
+        private final Map<String, Long> eventTypes;
+
+        public Rates(long total, Map<String, Long> pages, Map<String, Long> eventTypes) {
+            this.total = total;
+            this.pages = pages;
+            this.eventTypes = eventTypes;
+        }
+
+        public static Rates merge(Iterable<Rates> partials) {
+            Rates merged = new Rates(0, new HashMap<>(), new HashMap<>());
+            for (Rates partial : partials) {
+                merged.total += partial.total;
+                partial.pages.forEach((page, count) -> merged.pages.merge(page, count, Long::sum));
+                partial.eventTypes.forEach((type, count) -> merged.eventTypes.merge(type, count, Long::sum));
+            }
+            return merged;
+        }
+    }
+}
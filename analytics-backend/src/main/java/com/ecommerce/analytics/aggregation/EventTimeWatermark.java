@@ -0,0 +1,90 @@
+package com.ecommerce.analytics.aggregation;
+
+/**
+ * Per-lane event-time watermark with bounded out-of-orderness.
+ *
+ * The watermark trails the newest event time the lane has seen by the
+ * allowed disorder; once the lane has been idle for that long it follows the
+ * wall clock instead, so quiet lanes still close their windows. Events behind
+ * the watermark are late: within the allowed lateness they are still applied
+ * and land in the (already closed) buckets of their own time, beyond it they
+ * are dropped. Backfilled history is never dropped. Not thread-safe: owned
+ * by a single lane; the counters may be read from other threads.
+ */
+public class EventTimeWatermark {
+
+    public static final long NONE = Long.MIN_VALUE;
+
+    public enum Lateness {
+        ON_TIME, LATE, DROPPED
+    }
+
+    private final long maxOutOfOrdernessMillis;
+    private final long allowedLatenessMillis;
+
+    private long maxEventTime = NONE;
+    private volatile long watermark = NONE;
+    private boolean sawEvent;
+    private long lastActiveMillis = NONE;
+    private volatile long lateEvents;
+    private volatile long droppedEvents;
+
+    public EventTimeWatermark(long maxOutOfOrdernessMillis, long allowedLatenessMillis) {
+        this.maxOutOfOrdernessMillis = maxOutOfOrdernessMillis;
+        this.allowedLatenessMillis = allowedLatenessMillis;
+    }
+
+    /**
+     * Classify an event time against the watermark, advancing it for on-time events
+     */
+    public Lateness observe(long eventTimeMillis, boolean backfilling) {
+        sawEvent = true;
+        if (watermark != NONE && eventTimeMillis < watermark) {
+            if (!backfilling && watermark - eventTimeMillis > allowedLatenessMillis) {
+                droppedEvents++;
+                return Lateness.DROPPED;
+            }
+            lateEvents++;
+            return Lateness.LATE;
+        }
+        if (eventTimeMillis > maxEventTime) {
+            maxEventTime = eventTimeMillis;
+            watermark = Math.max(watermark, eventTimeMillis - maxOutOfOrdernessMillis);
+        }
+        return Lateness.ON_TIME;
+    }
+
+    /**
+     * Periodic check: follow the wall clock once no event arrived for the allowed disorder.
+     * Lanes that have never seen an event keep no watermark.
+     *
+     * @return the current watermark, or {@link #NONE}
+     */
+    public long advance(long nowMillis) {
+        if (sawEvent) {
+            sawEvent = false;
+            lastActiveMillis = nowMillis;
+        } else if (lastActiveMillis != NONE && nowMillis - lastActiveMillis >= maxOutOfOrdernessMillis) {
+            watermark = Math.max(watermark, nowMillis - maxOutOfOrdernessMillis);
+        }
+        return watermark;
+    }
+
+    public long watermark() {
+        return watermark;
+    }
+
+    /**
+     * Events applied behind the watermark
+     */
+    public long lateEvents() {
+        return lateEvents;
+    }
+
+    /**
+     * Events dropped for being later than the allowed lateness
+     */
+    public long droppedEvents() {
+        return droppedEvents;
+    }
+}
@@ -0,0 +1,36 @@
+package com.ecommerce.analytics.aggregation;
+
+import lombok.Getter;
+
+import java.util.List;
+
+/**
+ * Per-step totals of one funnel over a window, from one lane or merged
+ * across lanes: how many sessions reached each step, and the summed time
+ * those sessions took to get there from the previous step.
+ */
+@Getter
+public class FunnelCounts {
+
+    private final long[] reached;
+    private final long[] stepMillis;
+
+    public FunnelCounts(long[] reached, long[] stepMillis) {
+        this.reached = reached;
+        this.stepMillis = stepMillis;
+    }
+
+    /**
+     * Merge per-lane partial counts
+     */
+    public static FunnelCounts merge(int steps, List<FunnelCounts> partials) {
+        FunnelCounts merged = new FunnelCounts(new long[steps], new long[steps]);
+        for (FunnelCounts partial : partials) {
+            for (int step = 0; step < steps; step++) {
+                merged.reached[step] += partial.reached[step];
+                merged.stepMillis[step] += partial.stepMillis[step];
+            }
+        }
+        return merged;
+    }
+}
@@ -0,0 +1,41 @@
+package com.ecommerce.analytics.aggregation;
+
+import com.ecommerce.analytics.model.UserEvent;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A conversion funnel: an ordered list of steps a session must pass through.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class FunnelDefinition {
+
+    private String id;
+    private String name;
+    private List<Step> steps = new ArrayList<>();
+
+    /**
+     * One funnel step. An event matches when its type equals {@code eventType}
+     * and its URL starts with {@code pageUrl}; either may be left empty to match anything.
+     */
+    @Data
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class Step {
+        private String name;
+        private String eventType;
+        private String pageUrl;
+
+        public boolean matches(UserEvent event) {
+            return (eventType == null || eventType.isEmpty() || eventType.equals(event.getEventType()))
+                    && (pageUrl == null || pageUrl.isEmpty()
+                            || (event.getPageUrl() != null && event.getPageUrl().startsWith(pageUrl)));
+        }
+    }
+}
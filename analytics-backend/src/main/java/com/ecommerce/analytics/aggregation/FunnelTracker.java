@@ -0,0 +1,223 @@
+package com.ecommerce.analytics.aggregation;
+
+import com.ecommerce.analytics.model.UserEvent;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Per-lane incremental funnel engine.
+ *
+ * Each session carries a tiny state machine per funnel: the index of the next
+ * step it has to reach and when it reached the previous one. An event that
+ * matches the next step advances the session and is counted in that step's
+ * per-minute bucket, together with the time taken since the previous step.
+ * A funnel query over any window therefore only sums bucket counters. A
+ * completed session starts over when it matches the first step again.
+ * Sessions idle for longer than the session timeout are dropped.
+ */
+public class FunnelTracker implements CheckpointableHandler {
+
+    private static final long MINUTE_MS = 60_000L;
+    private static final long SWEEP_INTERVAL_MS = 60_000L;
+
+    private final FunnelDefinition.Step[][] steps;
+    private final Map<String, Integer> funnelIndex = new HashMap<>();
+    private final String definitionKey;
+    private final long sessionTimeoutMillis;
+
+    private final int minuteSlots;
+    private final long[] slotMinute;
+    // [funnel][slot * steps + step]
+    private final long[][] reached;
+    private final long[][] stepMillis;
+
+    private final Map<String, Progress> sessions = new HashMap<>();
+    private long nextSweep;
+
+    public FunnelTracker(List<FunnelDefinition> funnels, long retentionMillis, long sessionTimeoutMillis) {
+        this.sessionTimeoutMillis = sessionTimeoutMillis;
+        this.steps = new FunnelDefinition.Step[funnels.size()][];
+        this.minuteSlots = (int) (retentionMillis / MINUTE_MS) + 1;
+        this.slotMinute = new long[minuteSlots];
+        Arrays.fill(slotMinute, -1L);
+        this.reached = new long[funnels.size()][];
+        this.stepMillis = new long[funnels.size()][];
+
+        for (int f = 0; f < funnels.size(); f++) {
+            FunnelDefinition funnel = funnels.get(f);
+            steps[f] = funnel.getSteps().toArray(new FunnelDefinition.Step[0]);
+            funnelIndex.put(funnel.getId(), f);
+            reached[f] = new long[minuteSlots * steps[f].length];
+            stepMillis[f] = new long[minuteSlots * steps[f].length];
+        }
+        this.definitionKey = definitionKey(funnels);
+    }
+
+    @Override
+    public void onEvent(UserEvent event, long timeMillis) {
+        Progress progress = sessions.get(event.getSessionId());
+        if (progress == null) {
+            progress = new Progress(steps.length);
+            sessions.put(event.getSessionId(), progress);
+        }
+        progress.lastSeen = Math.max(progress.lastSeen, timeMillis);
+
+        for (int f = 0; f < steps.length; f++) {
+            FunnelDefinition.Step[] funnelSteps = steps[f];
+            int next = progress.nextStep[f];
+            if (next == funnelSteps.length) {
+                if (!funnelSteps[0].matches(event)) {
+                    continue;
+                }
+                next = 0;
+            } else if (!funnelSteps[next].matches(event)) {
+                continue;
+            }
+
+            long elapsed = next == 0 ? 0 : Math.max(0, timeMillis - progress.reachedAt[f]);
+            count(f, next, timeMillis, elapsed);
+            progress.nextStep[f] = (byte) (next + 1);
+            progress.reachedAt[f] = timeMillis;
+        }
+    }
+
+    @Override
+    public void onTick(long nowMillis) {
+        if (nowMillis < nextSweep) {
+            return;
+        }
+        nextSweep = nowMillis + SWEEP_INTERVAL_MS;
+        long cutoff = nowMillis - sessionTimeoutMillis;
+        Iterator<Progress> iterator = sessions.values().iterator();
+        while (iterator.hasNext()) {
+            if (iterator.next().lastSeen < cutoff) {
+                iterator.remove();
+            }
+        }
+    }
+
+    /**
+     * Per-step totals of a funnel over the window, or null for an unknown funnel
+     */
+    public FunnelCounts counts(String funnelId, long nowMillis, long windowMillis) {
+        Integer f = funnelIndex.get(funnelId);
+        if (f == null) {
+            return null;
+        }
+        int stepCount = steps[f].length;
+        long nowMinute = nowMillis / MINUTE_MS;
+        long firstMinute = nowMinute - Math.max(1, windowMillis / MINUTE_MS) + 1;
+
+        long[] reachedTotals = new long[stepCount];
+        long[] millisTotals = new long[stepCount];
+        for (int slot = 0; slot < minuteSlots; slot++) {
+            if (slotMinute[slot] >= firstMinute && slotMinute[slot] <= nowMinute) {
+                int base = slot * stepCount;
+                for (int step = 0; step < stepCount; step++) {
+                    reachedTotals[step] += reached[f][base + step];
+                    millisTotals[step] += stepMillis[f][base + step];
+                }
+            }
+        }
+        return new FunnelCounts(reachedTotals, millisTotals);
+    }
+
+    public int trackedSessions() {
+        return sessions.size();
+    }
+
+    @Override
+    public void writeState(DataOutput out) throws IOException {
+        out.writeUTF(definitionKey);
+        out.writeInt(minuteSlots);
+        StateCodec.writeLongs(out, slotMinute);
+        for (int f = 0; f < steps.length; f++) {
+            StateCodec.writeSparse(out, reached[f]);
+            StateCodec.writeSparse(out, stepMillis[f]);
+        }
+        out.writeInt(sessions.size());
+        for (Map.Entry<String, Progress> entry : sessions.entrySet()) {
+            Progress progress = entry.getValue();
+            out.writeUTF(entry.getKey());
+            out.writeLong(progress.lastSeen);
+            out.write(progress.nextStep);
+            StateCodec.writeLongs(out, progress.reachedAt);
+        }
+    }
+
+    @Override
+    public void readState(DataInput in) throws IOException {
+        if (!definitionKey.equals(in.readUTF())) {
+            throw new IOException("Checkpoint was written for other funnel definitions");
+        }
+        StateCodec.expect("funnel minute slots", in.readInt(), minuteSlots);
+        StateCodec.readLongs(in, slotMinute);
+        for (int f = 0; f < steps.length; f++) {
+            StateCodec.readSparse(in, reached[f]);
+            StateCodec.readSparse(in, stepMillis[f]);
+        }
+        sessions.clear();
+        int count = in.readInt();
+        for (int n = 0; n < count; n++) {
+            String sessionId = in.readUTF();
+            Progress progress = new Progress(steps.length);
+            progress.lastSeen = in.readLong();
+            in.readFully(progress.nextStep);
+            StateCodec.readLongs(in, progress.reachedAt);
+            sessions.put(sessionId, progress);
+        }
+    }
+
+    /**
+     * Funnel ids and step matchers in order; checkpoints only restore into the same definitions
+     */
+    private static String definitionKey(List<FunnelDefinition> funnels) {
+        StringBuilder key = new StringBuilder();
+        for (FunnelDefinition funnel : funnels) {
+            key.append(funnel.getId()).append('[');
+            for (FunnelDefinition.Step step : funnel.getSteps()) {
+                key.append(step.getEventType()).append(' ').append(step.getPageUrl()).append(';');
+            }
+            key.append(']');
+        }
+        return key.toString();
+    }
+
+    private void count(int funnel, int step, long timeMillis, long elapsedMillis) {
+        long minute = timeMillis / MINUTE_MS;
+        int slot = (int) (minute % minuteSlots);
+        if (slotMinute[slot] != minute) {
+            if (minute < slotMinute[slot]) {
+                // Older than the ring covers
+                return;
+            }
+            for (int f = 0; f < steps.length; f++) {
+                int base = slot * steps[f].length;
+                Arrays.fill(reached[f], base, base + steps[f].length, 0);
+                Arrays.fill(stepMillis[f], base, base + steps[f].length, 0);
+            }
+            slotMinute[slot] = minute;
+        }
+        int index = slot * steps[funnel].length + step;
+        reached[funnel][index]++;
+        stepMillis[funnel][index] += elapsedMillis;
+    }
+
+    private static final class Progress {
+        private final byte[] nextStep;
+        private final long[] reachedAt;
+        private long lastSeen;
+
+        private Progress(int funnels) {
+            this.nextStep = new byte[funnels];
+            this.reachedAt = new long[funnels];
+        }
+    }
+}
@@ -0,0 +1,218 @@
+package com.ecommerce.analytics.aggregation;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.Arrays;
+
+/**
+ * Mergeable distinct-count sketch.
+ *
+ * A HyperLogLog with {@code 2^precision} registers, so the standard error is
+ * about {@code 1.04 / sqrt(2^precision)} (2.3% at precision 11). Small
+ * sketches are kept sparse, as a sorted array of {@code index << 8 | rank}
+ * entries, and switch to one byte per register once that would take more
+ * room; most page/minute sketches only ever see a handful of visitors.
+ * Merging takes the per-register maximum, so sketches of overlapping sets
+ * (buckets, lanes) combine into the sketch of their union. Not thread-safe.
+ */
+public class HyperLogLog {
+
+    private static final int MIN_PRECISION = 4;
+    private static final int MAX_PRECISION = 16;
+
+    private final int precision;
+    private final int registerCount;
+    private byte[] registers;
+    private int[] sparse = new int[4];
+    private int sparseSize;
+
+    public HyperLogLog(int precision) {
+        if (precision < MIN_PRECISION || precision > MAX_PRECISION) {
+            throw new IllegalArgumentException("Precision must be between " + MIN_PRECISION + " and "
+                    + MAX_PRECISION);
+        }
+        this.precision = precision;
+        this.registerCount = 1 << precision;
+    }
+
+    public int getPrecision() {
+        return precision;
+    }
+
+    /**
+     * Add an item, e.g. a user id
+     */
+    public void add(String item) {
+        long hash = StringHash.hash64(item);
+        int index = (int) (hash >>> (Long.SIZE - precision));
+        int rank = Math.min(Long.numberOfLeadingZeros(hash << precision), Long.SIZE - precision) + 1;
+        update(index, rank);
+    }
+
+    /**
+     * Fold another sketch of the same precision into this one
+     */
+    public void merge(HyperLogLog other) {
+        if (other.precision != precision) {
+            throw new IllegalArgumentException("Cannot merge sketches of precision " + other.precision + " into "
+                    + precision);
+        }
+        if (other.registers != null) {
+            for (int i = 0; i < registerCount; i++) {
+                if (other.registers[i] != 0) {
+                    update(i, other.registers[i]);
+                }
+            }
+        } else {
+            for (int i = 0; i < other.sparseSize; i++) {
+                update(other.sparse[i] >>> 8, other.sparse[i] & 0xFF);
+            }
+        }
+    }
+
+    /**
+     * Estimated number of distinct items added
+     */
+    public long estimate() {
+        double sum = 0;
+        int zeros = 0;
+        if (registers != null) {
+            for (byte register : registers) {
+                sum += Math.scalb(1.0, -register);
+                if (register == 0) {
+                    zeros++;
+                }
+            }
+        } else {
+            zeros = registerCount - sparseSize;
+            sum = zeros;
+            for (int i = 0; i < sparseSize; i++) {
+                sum += Math.scalb(1.0, -(sparse[i] & 0xFF));
+            }
+        }
+        double estimate = alpha() * registerCount * registerCount / sum;
+        if (estimate <= 2.5 * registerCount && zeros > 0) {
+            // Linear counting is more accurate while many registers are still empty
+            estimate = registerCount * Math.log((double) registerCount / zeros);
+        }
+        return Math.round(estimate);
+    }
+
+    /**
+     * Bytes held by the registers or sparse entries
+     */
+    public int sizeInBytes() {
+        return registers != null ? registers.length : sparse.length * Integer.BYTES;
+    }
+
+    public boolean isSparse() {
+        return registers == null;
+    }
+
+    /**
+     * {@code byte precision | boolean sparse | (int n | int entry*) or byte register*}
+     */
+    public void writeTo(DataOutput out) throws IOException {
+        out.writeByte(precision);
+        out.writeBoolean(registers == null);
+        if (registers == null) {
+            out.writeInt(sparseSize);
+            for (int i = 0; i < sparseSize; i++) {
+                out.writeInt(sparse[i]);
+            }
+        } else {
+            out.write(registers);
+        }
+    }
+
+    public static HyperLogLog readFrom(DataInput in) throws IOException {
+        int precision = in.readByte();
+        if (precision < MIN_PRECISION || precision > MAX_PRECISION) {
+            throw new IOException("Invalid sketch precision " + precision);
+        }
+        HyperLogLog sketch = new HyperLogLog(precision);
+        if (in.readBoolean()) {
+            int size = in.readInt();
+            if (size < 0 || size > sketch.registerCount) {
+                throw new IOException("Invalid sparse sketch size " + size);
+            }
+            for (int i = 0; i < size; i++) {
+                int entry = in.readInt();
+                sketch.update(entry >>> 8, entry & 0xFF);
+            }
+        } else {
+            sketch.registers = new byte[sketch.registerCount];
+            in.readFully(sketch.registers);
+            sketch.sparse = null;
+        }
+        return sketch;
+    }
+
+    private void update(int index, int rank) {
+        if (registers != null) {
+            if (rank > registers[index]) {
+                registers[index] = (byte) rank;
+            }
+            return;
+        }
+
+        int position = find(index);
+        if (position >= 0) {
+            if (rank > (sparse[position] & 0xFF)) {
+                sparse[position] = index << 8 | rank;
+            }
+            return;
+        }
+        if ((sparseSize + 1) * Integer.BYTES > registerCount) {
+            toDense();
+            update(index, rank);
+            return;
+        }
+        int insertAt = -position - 1;
+        if (sparseSize == sparse.length) {
+            sparse = Arrays.copyOf(sparse, Math.min(sparseSize * 2, registerCount / Integer.BYTES));
+        }
+        System.arraycopy(sparse, insertAt, sparse, insertAt + 1, sparseSize - insertAt);
+        sparse[insertAt] = index << 8 | rank;
+        sparseSize++;
+    }
+
+    /**
+     * Position of the register's sparse entry, or {@code -(insertion point) - 1}
+     */
+    private int find(int index) {
+        int low = 0;
+        int high = sparseSize - 1;
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            int midIndex = sparse[mid] >>> 8;
+            if (midIndex < index) {
+                low = mid + 1;
+            } else if (midIndex > index) {
+                high = mid - 1;
+            } else {
+                return mid;
+            }
+        }
+        return -(low + 1);
+    }
+
+    private void toDense() {
+        registers = new byte[registerCount];
+        for (int i = 0; i < sparseSize; i++) {
+            registers[sparse[i] >>> 8] = (byte) (sparse[i] & 0xFF);
+        }
+        sparse = null;
+        sparseSize = 0;
+    }
+
+    private double alpha() {
+        return switch (registerCount) {
+            case 16 -> 0.673;
+            case 32 -> 0.697;
+            case 64 -> 0.709;
+            default -> 0.7213 / (1 + 1.079 / registerCount);
+        };
+    }
+}
@@ -0,0 +1,28 @@
+package com.ecommerce.analytics.aggregation;
+
+import com.ecommerce.analytics.model.UserEvent;
+
+/**
+ * Per-lane aggregation state.
+ * Every lane owns its own handler instances and only ever calls them from
+ * the lane thread, so implementations need no synchronization. Because
+ * events are partitioned by userId, per-user state never spans lanes.
+ */
+public interface LaneHandler {
+
+    /**
+     * Apply one event routed to this lane
+     *
+     * @param event      the ingested event
+     * @param timeMillis the time the event is aggregated under (its event
+     *                   time); may lie behind the last tick for late events
+     */
+    void onEvent(UserEvent event, long timeMillis);
+
+    /**
+     * Periodic housekeeping (eviction, timers); called about once per second
+     * with the lane's event-time watermark, which trails the wall clock
+     */
+    default void onTick(long nowMillis) {
+    }
+}
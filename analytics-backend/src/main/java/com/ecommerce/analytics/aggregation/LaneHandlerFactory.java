@@ -0,0 +1,10 @@
+package com.ecommerce.analytics.aggregation;
+
+/**
+ * Creates the handler instance each lane owns.
+ * Register an implementation as a Spring bean to attach new per-lane state.
+ */
+public interface LaneHandlerFactory {
+
+    LaneHandler createHandler(int lane);
+}
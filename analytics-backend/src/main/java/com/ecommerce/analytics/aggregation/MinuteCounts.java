@@ -0,0 +1,116 @@
+package com.ecommerce.analytics.aggregation;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Keyed counters bucketed by minute in a fixed ring.
+ *
+ * Every key shares one ring of minute slots; a slot is reset for all keys
+ * when the ring wraps onto a new minute. A window is answered at minute
+ * granularity by summing the slots it covers. Not thread-safe: owned by a
+ * single lane.
+ */
+public class MinuteCounts {
+
+    private static final long MINUTE_MS = 60_000L;
+
+    private final int minuteSlots;
+    private final long[] slotMinute;
+    private final Map<String, long[]> counts = new HashMap<>();
+
+    public MinuteCounts(long retentionMillis) {
+        this.minuteSlots = (int) (retentionMillis / MINUTE_MS) + 1;
+        this.slotMinute = new long[minuteSlots];
+        Arrays.fill(slotMinute, -1L);
+    }
+
+    /**
+     * Count {@code delta} for the key in the minute containing {@code timeMillis}.
+     * Times older than the ring covers are dropped.
+     */
+    public void add(String key, long timeMillis, long delta) {
+        long minute = timeMillis / MINUTE_MS;
+        int slot = (int) (minute % minuteSlots);
+        if (slotMinute[slot] != minute) {
+            if (minute < slotMinute[slot]) {
+                return;
+            }
+            for (long[] keyCounts : counts.values()) {
+                keyCounts[slot] = 0;
+            }
+            slotMinute[slot] = minute;
+        }
+        counts.computeIfAbsent(key, k -> new long[minuteSlots])[slot] += delta;
+    }
+
+    /**
+     * Per-key totals over the minutes covering the last {@code windowMillis}
+     */
+    public Map<String, Long> sum(long nowMillis, long windowMillis) {
+        long nowMinute = nowMillis / MINUTE_MS;
+        long firstMinute = nowMinute - Math.max(1, windowMillis / MINUTE_MS) + 1;
+        Map<String, Long> totals = new HashMap<>();
+        for (Map.Entry<String, long[]> entry : counts.entrySet()) {
+            long total = 0;
+            long[] keyCounts = entry.getValue();
+            for (int slot = 0; slot < minuteSlots; slot++) {
+                if (slotMinute[slot] >= firstMinute && slotMinute[slot] <= nowMinute) {
+                    total += keyCounts[slot];
+                }
+            }
+            if (total > 0) {
+                totals.put(entry.getKey(), total);
+            }
+        }
+        return totals;
+    }
+
+    /**
+     * Drop keys with no counts at or after the cutoff
+     */
+    public void evict(long cutoffMillis) {
+        long oldestMinute = cutoffMillis / MINUTE_MS;
+        counts.values().removeIf(keyCounts -> {
+            for (int slot = 0; slot < minuteSlots; slot++) {
+                if (keyCounts[slot] > 0 && slotMinute[slot] >= oldestMinute) {
+                    return false;
+                }
+            }
+            return true;
+        });
+    }
+
+    /**
+     * Write the buckets and every key's counters (non-zero ones only)
+     */
+    public void writeTo(DataOutput out) throws IOException {
+        out.writeInt(minuteSlots);
+        StateCodec.writeLongs(out, slotMinute);
+        out.writeInt(counts.size());
+        for (Map.Entry<String, long[]> entry : counts.entrySet()) {
+            out.writeUTF(entry.getKey());
+            StateCodec.writeSparse(out, entry.getValue());
+        }
+    }
+
+    /**
+     * Replace all counts with ones written by {@link #writeTo} over the same retention
+     */
+    public void readFrom(DataInput in) throws IOException {
+        StateCodec.expect("minute slots", in.readInt(), minuteSlots);
+        StateCodec.readLongs(in, slotMinute);
+        counts.clear();
+        int keys = in.readInt();
+        for (int k = 0; k < keys; k++) {
+            String key = in.readUTF();
+            long[] keyCounts = new long[minuteSlots];
+            StateCodec.readSparse(in, keyCounts);
+            counts.put(key, keyCounts);
+        }
+    }
+}
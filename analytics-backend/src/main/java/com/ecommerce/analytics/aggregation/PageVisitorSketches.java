@@ -0,0 +1,174 @@
+package com.ecommerce.analytics.aggregation;
+
+import com.ecommerce.analytics.model.UserEvent;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+
+/**
+ * Per-page unique visitors of one lane.
+ *
+ * Every page keeps a ring of {@link HyperLogLog} sketches of the users who
+ * viewed it, one per time bucket over the retention; the bucket slots are
+ * shared by all pages and reset lazily when the ring wraps onto a new
+ * bucket, like {@link WindowCounts}. A window is answered by merging the
+ * sketches of the buckets it overlaps, so its start is rounded down to a
+ * bucket boundary. Memory is bounded by pages x buckets x sketch size, and
+ * sparse sketches keep quiet pages far below that.
+ */
+public class PageVisitorSketches implements CheckpointableHandler {
+
+    private static final String PAGE_VIEW = "page_view";
+
+    private final long bucketMillis;
+    private final int precision;
+    private final int slots;
+    private final long[] slotBucket;
+    private final Map<String, HyperLogLog[]> pages = new HashMap<>();
+
+    public PageVisitorSketches(long retentionMillis, long bucketMillis, int precision) {
+        this.bucketMillis = bucketMillis;
+        this.precision = precision;
+        this.slots = (int) (retentionMillis / bucketMillis) + 2;
+        this.slotBucket = new long[slots];
+        Arrays.fill(slotBucket, -1L);
+        // Fail fast on an invalid precision rather than on the first event
+        new HyperLogLog(precision);
+    }
+
+    @Override
+    public void onEvent(UserEvent event, long timeMillis) {
+        if (!PAGE_VIEW.equals(event.getEventType())) {
+            return;
+        }
+        long bucket = timeMillis / bucketMillis;
+        int slot = (int) (bucket % slots);
+        if (slotBucket[slot] > bucket) {
+            // Older than the ring covers
+            return;
+        }
+        if (slotBucket[slot] < bucket) {
+            slotBucket[slot] = bucket;
+            for (HyperLogLog[] sketches : pages.values()) {
+                sketches[slot] = null;
+            }
+        }
+
+        HyperLogLog[] sketches = pages.computeIfAbsent(event.getPageUrl(), page -> new HyperLogLog[slots]);
+        if (sketches[slot] == null) {
+            sketches[slot] = new HyperLogLog(precision);
+        }
+        sketches[slot].add(event.getUserId());
+    }
+
+    @Override
+    public void onTick(long nowMillis) {
+        long oldestBucket = nowMillis / bucketMillis - slots + 1;
+        boolean evicted = false;
+        for (int slot = 0; slot < slots; slot++) {
+            if (slotBucket[slot] >= 0 && slotBucket[slot] < oldestBucket) {
+                slotBucket[slot] = -1L;
+                evicted = true;
+                for (HyperLogLog[] sketches : pages.values()) {
+                    sketches[slot] = null;
+                }
+            }
+        }
+        if (evicted) {
+            Iterator<HyperLogLog[]> iterator = pages.values().iterator();
+            while (iterator.hasNext()) {
+                if (Arrays.stream(iterator.next()).allMatch(sketch -> sketch == null)) {
+                    iterator.remove();
+                }
+            }
+        }
+    }
+
+    /**
+     * Per-page sketch of the users who viewed the page in the buckets
+     * overlapping the last {@code windowMillis}; fresh copies the caller may merge into
+     */
+    public Map<String, HyperLogLog> visitors(long nowMillis, long windowMillis) {
+        long nowBucket = nowMillis / bucketMillis;
+        long fromBucket = Math.max(nowBucket - slots + 1, Math.floorDiv(nowMillis - windowMillis, bucketMillis));
+
+        Map<String, HyperLogLog> visitors = new HashMap<>();
+        for (Map.Entry<String, HyperLogLog[]> entry : pages.entrySet()) {
+            HyperLogLog merged = null;
+            HyperLogLog[] sketches = entry.getValue();
+            for (int slot = 0; slot < slots; slot++) {
+                long bucket = slotBucket[slot];
+                if (sketches[slot] == null || bucket < fromBucket || bucket > nowBucket) {
+                    continue;
+                }
+                if (merged == null) {
+                    merged = new HyperLogLog(precision);
+                }
+                merged.merge(sketches[slot]);
+            }
+            if (merged != null) {
+                visitors.put(entry.getKey(), merged);
+            }
+        }
+        return visitors;
+    }
+
+    /**
+     * Bytes held by the sketches, for sizing
+     */
+    public long sizeInBytes() {
+        long bytes = 0;
+        for (HyperLogLog[] sketches : pages.values()) {
+            for (HyperLogLog sketch : sketches) {
+                if (sketch != null) {
+                    bytes += sketch.sizeInBytes();
+                }
+            }
+        }
+        return bytes;
+    }
+
+    @Override
+    public void writeState(DataOutput out) throws IOException {
+        out.writeLong(bucketMillis);
+        out.writeInt(slots);
+        out.writeByte(precision);
+        StateCodec.writeLongs(out, slotBucket);
+        out.writeInt(pages.size());
+        for (Map.Entry<String, HyperLogLog[]> entry : pages.entrySet()) {
+            out.writeUTF(entry.getKey());
+            HyperLogLog[] sketches = entry.getValue();
+            for (HyperLogLog sketch : sketches) {
+                out.writeBoolean(sketch != null);
+                if (sketch != null) {
+                    sketch.writeTo(out);
+                }
+            }
+        }
+    }
+
+    @Override
+    public void readState(DataInput in) throws IOException {
+        StateCodec.expect("visitor bucket millis", in.readLong(), bucketMillis);
+        StateCodec.expect("visitor slots", in.readInt(), slots);
+        StateCodec.expect("visitor sketch precision", in.readByte(), precision);
+        StateCodec.readLongs(in, slotBucket);
+        pages.clear();
+        int pageCount = in.readInt();
+        for (int p = 0; p < pageCount; p++) {
+            String page = in.readUTF();
+            HyperLogLog[] sketches = new HyperLogLog[slots];
+            for (int slot = 0; slot < slots; slot++) {
+                if (in.readBoolean()) {
+                    sketches[slot] = HyperLogLog.readFrom(in);
+                }
+            }
+            pages.put(page, sketches);
+        }
+    }
+}
@@ -0,0 +1,54 @@
+package com.ecommerce.analytics.aggregation;
+
+import lombok.Getter;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Open-session count and closed-session totals from one lane, or merged
+ * across lanes. Every field is a plain sum, so partials merge by addition.
+ */
+@Getter
+public class SessionSummary {
+
+    private long openSessions;
+    private long closedSessions;
+    private long totalDurationMillis;
+    private long totalEvents;
+    private long totalPageViews;
+    private long bounces;
+    private final Map<String, Long> entryPages;
+    private final Map<String, Long> exitPages;
+
+    public SessionSummary(long openSessions, long closedSessions, long totalDurationMillis, long totalEvents,
+            long totalPageViews, long bounces, Map<String, Long> entryPages, Map<String, Long> exitPages) {
+        this.openSessions = openSessions;
+        this.closedSessions = closedSessions;
+        this.totalDurationMillis = totalDurationMillis;
+        this.totalEvents = totalEvents;
+        this.totalPageViews = totalPageViews;
+        this.bounces = bounces;
+        this.entryPages = entryPages;
+        this.exitPages = exitPages;
+    }
+
+    /**
+     * Merge per-lane partial summaries
+     */
+    public static SessionSummary merge(List<SessionSummary> partials) {
+        SessionSummary merged = new SessionSummary(0, 0, 0, 0, 0, 0, new HashMap<>(), new HashMap<>());
+        for (SessionSummary partial : partials) {
+            merged.openSessions += partial.openSessions;
+            merged.closedSessions += partial.closedSessions;
+            merged.totalDurationMillis += partial.totalDurationMillis;
+            merged.totalEvents += partial.totalEvents;
+            merged.totalPageViews += partial.totalPageViews;
+            merged.bounces += partial.bounces;
+            partial.entryPages.forEach((page, count) -> merged.entryPages.merge(page, count, Long::sum));
+            partial.exitPages.forEach((page, count) -> merged.exitPages.merge(page, count, Long::sum));
+        }
+        return merged;
+    }
+}
@@ -0,0 +1,348 @@
+package com.ecommerce.analytics.aggregation;
+
+import com.ecommerce.analytics.model.UserEvent;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Per-lane streaming sessionization.
+ *
+ * Open sessions live in parallel primitive arrays indexed by a slot number
+ * (start, last-seen, event and page-view counts, entry and exit page), with
+ * freed slots recycled. Inactivity timeouts are driven by a hashed timer wheel
+ * of one-second buckets whose lists are threaded through the same slot arrays:
+ * a session is scheduled once when it opens, and when its bucket comes round
+ * it is either closed or, if it saw activity since, rescheduled for its new
+ * deadline. Events therefore never touch the wheel.
+ *
+ * Closed sessions are folded into per-minute totals (count, duration, events,
+ * page views, bounces) plus entry/exit page counts, kept for the stats retention.
+ */
+public class SessionTracker implements CheckpointableHandler {
+
+    private static final long TICK_MS = 1000L;
+    private static final long MINUTE_MS = 60_000L;
+    private static final String PAGE_VIEW = "page_view";
+    private static final int NONE = -1;
+
+    private final long inactivityGapMillis;
+    private final long statsRetentionMillis;
+
+    // Open sessions, one slot each
+    private final Map<String, Integer> slotBySession = new HashMap<>();
+    private String[] sessionIds;
+    private String[] userIds;
+    private String[] entryPages;
+    private String[] exitPages;
+    private long[] startMillis;
+    private long[] lastSeenMillis;
+    private int[] eventCounts;
+    private int[] pageViewCounts;
+    private int[] nextInBucket;
+    private int[] freeSlots;
+    private int freeCount;
+    private int slotsUsed;
+
+    // Timer wheel
+    private final int[] wheelHeads;
+    private final int wheelMask;
+    private long wheelTick = -1;
+
+    // Closed-session totals per minute
+    private final int statsSlots;
+    private final long[] statsMinute;
+    private final long[] closedSessions;
+    private final long[] durationMillis;
+    private final long[] closedEvents;
+    private final long[] closedPageViews;
+    private final long[] bounces;
+    private final MinuteCounts entryPageCounts;
+    private final MinuteCounts exitPageCounts;
+
+    public SessionTracker(long inactivityGapMillis, long statsRetentionMillis) {
+        this.inactivityGapMillis = inactivityGapMillis;
+        this.statsRetentionMillis = statsRetentionMillis;
+
+        int wheelSize = Integer.highestOneBit((int) (inactivityGapMillis / TICK_MS) + 2) << 1;
+        this.wheelHeads = new int[wheelSize];
+        this.wheelMask = wheelSize - 1;
+        Arrays.fill(wheelHeads, NONE);
+
+        allocate(256);
+
+        this.statsSlots = (int) (statsRetentionMillis / MINUTE_MS) + 1;
+        this.statsMinute = new long[statsSlots];
+        Arrays.fill(statsMinute, -1L);
+        this.closedSessions = new long[statsSlots];
+        this.durationMillis = new long[statsSlots];
+        this.closedEvents = new long[statsSlots];
+        this.closedPageViews = new long[statsSlots];
+        this.bounces = new long[statsSlots];
+        this.entryPageCounts = new MinuteCounts(statsRetentionMillis);
+        this.exitPageCounts = new MinuteCounts(statsRetentionMillis);
+    }
+
+    @Override
+    public void onEvent(UserEvent event, long timeMillis) {
+        if (wheelTick < 0) {
+            wheelTick = timeMillis / TICK_MS;
+        }
+
+        boolean pageView = PAGE_VIEW.equals(event.getEventType());
+        Integer existing = slotBySession.get(event.getSessionId());
+        if (existing == null) {
+            int slot = openSlot();
+            sessionIds[slot] = event.getSessionId();
+            userIds[slot] = event.getUserId();
+            entryPages[slot] = event.getPageUrl();
+            exitPages[slot] = event.getPageUrl();
+            startMillis[slot] = timeMillis;
+            lastSeenMillis[slot] = timeMillis;
+            eventCounts[slot] = 1;
+            pageViewCounts[slot] = pageView ? 1 : 0;
+            slotBySession.put(event.getSessionId(), slot);
+            schedule(slot, timeMillis + inactivityGapMillis);
+            return;
+        }
+
+        int slot = existing;
+        if (timeMillis < startMillis[slot]) {
+            startMillis[slot] = timeMillis;
+            entryPages[slot] = event.getPageUrl();
+        }
+        if (timeMillis >= lastSeenMillis[slot]) {
+            lastSeenMillis[slot] = timeMillis;
+            exitPages[slot] = event.getPageUrl();
+        }
+        eventCounts[slot]++;
+        if (pageView) {
+            pageViewCounts[slot]++;
+        }
+    }
+
+    @Override
+    public void onTick(long nowMillis) {
+        long nowTick = nowMillis / TICK_MS;
+        if (wheelTick < 0) {
+            wheelTick = nowTick;
+            return;
+        }
+        if (nowTick - wheelTick > wheelHeads.length) {
+            // Every bucket is due; visit each once
+            wheelTick = nowTick - wheelHeads.length;
+        }
+
+        while (wheelTick < nowTick) {
+            wheelTick++;
+            int bucket = (int) (wheelTick & wheelMask);
+            int slot = wheelHeads[bucket];
+            wheelHeads[bucket] = NONE;
+            while (slot != NONE) {
+                int next = nextInBucket[slot];
+                long deadline = lastSeenMillis[slot] + inactivityGapMillis;
+                if (deadline <= nowMillis) {
+                    close(slot, nowMillis);
+                } else {
+                    schedule(slot, deadline);
+                }
+                slot = next;
+            }
+        }
+
+        long cutoff = nowMillis - statsRetentionMillis;
+        entryPageCounts.evict(cutoff);
+        exitPageCounts.evict(cutoff);
+    }
+
+    /**
+     * Open sessions plus totals for sessions closed within the window, for this lane
+     */
+    public SessionSummary summary(long nowMillis, long windowMillis) {
+        long nowMinute = nowMillis / MINUTE_MS;
+        long firstMinute = nowMinute - Math.max(1, windowMillis / MINUTE_MS) + 1;
+
+        long closed = 0;
+        long duration = 0;
+        long events = 0;
+        long pageViews = 0;
+        long bounced = 0;
+        for (int i = 0; i < statsSlots; i++) {
+            if (statsMinute[i] >= firstMinute && statsMinute[i] <= nowMinute) {
+                closed += closedSessions[i];
+                duration += durationMillis[i];
+                events += closedEvents[i];
+                pageViews += closedPageViews[i];
+                bounced += bounces[i];
+            }
+        }
+
+        return new SessionSummary(slotBySession.size(), closed, duration, events, pageViews, bounced,
+                entryPageCounts.sum(nowMillis, windowMillis), exitPageCounts.sum(nowMillis, windowMillis));
+    }
+
+    /**
+     * Currently open sessions of one user
+     */
+    public List<SessionView> openSessions(String userId) {
+        List<SessionView> sessions = new ArrayList<>();
+        for (int slot : slotBySession.values()) {
+            if (userId.equals(userIds[slot])) {
+                sessions.add(new SessionView(sessionIds[slot], userIds[slot], startMillis[slot],
+                        lastSeenMillis[slot], eventCounts[slot], pageViewCounts[slot],
+                        entryPages[slot], exitPages[slot]));
+            }
+        }
+        return sessions;
+    }
+
+    public int openSessionCount() {
+        return slotBySession.size();
+    }
+
+    /**
+     * Open sessions and closed-session totals; the timer wheel is rebuilt on restore
+     */
+    @Override
+    public void writeState(DataOutput out) throws IOException {
+        out.writeLong(inactivityGapMillis);
+        out.writeInt(statsSlots);
+        out.writeLong(wheelTick);
+        out.writeInt(slotBySession.size());
+        for (int slot : slotBySession.values()) {
+            out.writeUTF(sessionIds[slot]);
+            StateCodec.writeNullable(out, userIds[slot]);
+            StateCodec.writeNullable(out, entryPages[slot]);
+            StateCodec.writeNullable(out, exitPages[slot]);
+            out.writeLong(startMillis[slot]);
+            out.writeLong(lastSeenMillis[slot]);
+            out.writeInt(eventCounts[slot]);
+            out.writeInt(pageViewCounts[slot]);
+        }
+        StateCodec.writeLongs(out, statsMinute);
+        StateCodec.writeLongs(out, closedSessions);
+        StateCodec.writeLongs(out, durationMillis);
+        StateCodec.writeLongs(out, closedEvents);
+        StateCodec.writeLongs(out, closedPageViews);
+        StateCodec.writeLongs(out, bounces);
+        entryPageCounts.writeTo(out);
+        exitPageCounts.writeTo(out);
+    }
+
+    @Override
+    public void readState(DataInput in) throws IOException {
+        StateCodec.expect("session inactivity gap", in.readLong(), inactivityGapMillis);
+        StateCodec.expect("session stats slots", in.readInt(), statsSlots);
+
+        slotBySession.clear();
+        sessionIds = null;
+        freeCount = 0;
+        slotsUsed = 0;
+        Arrays.fill(wheelHeads, NONE);
+        wheelTick = in.readLong();
+        int open = in.readInt();
+        allocate(Math.max(256, Integer.highestOneBit(Math.max(1, open)) << 1));
+        for (int n = 0; n < open; n++) {
+            int slot = openSlot();
+            sessionIds[slot] = in.readUTF();
+            userIds[slot] = StateCodec.readNullable(in);
+            entryPages[slot] = StateCodec.readNullable(in);
+            exitPages[slot] = StateCodec.readNullable(in);
+            startMillis[slot] = in.readLong();
+            lastSeenMillis[slot] = in.readLong();
+            eventCounts[slot] = in.readInt();
+            pageViewCounts[slot] = in.readInt();
+            slotBySession.put(sessionIds[slot], slot);
+            schedule(slot, lastSeenMillis[slot] + inactivityGapMillis);
+        }
+
+        StateCodec.readLongs(in, statsMinute);
+        StateCodec.readLongs(in, closedSessions);
+        StateCodec.readLongs(in, durationMillis);
+        StateCodec.readLongs(in, closedEvents);
+        StateCodec.readLongs(in, closedPageViews);
+        StateCodec.readLongs(in, bounces);
+        entryPageCounts.readFrom(in);
+        exitPageCounts.readFrom(in);
+    }
+
+    private void schedule(int slot, long deadlineMillis) {
+        long tick = Math.max(deadlineMillis / TICK_MS + 1, wheelTick + 1);
+        // Deadlines beyond one revolution are parked in the furthest bucket and re-checked there
+        tick = Math.min(tick, wheelTick + wheelHeads.length - 1);
+        int bucket = (int) (tick & wheelMask);
+        nextInBucket[slot] = wheelHeads[bucket];
+        wheelHeads[bucket] = slot;
+    }
+
+    private void close(int slot, long nowMillis) {
+        long minute = nowMillis / MINUTE_MS;
+        int i = (int) (minute % statsSlots);
+        if (statsMinute[i] != minute) {
+            statsMinute[i] = minute;
+            closedSessions[i] = 0;
+            durationMillis[i] = 0;
+            closedEvents[i] = 0;
+            closedPageViews[i] = 0;
+            bounces[i] = 0;
+        }
+        closedSessions[i]++;
+        durationMillis[i] += lastSeenMillis[slot] - startMillis[slot];
+        closedEvents[i] += eventCounts[slot];
+        closedPageViews[i] += pageViewCounts[slot];
+        if (pageViewCounts[slot] <= 1) {
+            bounces[i]++;
+        }
+        entryPageCounts.add(entryPages[slot], nowMillis, 1);
+        exitPageCounts.add(exitPages[slot], nowMillis, 1);
+
+        slotBySession.remove(sessionIds[slot]);
+        sessionIds[slot] = null;
+        userIds[slot] = null;
+        entryPages[slot] = null;
+        exitPages[slot] = null;
+        freeSlots[freeCount++] = slot;
+    }
+
+    private int openSlot() {
+        if (freeCount > 0) {
+            return freeSlots[--freeCount];
+        }
+        if (slotsUsed == sessionIds.length) {
+            allocate(sessionIds.length * 2);
+        }
+        return slotsUsed++;
+    }
+
+    private void allocate(int capacity) {
+        if (sessionIds == null) {
+            sessionIds = new String[capacity];
+            userIds = new String[capacity];
+            entryPages = new String[capacity];
+            exitPages = new String[capacity];
+            startMillis = new long[capacity];
+            lastSeenMillis = new long[capacity];
+            eventCounts = new int[capacity];
+            pageViewCounts = new int[capacity];
+            nextInBucket = new int[capacity];
+            freeSlots = new int[capacity];
+            return;
+        }
+        sessionIds = Arrays.copyOf(sessionIds, capacity);
+        userIds = Arrays.copyOf(userIds, capacity);
+        entryPages = Arrays.copyOf(entryPages, capacity);
+        exitPages = Arrays.copyOf(exitPages, capacity);
+        startMillis = Arrays.copyOf(startMillis, capacity);
+        lastSeenMillis = Arrays.copyOf(lastSeenMillis, capacity);
+        eventCounts = Arrays.copyOf(eventCounts, capacity);
+        pageViewCounts = Arrays.copyOf(pageViewCounts, capacity);
+        nextInBucket = Arrays.copyOf(nextInBucket, capacity);
+        freeSlots = Arrays.copyOf(freeSlots, capacity);
+    }
+}
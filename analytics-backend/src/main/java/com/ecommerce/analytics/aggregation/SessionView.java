@@ -0,0 +1,18 @@
+package com.ecommerce.analytics.aggregation;
+
+import lombok.Value;
+
+/**
+ * Point-in-time copy of one open session
+ */
+@Value
+public class SessionView {
+    String sessionId;
+    String userId;
+    long startMillis;
+    long lastSeenMillis;
+    int events;
+    int pageViews;
+    String entryPage;
+    String exitPage;
+}
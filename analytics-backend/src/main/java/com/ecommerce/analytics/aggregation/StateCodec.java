@@ -0,0 +1,78 @@
+package com.ecommerce.analytics.aggregation;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.Arrays;
+
+/**
+ * Shared encoding helpers for {@link CheckpointableHandler} state
+ */
+final class StateCodec {
+
+    private StateCodec() {
+    }
+
+    /**
+     * Counter array as {@code int nonZero | (int index | long value)*}; most buckets are empty
+     */
+    static void writeSparse(DataOutput out, long[] values) throws IOException {
+        int nonZero = 0;
+        for (long value : values) {
+            if (value != 0) {
+                nonZero++;
+            }
+        }
+        out.writeInt(nonZero);
+        for (int i = 0; i < values.length; i++) {
+            if (values[i] != 0) {
+                out.writeInt(i);
+                out.writeLong(values[i]);
+            }
+        }
+    }
+
+    static void readSparse(DataInput in, long[] values) throws IOException {
+        Arrays.fill(values, 0L);
+        int nonZero = in.readInt();
+        for (int n = 0; n < nonZero; n++) {
+            int index = in.readInt();
+            if (index < 0 || index >= values.length) {
+                throw new IOException("Counter index " + index + " out of range");
+            }
+            values[index] = in.readLong();
+        }
+    }
+
+    static void writeLongs(DataOutput out, long[] values) throws IOException {
+        for (long value : values) {
+            out.writeLong(value);
+        }
+    }
+
+    static void readLongs(DataInput in, long[] values) throws IOException {
+        for (int i = 0; i < values.length; i++) {
+            values[i] = in.readLong();
+        }
+    }
+
+    static void writeNullable(DataOutput out, String value) throws IOException {
+        out.writeBoolean(value != null);
+        if (value != null) {
+            out.writeUTF(value);
+        }
+    }
+
+    static String readNullable(DataInput in) throws IOException {
+        return in.readBoolean() ? in.readUTF() : null;
+    }
+
+    /**
+     * Fail unless a checkpointed shape parameter matches the current configuration
+     */
+    static void expect(String what, long checkpointed, long configured) throws IOException {
+        if (checkpointed != configured) {
+            throw new IOException("Checkpoint " + what + " " + checkpointed + " differs from configured " + configured);
+        }
+    }
+}
@@ -0,0 +1,31 @@
+package com.ecommerce.analytics.aggregation;
+
+/**
+ * 64-bit string hash shared by the probabilistic structures
+ * ({@link HyperLogLog}, the dedup Bloom filter).
+ *
+ * Sketches and filters persisted by one version must hash the same way in
+ * the next, so the function is fixed and must not change.
+ */
+public final class StringHash {
+
+    private StringHash() {
+    }
+
+    /**
+     * 64-bit FNV-1a over the UTF-16 code units, finished with the MurmurHash3 mixer
+     */
+    public static long hash64(String value) {
+        long h = 0xcbf29ce484222325L;
+        for (int i = 0; i < value.length(); i++) {
+            h ^= value.charAt(i);
+            h *= 0x100000001b3L;
+        }
+        h ^= h >>> 33;
+        h *= 0xff51afd7ed558ccdL;
+        h ^= h >>> 33;
+        h *= 0xc4ceb9fe1a85ec53L;
+        h ^= h >>> 33;
+        return h;
+    }
+}
@@ -0,0 +1,203 @@
+package com.ecommerce.analytics.aggregation;
+
+import com.ecommerce.analytics.model.UserEvent;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Per-lane user, session and page-view state.
+ *
+ * Users keep a last-seen time and a small inline array of their sessions
+ * with last-seen times. Page views are counted in a {@link WindowCounts}
+ * ring, exact to the second for recent time and per minute before that, so
+ * any set of windows is answered in one pass. Everything older than the
+ * retention is evicted on tick.
+ */
+public class UserActivityState implements CheckpointableHandler {
+
+    private static final String PAGE_VIEW = "page_view";
+
+    private final long retentionMillis;
+    private final Map<String, UserEntry> users = new HashMap<>();
+    private final WindowCounts pageViewCounts;
+
+    public UserActivityState(long retentionMillis) {
+        this.retentionMillis = retentionMillis;
+        this.pageViewCounts = new WindowCounts(retentionMillis);
+    }
+
+    @Override
+    public void onEvent(UserEvent event, long timeMillis) {
+        users.computeIfAbsent(event.getUserId(), userId -> new UserEntry())
+                .touch(event.getSessionId(), timeMillis);
+
+        if (PAGE_VIEW.equals(event.getEventType())) {
+            pageViewCounts.add(event.getPageUrl(), timeMillis, 1);
+        }
+    }
+
+    @Override
+    public void onTick(long nowMillis) {
+        long cutoff = nowMillis - retentionMillis;
+        Iterator<UserEntry> iterator = users.values().iterator();
+        while (iterator.hasNext()) {
+            UserEntry user = iterator.next();
+            if (user.lastSeen < cutoff) {
+                iterator.remove();
+            } else {
+                user.evictSessions(cutoff);
+            }
+        }
+
+        pageViewCounts.evict(cutoff);
+    }
+
+    /**
+     * Users seen since {@code nowMillis - windowMillis}, without building a snapshot
+     */
+    public long activeUserCount(long nowMillis, long windowMillis) {
+        long cutoff = nowMillis - windowMillis;
+        long count = 0;
+        for (UserEntry user : users.values()) {
+            if (user.lastSeen >= cutoff) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Figures for every window (in the given order) for this lane, optionally
+     * listing the active user ids. Sessions seen within the longest window are
+     * included with their last-seen times.
+     */
+    public ActivitySnapshot snapshot(long nowMillis, long[] windowsMillis, boolean includeUserIds) {
+        int windows = windowsMillis.length;
+        long[] cutoffs = new long[windows];
+        long sessionCutoff = nowMillis;
+        for (int w = 0; w < windows; w++) {
+            cutoffs[w] = nowMillis - windowsMillis[w];
+            sessionCutoff = Math.min(sessionCutoff, cutoffs[w]);
+        }
+
+        long[] activeUsers = new long[windows];
+        List<List<String>> activeUserIds = new ArrayList<>(windows);
+        for (int w = 0; w < windows; w++) {
+            activeUserIds.add(includeUserIds ? new ArrayList<>() : List.of());
+        }
+        Map<String, Map<String, Long>> userSessions = new HashMap<>();
+        for (Map.Entry<String, UserEntry> entry : users.entrySet()) {
+            UserEntry user = entry.getValue();
+            for (int w = 0; w < windows; w++) {
+                if (user.lastSeen >= cutoffs[w]) {
+                    activeUsers[w]++;
+                    if (includeUserIds) {
+                        activeUserIds.get(w).add(entry.getKey());
+                    }
+                }
+            }
+            Map<String, Long> sessions = user.sessionsSince(sessionCutoff);
+            if (!sessions.isEmpty()) {
+                userSessions.put(entry.getKey(), sessions);
+            }
+        }
+
+        List<Map<String, Long>> pageViews = pageViewCounts.sums(nowMillis, windowsMillis);
+
+        return new ActivitySnapshot(activeUsers, pageViews, userSessions, activeUserIds);
+    }
+
+    @Override
+    public void writeState(DataOutput out) throws IOException {
+        out.writeInt(users.size());
+        for (Map.Entry<String, UserEntry> entry : users.entrySet()) {
+            UserEntry user = entry.getValue();
+            out.writeUTF(entry.getKey());
+            out.writeLong(user.lastSeen);
+            out.writeInt(user.sessionCount);
+            for (int i = 0; i < user.sessionCount; i++) {
+                out.writeUTF(user.sessionIds[i]);
+                out.writeLong(user.sessionSeen[i]);
+            }
+        }
+        pageViewCounts.writeTo(out);
+    }
+
+    @Override
+    public void readState(DataInput in) throws IOException {
+        users.clear();
+        int userCount = in.readInt();
+        for (int u = 0; u < userCount; u++) {
+            String userId = in.readUTF();
+            UserEntry user = new UserEntry();
+            user.lastSeen = in.readLong();
+            int sessions = in.readInt();
+            user.sessionIds = new String[Math.max(2, sessions)];
+            user.sessionSeen = new long[user.sessionIds.length];
+            for (int i = 0; i < sessions; i++) {
+                user.sessionIds[i] = in.readUTF();
+                user.sessionSeen[i] = in.readLong();
+            }
+            user.sessionCount = sessions;
+            users.put(userId, user);
+        }
+        pageViewCounts.readFrom(in);
+    }
+
+    private static final class UserEntry {
+        private long lastSeen;
+        private String[] sessionIds = new String[2];
+        private long[] sessionSeen = new long[2];
+        private int sessionCount;
+
+        private void touch(String sessionId, long timeMillis) {
+            lastSeen = Math.max(lastSeen, timeMillis);
+            for (int i = 0; i < sessionCount; i++) {
+                if (sessionIds[i].equals(sessionId)) {
+                    sessionSeen[i] = Math.max(sessionSeen[i], timeMillis);
+                    return;
+                }
+            }
+            if (sessionCount == sessionIds.length) {
+                sessionIds = Arrays.copyOf(sessionIds, sessionCount * 2);
+                sessionSeen = Arrays.copyOf(sessionSeen, sessionCount * 2);
+            }
+            sessionIds[sessionCount] = sessionId;
+            sessionSeen[sessionCount] = timeMillis;
+            sessionCount++;
+        }
+
+        private void evictSessions(long cutoff) {
+            int kept = 0;
+            for (int i = 0; i < sessionCount; i++) {
+                if (sessionSeen[i] >= cutoff) {
+                    sessionIds[kept] = sessionIds[i];
+                    sessionSeen[kept] = sessionSeen[i];
+                    kept++;
+                }
+            }
+            for (int i = kept; i < sessionCount; i++) {
+                sessionIds[i] = null;
+            }
+            sessionCount = kept;
+        }
+
+        private Map<String, Long> sessionsSince(long cutoff) {
+            Map<String, Long> sessions = new HashMap<>();
+            for (int i = 0; i < sessionCount; i++) {
+                if (sessionSeen[i] >= cutoff) {
+                    sessions.put(sessionIds[i], sessionSeen[i]);
+                }
+            }
+            return sessions;
+        }
+    }
+}
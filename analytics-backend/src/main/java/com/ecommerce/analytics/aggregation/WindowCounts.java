@@ -0,0 +1,202 @@
+package com.ecommerce.analytics.aggregation;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Keyed counters at two resolutions, for answering several window lengths at once.
+ *
+ * Each key owns one preallocated array holding a ring of per-second buckets
+ * covering the current and previous minute, followed by a ring of per-minute
+ * buckets covering the retention. Every add lands in both rings, so the
+ * minute buckets are always rolled up and adding to a known key allocates
+ * nothing. A window is answered from the second buckets for its most recent
+ * part (exact to the second) and from the minute buckets before that, where
+ * the oldest minute is counted whole. Slots are shared by all keys and reset
+ * lazily when the ring wraps onto a new second or minute. Not thread-safe:
+ * owned by a single lane.
+ */
+public class WindowCounts {
+
+    private static final int SECOND_SLOTS = 120;
+    private static final long SECOND_MS = 1000L;
+    private static final long SECONDS_PER_MINUTE = 60L;
+
+    private final int minuteSlots;
+    private final long[] slotSecond = new long[SECOND_SLOTS];
+    private final long[] slotMinute;
+    private final Map<String, long[]> counts = new HashMap<>();
+
+    public WindowCounts(long retentionMillis) {
+        this.minuteSlots = (int) (retentionMillis / (SECONDS_PER_MINUTE * SECOND_MS)) + 2;
+        this.slotMinute = new long[minuteSlots];
+        Arrays.fill(slotSecond, -1L);
+        Arrays.fill(slotMinute, -1L);
+    }
+
+    /**
+     * Count {@code delta} for the key at {@code timeMillis}. Times older than
+     * a ring covers are dropped from that ring.
+     */
+    public void add(String key, long timeMillis, long delta) {
+        long second = timeMillis / SECOND_MS;
+        long minute = second / SECONDS_PER_MINUTE;
+
+        int secondSlot = (int) (second % SECOND_SLOTS);
+        boolean inSeconds = claim(slotSecond, secondSlot, second, 0);
+        int minuteSlot = (int) (minute % minuteSlots);
+        boolean inMinutes = claim(slotMinute, minuteSlot, minute, SECOND_SLOTS);
+        if (!inSeconds && !inMinutes) {
+            return;
+        }
+
+        long[] keyCounts = counts.computeIfAbsent(key, k -> new long[SECOND_SLOTS + minuteSlots]);
+        if (inSeconds) {
+            keyCounts[secondSlot] += delta;
+        }
+        if (inMinutes) {
+            keyCounts[SECOND_SLOTS + minuteSlot] += delta;
+        }
+    }
+
+    /**
+     * Per-key totals over the last {@code windowMillis}
+     */
+    public Map<String, Long> sum(long nowMillis, long windowMillis) {
+        return sums(nowMillis, new long[]{windowMillis}).get(0);
+    }
+
+    /**
+     * Per-key totals for every window, from one pass over the buckets
+     */
+    public List<Map<String, Long>> sums(long nowMillis, long[] windowsMillis) {
+        int windows = windowsMillis.length;
+        long nowSecond = nowMillis / SECOND_MS;
+        long currentMinute = nowSecond / SECONDS_PER_MINUTE;
+        // Seconds cover the previous and current minute; minutes cover everything before
+        long firstExactSecond = (currentMinute - 1) * SECONDS_PER_MINUTE;
+
+        long[] fromSecond = new long[windows];
+        long[] fromMinute = new long[windows];
+        for (int w = 0; w < windows; w++) {
+            long startSecond = nowSecond - Math.max(1, windowsMillis[w] / SECOND_MS) + 1;
+            fromSecond[w] = Math.max(startSecond, firstExactSecond);
+            fromMinute[w] = Math.floorDiv(startSecond, SECONDS_PER_MINUTE);
+        }
+
+        List<Map<String, Long>> totals = new ArrayList<>(windows);
+        for (int w = 0; w < windows; w++) {
+            totals.add(new HashMap<>());
+        }
+
+        long[] keyTotals = new long[windows];
+        for (Map.Entry<String, long[]> entry : counts.entrySet()) {
+            long[] keyCounts = entry.getValue();
+            Arrays.fill(keyTotals, 0L);
+
+            for (int slot = 0; slot < SECOND_SLOTS; slot++) {
+                long second = slotSecond[slot];
+                long value = keyCounts[slot];
+                if (value == 0 || second < firstExactSecond || second > nowSecond) {
+                    continue;
+                }
+                for (int w = 0; w < windows; w++) {
+                    if (second >= fromSecond[w]) {
+                        keyTotals[w] += value;
+                    }
+                }
+            }
+            for (int slot = 0; slot < minuteSlots; slot++) {
+                long minute = slotMinute[slot];
+                long value = keyCounts[SECOND_SLOTS + slot];
+                if (value == 0 || minute < 0 || minute >= currentMinute - 1) {
+                    continue;
+                }
+                for (int w = 0; w < windows; w++) {
+                    if (minute >= fromMinute[w]) {
+                        keyTotals[w] += value;
+                    }
+                }
+            }
+
+            for (int w = 0; w < windows; w++) {
+                if (keyTotals[w] > 0) {
+                    totals.get(w).put(entry.getKey(), keyTotals[w]);
+                }
+            }
+        }
+        return totals;
+    }
+
+    /**
+     * Drop keys with no counts at or after the cutoff
+     */
+    public void evict(long cutoffMillis) {
+        long oldestMinute = cutoffMillis / (SECONDS_PER_MINUTE * SECOND_MS);
+        counts.values().removeIf(keyCounts -> {
+            for (int slot = 0; slot < minuteSlots; slot++) {
+                if (keyCounts[SECOND_SLOTS + slot] > 0 && slotMinute[slot] >= oldestMinute) {
+                    return false;
+                }
+            }
+            return true;
+        });
+    }
+
+    /**
+     * Write the buckets and every key's counters (non-zero ones only)
+     */
+    public void writeTo(DataOutput out) throws IOException {
+        out.writeInt(minuteSlots);
+        StateCodec.writeLongs(out, slotSecond);
+        StateCodec.writeLongs(out, slotMinute);
+        out.writeInt(counts.size());
+        for (Map.Entry<String, long[]> entry : counts.entrySet()) {
+            out.writeUTF(entry.getKey());
+            StateCodec.writeSparse(out, entry.getValue());
+        }
+    }
+
+    /**
+     * Replace all counts with ones written by {@link #writeTo} over the same retention
+     */
+    public void readFrom(DataInput in) throws IOException {
+        StateCodec.expect("minute slots", in.readInt(), minuteSlots);
+        StateCodec.readLongs(in, slotSecond);
+        StateCodec.readLongs(in, slotMinute);
+        counts.clear();
+        int keys = in.readInt();
+        for (int k = 0; k < keys; k++) {
+            String key = in.readUTF();
+            long[] keyCounts = new long[SECOND_SLOTS + minuteSlots];
+            StateCodec.readSparse(in, keyCounts);
+            counts.put(key, keyCounts);
+        }
+    }
+
+    /**
+     * Make {@code slot} hold {@code unit}, resetting it for every key if it held an older one
+     *
+     * @return false if the slot already holds a newer unit (the time is too old for this ring)
+     */
+    private boolean claim(long[] slotUnits, int slot, long unit, int offset) {
+        long held = slotUnits[slot];
+        if (held == unit) {
+            return true;
+        }
+        if (unit < held) {
+            return false;
+        }
+        for (long[] keyCounts : counts.values()) {
+            keyCounts[offset + slot] = 0;
+        }
+        slotUnits[slot] = unit;
+        return true;
+    }
+}
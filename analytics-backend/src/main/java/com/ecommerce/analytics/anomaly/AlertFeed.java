@@ -0,0 +1,41 @@
+package com.ecommerce.analytics.anomaly;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Bounded in-memory feed of the most recent alerts, with increasing ids so
+ * clients can poll for everything after the last id they saw.
+ */
+public class AlertFeed {
+
+    private final AnomalyAlert[] ring;
+    private long nextId = 1;
+
+    public AlertFeed(int capacity) {
+        this.ring = new AnomalyAlert[capacity];
+    }
+
+    /**
+     * Assign the alert an id and append it, overwriting the oldest once full
+     */
+    public synchronized AnomalyAlert add(AnomalyAlert alert) {
+        long id = nextId++;
+        AnomalyAlert stored = new AnomalyAlert(id, alert.getSeries(), alert.getKind(), alert.getValue(),
+                alert.getExpected(), alert.getZScore(), alert.getDetectedAtMillis());
+        ring[(int) (id % ring.length)] = stored;
+        return stored;
+    }
+
+    /**
+     * Alerts with an id greater than {@code afterId}, newest first
+     */
+    public synchronized List<AnomalyAlert> since(long afterId, int limit) {
+        List<AnomalyAlert> alerts = new ArrayList<>(Math.min(limit, ring.length));
+        long oldest = Math.max(afterId + 1, nextId - ring.length);
+        for (long id = nextId - 1; id >= oldest && alerts.size() < limit; id--) {
+            alerts.add(ring[(int) (id % ring.length)]);
+        }
+        return alerts;
+    }
+}
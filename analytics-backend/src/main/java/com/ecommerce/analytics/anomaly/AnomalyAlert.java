@@ -0,0 +1,20 @@
+package com.ecommerce.analytics.anomaly;
+
+import lombok.Value;
+
+/**
+ * A point on a series that fell outside its expected band
+ */
+@Value
+public class AnomalyAlert {
+
+    public enum Kind { SPIKE, DROP }
+
+    long id;
+    String series;
+    Kind kind;
+    double value;
+    double expected;
+    double zScore;
+    long detectedAtMillis;
+}
@@ -0,0 +1,185 @@
+package com.ecommerce.analytics.anomaly;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * EWMA band detector over many time series at once.
+ *
+ * Every series keeps an exponentially weighted mean and variance in parallel
+ * primitive arrays, so each tick costs O(1) per series and no allocation.
+ * Values are recorded for the current tick and {@link #advance} folds them
+ * in; series with nothing recorded see a zero, which is what a rate series
+ * with no events means. A point is anomalous once the series has warmed up
+ * and it deviates from the mean by more than {@code threshold} standard
+ * deviations and by at least {@code minDeviation}. Anomalous points are
+ * clipped to the band edge before being folded in, so a single burst does not
+ * drag the mean or blow up the variance. Series idle for longer than {@code idleMillis} are
+ * dropped; beyond {@code maxSeries} new series are ignored.
+ *
+ * Not thread-safe: driven by a single scheduler thread.
+ */
+public class SeriesDetector {
+
+    private static final long EVICT_INTERVAL_MS = 60_000L;
+
+    private final double alpha;
+    private final double threshold;
+    private final double minDeviation;
+    private final int warmupSamples;
+    private final long cooldownMillis;
+    private final long idleMillis;
+    private final int maxSeries;
+
+    private final Map<String, Integer> index = new HashMap<>();
+    private String[] names = new String[64];
+    private double[] mean = new double[64];
+    private double[] variance = new double[64];
+    private double[] pending = new double[64];
+    private int[] samples = new int[64];
+    private long[] lastAlertAt = new long[64];
+    private long[] lastActiveAt = new long[64];
+    private int size;
+    private long nextEviction;
+    private long rejectedSeries;
+
+    public SeriesDetector(double alpha, double threshold, double minDeviation, int warmupSamples,
+            long cooldownMillis, long idleMillis, int maxSeries) {
+        this.alpha = alpha;
+        this.threshold = threshold;
+        this.minDeviation = minDeviation;
+        this.warmupSamples = warmupSamples;
+        this.cooldownMillis = cooldownMillis;
+        this.idleMillis = idleMillis;
+        this.maxSeries = maxSeries;
+    }
+
+    /**
+     * Add to a series' value for the current tick
+     */
+    public void record(String series, double value, long nowMillis) {
+        Integer slot = index.get(series);
+        if (slot == null) {
+            if (size == maxSeries) {
+                rejectedSeries++;
+                return;
+            }
+            slot = add(series);
+        }
+        pending[slot] += value;
+        lastActiveAt[slot] = nowMillis;
+    }
+
+    /**
+     * Close the current tick: test each series' value against its band, then update the band
+     *
+     * @return alerts raised by this tick (ids are left at 0 for the caller to assign)
+     */
+    public List<AnomalyAlert> advance(long nowMillis) {
+        List<AnomalyAlert> alerts = null;
+        for (int i = 0; i < size; i++) {
+            double x = pending[i];
+            pending[i] = 0;
+
+            double diff = x - mean[i];
+            double std = Math.sqrt(variance[i]);
+            boolean anomalous = samples[i] >= warmupSamples
+                    && Math.abs(diff) > threshold * std
+                    && Math.abs(diff) >= minDeviation;
+
+            if (anomalous && nowMillis - lastAlertAt[i] >= cooldownMillis) {
+                if (alerts == null) {
+                    alerts = new ArrayList<>();
+                }
+                alerts.add(new AnomalyAlert(0, names[i],
+                        diff > 0 ? AnomalyAlert.Kind.SPIKE : AnomalyAlert.Kind.DROP,
+                        x, mean[i], std == 0 ? Double.POSITIVE_INFINITY : diff / std, nowMillis));
+                lastAlertAt[i] = nowMillis;
+            }
+
+            // Anomalous points are clipped to the band edge before being folded in
+            double update = anomalous ? Math.copySign(threshold * std, diff) : diff;
+            double a = samples[i] == 0 ? 1.0 : alpha;
+            double increment = a * update;
+            mean[i] += increment;
+            variance[i] = (1 - a) * (variance[i] + update * increment);
+            if (samples[i] < Integer.MAX_VALUE) {
+                samples[i]++;
+            }
+        }
+
+        if (nowMillis >= nextEviction) {
+            nextEviction = nowMillis + EVICT_INTERVAL_MS;
+            evictIdle(nowMillis - idleMillis);
+        }
+        return alerts == null ? List.of() : alerts;
+    }
+
+    public int seriesCount() {
+        return size;
+    }
+
+    /**
+     * New series turned away because {@code maxSeries} was reached
+     */
+    public long rejectedSeries() {
+        return rejectedSeries;
+    }
+
+    /**
+     * Current baseline of a series, or NaN if it is not tracked
+     */
+    public double expected(String series) {
+        Integer slot = index.get(series);
+        return slot == null ? Double.NaN : mean[slot];
+    }
+
+    private int add(String series) {
+        if (size == names.length) {
+            int capacity = Math.min(maxSeries, size * 2);
+            names = Arrays.copyOf(names, capacity);
+            mean = Arrays.copyOf(mean, capacity);
+            variance = Arrays.copyOf(variance, capacity);
+            pending = Arrays.copyOf(pending, capacity);
+            samples = Arrays.copyOf(samples, capacity);
+            lastAlertAt = Arrays.copyOf(lastAlertAt, capacity);
+            lastActiveAt = Arrays.copyOf(lastActiveAt, capacity);
+        }
+        int slot = size++;
+        names[slot] = series;
+        mean[slot] = 0;
+        variance[slot] = 0;
+        pending[slot] = 0;
+        samples[slot] = 0;
+        lastAlertAt[slot] = Long.MIN_VALUE / 2;
+        index.put(series, slot);
+        return slot;
+    }
+
+    private void evictIdle(long cutoff) {
+        int i = 0;
+        while (i < size) {
+            if (lastActiveAt[i] < cutoff) {
+                // Move the last series into the freed slot
+                index.remove(names[i]);
+                int last = --size;
+                if (i != last) {
+                    names[i] = names[last];
+                    mean[i] = mean[last];
+                    variance[i] = variance[last];
+                    pending[i] = pending[last];
+                    samples[i] = samples[last];
+                    lastAlertAt[i] = lastAlertAt[last];
+                    lastActiveAt[i] = lastActiveAt[last];
+                    index.put(names[i], i);
+                }
+                names[last] = null;
+            } else {
+                i++;
+            }
+        }
+    }
+}
@@ -0,0 +1,21 @@
+package com.ecommerce.analytics.config;
+
+import com.ecommerce.analytics.aggregation.EventRateCounter;
+import com.ecommerce.analytics.aggregation.LaneHandlerFactory;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * Anomaly detection configuration.
+ * Adds the per-lane event counters the detector samples every second.
+ */
+@Configuration
+@ConditionalOnProperty(name = "anomaly.enabled", havingValue = "true", matchIfMissing = true)
+public class AnomalyDetectionConfig {
+
+    @Bean
+    public LaneHandlerFactory eventRateCounterFactory() {
+        return lane -> new EventRateCounter();
+    }
+}
@@ -0,0 +1,76 @@
+package com.ecommerce.analytics.config;
+
+import com.ecommerce.analytics.aggregation.FunnelDefinition;
+import com.ecommerce.analytics.aggregation.FunnelTracker;
+import com.ecommerce.analytics.aggregation.LaneHandlerFactory;
+import jakarta.annotation.PostConstruct;
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+
+/**
+ * Conversion funnel configuration.
+ * Funnels are defined in application.properties and tracked on every aggregation lane.
+ */
+@Configuration
+@ConfigurationProperties(prefix = "funnels")
+@Data
+public class FunnelConfig {
+
+    private static final int MAX_STEPS = 100;
+
+    /**
+     * How long per-minute funnel counters are kept
+     */
+    private int retentionMinutes = 1440;
+
+    /**
+     * A session's funnel progress is dropped after this long without events
+     */
+    private int sessionTimeoutMinutes = 30;
+
+    /**
+     * Funnel definitions
+     */
+    private List<FunnelDefinition> definitions = new ArrayList<>(List.of(
+            new FunnelDefinition("purchase", "Purchase Funnel", new ArrayList<>(List.of(
+                    new FunnelDefinition.Step("home", "page_view", "/home"),
+                    new FunnelDefinition.Step("product", "page_view", "/products"),
+                    new FunnelDefinition.Step("add_to_cart", "add_to_cart", null),
+                    new FunnelDefinition.Step("checkout", "page_view", "/checkout"))))));
+
+    @PostConstruct
+    public void validate() {
+        Set<String> ids = new HashSet<>();
+        for (FunnelDefinition funnel : definitions) {
+            if (funnel.getId() == null || !ids.add(funnel.getId())) {
+                throw new IllegalStateException("Funnel ids must be present and unique: " + funnel.getId());
+            }
+            if (funnel.getSteps().isEmpty() || funnel.getSteps().size() > MAX_STEPS) {
+                throw new IllegalStateException("Funnel " + funnel.getId() + " must have 1-" + MAX_STEPS + " steps");
+            }
+        }
+    }
+
+    public Optional<FunnelDefinition> find(String id) {
+        return definitions.stream().filter(funnel -> funnel.getId().equals(id)).findFirst();
+    }
+
+    /**
+     * One funnel tracker per lane; a session's events always land on the same lane
+     */
+    @Bean
+    public LaneHandlerFactory funnelTrackerFactory() {
+        long retention = Duration.ofMinutes(retentionMinutes).toMillis();
+        long sessionTimeout = Duration.ofMinutes(sessionTimeoutMinutes).toMillis();
+        return lane -> new FunnelTracker(definitions, retention, sessionTimeout);
+    }
+}
@@ -0,0 +1,40 @@
+package com.ecommerce.analytics.config;
+
+import com.ecommerce.analytics.aggregation.LaneHandlerFactory;
+import com.ecommerce.analytics.aggregation.PageVisitorSketches;
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.time.Duration;
+
+/**
+ * Per-page unique visitor configuration.
+ * Every lane keeps per-page HyperLogLog sketches per time bucket over the longest metric window.
+ */
+@Configuration
+@ConfigurationProperties(prefix = "page-visitors")
+@Data
+public class PageVisitorConfig {
+
+    /**
+     * Sketch time bucket; window starts are rounded down to it
+     */
+    private int bucketSeconds = 60;
+
+    /**
+     * Sketches have 2^precision registers; the standard error is about 1.04 / sqrt(2^precision)
+     */
+    private int precision = 11;
+
+    /**
+     * One set of page sketches per lane; lanes hold disjoint users, so their sketches merge into the union
+     */
+    @Bean
+    public LaneHandlerFactory pageVisitorSketchesFactory(WindowConfig windowConfig) {
+        long retention = windowConfig.longest().toMillis();
+        long bucket = Duration.ofSeconds(bucketSeconds).toMillis();
+        return lane -> new PageVisitorSketches(retention, bucket, precision);
+    }
+}
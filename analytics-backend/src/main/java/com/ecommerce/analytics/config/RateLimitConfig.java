@@ -2,7 +2,6 @@ package com.ecommerce.analytics.config;
 
 import io.github.bucket4j.Bandwidth;
 import io.github.bucket4j.Bucket;
-import io.github.bucket4j.Refill;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
@@ -29,9 +28,10 @@ public class RateLimitConfig {
     @Bean
     public Bucket eventIngestionBucket() {
         // Define bandwidth: refill tokens at eventsPerSecond rate
-        Bandwidth limit = Bandwidth.classic(
-                burstCapacity,
-                Refill.intervally(eventsPerSecond, Duration.ofSeconds(1)));
+        Bandwidth limit = Bandwidth.builder()
+                .capacity(burstCapacity)
+                .refillIntervally(eventsPerSecond, Duration.ofSeconds(1))
+                .build();
 
         return Bucket.builder()
                 .addLimit(limit)
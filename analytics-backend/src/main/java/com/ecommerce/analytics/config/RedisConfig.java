@@ -1,36 +1,43 @@
 package com.ecommerce.analytics.config;
 
-import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.data.redis.RedisProperties;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.data.redis.connection.RedisClusterConfiguration;
+import org.springframework.data.redis.connection.RedisConfiguration;
 import org.springframework.data.redis.connection.RedisConnectionFactory;
+import org.springframework.data.redis.connection.RedisPassword;
+import org.springframework.data.redis.connection.RedisSentinelConfiguration;
 import org.springframework.data.redis.connection.RedisStandaloneConfiguration;
+import org.springframework.data.redis.connection.lettuce.LettuceClientConfiguration;
 import org.springframework.data.redis.connection.lettuce.LettuceConnectionFactory;
 import org.springframework.data.redis.core.RedisTemplate;
 import org.springframework.data.redis.serializer.GenericJackson2JsonRedisSerializer;
 import org.springframework.data.redis.serializer.StringRedisSerializer;
 
+import java.net.URI;
+import java.util.HashSet;
+
 /**
  * Redis configuration for caching real-time metrics.
+ *
+ * Connections are built from the {@code spring.data.redis.*} properties
+ * (url or host/port, database, credentials, SSL, sentinel or cluster), which
+ * other Redis clients in the application reuse through the static helpers.
  */
 @Configuration
 public class RedisConfig {
 
-    @Value("${spring.data.redis.host:localhost}")
-    private String redisHost;
-
-    @Value("${spring.data.redis.port:6379}")
-    private int redisPort;
-
     /**
      * Configure Redis connection factory
      */
     @Bean
-    public RedisConnectionFactory redisConnectionFactory() {
-        RedisStandaloneConfiguration config = new RedisStandaloneConfiguration();
-        config.setHostName(redisHost);
-        config.setPort(redisPort);
-        return new LettuceConnectionFactory(config);
+    public RedisConnectionFactory redisConnectionFactory(RedisProperties properties) {
+        LettuceClientConfiguration.LettuceClientConfigurationBuilder client = clientConfiguration(properties);
+        if (properties.getTimeout() != null) {
+            client.commandTimeout(properties.getTimeout());
+        }
+        return new LettuceConnectionFactory(connectionConfiguration(properties), client.build());
     }
 
     /**
@@ -50,4 +57,73 @@ public class RedisConfig {
         template.afterPropertiesSet();
         return template;
     }
+
+    /**
+     * Where and as whom to connect: cluster, sentinel or a single server
+     */
+    public static RedisConfiguration connectionConfiguration(RedisProperties properties) {
+        if (properties.getCluster() != null) {
+            RedisClusterConfiguration config = new RedisClusterConfiguration(properties.getCluster().getNodes());
+            if (properties.getCluster().getMaxRedirects() != null) {
+                config.setMaxRedirects(properties.getCluster().getMaxRedirects());
+            }
+            config.setUsername(properties.getUsername());
+            config.setPassword(RedisPassword.of(properties.getPassword()));
+            return config;
+        }
+        if (properties.getSentinel() != null) {
+            RedisProperties.Sentinel sentinel = properties.getSentinel();
+            RedisSentinelConfiguration config = new RedisSentinelConfiguration(sentinel.getMaster(),
+                    new HashSet<>(sentinel.getNodes()));
+            config.setDatabase(properties.getDatabase());
+            config.setUsername(properties.getUsername());
+            config.setPassword(RedisPassword.of(properties.getPassword()));
+            config.setSentinelUsername(sentinel.getUsername());
+            config.setSentinelPassword(RedisPassword.of(sentinel.getPassword()));
+            return config;
+        }
+
+        RedisStandaloneConfiguration config = new RedisStandaloneConfiguration(properties.getHost(),
+                properties.getPort());
+        config.setDatabase(properties.getDatabase());
+        config.setUsername(properties.getUsername());
+        config.setPassword(RedisPassword.of(properties.getPassword()));
+        if (properties.getUrl() != null) {
+            URI url = URI.create(properties.getUrl());
+            config.setHostName(url.getHost());
+            config.setPort(url.getPort() > 0 ? url.getPort() : 6379);
+            String userInfo = url.getUserInfo();
+            if (userInfo != null) {
+                int colon = userInfo.indexOf(':');
+                if (colon >= 0) {
+                    config.setUsername(colon > 0 ? userInfo.substring(0, colon) : null);
+                    config.setPassword(RedisPassword.of(userInfo.substring(colon + 1)));
+                } else {
+                    config.setPassword(RedisPassword.of(userInfo));
+                }
+            }
+            String path = url.getPath();
+            if (path != null && path.length() > 1) {
+                config.setDatabase(Integer.parseInt(path.substring(1)));
+            }
+        }
+        return config;
+    }
+
+    /**
+     * Client settings taken from the properties (SSL, client name); callers
+     * add their own timeouts and options
+     */
+    public static LettuceClientConfiguration.LettuceClientConfigurationBuilder clientConfiguration(
+            RedisProperties properties) {
+        LettuceClientConfiguration.LettuceClientConfigurationBuilder builder = LettuceClientConfiguration.builder();
+        boolean sslUrl = properties.getUrl() != null && properties.getUrl().startsWith("rediss://");
+        if (properties.getSsl().isEnabled() || sslUrl) {
+            builder.useSsl();
+        }
+        if (properties.getClientName() != null) {
+            builder.clientName(properties.getClientName());
+        }
+        return builder;
+    }
 }
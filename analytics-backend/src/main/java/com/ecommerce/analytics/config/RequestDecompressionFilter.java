@@ -0,0 +1,209 @@
+package com.ecommerce.analytics.config;
+
+import com.ecommerce.analytics.model.AnalyticsResponse;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.github.luben.zstd.RecyclingBufferPool;
+import com.github.luben.zstd.ZstdInputStream;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ReadListener;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.ServletInputStream;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletRequestWrapper;
+import jakarta.servlet.http.HttpServletResponse;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import java.io.BufferedReader;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.util.Collections;
+import java.util.Enumeration;
+import java.util.Locale;
+import java.util.zip.GZIPInputStream;
+
+/**
+ * Decompresses request bodies sent with {@code Content-Encoding: gzip} or
+ * {@code zstd}, so the usual message converters (JSON, Smile, CBOR) read
+ * them unchanged. The body is inflated up front into a bounded buffer:
+ * corrupt input is rejected with 400, anything inflating beyond the limit
+ * with 413 and other encodings with 415.
+ */
+@Slf4j
+public class RequestDecompressionFilter extends OncePerRequestFilter {
+
+    private final ObjectMapper objectMapper;
+    private final int maxDecompressedBytes;
+
+    public RequestDecompressionFilter(ObjectMapper objectMapper, int maxDecompressedBytes) {
+        this.objectMapper = objectMapper;
+        this.maxDecompressedBytes = maxDecompressedBytes;
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain chain)
+            throws ServletException, IOException {
+        String encoding = request.getHeader(HttpHeaders.CONTENT_ENCODING);
+        if (encoding == null || encoding.isBlank() || encoding.trim().equalsIgnoreCase("identity")) {
+            chain.doFilter(request, response);
+            return;
+        }
+
+        byte[] body;
+        try (InputStream decoded = decoder(encoding.trim().toLowerCase(Locale.ROOT), request.getInputStream())) {
+            if (decoded == null) {
+                reject(response, HttpStatus.UNSUPPORTED_MEDIA_TYPE, "Unsupported Content-Encoding: " + encoding);
+                return;
+            }
+            body = readBounded(decoded);
+        } catch (BodyTooLargeException e) {
+            reject(response, HttpStatus.PAYLOAD_TOO_LARGE,
+                    "Decompressed body exceeds " + maxDecompressedBytes + " bytes");
+            return;
+        } catch (IOException e) {
+            log.warn("Could not decompress {} request body: {}", encoding, e.getMessage());
+            reject(response, HttpStatus.BAD_REQUEST, "Corrupt " + encoding + " request body");
+            return;
+        }
+
+        chain.doFilter(new DecompressedRequest(request, body), response);
+    }
+
+    private static InputStream decoder(String encoding, InputStream raw) throws IOException {
+        return switch (encoding) {
+            case "gzip", "x-gzip" -> new GZIPInputStream(raw);
+            case "zstd" -> new ZstdInputStream(raw, RecyclingBufferPool.INSTANCE);
+            default -> null;
+        };
+    }
+
+    private byte[] readBounded(InputStream in) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream(1024);
+        byte[] chunk = new byte[8192];
+        int read;
+        while ((read = in.read(chunk)) != -1) {
+            if (out.size() + read > maxDecompressedBytes) {
+                throw new BodyTooLargeException();
+            }
+            out.write(chunk, 0, read);
+        }
+        return out.toByteArray();
+    }
+
+    private void reject(HttpServletResponse response, HttpStatus status, String message) throws IOException {
+        response.setStatus(status.value());
+        response.setContentType(MediaType.APPLICATION_JSON_VALUE);
+        objectMapper.writeValue(response.getOutputStream(), AnalyticsResponse.ErrorResponse.builder()
+                .error(status.getReasonPhrase())
+                .message(message)
+                .status(status.value())
+                .timestamp(Instant.now().toString())
+                .build());
+    }
+
+    private static final class BodyTooLargeException extends IOException {
+        private static final long serialVersionUID = 1L;
+    }
+
+    /**
+     * The original request with its body replaced by the decompressed bytes
+     */
+    private static final class DecompressedRequest extends HttpServletRequestWrapper {
+
+        private final byte[] body;
+
+        DecompressedRequest(HttpServletRequest request, byte[] body) {
+            super(request);
+            this.body = body;
+        }
+
+        @Override
+        public ServletInputStream getInputStream() {
+            ByteArrayInputStream in = new ByteArrayInputStream(body);
+            return new ServletInputStream() {
+                @Override
+                public int read() {
+                    return in.read();
+                }
+
+                @Override
+                public int read(byte[] b, int off, int len) {
+                    return in.read(b, off, len);
+                }
+
+                @Override
+                public boolean isFinished() {
+                    return in.available() == 0;
+                }
+
+                @Override
+                public boolean isReady() {
+                    return true;
+                }
+
+                @Override
+                public void setReadListener(ReadListener listener) {
+                    // The whole body is already in memory, so it can be read in full right away
+                    try {
+                        if (!isFinished()) {
+                            listener.onDataAvailable();
+                        }
+                        if (isFinished()) {
+                            listener.onAllDataRead();
+                        }
+                    } catch (IOException | RuntimeException e) {
+                        listener.onError(e);
+                    }
+                }
+            };
+        }
+
+        @Override
+        public BufferedReader getReader() {
+            String encoding = getCharacterEncoding();
+            Charset charset = encoding != null ? Charset.forName(encoding) : StandardCharsets.UTF_8;
+            return new BufferedReader(new InputStreamReader(getInputStream(), charset));
+        }
+
+        @Override
+        public int getContentLength() {
+            return body.length;
+        }
+
+        @Override
+        public long getContentLengthLong() {
+            return body.length;
+        }
+
+        @Override
+        public String getHeader(String name) {
+            if (HttpHeaders.CONTENT_ENCODING.equalsIgnoreCase(name)) {
+                return null;
+            }
+            if (HttpHeaders.CONTENT_LENGTH.equalsIgnoreCase(name)) {
+                return String.valueOf(body.length);
+            }
+            return super.getHeader(name);
+        }
+
+        @Override
+        public Enumeration<String> getHeaders(String name) {
+            if (HttpHeaders.CONTENT_ENCODING.equalsIgnoreCase(name)) {
+                return Collections.emptyEnumeration();
+            }
+            if (HttpHeaders.CONTENT_LENGTH.equalsIgnoreCase(name)) {
+                return Collections.enumeration(Collections.singletonList(String.valueOf(body.length)));
+            }
+            return super.getHeaders(name);
+        }
+    }
+}
@@ -0,0 +1,33 @@
+package com.ecommerce.analytics.config;
+
+import com.ecommerce.analytics.aggregation.LaneHandlerFactory;
+import com.ecommerce.analytics.aggregation.SessionTracker;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.time.Duration;
+
+/**
+ * Sessionization configuration.
+ * Adds a session tracker to every aggregation lane.
+ */
+@Configuration
+public class SessionizationConfig {
+
+    @Value("${sessions.inactivity-timeout-minutes:30}")
+    private int inactivityTimeoutMinutes;
+
+    @Value("${sessions.stats-retention-minutes:60}")
+    private int statsRetentionMinutes;
+
+    /**
+     * One session tracker per lane; sessions of a user always land on the same lane
+     */
+    @Bean
+    public LaneHandlerFactory sessionTrackerFactory() {
+        long gap = Duration.ofMinutes(inactivityTimeoutMinutes).toMillis();
+        long retention = Duration.ofMinutes(statsRetentionMinutes).toMillis();
+        return lane -> new SessionTracker(gap, retention);
+    }
+}
@@ -1,11 +1,18 @@
 package com.ecommerce.analytics.config;
 
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.web.servlet.FilterRegistrationBean;
+import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.web.servlet.config.annotation.CorsRegistry;
 import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
 
 /**
- * Web configuration including CORS settings.
+ * Web configuration including CORS settings and compressed ingestion bodies.
+ * Smile ({@code application/x-jackson-smile}) and CBOR ({@code application/cbor})
+ * bodies are read by the converters Spring registers when those Jackson
+ * formats are on the classpath.
  */
 @Configuration
 public class WebConfig implements WebMvcConfigurer {
@@ -19,4 +26,17 @@ public class WebConfig implements WebMvcConfigurer {
                 .allowCredentials(true)
                 .maxAge(3600);
     }
+
+    /**
+     * Accept gzip and zstd compressed bodies on the ingestion endpoints
+     */
+    @Bean
+    public FilterRegistrationBean<RequestDecompressionFilter> requestDecompressionFilter(
+            ObjectMapper objectMapper,
+            @Value("${ingestion.max-decompressed-kb:256}") int maxDecompressedKb) {
+        FilterRegistrationBean<RequestDecompressionFilter> registration = new FilterRegistrationBean<>(
+                new RequestDecompressionFilter(objectMapper, maxDecompressedKb * 1024));
+        registration.addUrlPatterns("/api/events/*");
+        return registration;
+    }
 }
@@ -0,0 +1,99 @@
+package com.ecommerce.analytics.config;
+
+import jakarta.annotation.PostConstruct;
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+
+/**
+ * Metric window configuration.
+ * Every available window is computed on each processing cycle; endpoints pick
+ * one with {@code ?window=}, falling back to the per-metric default.
+ */
+@Configuration
+@ConfigurationProperties(prefix = "windows")
+@Data
+public class WindowConfig {
+
+    /**
+     * Window lengths computed and published on every cycle
+     */
+    private List<Duration> available = new ArrayList<>(List.of(
+            Duration.ofMinutes(1), Duration.ofMinutes(5), Duration.ofMinutes(15), Duration.ofHours(1)));
+
+    /**
+     * Default window for active users
+     */
+    private Duration activeUsers = Duration.ofMinutes(5);
+
+    /**
+     * Default window for page views
+     */
+    private Duration pageViews = Duration.ofMinutes(15);
+
+    /**
+     * Default window for active sessions
+     */
+    private Duration sessions = Duration.ofMinutes(5);
+
+    @PostConstruct
+    public void validate() {
+        Set<Duration> seen = new HashSet<>();
+        for (Duration window : available) {
+            if (window.toSeconds() < 1 || !seen.add(window)) {
+                throw new IllegalStateException("Windows must be at least one second and unique: " + window);
+            }
+        }
+        available.sort(Comparator.naturalOrder());
+        for (Duration fallback : List.of(activeUsers, pageViews, sessions)) {
+            if (!seen.contains(fallback)) {
+                throw new IllegalStateException("Default window " + label(fallback) + " is not in windows.available");
+            }
+        }
+    }
+
+    /**
+     * Window lengths in millis, in {@link #getAvailable()} order
+     */
+    public long[] windowMillis() {
+        return available.stream().mapToLong(Duration::toMillis).toArray();
+    }
+
+    public Duration longest() {
+        return available.get(available.size() - 1);
+    }
+
+    /**
+     * Resolve a requested window label such as {@code 5m}; no label means the fallback
+     *
+     * @return empty if the label is not one of the available windows
+     */
+    public Optional<Duration> resolve(String requested, Duration fallback) {
+        if (requested == null || requested.isBlank()) {
+            return Optional.ofNullable(fallback);
+        }
+        return available.stream().filter(window -> label(window).equals(requested.trim())).findFirst();
+    }
+
+    /**
+     * Short label used in requests and Redis keys: {@code 30s}, {@code 5m}, {@code 1h}
+     */
+    public static String label(Duration window) {
+        long seconds = window.toSeconds();
+        if (seconds % 3600 == 0) {
+            return seconds / 3600 + "h";
+        }
+        if (seconds % 60 == 0) {
+            return seconds / 60 + "m";
+        }
+        return seconds + "s";
+    }
+}
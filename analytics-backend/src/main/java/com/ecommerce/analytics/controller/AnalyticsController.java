@@ -1,15 +1,36 @@
 package com.ecommerce.analytics.controller;
 
+import com.ecommerce.analytics.config.WindowConfig;
 import com.ecommerce.analytics.model.AnalyticsResponse;
+import com.ecommerce.analytics.model.UserEvent;
 import com.ecommerce.analytics.service.AnalyticsQueryService;
+import com.ecommerce.analytics.service.AnomalyDetectionService;
+import com.ecommerce.analytics.service.FunnelAnalyticsService;
+import com.ecommerce.analytics.service.PageVisitorService;
+import com.ecommerce.analytics.service.ResponseBytesCache;
+import com.ecommerce.analytics.service.SessionAnalyticsService;
+import com.ecommerce.analytics.service.TrendQueryService;
+import com.ecommerce.analytics.service.UserProfileService;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 
+import java.time.Duration;
+import java.util.Optional;
+import java.util.concurrent.TimeoutException;
+
 /**
  * REST controller for analytics queries.
- * Provides endpoints for retrieving real-time metrics.
+ * Provides endpoints for retrieving real-time metrics. Every endpoint takes
+ * {@code ?tenant=} (the default tenant when absent) and only sees that
+ * tenant's data. Windowed endpoints accept {@code ?window=} with one of the
+ * configured window labels.
+ * Active users, top pages and recent sessions are served as pre-serialized
+ * JSON (gzip when accepted) from {@link ResponseBytesCache}.
  */
 @RestController
 @RequestMapping("/api/analytics")
@@ -18,74 +39,336 @@ import org.springframework.web.bind.annotation.*;
 public class AnalyticsController {
 
     private final AnalyticsQueryService analyticsQueryService;
+    private final SessionAnalyticsService sessionAnalyticsService;
+    private final FunnelAnalyticsService funnelAnalyticsService;
+    private final PageVisitorService pageVisitorService;
+    private final UserProfileService userProfileService;
+    private final TrendQueryService trendQueryService;
+    private final AnomalyDetectionService anomalyDetectionService;
+    private final WindowConfig windowConfig;
+    private final ResponseBytesCache responseBytesCache;
 
     /**
-     * Get active users count (last 5 minutes)
-     * GET /api/analytics/active-users
+     * Get active users count (default last 5 minutes)
+     * GET /api/analytics/active-users?tenant=acme&window=5m
      */
     @GetMapping("/active-users")
-    public ResponseEntity<AnalyticsResponse.ActiveUsersResponse> getActiveUsers() {
-        log.debug("Fetching active users");
-        AnalyticsResponse.ActiveUsersResponse response = analyticsQueryService.getActiveUsers();
-        return ResponseEntity.ok(response);
+    public ResponseEntity<byte[]> getActiveUsers(
+            @RequestParam(defaultValue = UserEvent.DEFAULT_TENANT) String tenant,
+            @RequestParam(required = false) String window,
+            @RequestHeader(value = HttpHeaders.ACCEPT_ENCODING, required = false) String acceptEncoding,
+            @RequestHeader(value = HttpHeaders.IF_NONE_MATCH, required = false) String ifNoneMatch) {
+
+        Optional<Duration> resolved = windowConfig.resolve(window, windowConfig.getActiveUsers());
+        if (!UserEvent.isValidTenant(tenant) || resolved.isEmpty()) {
+            return ResponseEntity.badRequest().build();
+        }
+
+        log.debug("Fetching active users for window {}", resolved.get());
+        ResponseBytesCache.Entry response = responseBytesCache.get(tenant,
+                "active-users:" + WindowConfig.label(resolved.get()),
+                () -> analyticsQueryService.getActiveUsers(tenant, resolved.get()),
+                users -> !users.isStale());
+        return serve(response, acceptEncoding, ifNoneMatch);
     }
 
     /**
-     * Get top pages by view count (last 15 minutes)
-     * GET /api/analytics/top-pages?limit=5
+     * Get top pages by view count (default last 15 minutes)
+     * GET /api/analytics/top-pages?limit=5&window=15m
      */
     @GetMapping("/top-pages")
-    public ResponseEntity<AnalyticsResponse.TopPagesResponse> getTopPages(
-            @RequestParam(defaultValue = "5") int limit) {
+    public ResponseEntity<byte[]> getTopPages(
+            @RequestParam(defaultValue = UserEvent.DEFAULT_TENANT) String tenant,
+            @RequestParam(defaultValue = "5") int limit,
+            @RequestParam(required = false) String window,
+            @RequestHeader(value = HttpHeaders.ACCEPT_ENCODING, required = false) String acceptEncoding,
+            @RequestHeader(value = HttpHeaders.IF_NONE_MATCH, required = false) String ifNoneMatch) {
 
-        log.debug("Fetching top {} pages", limit);
+        Optional<Duration> resolved = windowConfig.resolve(window, windowConfig.getPageViews());
+        if (!UserEvent.isValidTenant(tenant) || resolved.isEmpty()) {
+            return ResponseEntity.badRequest().build();
+        }
+
+        log.debug("Fetching top {} pages for window {}", limit, resolved.get());
 
         // Validate limit
-        if (limit < 1 || limit > 100) {
-            limit = 5;
+        int pages = limit < 1 || limit > 100 ? 5 : limit;
+
+        ResponseBytesCache.Entry response = responseBytesCache.get(tenant,
+                "top-pages:" + WindowConfig.label(resolved.get()) + ":" + pages,
+                () -> analyticsQueryService.getTopPages(tenant, pages, resolved.get()),
+                topPages -> !topPages.isStale());
+        return serve(response, acceptEncoding, ifNoneMatch);
+    }
+
+    /**
+     * Get top pages by estimated unique visitors (default last 15 minutes)
+     * GET /api/analytics/top-pages/unique-visitors?limit=5&window=15m
+     */
+    @GetMapping("/top-pages/unique-visitors")
+    public ResponseEntity<AnalyticsResponse.PageVisitorsResponse> getTopPagesByVisitors(
+            @RequestParam(defaultValue = UserEvent.DEFAULT_TENANT) String tenant,
+            @RequestParam(defaultValue = "5") int limit,
+            @RequestParam(required = false) String window) throws InterruptedException {
+
+        Optional<Duration> resolved = windowConfig.resolve(window, windowConfig.getPageViews());
+        if (!UserEvent.isValidTenant(tenant) || resolved.isEmpty()) {
+            return ResponseEntity.badRequest().build();
         }
 
-        AnalyticsResponse.TopPagesResponse response = analyticsQueryService.getTopPages(limit);
-        return ResponseEntity.ok(response);
+        log.debug("Fetching top {} pages by unique visitors for window {}", limit, resolved.get());
+
+        // Validate limit
+        int pages = limit < 1 || limit > 100 ? 5 : limit;
+
+        try {
+            return ResponseEntity.ok(pageVisitorService.getTopPagesByVisitors(tenant, pages, resolved.get()));
+        } catch (TimeoutException e) {
+            log.warn("Lanes of tenant {} did not answer in time for unique visitors", tenant);
+            return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE).build();
+        }
     }
 
     /**
-     * Get active sessions for a specific user (last 5 minutes)
-     * GET /api/analytics/active-sessions?userId=usr_123
+     * Get active sessions for a specific user (default last 5 minutes)
+     * GET /api/analytics/active-sessions?userId=usr_123&window=5m
      */
     @GetMapping("/active-sessions")
     public ResponseEntity<AnalyticsResponse.ActiveSessionsResponse> getActiveSessions(
-            @RequestParam String userId) {
+            @RequestParam(defaultValue = UserEvent.DEFAULT_TENANT) String tenant,
+            @RequestParam String userId,
+            @RequestParam(required = false) String window) {
 
         log.debug("Fetching active sessions for user: {}", userId);
 
-        if (userId == null || userId.trim().isEmpty()) {
+        Optional<Duration> resolved = windowConfig.resolve(window, windowConfig.getSessions());
+        if (userId == null || userId.trim().isEmpty() || !UserEvent.isValidTenant(tenant) || resolved.isEmpty()) {
             return ResponseEntity.badRequest().build();
         }
 
-        AnalyticsResponse.ActiveSessionsResponse response = analyticsQueryService.getActiveSessions(userId);
+        AnalyticsResponse.ActiveSessionsResponse response =
+                analyticsQueryService.getActiveSessions(tenant, userId, resolved.get());
         return ResponseEntity.ok(response);
     }
 
     /**
-     * Get recent users with active sessions (last 5 minutes)
-     * GET /api/analytics/recent-sessions?limit=5
+     * Get recent users with active sessions (default last 5 minutes)
+     * GET /api/analytics/recent-sessions?limit=5&window=5m
      */
     @GetMapping("/recent-sessions")
-    public ResponseEntity<AnalyticsResponse.RecentSessionsResponse> getRecentSessions(
-            @RequestParam(defaultValue = "5") int limit) {
+    public ResponseEntity<byte[]> getRecentSessions(
+            @RequestParam(defaultValue = UserEvent.DEFAULT_TENANT) String tenant,
+            @RequestParam(defaultValue = "5") int limit,
+            @RequestParam(required = false) String window,
+            @RequestHeader(value = HttpHeaders.ACCEPT_ENCODING, required = false) String acceptEncoding,
+            @RequestHeader(value = HttpHeaders.IF_NONE_MATCH, required = false) String ifNoneMatch) {
+
+        Optional<Duration> resolved = windowConfig.resolve(window, windowConfig.getSessions());
+        if (!UserEvent.isValidTenant(tenant) || resolved.isEmpty()) {
+            return ResponseEntity.badRequest().build();
+        }
 
         log.debug("Fetching recent {} users with active sessions", limit);
 
         // Validate limit
-        if (limit < 1 || limit > 50) {
+        int users = limit < 1 || limit > 50 ? 5 : limit;
+
+        ResponseBytesCache.Entry response = responseBytesCache.get(tenant,
+                "recent-sessions:" + WindowConfig.label(resolved.get()) + ":" + users,
+                () -> analyticsQueryService.getRecentActiveSessions(tenant, users, resolved.get()),
+                sessions -> !sessions.isStale());
+        return serve(response, acceptEncoding, ifNoneMatch);
+    }
+
+    /**
+     * Get session duration, depth, bounce rate and entry/exit pages
+     * GET /api/analytics/sessions/metrics?minutes=15&limit=5 (or window=15m)
+     */
+    @GetMapping("/sessions/metrics")
+    public ResponseEntity<AnalyticsResponse.SessionMetricsResponse> getSessionMetrics(
+            @RequestParam(defaultValue = UserEvent.DEFAULT_TENANT) String tenant,
+            @RequestParam(defaultValue = "15") int minutes,
+            @RequestParam(defaultValue = "5") int limit,
+            @RequestParam(required = false) String window) {
+
+        if (!UserEvent.isValidTenant(tenant)) {
+            return ResponseEntity.badRequest().build();
+        }
+        if (window != null) {
+            Optional<Duration> resolved = windowConfig.resolve(window, null);
+            if (resolved.isEmpty()) {
+                return ResponseEntity.badRequest().build();
+            }
+            minutes = wholeMinutes(resolved.get());
+        }
+
+        log.debug("Fetching session metrics for last {} minutes", minutes);
+
+        // Validate limit
+        if (limit < 1 || limit > 100) {
             limit = 5;
         }
 
-        AnalyticsResponse.RecentSessionsResponse response = analyticsQueryService.getRecentActiveSessions(limit);
+        AnalyticsResponse.SessionMetricsResponse response =
+                sessionAnalyticsService.getSessionMetrics(tenant, minutes, limit);
+        return ResponseEntity.ok(response);
+    }
+
+    /**
+     * Get a user's open sessions with their current state
+     * GET /api/analytics/sessions/live?userId=usr_123
+     */
+    @GetMapping("/sessions/live")
+    public ResponseEntity<AnalyticsResponse.LiveSessionsResponse> getLiveSessions(
+            @RequestParam(defaultValue = UserEvent.DEFAULT_TENANT) String tenant,
+            @RequestParam String userId) {
+
+        log.debug("Fetching live sessions for user: {}", userId);
+
+        if (userId == null || userId.trim().isEmpty() || !UserEvent.isValidTenant(tenant)) {
+            return ResponseEntity.badRequest().build();
+        }
+
+        AnalyticsResponse.LiveSessionsResponse response = sessionAnalyticsService.getLiveSessions(tenant, userId);
+        return ResponseEntity.ok(response);
+    }
+
+    /**
+     * Get step-by-step conversion for a configured funnel
+     * GET /api/analytics/funnels/purchase?minutes=60 (or window=1h)
+     */
+    @GetMapping("/funnels/{id}")
+    public ResponseEntity<AnalyticsResponse.FunnelResponse> getFunnel(
+            @RequestParam(defaultValue = UserEvent.DEFAULT_TENANT) String tenant,
+            @PathVariable String id,
+            @RequestParam(defaultValue = "60") int minutes,
+            @RequestParam(required = false) String window) throws InterruptedException {
+
+        if (!UserEvent.isValidTenant(tenant)) {
+            return ResponseEntity.badRequest().build();
+        }
+        if (window != null) {
+            Optional<Duration> resolved = windowConfig.resolve(window, null);
+            if (resolved.isEmpty()) {
+                return ResponseEntity.badRequest().build();
+            }
+            minutes = wholeMinutes(resolved.get());
+        }
+
+        log.debug("Fetching funnel {} for last {} minutes", id, minutes);
+
+        try {
+            return funnelAnalyticsService.getFunnel(tenant, id, minutes)
+                    .map(ResponseEntity::ok)
+                    .orElseGet(() -> ResponseEntity.notFound().build());
+        } catch (TimeoutException e) {
+            log.warn("Lanes of tenant {} did not answer in time for funnel {}", tenant, id);
+            return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE).build();
+        }
+    }
+
+    /**
+     * Get a user's activity profile: last seen, events by type, top pages and sessions
+     * GET /api/analytics/users/usr_123/profile?minutes=60 (or window=1h)
+     */
+    @GetMapping("/users/{userId}/profile")
+    public ResponseEntity<AnalyticsResponse.UserProfileResponse> getUserProfile(
+            @RequestParam(defaultValue = UserEvent.DEFAULT_TENANT) String tenant,
+            @PathVariable String userId,
+            @RequestParam(defaultValue = "60") int minutes,
+            @RequestParam(required = false) String window) {
+
+        if (userId.isBlank() || !UserEvent.isValidTenant(tenant)) {
+            return ResponseEntity.badRequest().build();
+        }
+        if (window != null) {
+            Optional<Duration> resolved = windowConfig.resolve(window, null);
+            if (resolved.isEmpty()) {
+                return ResponseEntity.badRequest().build();
+            }
+            minutes = wholeMinutes(resolved.get());
+        }
+
+        log.debug("Fetching profile of user {} for last {} minutes", userId, minutes);
+
+        return ResponseEntity.ok(userProfileService.getProfile(tenant, userId, minutes));
+    }
+
+    /**
+     * Get event counts over a long range, per minute or per hour from the retention tiers
+     * GET /api/analytics/trends?hours=168&eventType=purchase
+     */
+    @GetMapping("/trends")
+    public ResponseEntity<AnalyticsResponse.TrendResponse> getTrend(
+            @RequestParam(defaultValue = UserEvent.DEFAULT_TENANT) String tenant,
+            @RequestParam(defaultValue = "24") int hours,
+            @RequestParam(required = false) String eventType,
+            @RequestParam(required = false) String pageUrl) {
+
+        if (!UserEvent.isValidTenant(tenant)) {
+            return ResponseEntity.badRequest().build();
+        }
+
+        log.debug("Fetching trend for last {} hours", hours);
+
+        return ResponseEntity.ok(trendQueryService.getTrend(tenant, hours, eventType, pageUrl));
+    }
+
+    /**
+     * Get traffic anomaly alerts, newest first; pass the last seen id to poll for new ones
+     * GET /api/analytics/alerts?afterId=0&limit=50
+     */
+    @GetMapping("/alerts")
+    public ResponseEntity<AnalyticsResponse.AlertsResponse> getAlerts(
+            @RequestParam(defaultValue = UserEvent.DEFAULT_TENANT) String tenant,
+            @RequestParam(defaultValue = "0") long afterId,
+            @RequestParam(defaultValue = "50") int limit) {
+
+        log.debug("Fetching up to {} alerts after id {}", limit, afterId);
+
+        if (!UserEvent.isValidTenant(tenant)) {
+            return ResponseEntity.badRequest().build();
+        }
+
+        // Validate limit
+        if (limit < 1 || limit > 1000) {
+            limit = 50;
+        }
+
+        AnalyticsResponse.AlertsResponse response = anomalyDetectionService.getAlerts(tenant, afterId, limit);
         return ResponseEntity.ok(response);
     }
 
+    /**
+     * Write cached bytes, gzipped if the client accepts it, or 304 if the client has them
+     */
+    private static ResponseEntity<byte[]> serve(ResponseBytesCache.Entry entry, String acceptEncoding,
+            String ifNoneMatch) {
+        boolean gzip = acceptEncoding != null && acceptEncoding.contains("gzip");
+        String etag = gzip ? entry.getGzipEtag() : entry.getEtag();
+        if (etag.equals(ifNoneMatch)) {
+            return ResponseEntity.status(HttpStatus.NOT_MODIFIED)
+                    .eTag(etag)
+                    .header(HttpHeaders.VARY, HttpHeaders.ACCEPT_ENCODING)
+                    .build();
+        }
+        ResponseEntity.BodyBuilder builder = ResponseEntity.ok()
+                .contentType(MediaType.APPLICATION_JSON)
+                .eTag(etag)
+                .header(HttpHeaders.VARY, HttpHeaders.ACCEPT_ENCODING);
+        if (gzip) {
+            return builder.header(HttpHeaders.CONTENT_ENCODING, "gzip").body(entry.getGzip());
+        }
+        return builder.body(entry.getJson());
+    }
+
+    /**
+     * Session and funnel counters are kept per minute; sub-minute windows round up
+     */
+    private static int wholeMinutes(Duration window) {
+        return (int) Math.max(1, (window.toSeconds() + 59) / 60);
+    }
+
     /**
      * Health check endpoint
      */
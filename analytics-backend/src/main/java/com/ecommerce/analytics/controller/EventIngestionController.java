@@ -1,12 +1,17 @@
 package com.ecommerce.analytics.controller;
 
+import com.ecommerce.analytics.exception.DuplicateEventException;
 import com.ecommerce.analytics.model.AnalyticsResponse;
 import com.ecommerce.analytics.model.UserEvent;
+import com.ecommerce.analytics.resilience.AdaptiveConcurrencyLimiter;
 import com.ecommerce.analytics.service.EventIngestionService;
+import com.ecommerce.analytics.service.IngestionLoadShedder;
+import com.ecommerce.analytics.tenant.TenantRegistry;
 import io.github.bucket4j.Bucket;
 import jakarta.validation.Valid;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
@@ -15,7 +20,10 @@ import java.util.UUID;
 
 /**
  * REST controller for event ingestion.
- * Handles incoming user events with rate limiting.
+ * Handles incoming user events with rate limiting: each tenant has its own
+ * limit, within the global one. Admitted events then pass adaptive load
+ * shedding, which limits concurrent saves by how fast storage keeps up and
+ * sheds low-priority event types first.
  */
 @RestController
 @RequestMapping("/api/events")
@@ -25,6 +33,8 @@ public class EventIngestionController {
 
     private final EventIngestionService eventIngestionService;
     private final Bucket eventIngestionBucket;
+    private final TenantRegistry tenantRegistry;
+    private final IngestionLoadShedder loadShedder;
 
     /**
      * Ingest a single user event
@@ -34,6 +44,27 @@ public class EventIngestionController {
     public ResponseEntity<AnalyticsResponse.EventIngestionResponse> ingestEvent(
             @Valid @RequestBody UserEvent event) {
 
+        String tenant = event.getTenant();
+        event.setTenantId(tenant);
+
+        TenantRegistry.Admission admission = tenantRegistry.tryAdmit(tenant);
+        if (admission == TenantRegistry.Admission.TOO_MANY_TENANTS) {
+            log.warn("Rejected event of new tenant {}: tenant limit reached", tenant);
+            return ResponseEntity.status(HttpStatus.BAD_REQUEST)
+                    .body(AnalyticsResponse.EventIngestionResponse.builder()
+                            .status("error")
+                            .message("Unknown tenant " + tenant + ": no more tenants can be accepted")
+                            .build());
+        }
+        if (admission == TenantRegistry.Admission.RATE_LIMITED) {
+            log.warn("Rate limit exceeded for tenant {}", tenant);
+            return ResponseEntity.status(HttpStatus.TOO_MANY_REQUESTS)
+                    .body(AnalyticsResponse.EventIngestionResponse.builder()
+                            .status("error")
+                            .message("Rate limit exceeded for tenant " + tenant + ". Please try again later.")
+                            .build());
+        }
+
         // Check rate limit
         if (!eventIngestionBucket.tryConsume(1)) {
             log.warn("Rate limit exceeded for event ingestion");
@@ -44,9 +75,21 @@ public class EventIngestionController {
                             .build());
         }
 
+        AdaptiveConcurrencyLimiter.Priority priority = loadShedder.priorityOf(event.getEventType());
+        if (!loadShedder.tryAcquire(priority)) {
+            log.warn("Shed {} event: storage is not keeping up", event.getEventType());
+            return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+                    .header(HttpHeaders.RETRY_AFTER, "1")
+                    .body(AnalyticsResponse.EventIngestionResponse.builder()
+                            .status("error")
+                            .message("Server is overloaded. Please try again later.")
+                            .build());
+        }
+
+        long started = System.nanoTime();
         try {
-            
             UserEvent savedEvent = eventIngestionService.ingestEvent(event);
+            loadShedder.onSuccess(System.nanoTime() - started);
 
             return ResponseEntity.status(HttpStatus.CREATED)
                     .body(AnalyticsResponse.EventIngestionResponse.builder()
@@ -55,7 +98,17 @@ public class EventIngestionController {
                             .message("Event ingested successfully")
                             .build());
 
+        } catch (DuplicateEventException e) {
+            loadShedder.onSuccess(System.nanoTime() - started);
+            // Retries are acknowledged like the original so producers stop retrying
+            log.debug("Duplicate event ignored: {}", e.getEventId());
+            return ResponseEntity.ok(AnalyticsResponse.EventIngestionResponse.builder()
+                    .status("duplicate")
+                    .message(e.getMessage())
+                    .build());
+
         } catch (IllegalArgumentException e) {
+            loadShedder.onIgnore();
             log.warn("Invalid event data: {}", e.getMessage());
             return ResponseEntity.status(HttpStatus.BAD_REQUEST)
                     .body(AnalyticsResponse.EventIngestionResponse.builder()
@@ -64,6 +117,7 @@ public class EventIngestionController {
                             .build());
 
         } catch (Exception e) {
+            loadShedder.onDropped();
             log.error("Failed to ingest event: {}", e.getMessage(), e);
             return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
                     .body(AnalyticsResponse.EventIngestionResponse.builder()
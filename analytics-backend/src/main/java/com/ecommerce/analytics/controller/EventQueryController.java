@@ -0,0 +1,84 @@
+package com.ecommerce.analytics.controller;
+
+import com.ecommerce.analytics.model.EventCursor;
+import com.ecommerce.analytics.service.EventTimelineService;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+
+/**
+ * REST controller for raw event timelines.
+ * Results are paged with opaque cursors and streamed straight from MongoDB.
+ */
+@RestController
+@RequestMapping("/api/events")
+@Slf4j
+@RequiredArgsConstructor
+public class EventQueryController {
+
+    private final EventTimelineService eventTimelineService;
+
+    /**
+     * Events of one user, newest first
+     * GET /api/events/users/usr_123?limit=100&cursor=...
+     */
+    @GetMapping("/users/{userId}")
+    public ResponseEntity<StreamingResponseBody> getUserEvents(
+            @PathVariable String userId,
+            @RequestParam(required = false) Integer limit,
+            @RequestParam(required = false) String cursor) {
+
+        EventCursor position = parseCursor(cursor);
+        if (cursor != null && position == null) {
+            return ResponseEntity.badRequest().build();
+        }
+
+        int pageSize = eventTimelineService.pageSize(limit);
+        log.debug("Streaming {} events for user {}", pageSize, userId);
+        return stream(out -> eventTimelineService.streamUserEvents(userId, position, pageSize, out));
+    }
+
+    /**
+     * Events on one page URL, newest first
+     * GET /api/events/pages?pageUrl=/products&limit=100&cursor=...
+     */
+    @GetMapping("/pages")
+    public ResponseEntity<StreamingResponseBody> getPageEvents(
+            @RequestParam String pageUrl,
+            @RequestParam(required = false) Integer limit,
+            @RequestParam(required = false) String cursor) {
+
+        if (pageUrl.isBlank()) {
+            return ResponseEntity.badRequest().build();
+        }
+        EventCursor position = parseCursor(cursor);
+        if (cursor != null && position == null) {
+            return ResponseEntity.badRequest().build();
+        }
+
+        int pageSize = eventTimelineService.pageSize(limit);
+        log.debug("Streaming {} events for page {}", pageSize, pageUrl);
+        return stream(out -> eventTimelineService.streamPageEvents(pageUrl, position, pageSize, out));
+    }
+
+    private static EventCursor parseCursor(String cursor) {
+        if (cursor == null) {
+            return null;
+        }
+        try {
+            return EventCursor.decode(cursor);
+        } catch (IllegalArgumentException e) {
+            log.warn("Rejected malformed event cursor");
+            return null;
+        }
+    }
+
+    private static ResponseEntity<StreamingResponseBody> stream(StreamingResponseBody body) {
+        return ResponseEntity.ok()
+                .contentType(MediaType.APPLICATION_JSON)
+                .body(body);
+    }
+}
@@ -0,0 +1,62 @@
+package com.ecommerce.analytics.controller;
+
+import com.ecommerce.analytics.model.ExportJobStatus;
+import com.ecommerce.analytics.service.EventExportService;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+import java.time.Instant;
+import java.util.List;
+
+/**
+ * REST controller for columnar exports of the event store.
+ */
+@RestController
+@RequestMapping("/api/export")
+@Slf4j
+@RequiredArgsConstructor
+public class ExportController {
+
+    private final EventExportService eventExportService;
+
+    /**
+     * Start an export of hourly partitions for a time range
+     * POST /api/export/jobs?from=2024-01-15T00:00:00Z&to=2024-01-15T06:00:00Z
+     */
+    @PostMapping("/jobs")
+    public ResponseEntity<ExportJobStatus> startExport(
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) Instant from,
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) Instant to) {
+
+        if (!from.isBefore(to)) {
+            return ResponseEntity.badRequest().build();
+        }
+
+        log.info("Starting export from {} to {}", from, to);
+        return ResponseEntity.status(HttpStatus.ACCEPTED).body(eventExportService.startExport(from, to));
+    }
+
+    /**
+     * Recent export jobs
+     * GET /api/export/jobs
+     */
+    @GetMapping("/jobs")
+    public ResponseEntity<List<ExportJobStatus>> getJobs() {
+        return ResponseEntity.ok(eventExportService.getJobs());
+    }
+
+    /**
+     * Progress of one export job
+     * GET /api/export/jobs/{id}
+     */
+    @GetMapping("/jobs/{id}")
+    public ResponseEntity<ExportJobStatus> getJob(@PathVariable String id) {
+        return eventExportService.getJob(id)
+                .map(ResponseEntity::ok)
+                .orElse(ResponseEntity.notFound().build());
+    }
+}
@@ -0,0 +1,44 @@
+package com.ecommerce.analytics.controller;
+
+import com.ecommerce.analytics.exception.StoreDisabledException;
+import com.ecommerce.analytics.model.AnalyticsResponse;
+import com.ecommerce.analytics.model.GroupByRequest;
+import com.ecommerce.analytics.service.AdHocQueryService;
+import jakarta.validation.Valid;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+import java.util.concurrent.TimeoutException;
+
+/**
+ * REST controller for ad-hoc queries over recent events.
+ */
+@RestController
+@RequestMapping("/api/query")
+@Slf4j
+@RequiredArgsConstructor
+public class QueryController {
+
+    private final AdHocQueryService adHocQueryService;
+
+    /**
+     * Filter, group and aggregate recent events
+     * POST /api/query/group-by
+     */
+    @PostMapping("/group-by")
+    public ResponseEntity<AnalyticsResponse.GroupByResponse> groupBy(@Valid @RequestBody GroupByRequest request)
+            throws InterruptedException {
+        log.debug("Ad-hoc query: {}", request);
+        try {
+            return ResponseEntity.ok(adHocQueryService.query(request));
+        } catch (TimeoutException e) {
+            log.warn("Ad-hoc query timed out: {}", request);
+            return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE).build();
+        } catch (StoreDisabledException e) {
+            return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE).build();
+        }
+    }
+}
@@ -0,0 +1,144 @@
+package com.ecommerce.analytics.dedup;
+
+import com.ecommerce.analytics.aggregation.StringHash;
+
+import java.util.Arrays;
+
+/**
+ * Bloom filter over a sliding time window.
+ *
+ * The window is split into a ring of equally sized partitions, each its own
+ * Bloom filter sized for the expected number of keys per partition and the
+ * target false-positive rate. Keys go into the current partition and lookups
+ * check all of them; when a partition's time is up the oldest one is cleared
+ * and becomes current, so memory stays fixed and keys expire after roughly
+ * one window. Not thread-safe.
+ */
+public class TimePartitionedBloomFilter {
+
+    private final long partitionMillis;
+    private final int bitCount;
+    private final int hashCount;
+    private final long[][] bits;
+    private final int[] setBits;
+    private final long[] partitionStart;
+    private int current;
+
+    public TimePartitionedBloomFilter(int partitions, long windowMillis, long expectedKeysPerPartition,
+            double falsePositiveRate) {
+        if (partitions < 1 || windowMillis < partitions || expectedKeysPerPartition < 1
+                || falsePositiveRate <= 0 || falsePositiveRate >= 1) {
+            throw new IllegalArgumentException("Invalid Bloom filter parameters");
+        }
+        this.partitionMillis = windowMillis / partitions;
+
+        double ln2 = Math.log(2);
+        long m = (long) Math.ceil(-expectedKeysPerPartition * Math.log(falsePositiveRate) / (ln2 * ln2));
+        this.bitCount = (int) Math.min(Integer.MAX_VALUE - 63, Math.max(64, m));
+        this.hashCount = Math.max(1, (int) Math.round((double) bitCount / expectedKeysPerPartition * ln2));
+
+        this.bits = new long[partitions][(bitCount + 63) >>> 6];
+        this.setBits = new int[partitions];
+        this.partitionStart = new long[partitions];
+        Arrays.fill(partitionStart, Long.MIN_VALUE);
+    }
+
+    public boolean mightContain(String key, long nowMillis) {
+        advance(nowMillis);
+        long hash = StringHash.hash64(key);
+        for (int p = 0; p < bits.length; p++) {
+            if (partitionStart[p] != Long.MIN_VALUE && contains(bits[p], hash)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    public void put(String key, long nowMillis) {
+        advance(nowMillis);
+        long hash = StringHash.hash64(key);
+        int h1 = (int) hash;
+        int h2 = (int) (hash >>> 32);
+        long[] partition = bits[current];
+        for (int i = 0; i < hashCount; i++) {
+            int bit = index(h1 + i * h2);
+            long mask = 1L << bit;
+            if ((partition[bit >>> 6] & mask) == 0) {
+                partition[bit >>> 6] |= mask;
+                setBits[current]++;
+            }
+        }
+    }
+
+    /**
+     * Fraction of bits set in the current partition; false positives climb
+     * steeply once this passes one half
+     */
+    public double saturation() {
+        return (double) setBits[current] / bitCount;
+    }
+
+    /**
+     * Estimated false-positive rate of a lookup across all live partitions
+     */
+    public double expectedFalsePositiveRate() {
+        double miss = 1.0;
+        for (int p = 0; p < bits.length; p++) {
+            if (partitionStart[p] != Long.MIN_VALUE) {
+                miss *= 1.0 - Math.pow((double) setBits[p] / bitCount, hashCount);
+            }
+        }
+        return 1.0 - miss;
+    }
+
+    public int getBitCount() {
+        return bitCount;
+    }
+
+    public int getHashCount() {
+        return hashCount;
+    }
+
+    private void advance(long nowMillis) {
+        if (partitionStart[current] == Long.MIN_VALUE) {
+            partitionStart[current] = nowMillis;
+            return;
+        }
+        if (nowMillis - partitionStart[current] >= partitionMillis * bits.length) {
+            // Idle for a whole window: everything has expired
+            for (int p = 0; p < bits.length; p++) {
+                clear(p);
+            }
+            partitionStart[current] = nowMillis;
+            return;
+        }
+        while (nowMillis - partitionStart[current] >= partitionMillis) {
+            long start = partitionStart[current] + partitionMillis;
+            current = (current + 1) % bits.length;
+            clear(current);
+            partitionStart[current] = start;
+        }
+    }
+
+    private void clear(int partition) {
+        Arrays.fill(bits[partition], 0L);
+        setBits[partition] = 0;
+        partitionStart[partition] = Long.MIN_VALUE;
+    }
+
+    private boolean contains(long[] partition, long hash) {
+        int h1 = (int) hash;
+        int h2 = (int) (hash >>> 32);
+        for (int i = 0; i < hashCount; i++) {
+            int bit = index(h1 + i * h2);
+            if ((partition[bit >>> 6] & (1L << bit)) == 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private int index(int combined) {
+        return (combined & Integer.MAX_VALUE) % bitCount;
+    }
+}
@@ -0,0 +1,19 @@
+package com.ecommerce.analytics.exception;
+
+import lombok.Getter;
+
+/**
+ * Thrown when an event carries a client event ID that was already ingested
+ */
+@Getter
+public class DuplicateEventException extends RuntimeException {
+
+    private static final long serialVersionUID = 1L;
+
+    private final String eventId;
+
+    public DuplicateEventException(String eventId) {
+        super("Event " + eventId + " was already ingested");
+        this.eventId = eventId;
+    }
+}
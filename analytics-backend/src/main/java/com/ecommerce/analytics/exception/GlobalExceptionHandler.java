@@ -4,7 +4,9 @@ import com.ecommerce.analytics.model.AnalyticsResponse;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
+import org.springframework.http.converter.HttpMessageNotReadableException;
 import org.springframework.validation.FieldError;
+import org.springframework.web.HttpMediaTypeNotSupportedException;
 import org.springframework.web.bind.MethodArgumentNotValidException;
 import org.springframework.web.bind.annotation.ExceptionHandler;
 import org.springframework.web.bind.annotation.RestControllerAdvice;
@@ -68,6 +70,42 @@ public class GlobalExceptionHandler {
         return ResponseEntity.status(HttpStatus.BAD_REQUEST).body(response);
     }
 
+    /**
+     * Handle request bodies that cannot be parsed in their declared content type
+     */
+    @ExceptionHandler(HttpMessageNotReadableException.class)
+    public ResponseEntity<AnalyticsResponse.ErrorResponse> handleUnreadableBody(
+            HttpMessageNotReadableException ex) {
+
+        log.warn("Unreadable request body: {}", ex.getMessage());
+
+        AnalyticsResponse.ErrorResponse response = AnalyticsResponse.ErrorResponse.builder()
+                .error("Bad Request")
+                .message("Malformed request body")
+                .status(HttpStatus.BAD_REQUEST.value())
+                .timestamp(Instant.now().toString())
+                .build();
+
+        return ResponseEntity.status(HttpStatus.BAD_REQUEST).body(response);
+    }
+
+    /**
+     * Handle request bodies in a content type no converter reads
+     */
+    @ExceptionHandler(HttpMediaTypeNotSupportedException.class)
+    public ResponseEntity<AnalyticsResponse.ErrorResponse> handleUnsupportedMediaType(
+            HttpMediaTypeNotSupportedException ex) {
+
+        AnalyticsResponse.ErrorResponse response = AnalyticsResponse.ErrorResponse.builder()
+                .error("Unsupported Media Type")
+                .message(ex.getMessage())
+                .status(HttpStatus.UNSUPPORTED_MEDIA_TYPE.value())
+                .timestamp(Instant.now().toString())
+                .build();
+
+        return ResponseEntity.status(HttpStatus.UNSUPPORTED_MEDIA_TYPE).body(response);
+    }
+
     /**
      * Handle generic exceptions
      */
@@ -0,0 +1,13 @@
+package com.ecommerce.analytics.exception;
+
+/**
+ * Thrown when a query needs the recent event store while it is disabled
+ */
+public class StoreDisabledException extends RuntimeException {
+
+    private static final long serialVersionUID = 1L;
+
+    public StoreDisabledException() {
+        super("Recent event store is disabled");
+    }
+}
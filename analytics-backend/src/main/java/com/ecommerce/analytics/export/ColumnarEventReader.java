@@ -0,0 +1,209 @@
+package com.ecommerce.analytics.export;
+
+import com.ecommerce.analytics.model.UserEvent;
+import org.bson.types.ObjectId;
+
+import java.io.BufferedInputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.zip.DataFormatException;
+import java.util.zip.Inflater;
+
+/**
+ * Reads a partition file written by {@link ColumnarEventWriter}, one row
+ * group at a time.
+ */
+public class ColumnarEventReader implements Iterator<UserEvent>, Closeable {
+
+    private final DataInputStream in;
+    private final Inflater inflater = new Inflater();
+
+    private final byte version;
+    private String[][] strings = new String[ColumnarFormat.COLUMN_COUNT][];
+    private long[][] longs = new long[ColumnarFormat.COLUMN_COUNT][];
+    private boolean[][] present = new boolean[ColumnarFormat.COLUMN_COUNT][];
+    private int capacity;
+    private int rows;
+    private int next;
+    private boolean finished;
+    private long totalRows;
+
+    public ColumnarEventReader(Path file) throws IOException {
+        this.in = new DataInputStream(new BufferedInputStream(Files.newInputStream(file), 1 << 16));
+        if (in.readInt() != ColumnarFormat.MAGIC) {
+            throw new IOException("Not an event export file: " + file);
+        }
+        version = in.readByte();
+        if (version != ColumnarFormat.VERSION && version != ColumnarFormat.VERSION_WITHOUT_NULL_LONGS) {
+            throw new IOException("Unsupported export file version " + version);
+        }
+    }
+
+    @Override
+    public boolean hasNext() {
+        if (next < rows) {
+            return true;
+        }
+        if (finished) {
+            return false;
+        }
+        try {
+            readRowGroup();
+        } catch (IOException | DataFormatException e) {
+            throw new IllegalStateException("Corrupt export file", e);
+        }
+        return next < rows;
+    }
+
+    @Override
+    public UserEvent next() {
+        if (!hasNext()) {
+            throw new NoSuchElementException();
+        }
+        int row = next++;
+        return UserEvent.builder()
+                .id(strings[ColumnarFormat.COLUMN_ID][row])
+                .timestamp(strings[ColumnarFormat.COLUMN_TIMESTAMP][row])
+                .userId(strings[ColumnarFormat.COLUMN_USER_ID][row])
+                .eventType(strings[ColumnarFormat.COLUMN_EVENT_TYPE][row])
+                .pageUrl(strings[ColumnarFormat.COLUMN_PAGE_URL][row])
+                .sessionId(strings[ColumnarFormat.COLUMN_SESSION_ID][row])
+                .createdAt(present[ColumnarFormat.COLUMN_CREATED_AT][row]
+                        ? Instant.ofEpochMilli(longs[ColumnarFormat.COLUMN_CREATED_AT][row])
+                        : null)
+                .eventId(strings[ColumnarFormat.COLUMN_EVENT_ID][row])
+                .eventTime(present[ColumnarFormat.COLUMN_EVENT_TIME][row]
+                        ? longs[ColumnarFormat.COLUMN_EVENT_TIME][row]
+                        : null)
+                .tenantId(strings[ColumnarFormat.COLUMN_TENANT_ID][row])
+                .build();
+    }
+
+    /**
+     * Row count from the trailer; available once every row has been read
+     */
+    public long getTotalRows() {
+        return totalRows;
+    }
+
+    @Override
+    public void close() throws IOException {
+        inflater.end();
+        in.close();
+    }
+
+    private void readRowGroup() throws IOException, DataFormatException {
+        int rowCount = in.readInt();
+        if (rowCount == 0) {
+            totalRows = in.readLong();
+            in.readLong();
+            in.readLong();
+            if (in.readInt() != ColumnarFormat.MAGIC) {
+                throw new IOException("Missing export file trailer");
+            }
+            finished = true;
+            rows = 0;
+            next = 0;
+            return;
+        }
+
+        if (capacity < rowCount) {
+            capacity = rowCount;
+            strings = new String[ColumnarFormat.COLUMN_COUNT][rowCount];
+            longs = new long[ColumnarFormat.COLUMN_COUNT][rowCount];
+            present = new boolean[ColumnarFormat.COLUMN_COUNT][rowCount];
+        } else {
+            // Columns missing from the group (e.g. in version 1 files) read as null
+            for (int c = 0; c < ColumnarFormat.COLUMN_COUNT; c++) {
+                Arrays.fill(strings[c], 0, rowCount, null);
+                Arrays.fill(present[c], 0, rowCount, false);
+            }
+        }
+        int columns = in.readUnsignedByte();
+        for (int c = 0; c < columns; c++) {
+            byte columnId = in.readByte();
+            if (columnId < 0 || columnId >= ColumnarFormat.COLUMN_COUNT) {
+                throw new IOException("Unknown column " + columnId);
+            }
+            byte encoding = in.readByte();
+            int rawLength = in.readInt();
+            int compressedLength = in.readInt();
+            byte[] compressed = new byte[compressedLength];
+            in.readFully(compressed);
+
+            byte[] raw = new byte[rawLength];
+            inflater.reset();
+            inflater.setInput(compressed);
+            int inflated = 0;
+            while (inflated < rawLength) {
+                int n = inflater.inflate(raw, inflated, rawLength - inflated);
+                if (n == 0 && (inflater.finished() || inflater.needsInput())) {
+                    throw new IOException("Truncated column " + columnId);
+                }
+                inflated += n;
+            }
+            decode(columnId, encoding, ByteBuffer.wrap(raw), rowCount);
+        }
+        rows = rowCount;
+        next = 0;
+    }
+
+    private void decode(byte columnId, byte encoding, ByteBuffer buffer, int rowCount) throws IOException {
+        switch (encoding) {
+            case ColumnarFormat.ENCODING_PLAIN -> {
+                String[] values = strings[columnId];
+                for (int i = 0; i < rowCount; i++) {
+                    values[i] = ColumnarFormat.getString(buffer);
+                }
+            }
+            case ColumnarFormat.ENCODING_DICTIONARY -> {
+                String[] dictionary = new String[(int) ColumnarFormat.getVarLong(buffer)];
+                for (int i = 0; i < dictionary.length; i++) {
+                    dictionary[i] = ColumnarFormat.getString(buffer);
+                }
+                String[] values = strings[columnId];
+                for (int i = 0; i < rowCount; i++) {
+                    int code = (int) ColumnarFormat.getVarLong(buffer);
+                    values[i] = code == 0 ? null : dictionary[code - 1];
+                }
+            }
+            case ColumnarFormat.ENCODING_DELTA -> {
+                long[] values = longs[columnId];
+                boolean[] nonNull = present[columnId];
+                if (version == ColumnarFormat.VERSION_WITHOUT_NULL_LONGS) {
+                    Arrays.fill(nonNull, 0, rowCount, true);
+                } else {
+                    byte[] bitmap = new byte[(rowCount + 7) / 8];
+                    buffer.get(bitmap);
+                    for (int i = 0; i < rowCount; i++) {
+                        nonNull[i] = (bitmap[i >>> 3] & (1 << (i & 7))) != 0;
+                    }
+                }
+                long previous = 0;
+                for (int i = 0; i < rowCount; i++) {
+                    if (nonNull[i]) {
+                        previous += ColumnarFormat.unZigZag(ColumnarFormat.getVarLong(buffer));
+                        values[i] = previous;
+                    }
+                }
+            }
+            case ColumnarFormat.ENCODING_OBJECT_ID -> {
+                String[] values = strings[columnId];
+                byte[] bytes = new byte[12];
+                for (int i = 0; i < rowCount; i++) {
+                    buffer.get(bytes);
+                    values[i] = new ObjectId(bytes).toHexString();
+                }
+            }
+            default -> throw new IOException("Unknown column encoding " + encoding);
+        }
+    }
+}
@@ -0,0 +1,247 @@
+package com.ecommerce.analytics.export;
+
+import com.ecommerce.analytics.model.UserEvent;
+import org.bson.types.ObjectId;
+
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.zip.Deflater;
+
+/**
+ * Writes one partition file in {@link ColumnarFormat}.
+ *
+ * Rows are buffered column by column and flushed as a compressed row group
+ * every {@code rowGroupSize} rows. Output goes to a temporary file that is
+ * only renamed to its final name by {@link #commit()}, so a partition file
+ * that exists is always complete.
+ */
+public class ColumnarEventWriter implements Closeable {
+
+    private final Path target;
+    private final Path temporary;
+    private final DataOutputStream out;
+    private final int rowGroupSize;
+    private final Deflater deflater = new Deflater(Deflater.DEFAULT_COMPRESSION);
+
+    private final String[] ids;
+    private final String[] timestamps;
+    private final String[] userIds;
+    private final String[] eventTypes;
+    private final String[] pageUrls;
+    private final String[] sessionIds;
+    private final String[] eventIds;
+    private final String[] tenantIds;
+    private final long[] createdAt;
+    private final boolean[] hasCreatedAt;
+    private final long[] eventTimes;
+    private final boolean[] hasEventTime;
+    private int rows;
+
+    private final ColumnarFormat.Bytes column = new ColumnarFormat.Bytes();
+    private byte[] compressed = new byte[8192];
+    private long totalRows;
+    private long minCreatedAt = Long.MAX_VALUE;
+    private long maxCreatedAt = Long.MIN_VALUE;
+    private boolean committed;
+
+    public ColumnarEventWriter(Path target, int rowGroupSize) throws IOException {
+        this.target = target;
+        this.temporary = target.resolveSibling(target.getFileName() + ".tmp");
+        this.rowGroupSize = rowGroupSize;
+        Files.createDirectories(target.getParent());
+        this.out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(temporary), 1 << 16));
+        out.writeInt(ColumnarFormat.MAGIC);
+        out.writeByte(ColumnarFormat.VERSION);
+
+        ids = new String[rowGroupSize];
+        timestamps = new String[rowGroupSize];
+        userIds = new String[rowGroupSize];
+        eventTypes = new String[rowGroupSize];
+        pageUrls = new String[rowGroupSize];
+        sessionIds = new String[rowGroupSize];
+        eventIds = new String[rowGroupSize];
+        tenantIds = new String[rowGroupSize];
+        createdAt = new long[rowGroupSize];
+        hasCreatedAt = new boolean[rowGroupSize];
+        eventTimes = new long[rowGroupSize];
+        hasEventTime = new boolean[rowGroupSize];
+    }
+
+    public void write(UserEvent event) throws IOException {
+        ids[rows] = event.getId();
+        timestamps[rows] = event.getTimestamp();
+        userIds[rows] = event.getUserId();
+        eventTypes[rows] = event.getEventType();
+        pageUrls[rows] = event.getPageUrl();
+        sessionIds[rows] = event.getSessionId();
+        eventIds[rows] = event.getEventId();
+        tenantIds[rows] = event.getTenantId();
+        hasCreatedAt[rows] = event.getCreatedAt() != null;
+        if (hasCreatedAt[rows]) {
+            long created = event.getCreatedAt().toEpochMilli();
+            createdAt[rows] = created;
+            minCreatedAt = Math.min(minCreatedAt, created);
+            maxCreatedAt = Math.max(maxCreatedAt, created);
+        }
+        hasEventTime[rows] = event.getEventTime() != null;
+        eventTimes[rows] = hasEventTime[rows] ? event.getEventTime() : 0L;
+        if (++rows == rowGroupSize) {
+            flushRowGroup();
+        }
+    }
+
+    public long getRowsWritten() {
+        return totalRows + rows;
+    }
+
+    /**
+     * Flush the last row group, write the trailer and atomically publish the file
+     */
+    public void commit() throws IOException {
+        flushRowGroup();
+        out.writeInt(0);
+        out.writeLong(totalRows);
+        boolean anyCreatedAt = minCreatedAt <= maxCreatedAt;
+        out.writeLong(anyCreatedAt ? minCreatedAt : 0);
+        out.writeLong(anyCreatedAt ? maxCreatedAt : 0);
+        out.writeInt(ColumnarFormat.MAGIC);
+        out.close();
+        Files.move(temporary, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        committed = true;
+    }
+
+    /**
+     * Release resources; an uncommitted partition is discarded
+     */
+    @Override
+    public void close() throws IOException {
+        deflater.end();
+        if (!committed) {
+            out.close();
+            Files.deleteIfExists(temporary);
+        }
+    }
+
+    private void flushRowGroup() throws IOException {
+        if (rows == 0) {
+            return;
+        }
+        out.writeInt(rows);
+        out.writeByte(ColumnarFormat.COLUMN_COUNT);
+
+        writeIds();
+        writePlain(ColumnarFormat.COLUMN_TIMESTAMP, timestamps);
+        writeDictionary(ColumnarFormat.COLUMN_USER_ID, userIds);
+        writeDictionary(ColumnarFormat.COLUMN_EVENT_TYPE, eventTypes);
+        writeDictionary(ColumnarFormat.COLUMN_PAGE_URL, pageUrls);
+        writeDictionary(ColumnarFormat.COLUMN_SESSION_ID, sessionIds);
+        writeDelta(ColumnarFormat.COLUMN_CREATED_AT, createdAt, hasCreatedAt);
+        writePlain(ColumnarFormat.COLUMN_EVENT_ID, eventIds);
+        writeDelta(ColumnarFormat.COLUMN_EVENT_TIME, eventTimes, hasEventTime);
+        writeDictionary(ColumnarFormat.COLUMN_TENANT_ID, tenantIds);
+
+        totalRows += rows;
+        rows = 0;
+    }
+
+    private void writeIds() throws IOException {
+        for (int i = 0; i < rows; i++) {
+            if (ids[i] == null || !ObjectId.isValid(ids[i])) {
+                writePlain(ColumnarFormat.COLUMN_ID, ids);
+                return;
+            }
+        }
+        column.reset();
+        for (int i = 0; i < rows; i++) {
+            byte[] bytes = new ObjectId(ids[i]).toByteArray();
+            column.put(bytes, 0, bytes.length);
+        }
+        writeColumn(ColumnarFormat.COLUMN_ID, ColumnarFormat.ENCODING_OBJECT_ID);
+    }
+
+    private void writePlain(byte columnId, String[] values) throws IOException {
+        column.reset();
+        for (int i = 0; i < rows; i++) {
+            column.putString(values[i]);
+        }
+        writeColumn(columnId, ColumnarFormat.ENCODING_PLAIN);
+    }
+
+    private void writeDictionary(byte columnId, String[] values) throws IOException {
+        Map<String, Integer> dictionary = new HashMap<>();
+        int[] codes = new int[rows];
+        for (int i = 0; i < rows; i++) {
+            if (values[i] == null) {
+                codes[i] = 0;
+            } else {
+                Integer code = dictionary.get(values[i]);
+                if (code == null) {
+                    code = dictionary.size() + 1;
+                    dictionary.put(values[i], code);
+                }
+                codes[i] = code;
+            }
+        }
+
+        String[] entries = new String[dictionary.size()];
+        dictionary.forEach((value, code) -> entries[code - 1] = value);
+
+        column.reset();
+        column.putVarLong(entries.length);
+        for (String entry : entries) {
+            column.putString(entry);
+        }
+        for (int i = 0; i < rows; i++) {
+            column.putVarLong(codes[i]);
+        }
+        writeColumn(columnId, ColumnarFormat.ENCODING_DICTIONARY);
+    }
+
+    private void writeDelta(byte columnId, long[] values, boolean[] present) throws IOException {
+        column.reset();
+        for (int i = 0; i < rows; i += 8) {
+            int bits = 0;
+            for (int bit = 0; bit < 8 && i + bit < rows; bit++) {
+                if (present[i + bit]) {
+                    bits |= 1 << bit;
+                }
+            }
+            column.put((byte) bits);
+        }
+        long previous = 0;
+        for (int i = 0; i < rows; i++) {
+            if (present[i]) {
+                column.putVarLong(ColumnarFormat.zigZag(values[i] - previous));
+                previous = values[i];
+            }
+        }
+        writeColumn(columnId, ColumnarFormat.ENCODING_DELTA);
+    }
+
+    private void writeColumn(byte columnId, byte encoding) throws IOException {
+        deflater.reset();
+        deflater.setInput(column.data, 0, column.length);
+        deflater.finish();
+        int compressedLength = 0;
+        while (!deflater.finished()) {
+            if (compressedLength == compressed.length) {
+                compressed = Arrays.copyOf(compressed, compressed.length * 2);
+            }
+            compressedLength += deflater.deflate(compressed, compressedLength, compressed.length - compressedLength);
+        }
+
+        out.writeByte(columnId);
+        out.writeByte(encoding);
+        out.writeInt(column.length);
+        out.writeInt(compressedLength);
+        out.write(compressed, 0, compressedLength);
+    }
+}
@@ -0,0 +1,139 @@
+package com.ecommerce.analytics.export;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * On-disk layout of exported event partitions.
+ *
+ * A partition file holds one hour of events as a header, a sequence of
+ * independently decodable row groups and a trailer:
+ * <pre>
+ * header    : int magic | byte version
+ * row group : int rowCount | byte columnCount | column*
+ * column    : byte columnId | byte encoding | int rawLength | int compressedLength | deflated payload
+ * trailer   : int 0 | long totalRows | long minCreatedAtMillis | long maxCreatedAtMillis | int magic
+ * </pre>
+ * Column payload encodings:
+ * <pre>
+ * PLAIN      : per row varint (length + 1, 0 = null) + UTF-8 bytes
+ * DICTIONARY : varint size | size * PLAIN entry | per row varint (index + 1, 0 = null)
+ * DELTA      : presence bitmap of ceil(rowCount / 8) bytes (bit i set = row i not null) |
+ *              per present row zigzag varlong difference to the previous present row (first against 0)
+ * OBJECT_ID  : per row 12 raw bytes
+ * </pre>
+ * Dictionaries are per row group, so a reader never needs more than the
+ * current group in memory. Version 1 files have only the first seven
+ * columns and DELTA columns without a presence bitmap (nulls written as 0).
+ */
+public final class ColumnarFormat {
+
+    public static final int MAGIC = 0x45564346; // "EVCF"
+    public static final byte VERSION = 2;
+    public static final byte VERSION_WITHOUT_NULL_LONGS = 1;
+    public static final String FILE_EXTENSION = ".evc";
+
+    public static final byte COLUMN_ID = 0;
+    public static final byte COLUMN_TIMESTAMP = 1;
+    public static final byte COLUMN_USER_ID = 2;
+    public static final byte COLUMN_EVENT_TYPE = 3;
+    public static final byte COLUMN_PAGE_URL = 4;
+    public static final byte COLUMN_SESSION_ID = 5;
+    public static final byte COLUMN_CREATED_AT = 6;
+    public static final byte COLUMN_EVENT_ID = 7;
+    public static final byte COLUMN_EVENT_TIME = 8;
+    public static final byte COLUMN_TENANT_ID = 9;
+    public static final int COLUMN_COUNT = 10;
+
+    public static final byte ENCODING_PLAIN = 0;
+    public static final byte ENCODING_DICTIONARY = 1;
+    public static final byte ENCODING_DELTA = 2;
+    public static final byte ENCODING_OBJECT_ID = 3;
+
+    private ColumnarFormat() {
+    }
+
+    /**
+     * Growable byte buffer used to build column payloads
+     */
+    static final class Bytes {
+        byte[] data = new byte[4096];
+        int length;
+
+        void put(byte b) {
+            ensure(1);
+            data[length++] = b;
+        }
+
+        void put(byte[] bytes, int offset, int count) {
+            ensure(count);
+            System.arraycopy(bytes, offset, data, length, count);
+            length += count;
+        }
+
+        void putVarLong(long value) {
+            ensure(10);
+            while ((value & ~0x7FL) != 0) {
+                data[length++] = (byte) ((value & 0x7F) | 0x80);
+                value >>>= 7;
+            }
+            data[length++] = (byte) value;
+        }
+
+        void putString(String value) {
+            if (value == null) {
+                putVarLong(0);
+                return;
+            }
+            byte[] utf8 = value.getBytes(StandardCharsets.UTF_8);
+            putVarLong(utf8.length + 1L);
+            put(utf8, 0, utf8.length);
+        }
+
+        void reset() {
+            length = 0;
+        }
+
+        private void ensure(int extra) {
+            if (length + extra > data.length) {
+                data = Arrays.copyOf(data, Math.max(data.length * 2, length + extra));
+            }
+        }
+    }
+
+    static long getVarLong(ByteBuffer buffer) {
+        long result = 0;
+        int shift = 0;
+        while (true) {
+            byte b = buffer.get();
+            result |= (long) (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                return result;
+            }
+            shift += 7;
+            if (shift > 63) {
+                throw new IllegalStateException("Malformed varint in export column");
+            }
+        }
+    }
+
+    static String getString(ByteBuffer buffer) {
+        int length = (int) getVarLong(buffer);
+        if (length == 0) {
+            return null;
+        }
+        String value = new String(buffer.array(), buffer.arrayOffset() + buffer.position(), length - 1,
+                StandardCharsets.UTF_8);
+        buffer.position(buffer.position() + length - 1);
+        return value;
+    }
+
+    static long zigZag(long value) {
+        return (value << 1) ^ (value >> 63);
+    }
+
+    static long unZigZag(long value) {
+        return (value >>> 1) ^ -(value & 1);
+    }
+}
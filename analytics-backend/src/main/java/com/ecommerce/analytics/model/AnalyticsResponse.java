@@ -1,5 +1,6 @@
 package com.ecommerce.analytics.model;
 
+import com.fasterxml.jackson.annotation.JsonProperty;
 import lombok.AllArgsConstructor;
 import lombok.Builder;
 import lombok.Data;
@@ -22,6 +23,9 @@ public class AnalyticsResponse {
     @AllArgsConstructor
     public static class ActiveUsersResponse {
         private long activeUsers;
+        private String window;
+        private boolean stale;
+        private String asOf;
         private String timestamp;
     }
 
@@ -34,6 +38,9 @@ public class AnalyticsResponse {
     @AllArgsConstructor
     public static class TopPagesResponse {
         private List<PageViewCount> pages;
+        private String window;
+        private boolean stale;
+        private String asOf;
         private String timestamp;
     }
 
@@ -49,6 +56,77 @@ public class AnalyticsResponse {
         private long views;
     }
 
+    /**
+     * Response for top pages by unique visitors
+     */
+    @Data
+    @Builder
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class PageVisitorsResponse {
+        private List<PageVisitorCount> pages;
+        private String window;
+        private String timestamp;
+    }
+
+    /**
+     * Estimated unique visitors of a page
+     */
+    @Data
+    @Builder
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class PageVisitorCount {
+        private String url;
+        private long uniqueVisitors;
+    }
+
+    /**
+     * Event counts over time, read from the retention tiers
+     */
+    @Data
+    @Builder
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class TrendResponse {
+        private String resolution;
+        private List<String> tiers;
+        private String from;
+        private String to;
+        private List<TrendPoint> points;
+        private String timestamp;
+    }
+
+    /**
+     * Events in one bucket of a trend
+     */
+    @Data
+    @Builder
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class TrendPoint {
+        private String bucketStart;
+        private long events;
+    }
+
+    /**
+     * Activity profile of one user
+     */
+    @Data
+    @Builder
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class UserProfileResponse {
+        private String userId;
+        private int windowMinutes;
+        private String lastSeen;
+        private long totalEvents;
+        private Map<String, Long> eventsByType;
+        private List<PageViewCount> topPages;
+        private long sessions;
+        private String asOf;
+    }
+
     /**
      * Response for active sessions
      */
@@ -58,8 +136,11 @@ public class AnalyticsResponse {
     @AllArgsConstructor
     public static class ActiveSessionsResponse {
         private String userId;
+        private String window;
         private long activeSessions;
         private List<String> sessions;
+        private boolean stale;
+        private String asOf;
         private String timestamp;
     }
 
@@ -72,6 +153,9 @@ public class AnalyticsResponse {
     @AllArgsConstructor
     public static class RecentSessionsResponse {
         private List<UserSessionInfo> users;
+        private String window;
+        private boolean stale;
+        private String asOf;
         private String timestamp;
     }
 
@@ -88,6 +172,164 @@ public class AnalyticsResponse {
         private List<String> sessions;
     }
 
+    /**
+     * Response for aggregate session metrics
+     */
+    @Data
+    @Builder
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class SessionMetricsResponse {
+        private int windowMinutes;
+        private long openSessions;
+        private long closedSessions;
+        private double averageDurationSeconds;
+        private double averagePageViews;
+        private double averageEvents;
+        private double bounceRate;
+        private List<PageSessionCount> topEntryPages;
+        private List<PageSessionCount> topExitPages;
+        private String timestamp;
+    }
+
+    /**
+     * Number of sessions that entered or exited on a page
+     */
+    @Data
+    @Builder
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class PageSessionCount {
+        private String url;
+        private long sessions;
+    }
+
+    /**
+     * Response for a user's open sessions
+     */
+    @Data
+    @Builder
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class LiveSessionsResponse {
+        private String userId;
+        private List<SessionDetail> sessions;
+        private String timestamp;
+    }
+
+    /**
+     * State of one open session
+     */
+    @Data
+    @Builder
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class SessionDetail {
+        private String sessionId;
+        private String startedAt;
+        private String lastSeenAt;
+        private long durationSeconds;
+        private int events;
+        private int pageViews;
+        private String entryPage;
+        private String exitPage;
+    }
+
+    /**
+     * Response for a conversion funnel
+     */
+    @Data
+    @Builder
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class FunnelResponse {
+        private String id;
+        private String name;
+        private int windowMinutes;
+        private List<FunnelStep> steps;
+        private double completionRate;
+        private String timestamp;
+    }
+
+    /**
+     * Conversion figures for one funnel step
+     */
+    @Data
+    @Builder
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class FunnelStep {
+        private String name;
+        private long sessions;
+        private double conversionRate;
+        private double stepConversionRate;
+        private double dropOffRate;
+        private double averageSecondsFromPreviousStep;
+    }
+
+    /**
+     * Response for the anomaly alerts feed
+     */
+    @Data
+    @Builder
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class AlertsResponse {
+        private List<AlertInfo> alerts;
+        private int trackedSeries;
+        private String timestamp;
+    }
+
+    /**
+     * One anomaly alert
+     */
+    @Data
+    @Builder
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class AlertInfo {
+        private long id;
+        private String series;
+        private String kind;
+        private double value;
+        private double expected;
+        @JsonProperty("zScore")
+        private Double zScore;
+        private String detectedAt;
+    }
+
+    /**
+     * Response for an ad-hoc group-by query
+     */
+    @Data
+    @Builder
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class GroupByResponse {
+        private String groupBy;
+        private String aggregate;
+        private String distinctOn;
+        private String window;
+        private List<GroupValue> groups;
+        private long totalGroups;
+        private long rowsScanned;
+        private long rowsMatched;
+        private long tookMillis;
+        private String timestamp;
+    }
+
+    /**
+     * Aggregate value of one group
+     */
+    @Data
+    @Builder
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class GroupValue {
+        private String key;
+        private long value;
+    }
+
     /**
      * Generic event ingestion response
      */
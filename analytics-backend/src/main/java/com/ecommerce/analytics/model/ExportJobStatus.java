@@ -0,0 +1,29 @@
+package com.ecommerce.analytics.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * Progress of an event export job
+ */
+@Data
+@Builder(toBuilder = true)
+@NoArgsConstructor
+@AllArgsConstructor
+public class ExportJobStatus {
+    private String id;
+    private String status;
+    private String from;
+    private String to;
+    private String directory;
+    private int partitionsTotal;
+    private int partitionsWritten;
+    private int partitionsSkipped;
+    private long eventsExported;
+    private String currentPartition;
+    private String startedAt;
+    private String finishedAt;
+    private String error;
+}
@@ -0,0 +1,73 @@
+package com.ecommerce.analytics.model;
+
+import jakarta.validation.Valid;
+import jakarta.validation.constraints.NotBlank;
+import jakarta.validation.constraints.NotNull;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+/**
+ * Ad-hoc group-by query over recent events.
+ * Dimensions are {@code user}, {@code page}, {@code event_type} and {@code session}.
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class GroupByRequest {
+
+    /**
+     * Dimension to group by
+     */
+    @NotBlank(message = "groupBy is required")
+    private String groupBy;
+
+    /**
+     * {@code count} (default) or {@code distinct_count}
+     */
+    private String aggregate;
+
+    /**
+     * Dimension whose distinct values are counted, for {@code distinct_count}
+     */
+    private String distinctOn;
+
+    /**
+     * How far back to look, e.g. {@code 30m} or {@code 2h}
+     */
+    @NotBlank(message = "window is required")
+    private String window;
+
+    /**
+     * Conditions every counted event must meet
+     */
+    @Valid
+    private List<Filter> filters;
+
+    /**
+     * Number of groups returned, largest first (default 20)
+     */
+    private Integer limit;
+
+    @Data
+    @Builder
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class Filter {
+        @NotBlank(message = "Filter dimension is required")
+        private String dimension;
+
+        /**
+         * {@code eq}, {@code neq}, {@code prefix} or {@code not_prefix}
+         */
+        @NotBlank(message = "Filter op is required")
+        private String op;
+
+        @NotNull(message = "Filter value is required")
+        private String value;
+    }
+}
@@ -0,0 +1,54 @@
+package com.ecommerce.analytics.model;
+
+import java.time.Duration;
+import java.time.temporal.ChronoUnit;
+
+/**
+ * Storage tiers of event history, from raw events to hourly rollups.
+ * Each tier is compacted into the next coarser one before it expires.
+ */
+public enum RetentionTier {
+
+    RAW("events", "createdAt", null),
+    MINUTE("event_rollups_minute", "bucketStart", ChronoUnit.MINUTES),
+    HOUR("event_rollups_hour", "bucketStart", ChronoUnit.HOURS);
+
+    private final String collection;
+    private final String timeField;
+    private final ChronoUnit unit;
+
+    RetentionTier(String collection, String timeField, ChronoUnit unit) {
+        this.collection = collection;
+        this.timeField = timeField;
+        this.unit = unit;
+    }
+
+    public String getCollection() {
+        return collection;
+    }
+
+    /**
+     * Field holding the time of a document: arrival for raw events, bucket start for rollups
+     */
+    public String getTimeField() {
+        return timeField;
+    }
+
+    /**
+     * Rollup bucket length; null for raw events
+     */
+    public Duration getBucket() {
+        return unit == null ? null : unit.getDuration();
+    }
+
+    public ChronoUnit getUnit() {
+        return unit;
+    }
+
+    /**
+     * Name used in metrics, state ids and responses; for rollup tiers also the {@code $dateTrunc} unit
+     */
+    public String label() {
+        return name().toLowerCase();
+    }
+}
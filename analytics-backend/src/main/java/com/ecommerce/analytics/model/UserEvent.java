@@ -1,13 +1,17 @@
 package com.ecommerce.analytics.model;
 
+import com.fasterxml.jackson.annotation.JsonIgnore;
 import com.fasterxml.jackson.annotation.JsonProperty;
 import jakarta.validation.constraints.NotBlank;
+import jakarta.validation.constraints.Pattern;
 import lombok.AllArgsConstructor;
 import lombok.Builder;
 import lombok.Data;
 import lombok.NoArgsConstructor;
 import org.springframework.data.annotation.CreatedDate;
 import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.index.CompoundIndex;
+import org.springframework.data.mongodb.core.index.CompoundIndexes;
 import org.springframework.data.mongodb.core.index.Indexed;
 import org.springframework.data.mongodb.core.mapping.Document;
 
@@ -22,11 +26,43 @@ import java.time.Instant;
 @NoArgsConstructor
 @AllArgsConstructor
 @Document(collection = "events")
+@CompoundIndexes({
+        // Keyset pagination of per-user and per-page timelines on (createdAt, _id);
+        // also serve plain userId / pageUrl lookups through their prefix
+        @CompoundIndex(name = "user_timeline", def = "{'userId': 1, 'createdAt': -1, '_id': -1}"),
+        @CompoundIndex(name = "page_timeline", def = "{'pageUrl': 1, 'createdAt': -1, '_id': -1}"),
+        // Client event IDs are unique per tenant; events without one are left out of the index
+        @CompoundIndex(name = "tenant_event_id", def = "{'tenantId': 1, 'eventId': 1}", unique = true,
+                partialFilter = "{'eventId': {'$exists': true}}")
+})
 public class UserEvent {
 
+    /**
+     * Tenant of events that don't name one
+     */
+    public static final String DEFAULT_TENANT = "default";
+
+    /**
+     * Tenant ids appear in Redis keys and file names, so they are kept to a safe alphabet
+     */
+    public static final String TENANT_PATTERN = "[A-Za-z0-9_-]{1,64}";
+
     @Id
     private String id;
 
+    /**
+     * Optional client-supplied ID, unique per tenant; retries with the same ID are ingested once
+     */
+    @JsonProperty("event_id")
+    private String eventId;
+
+    /**
+     * Storefront the event belongs to; {@link #DEFAULT_TENANT} when absent
+     */
+    @JsonProperty("tenant_id")
+    @Pattern(regexp = TENANT_PATTERN, message = "Tenant ID may only contain letters, digits, '_' and '-'")
+    private String tenantId;
+
     /**
      * ISO 8601 formatted timestamp of when the event occurred
      */
@@ -34,12 +70,17 @@ public class UserEvent {
     @JsonProperty("timestamp")
     private String timestamp;
 
+    /**
+     * {@link #timestamp} as epoch millis, parsed once at ingestion
+     */
+    @JsonProperty(value = "event_time", access = JsonProperty.Access.READ_ONLY)
+    private Long eventTime;
+
     /**
      * Unique identifier for the user
      */
     @NotBlank(message = "User ID is required")
     @JsonProperty("user_id")
-    @Indexed
     private String userId;
 
     /**
@@ -54,7 +95,6 @@ public class UserEvent {
      */
     @NotBlank(message = "Page URL is required")
     @JsonProperty("page_url")
-    @Indexed
     private String pageUrl;
 
     /**
@@ -72,10 +112,29 @@ public class UserEvent {
     @Indexed
     private Instant createdAt;
 
+    /**
+     * Tenant id, with events stored before tenants existed belonging to the default tenant
+     */
+    @JsonIgnore
+    public String getTenant() {
+        return tenantId != null ? tenantId : DEFAULT_TENANT;
+    }
+
+    /**
+     * Whether a tenant id given in a query is well formed
+     */
+    public static boolean isValidTenant(String tenant) {
+        return tenant != null && tenant.matches(TENANT_PATTERN);
+    }
+
     /**
      * Convert timestamp string to Instant for time-based queries
      */
+    @JsonIgnore
     public Instant getTimestampAsInstant() {
+        if (eventTime != null) {
+            return Instant.ofEpochMilli(eventTime);
+        }
         try {
             return Instant.parse(timestamp);
         } catch (Exception e) {
@@ -0,0 +1,54 @@
+package com.ecommerce.analytics.monitoring;
+
+import lombok.Builder;
+import lombok.Value;
+
+import java.time.Instant;
+import java.util.Map;
+
+/**
+ * Profile of one metrics-processing cycle, as listed by the
+ * {@code metricscycles} actuator endpoint
+ */
+@Value
+@Builder
+public class CycleProfile {
+
+    Instant startedAt;
+
+    /**
+     * published, partial_only (another replica finalizes) or failed
+     */
+    String outcome;
+
+    double durationMs;
+
+    /**
+     * Time since the previous cycle that published metrics finished, i.e. how
+     * stale the published metrics were when this one finished
+     */
+    double lagMs;
+
+    boolean overrun;
+
+    int tenants;
+
+    int timedOutTenants;
+
+    /**
+     * Time per step (snapshot, users, pages, sessions, ...), summed over tenants
+     */
+    Map<String, Double> stepsMs;
+
+    /**
+     * Users, page entries and sessions read from the snapshots
+     */
+    long entriesScanned;
+
+    /**
+     * Approximate size of the snapshot entries read (ids, URLs and counts)
+     */
+    long bytesScanned;
+
+    long redisOperations;
+}
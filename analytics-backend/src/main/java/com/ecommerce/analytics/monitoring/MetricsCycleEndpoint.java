@@ -0,0 +1,25 @@
+package com.ecommerce.analytics.monitoring;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.boot.actuate.endpoint.annotation.Endpoint;
+import org.springframework.boot.actuate.endpoint.annotation.ReadOperation;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+
+/**
+ * Actuator endpoint listing the last metrics-processing cycles, newest
+ * first: {@code GET /actuator/metricscycles}
+ */
+@Component
+@Endpoint(id = "metricscycles")
+@RequiredArgsConstructor
+public class MetricsCycleEndpoint {
+
+    private final MetricsCycleProfiler profiler;
+
+    @ReadOperation
+    public List<CycleProfile> cycles() {
+        return profiler.recent();
+    }
+}
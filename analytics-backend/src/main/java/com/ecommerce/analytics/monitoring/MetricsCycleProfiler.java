@@ -0,0 +1,219 @@
+package com.ecommerce.analytics.monitoring;
+
+import com.ecommerce.analytics.aggregation.ActivitySnapshot;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.TimeGauge;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PostConstruct;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Instant;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Traces metrics-processing cycles.
+ *
+ * Each cycle records its per-step durations, the snapshot entries it read
+ * and the Redis operations it issued in a {@link Cycle}; on finish these are
+ * exported as meters under {@code analytics.metrics.cycle.*} and kept as a
+ * {@link CycleProfile} in a ring of the last {@code metrics.cycle.history}
+ * cycles. A cycle longer than {@code metrics.cycle.budget-ms} counts as an
+ * overrun and is logged. The staleness gauge keeps growing while a cycle
+ * hangs, so a stuck processor shows up even before the cycle finishes.
+ */
+@Component
+@Slf4j
+@RequiredArgsConstructor
+public class MetricsCycleProfiler {
+
+    private final MeterRegistry meterRegistry;
+
+    @Value("${metrics.cycle.history:20}")
+    private int history;
+
+    @Value("${metrics.cycle.budget-ms:5000}")
+    private long budgetMillis;
+
+    private final Deque<CycleProfile> recent = new ArrayDeque<>();
+    private final Map<String, Timer> stepTimers = new LinkedHashMap<>();
+    private volatile long lastPublishedNanos;
+
+    private Timer cycleTimer;
+    private Counter overruns;
+    private DistributionSummary entriesScanned;
+    private DistributionSummary bytesScanned;
+    private DistributionSummary redisOperations;
+
+    @PostConstruct
+    public void registerMetrics() {
+        cycleTimer = Timer.builder("analytics.metrics.cycle.duration")
+                .description("Duration of a metrics-processing cycle")
+                .register(meterRegistry);
+        overruns = Counter.builder("analytics.metrics.cycle.overruns")
+                .description("Cycles that took longer than metrics.cycle.budget-ms")
+                .register(meterRegistry);
+        entriesScanned = DistributionSummary.builder("analytics.metrics.cycle.entries")
+                .description("Snapshot entries read per cycle")
+                .register(meterRegistry);
+        bytesScanned = DistributionSummary.builder("analytics.metrics.cycle.bytes")
+                .baseUnit("bytes")
+                .description("Approximate snapshot bytes read per cycle")
+                .register(meterRegistry);
+        redisOperations = DistributionSummary.builder("analytics.metrics.cycle.redis.operations")
+                .description("Redis operations issued per cycle")
+                .register(meterRegistry);
+        TimeGauge.builder("analytics.metrics.cycle.staleness", this, TimeUnit.MILLISECONDS,
+                        MetricsCycleProfiler::stalenessMillis)
+                .description("Time since a cycle last published metrics")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Start tracing a cycle
+     */
+    public Cycle begin() {
+        return new Cycle();
+    }
+
+    /**
+     * Record a finished cycle with its outcome
+     */
+    public CycleProfile finish(Cycle cycle, String outcome) {
+        long finished = System.nanoTime();
+        long duration = finished - cycle.startedNanos;
+        boolean published = "published".equals(outcome);
+        long previous = lastPublishedNanos;
+        double lagMs = previous == 0 ? 0 : (finished - previous) / 1e6;
+        if (published) {
+            lastPublishedNanos = finished;
+        }
+        boolean overrun = duration > TimeUnit.MILLISECONDS.toNanos(budgetMillis);
+
+        cycleTimer.record(duration, TimeUnit.NANOSECONDS);
+        Map<String, Double> stepsMs = new LinkedHashMap<>();
+        for (Map.Entry<String, Long> step : cycle.stepNanos.entrySet()) {
+            stepTimer(step.getKey()).record(step.getValue(), TimeUnit.NANOSECONDS);
+            stepsMs.put(step.getKey(), step.getValue() / 1e6);
+        }
+        entriesScanned.record(cycle.entries);
+        bytesScanned.record(cycle.bytes);
+        redisOperations.record(cycle.redisOperations);
+        if (overrun) {
+            overruns.increment();
+            log.warn("Metrics cycle took {} ms (budget {} ms): {}", duration / 1_000_000, budgetMillis, stepsMs);
+        }
+
+        CycleProfile profile = CycleProfile.builder()
+                .startedAt(cycle.startedAt)
+                .outcome(outcome)
+                .durationMs(duration / 1e6)
+                .lagMs(lagMs)
+                .overrun(overrun)
+                .tenants(cycle.tenants)
+                .timedOutTenants(cycle.timedOutTenants)
+                .stepsMs(stepsMs)
+                .entriesScanned(cycle.entries)
+                .bytesScanned(cycle.bytes)
+                .redisOperations(cycle.redisOperations)
+                .build();
+        synchronized (recent) {
+            recent.addFirst(profile);
+            while (recent.size() > history) {
+                recent.removeLast();
+            }
+        }
+        return profile;
+    }
+
+    /**
+     * The last cycles, newest first
+     */
+    public List<CycleProfile> recent() {
+        synchronized (recent) {
+            return new ArrayList<>(recent);
+        }
+    }
+
+    private synchronized Timer stepTimer(String step) {
+        return stepTimers.computeIfAbsent(step, name -> Timer.builder("analytics.metrics.cycle.step")
+                .tag("step", name)
+                .description("Time spent in one step of a metrics-processing cycle")
+                .register(meterRegistry));
+    }
+
+    private double stalenessMillis() {
+        long last = lastPublishedNanos;
+        return last == 0 ? 0 : (System.nanoTime() - last) / 1e6;
+    }
+
+    /**
+     * What one cycle did so far; used by the processing thread only
+     */
+    public static final class Cycle {
+        private final Instant startedAt = Instant.now();
+        private final long startedNanos = System.nanoTime();
+        private final Map<String, Long> stepNanos = new LinkedHashMap<>();
+        private int tenants;
+        private int timedOutTenants;
+        private long entries;
+        private long bytes;
+        private long redisOperations;
+
+        private Cycle() {
+        }
+
+        /**
+         * Add time spent in a step since {@code startedNanos}; returns the current time
+         */
+        public long step(String name, long startedNanos) {
+            long now = System.nanoTime();
+            stepNanos.merge(name, now - startedNanos, Long::sum);
+            return now;
+        }
+
+        public void tenant(boolean timedOut) {
+            tenants++;
+            if (timedOut) {
+                timedOutTenants++;
+            }
+        }
+
+        public void redisOperations(long count) {
+            redisOperations += count;
+        }
+
+        /**
+         * Count the entries of a snapshot, estimating their size as their
+         * ids and URLs (one byte per char) plus eight bytes per count
+         */
+        public void scanned(ActivitySnapshot snapshot) {
+            for (int w = 0; w < snapshot.getWindowCount(); w++) {
+                entries++;
+                bytes += Long.BYTES;
+                for (String page : snapshot.getPageViews(w).keySet()) {
+                    entries++;
+                    bytes += page.length() + Long.BYTES;
+                }
+            }
+            for (Map.Entry<String, Map<String, Long>> user : snapshot.getUserSessions().entrySet()) {
+                entries++;
+                bytes += user.getKey().length();
+                for (String session : user.getValue().keySet()) {
+                    entries++;
+                    bytes += session.length() + Long.BYTES;
+                }
+            }
+        }
+    }
+}
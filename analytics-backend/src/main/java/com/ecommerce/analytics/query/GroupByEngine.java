@@ -0,0 +1,297 @@
+package com.ecommerce.analytics.query;
+
+import com.ecommerce.analytics.store.ColumnBlock;
+import com.ecommerce.analytics.store.ColumnarRingStore;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveTask;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * Runs {@link GroupByQuery} scans over a {@link ColumnarRingStore} view.
+ *
+ * The view's sequence range is split recursively across a fork-join pool.
+ * Each leaf copies runs of rows into a {@link ColumnBlock} and works on the
+ * plain arrays: a branch-free time-range pass builds a selection vector of
+ * row indexes, each filter narrows it with one tight loop over a single int
+ * column (filter values are resolved to dictionary ids, or to a bitset of
+ * ids for prefixes, before the scan), and the survivors are folded into a
+ * primitive per-group map or a set of (group, value) pairs. Partial results
+ * are merged as the tasks join; strings are only looked up for the final
+ * top groups.
+ */
+public class GroupByEngine {
+
+    static final int BLOCK_ROWS = 4096;
+    static final long LEAF_ROWS = 64L * BLOCK_ROWS;
+
+    private final ForkJoinPool pool;
+
+    public GroupByEngine(ForkJoinPool pool) {
+        this.pool = pool;
+    }
+
+    /**
+     * Run the query against the view, giving up after the timeout
+     */
+    public GroupByQuery.Result execute(ColumnarRingStore.View view, GroupByQuery query, long timeoutMillis)
+            throws TimeoutException, InterruptedException {
+        Plan plan = Plan.compile(view, query);
+        ScanTask task = new ScanTask(view, plan, view.firstSequence(), view.endSequence());
+        ForkJoinTask<Partial> submitted = pool.submit(task);
+        Partial partial;
+        try {
+            partial = submitted.get(timeoutMillis, TimeUnit.MILLISECONDS);
+        } catch (TimeoutException e) {
+            plan.cancelled = true;
+            submitted.cancel(true);
+            throw e;
+        } catch (ExecutionException e) {
+            throw e.getCause() instanceof RuntimeException runtime ? runtime : new IllegalStateException(e.getCause());
+        } catch (CancellationException e) {
+            throw new TimeoutException("Query cancelled");
+        }
+        return finish(view, query, partial);
+    }
+
+    private static GroupByQuery.Result finish(ColumnarRingStore.View view, GroupByQuery query, Partial partial) {
+        IntLongHashMap totals = partial.counts;
+        if (partial.pairs != null) {
+            IntLongHashMap distinct = new IntLongHashMap(1024);
+            partial.pairs.forEach(pair -> distinct.addTo((int) (pair >> 32), 1));
+            totals = distinct;
+        }
+
+        List<long[]> entries = new ArrayList<>(totals.size());
+        totals.forEach((key, value) -> entries.add(new long[]{key, value}));
+        entries.sort(Comparator.comparingLong((long[] entry) -> entry[1]).reversed()
+                .thenComparingLong(entry -> entry[0]));
+
+        List<GroupByQuery.Group> groups = new ArrayList<>(Math.min(query.getLimit(), entries.size()));
+        for (int i = 0; i < entries.size() && i < query.getLimit(); i++) {
+            groups.add(new GroupByQuery.Group(view.string((int) entries.get(i)[0]), entries.get(i)[1]));
+        }
+        return new GroupByQuery.Result(groups, entries.size(), partial.scanned, partial.matched);
+    }
+
+    /**
+     * Query with filter values resolved against the view's dictionary
+     */
+    static final class Plan {
+        static final int EQ = 0;
+        static final int NEQ = 1;
+        static final int IN_SET = 2;
+        static final int NOT_IN_SET = 3;
+
+        final long fromMillis;
+        final long toMillis;
+        final ColumnBlock.Dimension groupBy;
+        final ColumnBlock.Dimension distinctOn;
+        final ColumnBlock.Dimension[] filterDimensions;
+        final int[] filterKinds;
+        final int[] filterIds;
+        final long[][] filterSets;
+        volatile boolean cancelled;
+
+        private Plan(GroupByQuery query, int filters) {
+            this.fromMillis = query.getFromMillis();
+            this.toMillis = query.getToMillis();
+            this.groupBy = query.getGroupBy();
+            this.distinctOn = query.getAggregate() == GroupByQuery.Aggregate.DISTINCT_COUNT
+                    ? query.getDistinctOn() : null;
+            this.filterDimensions = new ColumnBlock.Dimension[filters];
+            this.filterKinds = new int[filters];
+            this.filterIds = new int[filters];
+            this.filterSets = new long[filters][];
+        }
+
+        static Plan compile(ColumnarRingStore.View view, GroupByQuery query) {
+            List<GroupByQuery.Filter> filters = query.getFilters();
+            Plan plan = new Plan(query, filters.size());
+            for (int f = 0; f < filters.size(); f++) {
+                GroupByQuery.Filter filter = filters.get(f);
+                plan.filterDimensions[f] = filter.getDimension();
+                switch (filter.getOp()) {
+                    case EQ, NEQ -> {
+                        plan.filterKinds[f] = filter.getOp() == GroupByQuery.Op.EQ ? EQ : NEQ;
+                        int id = view.id(filter.getValue());
+                        // A value no row holds matches nothing (and NONE would match missing values)
+                        plan.filterIds[f] = id == ColumnarRingStore.NONE ? Integer.MIN_VALUE : id;
+                    }
+                    case PREFIX, NOT_PREFIX -> {
+                        plan.filterKinds[f] = filter.getOp() == GroupByQuery.Op.PREFIX ? IN_SET : NOT_IN_SET;
+                        int size = view.dictionarySize();
+                        long[] bits = new long[(size >>> 6) + 1];
+                        for (int id = 0; id < size; id++) {
+                            String value = view.string(id);
+                            if (value != null && value.startsWith(filter.getValue())) {
+                                bits[id >>> 6] |= 1L << id;
+                            }
+                        }
+                        plan.filterSets[f] = bits;
+                    }
+                }
+            }
+            return plan;
+        }
+    }
+
+    /**
+     * Per-task accumulators; exactly one of counts / pairs is in use
+     */
+    static final class Partial {
+        IntLongHashMap counts;
+        LongHashSet pairs;
+        long scanned;
+        long matched;
+
+        Partial(boolean distinct) {
+            if (distinct) {
+                pairs = new LongHashSet(1024);
+            } else {
+                counts = new IntLongHashMap(256);
+            }
+        }
+
+        Partial merge(Partial other) {
+            if (counts != null) {
+                if (other.counts.size() > counts.size()) {
+                    other.counts.addAll(counts);
+                    counts = other.counts;
+                } else {
+                    counts.addAll(other.counts);
+                }
+            } else if (other.pairs.size() > pairs.size()) {
+                other.pairs.addAll(pairs);
+                pairs = other.pairs;
+            } else {
+                pairs.addAll(other.pairs);
+            }
+            scanned += other.scanned;
+            matched += other.matched;
+            return this;
+        }
+    }
+
+    static final class ScanTask extends RecursiveTask<Partial> {
+        private static final long serialVersionUID = 1L;
+
+        private final ColumnarRingStore.View view;
+        private final Plan plan;
+        private final long fromSeq;
+        private final long toSeq;
+
+        ScanTask(ColumnarRingStore.View view, Plan plan, long fromSeq, long toSeq) {
+            this.view = view;
+            this.plan = plan;
+            this.fromSeq = fromSeq;
+            this.toSeq = toSeq;
+        }
+
+        @Override
+        protected Partial compute() {
+            if (toSeq - fromSeq > LEAF_ROWS) {
+                long middle = fromSeq + (toSeq - fromSeq) / 2;
+                ScanTask left = new ScanTask(view, plan, fromSeq, middle);
+                ScanTask right = new ScanTask(view, plan, middle, toSeq);
+                left.fork();
+                Partial rightResult = right.compute();
+                return left.join().merge(rightResult);
+            }
+            return scan();
+        }
+
+        private Partial scan() {
+            Partial partial = new Partial(plan.distinctOn != null);
+            ColumnBlock block = new ColumnBlock(BLOCK_ROWS);
+            int[] selection = new int[BLOCK_ROWS];
+            long seq = fromSeq;
+            while (seq < toSeq && !plan.cancelled) {
+                seq = view.load(seq, toSeq, block);
+                int size = block.size();
+                if (size == 0) {
+                    break;
+                }
+                partial.scanned += size;
+                int selected = selectTimeRange(block.times(), size, selection);
+                for (int f = 0; f < plan.filterKinds.length && selected > 0; f++) {
+                    selected = applyFilter(f, block.column(plan.filterDimensions[f]), selection, selected);
+                }
+                partial.matched += selected;
+                accumulate(block, selection, selected, partial);
+            }
+            return partial;
+        }
+
+        private int selectTimeRange(long[] times, int size, int[] selection) {
+            long from = plan.fromMillis;
+            long to = plan.toMillis;
+            int selected = 0;
+            for (int i = 0; i < size; i++) {
+                long time = times[i];
+                selection[selected] = i;
+                selected += (time >= from & time < to) ? 1 : 0;
+            }
+            return selected;
+        }
+
+        private int applyFilter(int f, int[] column, int[] selection, int selected) {
+            int kept = 0;
+            switch (plan.filterKinds[f]) {
+                case Plan.EQ -> {
+                    int id = plan.filterIds[f];
+                    for (int k = 0; k < selected; k++) {
+                        int row = selection[k];
+                        selection[kept] = row;
+                        kept += column[row] == id ? 1 : 0;
+                    }
+                }
+                case Plan.NEQ -> {
+                    int id = plan.filterIds[f];
+                    for (int k = 0; k < selected; k++) {
+                        int row = selection[k];
+                        selection[kept] = row;
+                        kept += column[row] != id ? 1 : 0;
+                    }
+                }
+                default -> {
+                    long[] bits = plan.filterSets[f];
+                    int limit = bits.length << 6;
+                    int expect = plan.filterKinds[f] == Plan.IN_SET ? 1 : 0;
+                    for (int k = 0; k < selected; k++) {
+                        int row = selection[k];
+                        int id = column[row];
+                        int member = id >= 0 && id < limit ? (int) (bits[id >>> 6] >>> id) & 1 : 0;
+                        selection[kept] = row;
+                        kept += member == expect ? 1 : 0;
+                    }
+                }
+            }
+            return kept;
+        }
+
+        private void accumulate(ColumnBlock block, int[] selection, int selected, Partial partial) {
+            int[] groups = block.column(plan.groupBy);
+            if (partial.pairs == null) {
+                IntLongHashMap counts = partial.counts;
+                for (int k = 0; k < selected; k++) {
+                    counts.addTo(groups[selection[k]], 1);
+                }
+                return;
+            }
+            int[] values = block.column(plan.distinctOn);
+            LongHashSet pairs = partial.pairs;
+            for (int k = 0; k < selected; k++) {
+                int row = selection[k];
+                pairs.add((long) groups[row] << 32 | (values[row] & 0xFFFFFFFFL));
+            }
+        }
+    }
+}
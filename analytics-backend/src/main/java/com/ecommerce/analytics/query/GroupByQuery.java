@@ -0,0 +1,59 @@
+package com.ecommerce.analytics.query;
+
+import com.ecommerce.analytics.store.ColumnBlock.Dimension;
+import lombok.Builder;
+import lombok.Singular;
+import lombok.Value;
+
+import java.util.List;
+
+/**
+ * Ad-hoc aggregation over recent events: filter, group by one dimension and
+ * count rows or distinct values of another dimension per group
+ */
+@Value
+@Builder
+public class GroupByQuery {
+
+    Dimension groupBy;
+    Aggregate aggregate;
+    /** Dimension whose distinct values are counted, for {@link Aggregate#DISTINCT_COUNT} */
+    Dimension distinctOn;
+    @Singular
+    List<Filter> filters;
+    long fromMillis;
+    long toMillis;
+    int limit;
+
+    public enum Aggregate {
+        COUNT, DISTINCT_COUNT
+    }
+
+    public enum Op {
+        EQ, NEQ, PREFIX, NOT_PREFIX
+    }
+
+    @Value
+    public static class Filter {
+        Dimension dimension;
+        Op op;
+        String value;
+    }
+
+    /**
+     * Largest groups first, with scan statistics
+     */
+    @Value
+    public static class Result {
+        List<Group> groups;
+        long totalGroups;
+        long rowsScanned;
+        long rowsMatched;
+    }
+
+    @Value
+    public static class Group {
+        String key;
+        long value;
+    }
+}
@@ -0,0 +1,92 @@
+package com.ecommerce.analytics.query;
+
+import java.util.Arrays;
+import java.util.function.LongConsumer;
+
+/**
+ * Open-addressing set of longs, used for distinct (group, value) pairs.
+ * {@link Long#MIN_VALUE} cannot be stored.
+ */
+public class LongHashSet {
+
+    private static final long EMPTY = Long.MIN_VALUE;
+
+    private long[] slots;
+    private int size;
+    private int mask;
+    private int shift;
+
+    public LongHashSet(int expected) {
+        int capacity = Integer.highestOneBit(Math.max(16, expected * 2) - 1) << 1;
+        slots = new long[capacity];
+        Arrays.fill(slots, EMPTY);
+        mask = capacity - 1;
+        shift = Long.numberOfLeadingZeros(mask);
+    }
+
+    public void add(long value) {
+        int i = slot(value);
+        while (true) {
+            long v = slots[i];
+            if (v == value) {
+                return;
+            }
+            if (v == EMPTY) {
+                slots[i] = value;
+                if (++size * 2 > slots.length) {
+                    grow();
+                }
+                return;
+            }
+            i = (i + 1) & mask;
+        }
+    }
+
+    public boolean contains(long value) {
+        int i = slot(value);
+        while (true) {
+            long v = slots[i];
+            if (v == value) {
+                return true;
+            }
+            if (v == EMPTY) {
+                return false;
+            }
+            i = (i + 1) & mask;
+        }
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public void addAll(LongHashSet other) {
+        other.forEach(this::add);
+    }
+
+    public void forEach(LongConsumer consumer) {
+        for (long v : slots) {
+            if (v != EMPTY) {
+                consumer.accept(v);
+            }
+        }
+    }
+
+    private int slot(long value) {
+        return (int) ((value * 0x9E3779B97F4A7C15L) >>> shift);
+    }
+
+    private void grow() {
+        long[] old = slots;
+        slots = new long[old.length * 2];
+        Arrays.fill(slots, EMPTY);
+        mask = slots.length - 1;
+        shift = Long.numberOfLeadingZeros(mask);
+        size = 0;
+        for (long v : old) {
+            if (v != EMPTY) {
+                add(v);
+            }
+        }
+    }
+}
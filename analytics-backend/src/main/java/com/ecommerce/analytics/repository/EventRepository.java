@@ -21,18 +21,6 @@ public interface EventRepository extends MongoRepository<UserEvent, String> {
     @Query("{ 'createdAt': { $gte: ?0, $lte: ?1 } }")
     List<UserEvent> findEventsBetween(Instant start, Instant end);
 
-    /**
-     * Find events for a specific user within a time range
-     */
-    @Query("{ 'userId': ?0, 'createdAt': { $gte: ?1 } }")
-    List<UserEvent> findByUserIdAndCreatedAtAfter(String userId, Instant after);
-
-    /**
-     * Find events for a specific page URL within a time range
-     */
-    @Query("{ 'pageUrl': ?0, 'createdAt': { $gte: ?1 } }")
-    List<UserEvent> findByPageUrlAndCreatedAtAfter(String pageUrl, Instant after);
-
     /**
      * Count distinct users in a time range
      */
@@ -0,0 +1,149 @@
+package com.ecommerce.analytics.resilience;
+
+/**
+ * Gradient concurrency limiter with priority shedding.
+ *
+ * Keeps a limit on calls in flight and tunes it from their latency: a slow
+ * average over many calls serves as the no-load baseline and a fast one as
+ * the current latency. While the current latency stays within
+ * {@code tolerance} of the baseline, and calls are actually using the
+ * limit, it grows by a share of its square root per sample; as latency
+ * climbs beyond that the limit shrinks in proportion (at most halving per
+ * sample), and failed calls cut it by a tenth. Downstream queue pressure
+ * (0 to 1) reported with each sample shrinks it further once the queue is
+ * more than half full. Changes are smoothed and the limit stays between
+ * {@code minLimit} and {@code maxLimit}.
+ *
+ * Each call has a {@link Priority}; lower priorities may only fill part of
+ * the limit, so as it shrinks they are rejected first while critical calls
+ * still get through.
+ */
+public class AdaptiveConcurrencyLimiter {
+
+    /**
+     * Call priority and the share of the limit calls of that priority may fill
+     */
+    public enum Priority {
+        LOW(0.5), NORMAL(0.8), CRITICAL(1.0);
+
+        private final double share;
+
+        Priority(double share) {
+            this.share = share;
+        }
+    }
+
+    private static final double SHORT_WEIGHT = 0.1;
+    private static final double LONG_WEIGHT = 1.0 / 500;
+    private static final double MIN_GRADIENT = 0.5;
+    private static final double DROP_FACTOR = 0.9;
+
+    private final int minLimit;
+    private final int maxLimit;
+    private final double smoothing;
+    private final double tolerance;
+
+    private double limit;
+    private int inFlight;
+    private double shortLatency;
+    private double longLatency;
+
+    public AdaptiveConcurrencyLimiter(int initialLimit, int minLimit, int maxLimit, double smoothing,
+            double tolerance) {
+        if (minLimit < 1 || maxLimit < minLimit || initialLimit < minLimit || initialLimit > maxLimit) {
+            throw new IllegalArgumentException("Limits must satisfy 1 <= min <= initial <= max");
+        }
+        if (smoothing <= 0 || smoothing > 1 || tolerance < 1) {
+            throw new IllegalArgumentException("smoothing must be in (0, 1] and tolerance at least 1");
+        }
+        this.limit = initialLimit;
+        this.minLimit = minLimit;
+        this.maxLimit = maxLimit;
+        this.smoothing = smoothing;
+        this.tolerance = tolerance;
+    }
+
+    /**
+     * Whether a call of the given priority may go ahead now; a true result
+     * must be followed by {@link #onSuccess}, {@link #onDropped()} or
+     * {@link #onIgnore()}
+     */
+    public synchronized boolean tryAcquire(Priority priority) {
+        if (inFlight >= Math.max(1, (int) (limit * priority.share))) {
+            return false;
+        }
+        inFlight++;
+        return true;
+    }
+
+    /**
+     * A call completed in {@code latencyNanos} while the downstream queue was
+     * {@code queuePressure} (0 to 1) full
+     */
+    public synchronized void onSuccess(long latencyNanos, double queuePressure) {
+        int sampledInFlight = inFlight--;
+        if (longLatency == 0) {
+            shortLatency = latencyNanos;
+            longLatency = latencyNanos;
+            return;
+        }
+        shortLatency += (latencyNanos - shortLatency) * SHORT_WEIGHT;
+        longLatency += (latencyNanos - longLatency) * LONG_WEIGHT;
+        if (longLatency > 2 * shortLatency) {
+            // Recover the baseline quickly after a long slow spell ends
+            longLatency *= 0.95;
+        }
+
+        double gradient = Math.max(MIN_GRADIENT, Math.min(1.0, tolerance * longLatency / shortLatency));
+        if (queuePressure > 0.5) {
+            gradient = Math.max(MIN_GRADIENT, gradient * (1.5 - queuePressure));
+        }
+        if (gradient == 1.0 && sampledInFlight < limit / 2) {
+            // Not using the limit, so latency says nothing about a higher one
+            return;
+        }
+        double target = limit * gradient + (gradient == 1.0 ? Math.sqrt(limit) : 0);
+        setLimit(limit * (1 - smoothing) + target * smoothing);
+    }
+
+    /**
+     * A call failed or timed out: back off
+     */
+    public synchronized void onDropped() {
+        inFlight--;
+        setLimit(limit * DROP_FACTOR);
+    }
+
+    /**
+     * A call ended without saying anything about downstream capacity (e.g. rejected as invalid)
+     */
+    public synchronized void onIgnore() {
+        inFlight--;
+    }
+
+    private void setLimit(double newLimit) {
+        limit = Math.max(minLimit, Math.min(maxLimit, newLimit));
+    }
+
+    public synchronized int getLimit() {
+        return (int) limit;
+    }
+
+    public synchronized int getInFlight() {
+        return inFlight;
+    }
+
+    /**
+     * Recent call latency in nanoseconds
+     */
+    public synchronized double getLatency() {
+        return shortLatency;
+    }
+
+    /**
+     * Long-run (baseline) call latency in nanoseconds
+     */
+    public synchronized double getBaselineLatency() {
+        return longLatency;
+    }
+}
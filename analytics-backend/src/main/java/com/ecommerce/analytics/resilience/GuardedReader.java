@@ -0,0 +1,98 @@
+package com.ecommerce.analytics.resilience;
+
+import lombok.Value;
+
+import java.time.Instant;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.function.LongSupplier;
+import java.util.function.Supplier;
+
+/**
+ * Runs reads behind a {@link CircuitBreaker} and remembers the last good
+ * result of each, keyed by the caller. When a read fails, or the breaker is
+ * open and it is not attempted at all, the last good result is returned
+ * marked stale instead. Results are kept for the most recently used keys only.
+ */
+public class GuardedReader {
+
+    private final CircuitBreaker breaker;
+    private final LongSupplier clock;
+    private final Map<String, Reading<?>> lastGood;
+
+    private long failures;
+    private long fallbacks;
+
+    public GuardedReader(CircuitBreaker breaker, int capacity) {
+        this(breaker, capacity, System::currentTimeMillis);
+    }
+
+    public GuardedReader(CircuitBreaker breaker, int capacity, LongSupplier clock) {
+        this.breaker = breaker;
+        this.clock = clock;
+        this.lastGood = new LinkedHashMap<>(64, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Reading<?>> eldest) {
+                return size() > capacity;
+            }
+        };
+    }
+
+    /**
+     * Run the read if the breaker allows it, otherwise (or if it throws) fall
+     * back to the last good result for the key; the value is null if there is none
+     */
+    @SuppressWarnings("unchecked")
+    public <T> Reading<T> read(String key, Supplier<T> read) {
+        if (breaker.tryAcquire()) {
+            try {
+                T value = read.get();
+                breaker.onSuccess();
+                Reading<T> reading = new Reading<>(value, false, Instant.ofEpochMilli(clock.getAsLong()));
+                synchronized (lastGood) {
+                    lastGood.put(key, reading);
+                }
+                return reading;
+            } catch (RuntimeException e) {
+                breaker.onFailure();
+                synchronized (lastGood) {
+                    failures++;
+                }
+            }
+        }
+
+        synchronized (lastGood) {
+            fallbacks++;
+            Reading<T> previous = (Reading<T>) lastGood.get(key);
+            return previous != null
+                    ? new Reading<>(previous.getValue(), true, previous.getAsOf())
+                    : new Reading<>(null, true, null);
+        }
+    }
+
+    public CircuitBreaker getBreaker() {
+        return breaker;
+    }
+
+    public long failures() {
+        synchronized (lastGood) {
+            return failures;
+        }
+    }
+
+    public long fallbacks() {
+        synchronized (lastGood) {
+            return fallbacks;
+        }
+    }
+
+    /**
+     * Result of a guarded read and when it was read from the source
+     */
+    @Value
+    public static class Reading<T> {
+        T value;
+        boolean stale;
+        Instant asOf;
+    }
+}
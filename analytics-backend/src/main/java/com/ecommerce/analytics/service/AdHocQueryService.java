@@ -0,0 +1,196 @@
+package com.ecommerce.analytics.service;
+
+import com.ecommerce.analytics.config.WindowConfig;
+import com.ecommerce.analytics.model.AnalyticsResponse;
+import com.ecommerce.analytics.model.GroupByRequest;
+import com.ecommerce.analytics.query.GroupByEngine;
+import com.ecommerce.analytics.query.GroupByQuery;
+import com.ecommerce.analytics.store.ColumnBlock;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.convert.DurationStyle;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Locale;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeoutException;
+import java.util.stream.Collectors;
+
+/**
+ * Ad-hoc group-by queries over the recent event store.
+ * Scans run on a dedicated fork-join pool so they don't compete with the
+ * common pool, and are abandoned after the configured timeout.
+ */
+@Service
+@Slf4j
+@RequiredArgsConstructor
+public class AdHocQueryService {
+
+    private static final int DEFAULT_LIMIT = 20;
+    private static final int MAX_LIMIT = 1000;
+
+    private final RecentEventStoreService recentEventStoreService;
+    private final MeterRegistry meterRegistry;
+
+    @Value("${adhoc-query.parallelism:0}")
+    private int parallelism;
+
+    @Value("${adhoc-query.timeout-ms:5000}")
+    private long timeoutMs;
+
+    @Value("${recent-events.retention-minutes:60}")
+    private long retentionMinutes;
+
+    private ForkJoinPool pool;
+    private GroupByEngine engine;
+    private Timer queryTimer;
+    private Counter rowsScanned;
+
+    @PostConstruct
+    public void init() {
+        int threads = parallelism > 0 ? parallelism : Runtime.getRuntime().availableProcessors();
+        pool = new ForkJoinPool(threads);
+        engine = new GroupByEngine(pool);
+        queryTimer = Timer.builder("analytics.query.groupby").register(meterRegistry);
+        rowsScanned = Counter.builder("analytics.query.rows.scanned").register(meterRegistry);
+    }
+
+    /**
+     * Run a group-by query over the requested window of recent events
+     *
+     * @throws IllegalArgumentException if the request names an unknown dimension, aggregate,
+     *         operator or a window beyond the store's retention
+     * @throws TimeoutException if the scan does not finish in time
+     * @throws com.ecommerce.analytics.exception.StoreDisabledException if the recent event store is disabled
+     */
+    public AnalyticsResponse.GroupByResponse query(GroupByRequest request)
+            throws TimeoutException, InterruptedException {
+        long now = System.currentTimeMillis();
+        Duration window = parseWindow(request.getWindow());
+        GroupByQuery query = toQuery(request, now - window.toMillis(), now + 1);
+
+        long started = System.nanoTime();
+        GroupByQuery.Result result;
+        try {
+            result = recentEventStoreService.read(view -> {
+                try {
+                    return engine.execute(view, query, timeoutMs);
+                } catch (TimeoutException | InterruptedException e) {
+                    throw new QueryAbortedException(e);
+                }
+            });
+        } catch (QueryAbortedException e) {
+            if (e.getCause() instanceof InterruptedException interrupted) {
+                throw interrupted;
+            }
+            throw (TimeoutException) e.getCause();
+        }
+        long tookNanos = System.nanoTime() - started;
+        queryTimer.record(Duration.ofNanos(tookNanos));
+        rowsScanned.increment(result.getRowsScanned());
+
+        return AnalyticsResponse.GroupByResponse.builder()
+                .groupBy(name(query.getGroupBy()))
+                .aggregate(query.getAggregate().name().toLowerCase(Locale.ROOT))
+                .distinctOn(query.getDistinctOn() != null ? name(query.getDistinctOn()) : null)
+                .window(WindowConfig.label(window))
+                .groups(result.getGroups().stream()
+                        .map(group -> AnalyticsResponse.GroupValue.builder()
+                                .key(group.getKey())
+                                .value(group.getValue())
+                                .build())
+                        .collect(Collectors.toList()))
+                .totalGroups(result.getTotalGroups())
+                .rowsScanned(result.getRowsScanned())
+                .rowsMatched(result.getRowsMatched())
+                .tookMillis(Duration.ofNanos(tookNanos).toMillis())
+                .timestamp(Instant.now().toString())
+                .build();
+    }
+
+    private Duration parseWindow(String value) {
+        Duration window;
+        try {
+            window = DurationStyle.detectAndParse(value.trim());
+        } catch (Exception e) {
+            throw new IllegalArgumentException("Invalid window: " + value);
+        }
+        if (window.isNegative() || window.isZero()) {
+            throw new IllegalArgumentException("Window must be positive");
+        }
+        if (window.compareTo(Duration.ofMinutes(retentionMinutes)) > 0) {
+            throw new IllegalArgumentException("Window exceeds the " + retentionMinutes
+                    + " minutes of recent events kept for queries");
+        }
+        return window;
+    }
+
+    static GroupByQuery toQuery(GroupByRequest request, long fromMillis, long toMillis) {
+        GroupByQuery.Aggregate aggregate = request.getAggregate() == null || request.getAggregate().isBlank()
+                ? GroupByQuery.Aggregate.COUNT
+                : parse(GroupByQuery.Aggregate.class, request.getAggregate(), "aggregate");
+        ColumnBlock.Dimension distinctOn = null;
+        if (aggregate == GroupByQuery.Aggregate.DISTINCT_COUNT) {
+            if (request.getDistinctOn() == null || request.getDistinctOn().isBlank()) {
+                throw new IllegalArgumentException("distinct_count requires distinctOn");
+            }
+            distinctOn = parse(ColumnBlock.Dimension.class, request.getDistinctOn(), "dimension");
+        }
+        int limit = request.getLimit() == null ? DEFAULT_LIMIT : Math.max(1, Math.min(request.getLimit(), MAX_LIMIT));
+
+        GroupByQuery.GroupByQueryBuilder builder = GroupByQuery.builder()
+                .groupBy(parse(ColumnBlock.Dimension.class, request.getGroupBy(), "dimension"))
+                .aggregate(aggregate)
+                .distinctOn(distinctOn)
+                .fromMillis(fromMillis)
+                .toMillis(toMillis)
+                .limit(limit);
+        if (request.getFilters() != null) {
+            for (GroupByRequest.Filter filter : request.getFilters()) {
+                builder.filter(new GroupByQuery.Filter(
+                        parse(ColumnBlock.Dimension.class, filter.getDimension(), "dimension"),
+                        parse(GroupByQuery.Op.class, filter.getOp(), "filter op"),
+                        filter.getValue()));
+            }
+        }
+        return builder.build();
+    }
+
+    private static <E extends Enum<E>> E parse(Class<E> type, String value, String what) {
+        try {
+            return Enum.valueOf(type, value.trim().toUpperCase(Locale.ROOT));
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("Unknown " + what + ": " + value);
+        }
+    }
+
+    private static String name(ColumnBlock.Dimension dimension) {
+        return dimension.name().toLowerCase(Locale.ROOT);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        if (pool != null) {
+            pool.shutdownNow();
+        }
+    }
+
+    /**
+     * Carries a timeout or interrupt out of the store read callback
+     */
+    static final class QueryAbortedException extends RuntimeException {
+        private static final long serialVersionUID = 1L;
+
+        QueryAbortedException(Exception cause) {
+            super(cause);
+        }
+    }
+}
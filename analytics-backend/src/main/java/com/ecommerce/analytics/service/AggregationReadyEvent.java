@@ -0,0 +1,13 @@
+package com.ecommerce.analytics.service;
+
+import lombok.Value;
+
+/**
+ * Published once the aggregation lanes hold the full retained window after a
+ * start: restored from a checkpoint and/or replayed from MongoDB
+ */
+@Value
+public class AggregationReadyEvent {
+    boolean restoredFromCheckpoint;
+    long replayedEvents;
+}
@@ -1,192 +1,179 @@
 package com.ecommerce.analytics.service;
 
+import com.ecommerce.analytics.config.WindowConfig;
 import com.ecommerce.analytics.model.AnalyticsResponse;
+import com.ecommerce.analytics.resilience.GuardedReader;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.data.redis.core.RedisTemplate;
 import org.springframework.stereotype.Service;
 
+import java.time.Duration;
 import java.time.Instant;
 import java.util.*;
 import java.util.stream.Collectors;
 
 /**
  * Service for querying analytics metrics.
- * Reads from Redis cache for fast responses.
+ * Reads from Redis cache for fast responses. Counts are published per tenant
+ * and window; sessions carry last-seen times and are filtered to the window here.
+ * Reads go through {@link RedisMetricsReader}, so while Redis is failing each
+ * response carries the last good figures with {@code stale} set and
+ * {@code asOf} saying when they were read (zeros if there are none yet).
  */
 @Service
 @Slf4j
 @RequiredArgsConstructor
 public class AnalyticsQueryService {
 
-        private final RedisTemplate<String, Object> redisTemplate;
+        private final RedisMetricsReader metricsReader;
 
-        private static final String ACTIVE_USERS_KEY = "metrics:active_users";
-        private static final String PAGE_VIEWS_KEY = "metrics:page_views";
-        private static final String USER_SESSIONS_PREFIX = "metrics:sessions:";
+        /**
+         * Get a tenant's active users count for a window
+         */
+        public AnalyticsResponse.ActiveUsersResponse getActiveUsers(String tenant, Duration window) {
+                String label = WindowConfig.label(window);
+                String key = RealTimeProcessingService.activeUsersKey(tenant, label);
+                GuardedReader.Reading<Long> reading = metricsReader.read(key, redis -> {
+                        Object countObj = redis.opsForValue().get(key);
+                        return countObj instanceof Number count ? count.longValue() : 0L;
+                });
+
+                return AnalyticsResponse.ActiveUsersResponse.builder()
+                                .activeUsers(reading.getValue() != null ? reading.getValue() : 0L)
+                                .window(label)
+                                .stale(reading.isStale())
+                                .asOf(asOf(reading))
+                                .timestamp(Instant.now().toString())
+                                .build();
+        }
 
         /**
-         * Get active users count
+         * Get a tenant's top pages by view count for a window
          */
-        public AnalyticsResponse.ActiveUsersResponse getActiveUsers() {
-                try {
-                        Object countObj = redisTemplate.opsForValue().get(ACTIVE_USERS_KEY);
-
-                        if (countObj != null) {
-                                long count = countObj instanceof Integer ? ((Integer) countObj).longValue()
-                                                : countObj instanceof Long ? (Long) countObj : 0L;
-
-                                return AnalyticsResponse.ActiveUsersResponse.builder()
-                                                .activeUsers(count)
-                                                .timestamp(Instant.now().toString())
-                                                .build();
-                        }
-
-                        return AnalyticsResponse.ActiveUsersResponse.builder()
-                                        .activeUsers(0)
-                                        .timestamp(Instant.now().toString())
-                                        .build();
-
-                } catch (Exception e) {
-                        log.error("Error retrieving active users: {}", e.getMessage());
-                        return AnalyticsResponse.ActiveUsersResponse.builder()
-                                        .activeUsers(0)
-                                        .timestamp(Instant.now().toString())
-                                        .build();
-                }
+        public AnalyticsResponse.TopPagesResponse getTopPages(String tenant, int limit, Duration window) {
+                String label = WindowConfig.label(window);
+                String key = RealTimeProcessingService.pageViewsKey(tenant, label);
+                GuardedReader.Reading<List<AnalyticsResponse.PageViewCount>> reading = metricsReader.read(
+                                key, redis -> {
+                                        Map<Object, Object> pageViews = redis.opsForHash().entries(key);
+
+                                        return pageViews.entrySet().stream()
+                                                        .map(entry -> AnalyticsResponse.PageViewCount.builder()
+                                                                        .url((String) entry.getKey())
+                                                                        .views(((Number) entry.getValue()).longValue())
+                                                                        .build())
+                                                        .sorted(Comparator.comparingLong(
+                                                                        AnalyticsResponse.PageViewCount::getViews)
+                                                                        .reversed())
+                                                        .collect(Collectors.toList());
+                                });
+
+                List<AnalyticsResponse.PageViewCount> pages = reading.getValue() != null
+                                ? reading.getValue() : Collections.emptyList();
+
+                return AnalyticsResponse.TopPagesResponse.builder()
+                                .pages(pages.stream().limit(limit).collect(Collectors.toList()))
+                                .window(label)
+                                .stale(reading.isStale())
+                                .asOf(asOf(reading))
+                                .timestamp(Instant.now().toString())
+                                .build();
         }
 
         /**
-         * Get top pages by view count
+         * Get sessions of a specific user of a tenant active within a window
          */
-        public AnalyticsResponse.TopPagesResponse getTopPages(int limit) {
-                try {
-                        Map<Object, Object> pageViews = redisTemplate.opsForHash()
-                                        .entries(PAGE_VIEWS_KEY);
-
-                        List<AnalyticsResponse.PageViewCount> topPages = pageViews.entrySet().stream()
-                                        .map(entry -> {
-                                                String url = (String) entry.getKey();
-                                                Object viewsObj = entry.getValue();
-                                                long views = viewsObj instanceof Integer
-                                                                ? ((Integer) viewsObj).longValue()
-                                                                : (Long) viewsObj;
-
-                                                return AnalyticsResponse.PageViewCount.builder()
-                                                                .url(url)
-                                                                .views(views)
-                                                                .build();
-                                        })
-                                        .sorted(Comparator.comparingLong(
-                                                        AnalyticsResponse.PageViewCount::getViews).reversed())
-                                        .limit(limit)
-                                        .collect(Collectors.toList());
-
-                        return AnalyticsResponse.TopPagesResponse.builder()
-                                        .pages(topPages)
-                                        .timestamp(Instant.now().toString())
-                                        .build();
-
-                } catch (Exception e) {
-                        log.error("Error retrieving top pages: {}", e.getMessage());
-                        return AnalyticsResponse.TopPagesResponse.builder()
-                                        .pages(Collections.emptyList())
-                                        .timestamp(Instant.now().toString())
-                                        .build();
-                }
+        public AnalyticsResponse.ActiveSessionsResponse getActiveSessions(String tenant, String userId,
+                        Duration window) {
+                String label = WindowConfig.label(window);
+                String key = RealTimeProcessingService.userSessionsPrefix(tenant) + userId;
+                GuardedReader.Reading<List<String>> reading = metricsReader.read(
+                                key + ":" + label,
+                                redis -> sessionsSeenWithin(redis, key, window));
+
+                List<String> sessionList = reading.getValue() != null
+                                ? reading.getValue() : Collections.emptyList();
+
+                return AnalyticsResponse.ActiveSessionsResponse.builder()
+                                .userId(userId)
+                                .window(label)
+                                .activeSessions(sessionList.size())
+                                .sessions(sessionList)
+                                .stale(reading.isStale())
+                                .asOf(asOf(reading))
+                                .timestamp(Instant.now().toString())
+                                .build();
         }
 
         /**
-         * Get active sessions for a specific user
+         * Get a tenant's recent users with sessions active within a window (limit to specified count)
          */
-        public AnalyticsResponse.ActiveSessionsResponse getActiveSessions(String userId) {
-                try {
-                        String key = USER_SESSIONS_PREFIX + userId;
-
-                        Set<Object> sessions = redisTemplate.opsForSet().members(key);
-
-                        if (sessions != null && !sessions.isEmpty()) {
-                                List<String> sessionList = sessions.stream()
-                                                .map(Object::toString)
-                                                .collect(Collectors.toList());
-
-                                return AnalyticsResponse.ActiveSessionsResponse.builder()
-                                                .userId(userId)
-                                                .activeSessions(sessionList.size())
-                                                .sessions(sessionList)
-                                                .timestamp(Instant.now().toString())
-                                                .build();
-                        }
-
-                        return AnalyticsResponse.ActiveSessionsResponse.builder()
-                                        .userId(userId)
-                                        .activeSessions(0)
-                                        .sessions(Collections.emptyList())
-                                        .timestamp(Instant.now().toString())
-                                        .build();
-
-                } catch (Exception e) {
-                        log.error("Error retrieving active sessions for user {}: {}",
-                                        userId, e.getMessage());
-                        return AnalyticsResponse.ActiveSessionsResponse.builder()
-                                        .userId(userId)
-                                        .activeSessions(0)
-                                        .sessions(Collections.emptyList())
-                                        .timestamp(Instant.now().toString())
-                                        .build();
-                }
+        public AnalyticsResponse.RecentSessionsResponse getRecentActiveSessions(String tenant, int limit,
+                        Duration window) {
+                String label = WindowConfig.label(window);
+                String prefix = RealTimeProcessingService.userSessionsPrefix(tenant);
+                String usersKey = RealTimeProcessingService.sessionUsersKey(tenant);
+                GuardedReader.Reading<List<AnalyticsResponse.UserSessionInfo>> reading = metricsReader.read(
+                                usersKey + ":" + label, redis -> {
+                                        // Users seen within the window, from the tenant's last-seen index
+                                        long cutoff = System.currentTimeMillis() - window.toMillis();
+                                        Set<Object> userIds = redis.opsForZSet().rangeByScore(usersKey, cutoff,
+                                                        Double.POSITIVE_INFINITY);
+                                        if (userIds == null || userIds.isEmpty()) {
+                                                return Collections.emptyList();
+                                        }
+
+                                        List<AnalyticsResponse.UserSessionInfo> userSessions = new ArrayList<>();
+                                        for (Object user : userIds) {
+                                                String userId = user.toString();
+                                                List<String> sessionList = sessionsSeenWithin(redis, prefix + userId,
+                                                                window);
+
+                                                if (!sessionList.isEmpty()) {
+                                                        userSessions.add(AnalyticsResponse.UserSessionInfo.builder()
+                                                                        .userId(userId)
+                                                                        .activeSessions(sessionList.size())
+                                                                        .sessions(sessionList)
+                                                                        .build());
+                                                }
+                                        }
+                                        userSessions.sort((a, b) -> Long.compare(b.getActiveSessions(),
+                                                        a.getActiveSessions()));
+                                        return userSessions;
+                                });
+
+                List<AnalyticsResponse.UserSessionInfo> users = reading.getValue() != null
+                                ? reading.getValue() : Collections.emptyList();
+
+                return AnalyticsResponse.RecentSessionsResponse.builder()
+                                .users(users.stream().limit(limit).collect(Collectors.toList()))
+                                .window(label)
+                                .stale(reading.isStale())
+                                .asOf(asOf(reading))
+                                .timestamp(Instant.now().toString())
+                                .build();
         }
 
         /**
-         * Get recent users with active sessions (limit to specified count)
+         * Session ids from a user's session hash seen within the window, most recent first
          */
-        public AnalyticsResponse.RecentSessionsResponse getRecentActiveSessions(int limit) {
-                try {
-                        // Get all session keys from Redis
-                        Set<String> keys = redisTemplate.keys(USER_SESSIONS_PREFIX + "*");
-
-                        if (keys == null || keys.isEmpty()) {
-                                return AnalyticsResponse.RecentSessionsResponse.builder()
-                                                .users(Collections.emptyList())
-                                                .timestamp(Instant.now().toString())
-                                                .build();
-                        }
-
-                        List<AnalyticsResponse.UserSessionInfo> userSessions = new ArrayList<>();
-
-                        for (String key : keys) {
-                                String userId = key.replace(USER_SESSIONS_PREFIX, "");
-                                Set<Object> sessions = redisTemplate.opsForSet().members(key);
-
-                                if (sessions != null && !sessions.isEmpty()) {
-                                        List<String> sessionList = sessions.stream()
-                                                        .map(Object::toString)
-                                                        .collect(Collectors.toList());
+        private static List<String> sessionsSeenWithin(RedisTemplate<String, Object> redis, String key,
+                        Duration window) {
+                long cutoff = System.currentTimeMillis() - window.toMillis();
+                Map<Object, Object> sessions = redis.opsForHash().entries(key);
+
+                return sessions.entrySet().stream()
+                                .filter(entry -> entry.getValue() instanceof Number seen
+                                                && seen.longValue() >= cutoff)
+                                .sorted(Comparator.comparingLong(
+                                                (Map.Entry<Object, Object> entry) -> ((Number) entry.getValue()).longValue())
+                                                .reversed())
+                                .map(entry -> entry.getKey().toString())
+                                .collect(Collectors.toList());
+        }
 
-                                        userSessions.add(AnalyticsResponse.UserSessionInfo.builder()
-                                                        .userId(userId)
-                                                        .activeSessions(sessionList.size())
-                                                        .sessions(sessionList)
-                                                        .build());
-                                }
-                        }
-
-                        List<AnalyticsResponse.UserSessionInfo> topUsers = userSessions.stream()
-                                        .sorted((a, b) -> Long.compare(b.getActiveSessions(), a.getActiveSessions()))
-                                        .limit(limit)
-                                        .collect(Collectors.toList());
-
-                        return AnalyticsResponse.RecentSessionsResponse.builder()
-                                        .users(topUsers)
-                                        .timestamp(Instant.now().toString())
-                                        .build();
-
-                } catch (Exception e) {
-                        log.error("Error retrieving recent active sessions: {}", e.getMessage());
-                        return AnalyticsResponse.RecentSessionsResponse.builder()
-                                        .users(Collections.emptyList())
-                                        .timestamp(Instant.now().toString())
-                                        .build();
-                }
+        private static String asOf(GuardedReader.Reading<?> reading) {
+                return reading.getAsOf() != null ? reading.getAsOf().toString() : null;
         }
 }
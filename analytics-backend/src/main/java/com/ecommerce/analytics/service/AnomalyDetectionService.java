@@ -0,0 +1,188 @@
+package com.ecommerce.analytics.service;
+
+import com.ecommerce.analytics.aggregation.EventRateCounter;
+import com.ecommerce.analytics.aggregation.UserActivityState;
+import com.ecommerce.analytics.anomaly.AlertFeed;
+import com.ecommerce.analytics.anomaly.AnomalyAlert;
+import com.ecommerce.analytics.anomaly.SeriesDetector;
+import com.ecommerce.analytics.model.AnalyticsResponse;
+import com.ecommerce.analytics.tenant.TenantEvictedEvent;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeoutException;
+import java.util.stream.Collectors;
+
+/**
+ * Streaming anomaly detection on per-second traffic series.
+ *
+ * Once a second the event counts of the last interval are drained from every
+ * aggregation lane of each tenant and fed, together with the tenant's current
+ * active-user count, into that tenant's EWMA band detector. Series tracked:
+ * overall event rate ({@code events}), event rate per page
+ * ({@code events:page:<url>}), event rate per event type
+ * ({@code events:type:<type>}) and {@code active_users}. Each tenant has its
+ * own series budget and its own bounded feed of alerts, served over REST.
+ */
+@Service
+@Slf4j
+@RequiredArgsConstructor
+public class AnomalyDetectionService {
+
+    private static final Duration ACTIVE_USERS_WINDOW = Duration.ofMinutes(5);
+
+    private final EventAggregationService eventAggregationService;
+    private final MeterRegistry meterRegistry;
+
+    @Value("${anomaly.enabled:true}")
+    private boolean enabled;
+
+    @Value("${anomaly.alpha:0.05}")
+    private double alpha;
+
+    @Value("${anomaly.threshold:4.0}")
+    private double threshold;
+
+    @Value("${anomaly.min-deviation:5}")
+    private double minDeviation;
+
+    @Value("${anomaly.warmup-seconds:120}")
+    private int warmupSeconds;
+
+    @Value("${anomaly.cooldown-seconds:60}")
+    private int cooldownSeconds;
+
+    @Value("${anomaly.idle-minutes:10}")
+    private int idleMinutes;
+
+    @Value("${anomaly.max-series:50000}")
+    private int maxSeries;
+
+    @Value("${anomaly.feed-size:1000}")
+    private int feedSize;
+
+    private final Map<String, TenantDetector> tenants = new ConcurrentHashMap<>();
+
+    @PostConstruct
+    public void init() {
+        Gauge.builder("analytics.anomaly.series", tenants,
+                        t -> t.values().stream().mapToLong(d -> d.detector().seriesCount()).sum())
+                .register(meterRegistry);
+        Gauge.builder("analytics.anomaly.series.rejected", tenants,
+                        t -> t.values().stream().mapToLong(d -> d.detector().rejectedSeries()).sum())
+                .register(meterRegistry);
+    }
+
+    /**
+     * Sample every tenant's series and run detection, once a second
+     */
+    @Scheduled(fixedRate = 1000, initialDelay = 1000)
+    public void tick() {
+        if (!enabled) {
+            return;
+        }
+        try {
+            long now = System.currentTimeMillis();
+            for (String tenant : eventAggregationService.tenants()) {
+                try {
+                    tick(tenant, now);
+                } catch (TimeoutException e) {
+                    log.warn("Lanes of tenant {} did not answer in time for anomaly detection", tenant);
+                }
+            }
+
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (Exception e) {
+            log.error("Anomaly detection tick failed: {}", e.getMessage(), e);
+        }
+    }
+
+    private void tick(String tenant, long now) throws TimeoutException, InterruptedException {
+        EventRateCounter.Rates rates = EventRateCounter.Rates.merge(
+                eventAggregationService.queryLanes(tenant, EventRateCounter.class, EventRateCounter::drain));
+        long activeUsers = eventAggregationService.queryLanes(tenant, UserActivityState.class,
+                state -> state.activeUserCount(now, ACTIVE_USERS_WINDOW.toMillis()))
+                .stream().mapToLong(Long::longValue).sum();
+
+        TenantDetector tenantDetector = tenants.computeIfAbsent(tenant, t -> newDetector());
+        SeriesDetector detector = tenantDetector.detector();
+        detector.record("events", rates.getTotal(), now);
+        rates.getPages().forEach((page, count) -> detector.record("events:page:" + page, count, now));
+        rates.getEventTypes().forEach((type, count) -> detector.record("events:type:" + type, count, now));
+        detector.record("active_users", activeUsers, now);
+
+        for (AnomalyAlert alert : detector.advance(now)) {
+            AnomalyAlert stored = tenantDetector.feed().add(alert);
+            Counter.builder("analytics.anomaly.alerts")
+                    .tag("tenant", tenant)
+                    .tag("kind", stored.getKind().name())
+                    .register(meterRegistry)
+                    .increment();
+            log.warn("Anomaly {} on {} of tenant {}: {} vs expected {} (z={})", stored.getKind(), stored.getSeries(),
+                    tenant, stored.getValue(), String.format("%.1f", stored.getExpected()),
+                    String.format("%.1f", stored.getZScore()));
+        }
+    }
+
+    /**
+     * Forget the detector and alerts of a tenant the registry evicted
+     */
+    @EventListener(TenantEvictedEvent.class)
+    public void onTenantEvicted(TenantEvictedEvent evicted) {
+        tenants.remove(evicted.getTenant());
+    }
+
+    private TenantDetector newDetector() {
+        return new TenantDetector(new SeriesDetector(alpha, threshold, minDeviation, warmupSeconds,
+                Duration.ofSeconds(cooldownSeconds).toMillis(), Duration.ofMinutes(idleMinutes).toMillis(), maxSeries),
+                new AlertFeed(feedSize));
+    }
+
+    /**
+     * A tenant's alerts newer than {@code afterId}, newest first
+     */
+    public AnalyticsResponse.AlertsResponse getAlerts(String tenant, long afterId, int limit) {
+        TenantDetector tenantDetector = tenants.get(tenant);
+        if (tenantDetector == null) {
+            return AnalyticsResponse.AlertsResponse.builder()
+                    .alerts(List.of())
+                    .trackedSeries(0)
+                    .timestamp(Instant.now().toString())
+                    .build();
+        }
+        List<AnalyticsResponse.AlertInfo> alerts = tenantDetector.feed().since(afterId, limit).stream()
+                .map(alert -> AnalyticsResponse.AlertInfo.builder()
+                        .id(alert.getId())
+                        .series(alert.getSeries())
+                        .kind(alert.getKind().name())
+                        .value(alert.getValue())
+                        .expected(alert.getExpected())
+                        .zScore(Double.isInfinite(alert.getZScore()) ? null : alert.getZScore())
+                        .detectedAt(Instant.ofEpochMilli(alert.getDetectedAtMillis()).toString())
+                        .build())
+                .collect(Collectors.toList());
+
+        return AnalyticsResponse.AlertsResponse.builder()
+                .alerts(alerts)
+                .trackedSeries(tenantDetector.detector().seriesCount())
+                .timestamp(Instant.now().toString())
+                .build();
+    }
+
+    private record TenantDetector(SeriesDetector detector, AlertFeed feed) {
+    }
+}
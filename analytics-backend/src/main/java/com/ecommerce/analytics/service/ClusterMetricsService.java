@@ -0,0 +1,266 @@
+package com.ecommerce.analytics.service;
+
+import com.ecommerce.analytics.aggregation.ActivitySnapshot;
+import com.ecommerce.analytics.config.WindowConfig;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.data.redis.core.script.RedisScript;
+import org.springframework.stereotype.Service;
+
+import java.net.InetAddress;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Coordinates metric processing across several backend replicas.
+ *
+ * Each replica only aggregates the events it ingested itself and publishes
+ * that partial state, per tenant, to Redis under its own keys: per window,
+ * active users as a HyperLogLog and page views as a hash; plus per-user
+ * sessions with their last-seen times as a hash. A tenant's partial keys of
+ * all replicas share the tenant's hash tag, so they can be merged in one
+ * command on a Redis Cluster too. Every partial is written to a scratch key
+ * and renamed into place, so readers never see a half-written partial. One
+ * replica at a time holds a Redis lease and finalizes: it unions the
+ * HyperLogLogs, sums the page-view hashes and merges the sessions of all
+ * live replicas into the public metric keys, for every tenant any live
+ * replica has published.
+ */
+@Service
+@Slf4j
+@RequiredArgsConstructor
+public class ClusterMetricsService {
+
+    private static final String REPLICAS_KEY = "metrics:replicas";
+    private static final String TENANTS_KEY = "metrics:tenants";
+    private static final String LEASE_KEY = "metrics:finalizer:lease";
+    private static final String PARTIAL_PREFIX = "metrics:partial:";
+
+    private static final RedisScript<Long> RENEW_LEASE = new DefaultRedisScript<>(
+            "if redis.call('get', KEYS[1]) == ARGV[1] then "
+                    + "return redis.call('pexpire', KEYS[1], ARGV[2]) else return 0 end", Long.class);
+    private static final RedisScript<Long> RELEASE_LEASE = new DefaultRedisScript<>(
+            "if redis.call('get', KEYS[1]) == ARGV[1] then "
+                    + "return redis.call('del', KEYS[1]) else return 0 end", Long.class);
+
+    private final RedisTemplate<String, Object> redisTemplate;
+    private final WindowConfig windowConfig;
+
+    @Value("${cluster.enabled:false}")
+    @Getter
+    private boolean enabled;
+
+    @Value("${cluster.instance-id:}")
+    private String configuredInstanceId;
+
+    @Value("${cluster.lease-ttl-seconds:30}")
+    private int leaseTtlSeconds;
+
+    @Getter
+    private String instanceId;
+
+    private volatile boolean leaseHeld;
+
+    @PostConstruct
+    public void init() {
+        instanceId = configuredInstanceId == null || configuredInstanceId.isBlank()
+                ? defaultInstanceId()
+                : configuredInstanceId;
+        if (enabled) {
+            log.info("Cluster mode enabled as replica {} (lease TTL {}s)", instanceId, leaseTtlSeconds);
+        }
+    }
+
+    /**
+     * Replace this replica's partial state of a tenant in Redis and refresh its heartbeat
+     */
+    public void publishPartial(String tenant, ActivitySnapshot snapshot) {
+        long ttlSeconds = leaseTtlSeconds;
+
+        List<Duration> windows = windowConfig.getAvailable();
+        for (int w = 0; w < windows.size(); w++) {
+            String label = WindowConfig.label(windows.get(w));
+            String usersKey = partialKey(tenant, instanceId, "users:" + label);
+            List<String> userIds = snapshot.getActiveUserIds(w);
+            if (userIds.isEmpty()) {
+                redisTemplate.delete(usersKey);
+            } else {
+                String scratch = scratchKey(usersKey);
+                redisTemplate.delete(scratch);
+                redisTemplate.opsForHyperLogLog().add(scratch, userIds.toArray());
+                replace(scratch, usersKey, ttlSeconds);
+            }
+
+            replaceHash(partialKey(tenant, instanceId, "page_views:" + label), snapshot.getPageViews(w), ttlSeconds);
+        }
+        replaceHash(partialKey(tenant, instanceId, "sessions"), snapshot.getUserSessions(), ttlSeconds);
+
+        long now = System.currentTimeMillis();
+        redisTemplate.opsForZSet().add(TENANTS_KEY, tenant, now);
+        redisTemplate.opsForZSet().add(REPLICAS_KEY, instanceId, now);
+    }
+
+    /**
+     * Acquire or renew the finalization lease
+     *
+     * @return true if this replica holds the lease until the next call
+     */
+    public boolean tryAcquireLease() {
+        long ttlMillis = TimeUnit.SECONDS.toMillis(leaseTtlSeconds);
+        boolean held;
+        Long renewed = redisTemplate.execute(RENEW_LEASE, List.of(LEASE_KEY), instanceId, ttlMillis);
+        if (renewed != null && renewed == 1L) {
+            held = true;
+        } else {
+            held = Boolean.TRUE.equals(
+                    redisTemplate.opsForValue().setIfAbsent(LEASE_KEY, instanceId, Duration.ofMillis(ttlMillis)));
+        }
+
+        if (held != leaseHeld) {
+            log.info(held ? "Replica {} acquired the metrics finalization lease"
+                    : "Replica {} lost the metrics finalization lease", instanceId);
+        }
+        leaseHeld = held;
+        return held;
+    }
+
+    /**
+     * Whether this replica held the lease at its last acquisition attempt
+     */
+    public boolean holdsLease() {
+        return leaseHeld;
+    }
+
+    /**
+     * Tenants some replica published partial state for within the lease TTL
+     */
+    public Set<String> liveTenants() {
+        redisTemplate.opsForZSet().removeRangeByScore(TENANTS_KEY, 0,
+                System.currentTimeMillis() - TimeUnit.SECONDS.toMillis(leaseTtlSeconds));
+        Set<Object> tenants = redisTemplate.opsForZSet().range(TENANTS_KEY, 0, -1);
+        Set<String> live = new HashSet<>();
+        if (tenants != null) {
+            tenants.forEach(tenant -> live.add(tenant.toString()));
+        }
+        return live;
+    }
+
+    /**
+     * Merge a tenant's partial state of every live replica
+     */
+    public ActivitySnapshot mergePartials(String tenant) {
+        long now = System.currentTimeMillis();
+        redisTemplate.opsForZSet().removeRangeByScore(REPLICAS_KEY, 0,
+                now - TimeUnit.SECONDS.toMillis(leaseTtlSeconds));
+        Set<Object> replicas = redisTemplate.opsForZSet().range(REPLICAS_KEY, 0, -1);
+
+        List<Duration> windows = windowConfig.getAvailable();
+        ActivitySnapshot merged = ActivitySnapshot.empty(windows.size());
+        if (replicas == null || replicas.isEmpty()) {
+            return merged;
+        }
+
+        for (int w = 0; w < windows.size(); w++) {
+            String label = WindowConfig.label(windows.get(w));
+            List<String> userKeys = new ArrayList<>();
+            Map<String, Long> pageViews = merged.getPageViews(w);
+            for (Object replica : replicas) {
+                String replicaId = replica.toString();
+                userKeys.add(partialKey(tenant, replicaId, "users:" + label));
+                redisTemplate.opsForHash().entries(partialKey(tenant, replicaId, "page_views:" + label))
+                        .forEach((page, views) -> pageViews.merge((String) page, ((Number) views).longValue(),
+                                Long::sum));
+            }
+            merged.setActiveUsers(w, redisTemplate.opsForHyperLogLog().size(userKeys.toArray(new String[0])));
+        }
+
+        Map<String, Map<String, Long>> sessions = merged.getUserSessions();
+        for (Object replica : replicas) {
+            redisTemplate.opsForHash().entries(partialKey(tenant, replica.toString(), "sessions"))
+                    .forEach((userId, userSessions) -> {
+                        Map<String, Long> target = sessions.computeIfAbsent((String) userId, id -> new HashMap<>());
+                        toLastSeen(userSessions).forEach((sessionId, seen) -> target.merge(sessionId, seen, Math::max));
+                    });
+        }
+        return merged;
+    }
+
+    /**
+     * Per-instance scratch key for building a value before renaming it over {@code key}
+     */
+    public String scratchKey(String key) {
+        return key + ":next:" + instanceId;
+    }
+
+    /**
+     * Atomically move a fully written scratch key over the live key
+     */
+    public void replace(String scratch, String key, long ttlSeconds) {
+        redisTemplate.expire(scratch, ttlSeconds, TimeUnit.SECONDS);
+        redisTemplate.rename(scratch, key);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        if (!enabled) {
+            return;
+        }
+        try {
+            redisTemplate.opsForZSet().remove(REPLICAS_KEY, instanceId);
+            if (leaseHeld) {
+                redisTemplate.execute(RELEASE_LEASE, List.of(LEASE_KEY), instanceId);
+            }
+        } catch (Exception e) {
+            log.warn("Could not deregister replica {}: {}", instanceId, e.getMessage());
+        }
+    }
+
+    private void replaceHash(String key, Map<String, ?> entries, long ttlSeconds) {
+        if (entries.isEmpty()) {
+            redisTemplate.delete(key);
+            return;
+        }
+        String scratch = scratchKey(key);
+        redisTemplate.delete(scratch);
+        redisTemplate.opsForHash().putAll(scratch, entries);
+        replace(scratch, key, ttlSeconds);
+    }
+
+    private static Map<String, Long> toLastSeen(Object value) {
+        Map<String, Long> lastSeen = new HashMap<>();
+        if (value instanceof Map<?, ?> map) {
+            map.forEach((sessionId, seen) -> {
+                if (seen instanceof Number number) {
+                    lastSeen.put(sessionId.toString(), number.longValue());
+                }
+            });
+        }
+        return lastSeen;
+    }
+
+    private static String partialKey(String tenant, String replicaId, String metric) {
+        return PARTIAL_PREFIX + "{" + tenant + "}:" + replicaId + ":" + metric;
+    }
+
+    private static String defaultInstanceId() {
+        String host;
+        try {
+            host = InetAddress.getLocalHost().getHostName();
+        } catch (Exception e) {
+            host = "backend";
+        }
+        return host + "-" + ProcessHandle.current().pid();
+    }
+}
@@ -0,0 +1,534 @@
+package com.ecommerce.analytics.service;
+
+import com.ecommerce.analytics.aggregation.ActivitySnapshot;
+import com.ecommerce.analytics.aggregation.AggregationLanes;
+import com.ecommerce.analytics.aggregation.CheckpointFile;
+import com.ecommerce.analytics.aggregation.EventTimeWatermark;
+import com.ecommerce.analytics.aggregation.LaneHandler;
+import com.ecommerce.analytics.aggregation.LaneHandlerFactory;
+import com.ecommerce.analytics.aggregation.UserActivityState;
+import com.ecommerce.analytics.config.WindowConfig;
+import com.ecommerce.analytics.model.UserEvent;
+import com.ecommerce.analytics.tenant.TenantEvictedEvent;
+import com.ecommerce.analytics.tenant.TenantRegistry;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.Meter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tags;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.Function;
+import java.util.stream.Stream;
+
+/**
+ * Incremental in-process aggregation of ingested events.
+ *
+ * Every tenant has its own set of single-writer {@link AggregationLanes},
+ * created on its first event; within a tenant, events are partitioned by
+ * userId. Each lane owns a {@link UserActivityState} plus whatever additional
+ * {@link LaneHandlerFactory} beans contribute. Windowed metrics of a tenant
+ * are produced by asking each of its lanes for its partial result and merging
+ * them. Since tenants share no queues or threads, a backlog in one tenant's
+ * lanes never holds up another's events or queries. Only tenants admitted by
+ * the {@link TenantRegistry} get lanes, including those restored or replayed
+ * at startup, and a tenant's lanes are closed when the registry evicts it.
+ *
+ * Events are aggregated in event time: their client timestamp, capped at the
+ * time they arrived. Each lane's watermark trails the newest event time by
+ * {@code aggregation.watermark.max-out-of-orderness-ms}; events up to
+ * {@code aggregation.allowed-lateness-seconds} behind it still count in the
+ * buckets of their own time, later ones are dropped.
+ *
+ * The lanes' state is checkpointed to local disk, one file per tenant, every
+ * {@code aggregation.checkpoint.interval-ms} and on shutdown. On startup the
+ * newest checkpoints are restored before traffic is accepted, and only the
+ * events that arrived after them (less those they list as already applied)
+ * are replayed from MongoDB; tenants without a usable checkpoint get the
+ * whole retained window. With the write-ahead log enabled, replay first waits
+ * for the events the previous process left in the log to reach MongoDB.
+ */
+@Service
+@Slf4j
+@RequiredArgsConstructor
+public class EventAggregationService {
+
+    private static final long QUERY_TIMEOUT_MS = 5000;
+    private static final long CHECKPOINT_TIMEOUT_MS = 30_000;
+    private static final String CHECKPOINT_SUFFIX = ".ckpt";
+
+    private final MongoTemplate mongoTemplate;
+    private final MeterRegistry meterRegistry;
+    private final ObjectProvider<LaneHandlerFactory> laneHandlerFactories;
+    private final WindowConfig windowConfig;
+    private final ApplicationEventPublisher eventPublisher;
+    private final TenantRegistry tenantRegistry;
+    private final WriteAheadLogService writeAheadLogService;
+
+    @Value("${aggregation.lanes:1}")
+    private int laneCount;
+
+    @Value("${aggregation.queue-capacity:16384}")
+    private int queueCapacity;
+
+    @Value("${aggregation.retention-minutes:15}")
+    private int retentionMinutes;
+
+    @Value("${aggregation.watermark.max-out-of-orderness-ms:5000}")
+    private long maxOutOfOrdernessMillis;
+
+    @Value("${aggregation.allowed-lateness-seconds:300}")
+    private long allowedLatenessSeconds;
+
+    @Value("${aggregation.checkpoint.enabled:true}")
+    private boolean checkpointEnabled;
+
+    @Value("${aggregation.checkpoint.directory:./data/checkpoint}")
+    private String checkpointDirectory;
+
+    @Value("${aggregation.checkpoint.replay-overlap-ms:10000}")
+    private long replayOverlapMillis;
+
+    @Value("${aggregation.replay.wal-timeout-ms:60000}")
+    private long replayWalTimeoutMillis;
+
+    @Value("${cluster.enabled:false}")
+    private boolean clusterEnabled;
+
+    private final Map<String, AggregationLanes> tenantLanes = new ConcurrentHashMap<>();
+    private final Map<String, List<Meter>> tenantMeters = new ConcurrentHashMap<>();
+    private List<LaneHandlerFactory> factories;
+    private int lanesPerTenant;
+    private long retentionMillis;
+    private long startedAt;
+    private final Map<String, Instant> replayFrom = new HashMap<>();
+    private Set<String> checkpointedIds = new HashSet<>();
+    private volatile boolean ready;
+    private Timer checkpointTimer;
+    private final Map<String, Long> checkpointBytes = new ConcurrentHashMap<>();
+
+    @PostConstruct
+    public void start() {
+        lanesPerTenant = laneCount > 0 ? laneCount : Runtime.getRuntime().availableProcessors();
+        // Lanes must hold enough history for the longest configured window
+        retentionMillis = Math.max(Duration.ofMinutes(retentionMinutes).toMillis(),
+                windowConfig.longest().toMillis());
+
+        factories = new ArrayList<>();
+        factories.add(lane -> new UserActivityState(retentionMillis));
+        laneHandlerFactories.orderedStream().forEach(factories::add);
+
+        if (checkpointEnabled) {
+            restoreCheckpoints();
+        }
+        startedAt = System.currentTimeMillis();
+
+        Gauge.builder("analytics.tenants.active", tenantLanes, Map::size)
+                .description("Tenants with aggregation lanes on this instance")
+                .register(meterRegistry);
+        checkpointTimer = Timer.builder("analytics.aggregation.checkpoint.write").register(meterRegistry);
+        Gauge.builder("analytics.aggregation.checkpoint.size", checkpointBytes,
+                        sizes -> sizes.values().stream().mapToLong(Long::longValue).sum())
+                .baseUnit("bytes")
+                .register(meterRegistry);
+
+        log.info("Aggregating with {} lanes per tenant (retention {} minutes, allowed lateness {}s)",
+                lanesPerTenant, Duration.ofMillis(retentionMillis).toMinutes(), allowedLatenessSeconds);
+    }
+
+    /**
+     * Bring the lanes up to date so metrics are correct right after a restart:
+     * replay from MongoDB what the restored checkpoint lacks (or the whole
+     * retained window without one), then announce readiness
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void warmUp() {
+        long replayed = 0;
+        try {
+            if (clusterEnabled) {
+                // MongoDB holds every replica's events; replaying them here would count other replicas' share twice
+                log.info("Cluster mode: aggregation lanes fill from this replica's ingestion only");
+            } else {
+                replayed = replay();
+            }
+        } finally {
+            boolean restored = !replayFrom.isEmpty();
+            checkpointedIds = Set.of();
+            replayFrom.clear();
+            ready = true;
+            log.info("Aggregation state ready {} ms after JVM start",
+                    System.currentTimeMillis() - ManagementFactory.getRuntimeMXBean().getStartTime());
+            eventPublisher.publishEvent(new AggregationReadyEvent(restored, replayed));
+        }
+    }
+
+    /**
+     * Whether the lanes hold the full retained window yet
+     */
+    public boolean isReady() {
+        return ready;
+    }
+
+    /**
+     * Save every tenant's lane state so a restart only replays what came after it
+     */
+    @Scheduled(fixedDelayString = "${aggregation.checkpoint.interval-ms:60000}",
+            initialDelayString = "${aggregation.checkpoint.interval-ms:60000}")
+    public void writeCheckpoint() {
+        if (!checkpointEnabled || !ready) {
+            return;
+        }
+        long takenAt = System.currentTimeMillis();
+        // Events that arrived shortly before may still be on their way to a lane:
+        // ids of the ones applied since are listed, the rest will be replayed
+        long replayFromMillis = takenAt - replayOverlapMillis;
+        long started = System.nanoTime();
+        for (Map.Entry<String, AggregationLanes> entry : tenantLanes.entrySet()) {
+            Path file = checkpointFile(entry.getKey());
+            try {
+                List<byte[]> states = entry.getValue().checkpoint(replayFromMillis, CHECKPOINT_TIMEOUT_MS);
+                checkpointBytes.put(entry.getKey(), CheckpointFile.write(file, takenAt, replayFromMillis, states));
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            } catch (Exception e) {
+                log.warn("Could not write aggregation checkpoint {}: {}", file, e.getMessage());
+            }
+        }
+        checkpointTimer.record(System.nanoTime() - started, TimeUnit.NANOSECONDS);
+        log.debug("Wrote aggregation checkpoints of {} tenants in {} ms", tenantLanes.size(),
+                TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - started));
+    }
+
+    /**
+     * Route an ingested event to its tenant's lane, starting the tenant's lanes on its first event
+     */
+    public void publish(UserEvent event) {
+        lanesFor(event.getTenant()).publish(event);
+    }
+
+    /**
+     * Close an evicted tenant's lanes and drop its checkpoint, so its state
+     * is neither kept nor restored
+     */
+    @EventListener(TenantEvictedEvent.class)
+    public void onTenantEvicted(TenantEvictedEvent evicted) {
+        String tenant = evicted.getTenant();
+        AggregationLanes lanes = tenantLanes.remove(tenant);
+        if (lanes == null) {
+            return;
+        }
+        lanes.close();
+        List<Meter> meters = tenantMeters.remove(tenant);
+        if (meters != null) {
+            meters.forEach(meterRegistry::remove);
+        }
+        checkpointBytes.remove(tenant);
+        try {
+            Files.deleteIfExists(checkpointFile(tenant));
+        } catch (IOException e) {
+            log.warn("Could not delete aggregation checkpoint of evicted tenant {}: {}", tenant, e.getMessage());
+        }
+        log.info("Closed aggregation lanes of evicted tenant {}", tenant);
+    }
+
+    /**
+     * Tenants with aggregation state on this instance
+     */
+    public Set<String> tenants() {
+        return Set.copyOf(tenantLanes.keySet());
+    }
+
+    /**
+     * User, session and page-view figures of a tenant for every configured
+     * window, merged across its lanes, optionally listing the active user ids
+     */
+    public ActivitySnapshot snapshot(String tenant, boolean includeUserIds)
+            throws TimeoutException, InterruptedException {
+        long now = System.currentTimeMillis();
+        long[] windows = windowConfig.windowMillis();
+        AggregationLanes lanes = tenantLanes.get(tenant);
+        if (lanes == null) {
+            return ActivitySnapshot.empty(windows.length);
+        }
+        return ActivitySnapshot.merge(lanes.query(UserActivityState.class,
+                state -> state.snapshot(now, windows, includeUserIds),
+                QUERY_TIMEOUT_MS));
+    }
+
+    /**
+     * Collect one partial result per lane of the tenant from the given handler
+     * type; none if the tenant has no events yet
+     */
+    public <H extends LaneHandler, R> List<R> queryLanes(String tenant, Class<H> handlerType, Function<H, R> reader)
+            throws TimeoutException, InterruptedException {
+        AggregationLanes lanes = tenantLanes.get(tenant);
+        return lanes == null ? List.of() : lanes.query(handlerType, reader, QUERY_TIMEOUT_MS);
+    }
+
+    /**
+     * Run a read on the tenant's lane that owns the given user; empty if the tenant has no events yet
+     */
+    public <H extends LaneHandler, R> Optional<R> queryUserLane(String tenant, String userId, Class<H> handlerType,
+            Function<H, R> reader) throws TimeoutException, InterruptedException {
+        AggregationLanes lanes = tenantLanes.get(tenant);
+        if (lanes == null) {
+            return Optional.empty();
+        }
+        return Optional.ofNullable(lanes.queryLane(lanes.laneFor(userId), handlerType, reader, QUERY_TIMEOUT_MS));
+    }
+
+    /**
+     * Time an event is aggregated under: its event time, but never later than
+     * its arrival (client clocks running ahead would otherwise push it into
+     * the future). Events stored before event times were recorded fall back
+     * to their arrival time.
+     */
+    static long aggregationTime(UserEvent event) {
+        long arrival = event.getCreatedAt() != null ? event.getCreatedAt().toEpochMilli() : System.currentTimeMillis();
+        return event.getEventTime() != null ? Math.min(event.getEventTime(), arrival) : arrival;
+    }
+
+    private AggregationLanes lanesFor(String tenant) {
+        AggregationLanes lanes = tenantLanes.get(tenant);
+        return lanes != null ? lanes : tenantLanes.computeIfAbsent(tenant, t -> startLanes(t, createLanes()));
+    }
+
+    private AggregationLanes createLanes() {
+        AggregationLanes created = new AggregationLanes(lanesPerTenant, queueCapacity, factories,
+                EventAggregationService::aggregationTime,
+                maxOutOfOrdernessMillis, TimeUnit.SECONDS.toMillis(allowedLatenessSeconds));
+        if (checkpointEnabled) {
+            // Long enough to still hold every id a checkpoint asks for
+            created.trackAppliedEvents(2 * replayOverlapMillis);
+        }
+        return created;
+    }
+
+    private AggregationLanes startLanes(String tenant, AggregationLanes lanes) {
+        lanes.setName(tenant);
+        lanes.start();
+        List<Meter> meters = new ArrayList<>();
+        for (int i = 0; i < lanes.laneCount(); i++) {
+            int lane = i;
+            Tags tags = Tags.of("tenant", tenant, "lane", String.valueOf(lane));
+            meters.add(Gauge.builder("analytics.lanes.queue.depth", lanes, l -> l.queueDepth(lane))
+                    .tags(tags)
+                    .register(meterRegistry));
+            meters.add(FunctionCounter.builder("analytics.lanes.events", lanes, l -> l.processedEvents(lane))
+                    .tags(tags)
+                    .register(meterRegistry));
+            meters.add(Gauge.builder("analytics.lanes.watermark.lag", lanes, l -> watermarkLag(l.watermark(lane)))
+                    .tags(tags)
+                    .baseUnit("milliseconds")
+                    .register(meterRegistry));
+            meters.add(FunctionCounter.builder("analytics.lanes.events.late", lanes, l -> l.lateEvents(lane))
+                    .tags(tags)
+                    .tag("outcome", "applied")
+                    .register(meterRegistry));
+            meters.add(FunctionCounter.builder("analytics.lanes.events.late", lanes, l -> l.droppedEvents(lane))
+                    .tags(tags)
+                    .tag("outcome", "dropped")
+                    .register(meterRegistry));
+        }
+        meters.add(FunctionCounter.builder("analytics.lanes.backpressure.waits", lanes,
+                        AggregationLanes::backpressureWaits)
+                .tag("tenant", tenant)
+                .register(meterRegistry));
+        tenantMeters.put(tenant, meters);
+        log.info("Started {} aggregation lanes for tenant {}", lanes.laneCount(), tenant);
+        return lanes;
+    }
+
+    private Path checkpointFile(String tenant) {
+        return Path.of(checkpointDirectory).resolve(tenant + CHECKPOINT_SUFFIX);
+    }
+
+    /**
+     * Start lanes for every tenant with a checkpoint and load it into them;
+     * on any problem with a tenant's checkpoint its lanes start empty and its
+     * whole window is replayed
+     */
+    private void restoreCheckpoints() {
+        Path directory = Path.of(checkpointDirectory);
+        if (!Files.isDirectory(directory)) {
+            log.info("No aggregation checkpoints in {}; rebuilding from MongoDB", directory);
+            return;
+        }
+        List<String> tenants = new ArrayList<>();
+        try (Stream<Path> files = Files.list(directory)) {
+            files.map(file -> file.getFileName().toString())
+                    .filter(name -> name.endsWith(CHECKPOINT_SUFFIX))
+                    .map(name -> name.substring(0, name.length() - CHECKPOINT_SUFFIX.length()))
+                    .filter(UserEvent::isValidTenant)
+                    .forEach(tenants::add);
+        } catch (IOException e) {
+            log.warn("Could not list aggregation checkpoints in {}: {}; rebuilding from MongoDB", directory,
+                    e.getMessage());
+            return;
+        }
+        for (String tenant : tenants) {
+            if (!tenantRegistry.register(tenant)) {
+                log.warn("Not restoring aggregation checkpoint of tenant {}: tenant limit reached", tenant);
+                continue;
+            }
+            AggregationLanes lanes = restoreCheckpoint(tenant);
+            tenantLanes.put(tenant, startLanes(tenant, lanes));
+        }
+    }
+
+    private AggregationLanes restoreCheckpoint(String tenant) {
+        Path file = checkpointFile(tenant);
+        AggregationLanes lanes = createLanes();
+        try {
+            CheckpointFile.Contents checkpoint = CheckpointFile.read(file);
+            if (checkpoint == null) {
+                return lanes;
+            }
+            long ageMillis = System.currentTimeMillis() - checkpoint.getTakenAtMillis();
+            if (ageMillis > retentionMillis) {
+                log.info("Aggregation checkpoint of tenant {} is {}s old, beyond the retention; rebuilding from "
+                        + "MongoDB", tenant, ageMillis / 1000);
+                return lanes;
+            }
+            long started = System.nanoTime();
+            checkpointedIds.addAll(lanes.restore(checkpoint.getLaneStates()));
+            replayFrom.put(tenant, Instant.ofEpochMilli(checkpoint.getReplayFromMillis()));
+            log.info("Restored aggregation checkpoint of tenant {} taken {}s ago in {} ms", tenant, ageMillis / 1000,
+                    TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - started));
+            return lanes;
+        } catch (IOException | RuntimeException e) {
+            log.warn("Could not restore aggregation checkpoint {}: {}; rebuilding from MongoDB", file, e.getMessage());
+            // Drop whatever was partially restored
+            return createLanes();
+        }
+    }
+
+    /**
+     * Replay stored events up to startup: each restored tenant from its
+     * checkpoint, every other tenant from the retention cutoff. Later events
+     * reach the lanes through ingestion.
+     *
+     * @return the number of events replayed
+     */
+    private long replay() {
+        awaitWriteAheadLog();
+        Instant until = Instant.ofEpochMilli(startedAt);
+        long count = 0;
+        for (Map.Entry<String, Instant> restored : replayFrom.entrySet()) {
+            count += replay("tenant " + restored.getKey(), tenantCriteria(restored.getKey()), restored.getValue(),
+                    until);
+        }
+
+        List<String> restoredTenants = new ArrayList<>(replayFrom.keySet());
+        if (replayFrom.containsKey(UserEvent.DEFAULT_TENANT)) {
+            // Events stored before tenants existed belong to the default tenant
+            restoredTenants.add(null);
+        }
+        Criteria others = restoredTenants.isEmpty() ? null : Criteria.where("tenantId").nin(restoredTenants);
+        count += replay(replayFrom.isEmpty() ? "all tenants" : "tenants without a checkpoint", others,
+                Instant.ofEpochMilli(startedAt - retentionMillis), until);
+        return count;
+    }
+
+    /**
+     * Acknowledged events still in the write-ahead log are not in MongoDB yet;
+     * let the applier write them before reading them back
+     */
+    private void awaitWriteAheadLog() {
+        try {
+            if (!writeAheadLogService.awaitCaughtUp(replayWalTimeoutMillis)) {
+                log.warn("Write-ahead log not applied within {} ms; events still in it are missing from the "
+                        + "replayed windows", replayWalTimeoutMillis);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private long replay(String tenants, Criteria tenantCriteria, Instant from, Instant until) {
+        Criteria criteria = Criteria.where("createdAt").gte(from).lt(until);
+        if (tenantCriteria != null) {
+            criteria = new Criteria().andOperator(criteria, tenantCriteria);
+        }
+        long count = 0;
+        long skipped = 0;
+        Set<String> refused = new HashSet<>();
+        try (Stream<UserEvent> events = mongoTemplate.stream(Query.query(criteria), UserEvent.class)) {
+            for (UserEvent event : (Iterable<UserEvent>) events::iterator) {
+                if (checkpointedIds.contains(event.getId())) {
+                    skipped++;
+                    continue;
+                }
+                String tenant = event.getTenant();
+                if (refused.contains(tenant)
+                        || (!tenantLanes.containsKey(tenant) && !tenantRegistry.register(tenant))) {
+                    refused.add(tenant);
+                    continue;
+                }
+                // Replayed history lies behind the live events ingested meanwhile; none of it is too late
+                lanesFor(tenant).backfill(event);
+                count++;
+            }
+            log.info("Replayed {} events of {} since {} into the aggregation lanes ({} already checkpointed)",
+                    count, tenants, from, skipped);
+            if (!refused.isEmpty()) {
+                log.warn("Skipped replaying events of {} tenants beyond the tenant limit: {}", refused.size(),
+                        refused);
+            }
+        } catch (Exception e) {
+            log.warn("Could not replay events of {} into the aggregation lanes after {} events: {}", tenants, count,
+                    e.getMessage());
+        }
+        return count;
+    }
+
+    /**
+     * Events of a tenant; events stored before tenants existed belong to the default one
+     */
+    static Criteria tenantCriteria(String tenant) {
+        return UserEvent.DEFAULT_TENANT.equals(tenant)
+                ? Criteria.where("tenantId").in(tenant, null)
+                : Criteria.where("tenantId").is(tenant);
+    }
+
+    private static double watermarkLag(long watermark) {
+        return watermark == EventTimeWatermark.NONE ? 0 : System.currentTimeMillis() - watermark;
+    }
+
+    @PreDestroy
+    public void stop() {
+        writeCheckpoint();
+        tenantLanes.values().forEach(AggregationLanes::close);
+    }
+}
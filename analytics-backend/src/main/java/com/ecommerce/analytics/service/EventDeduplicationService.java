@@ -0,0 +1,192 @@
+package com.ecommerce.analytics.service;
+
+import com.ecommerce.analytics.dedup.TimePartitionedBloomFilter;
+import com.ecommerce.analytics.model.UserEvent;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.index.IndexOperations;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.function.ToDoubleFunction;
+
+/**
+ * Detects retried events by their optional client-supplied event ID.
+ *
+ * Recently seen IDs are kept exactly in a bounded LRU map; older ones are
+ * remembered by a {@link TimePartitionedBloomFilter} covering the dedup
+ * window. An ID the filter has never seen is new, so the common path never
+ * touches MongoDB. Only when the filter answers "maybe" for an ID the LRU no
+ * longer holds is the event store asked, together with the write-ahead log
+ * for events acknowledged but not yet in MongoDB. IDs are scoped by tenant, so two
+ * storefronts may use the same ID. The unique {@code (tenantId, eventId)}
+ * index remains the backstop for concurrent retries.
+ */
+@Service
+@Slf4j
+@RequiredArgsConstructor
+public class EventDeduplicationService {
+
+    /**
+     * Unique index on eventId alone, created before IDs were scoped by tenant
+     */
+    private static final String LEGACY_INDEX = "eventId";
+
+    private final MongoTemplate mongoTemplate;
+    private final WriteAheadLogService writeAheadLogService;
+    private final MeterRegistry meterRegistry;
+
+    @Value("${dedup.enabled:true}")
+    private boolean enabled;
+
+    @Value("${dedup.window-minutes:60}")
+    private int windowMinutes;
+
+    @Value("${dedup.partitions:6}")
+    private int partitions;
+
+    @Value("${dedup.expected-ids-per-partition:200000}")
+    private long expectedIdsPerPartition;
+
+    @Value("${dedup.false-positive-rate:0.001}")
+    private double falsePositiveRate;
+
+    @Value("${dedup.recent-ids:100000}")
+    private int recentIdsCapacity;
+
+    private final Object lock = new Object();
+    private TimePartitionedBloomFilter filter;
+    private Map<String, Boolean> recentIds;
+
+    private Counter recentHits;
+    private Counter storeHits;
+    private Counter walHits;
+    private Counter storeLookups;
+
+    @PostConstruct
+    public void init() {
+        filter = new TimePartitionedBloomFilter(partitions, Duration.ofMinutes(windowMinutes).toMillis(),
+                expectedIdsPerPartition, falsePositiveRate);
+        recentIds = new LinkedHashMap<>(1024, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Boolean> eldest) {
+                return size() > recentIdsCapacity;
+            }
+        };
+
+        recentHits = Counter.builder("analytics.dedup.duplicates").tag("source", "recent").register(meterRegistry);
+        storeHits = Counter.builder("analytics.dedup.duplicates").tag("source", "store").register(meterRegistry);
+        walHits = Counter.builder("analytics.dedup.duplicates").tag("source", "wal").register(meterRegistry);
+        storeLookups = Counter.builder("analytics.dedup.store.lookups").register(meterRegistry);
+        Gauge.builder("analytics.dedup.filter.saturation", this, s -> s.read(TimePartitionedBloomFilter::saturation))
+                .register(meterRegistry);
+        Gauge.builder("analytics.dedup.filter.false.positive.rate", this,
+                s -> s.read(TimePartitionedBloomFilter::expectedFalsePositiveRate))
+                .register(meterRegistry);
+
+        dropLegacyIndex();
+
+        if (enabled) {
+            log.info("Event dedup enabled: {} minute window in {} partitions of {} bits ({} hashes), {} recent IDs",
+                    windowMinutes, partitions, filter.getBitCount(), filter.getHashCount(), recentIdsCapacity);
+        }
+    }
+
+    /**
+     * Check an event's ID and record it as seen
+     *
+     * @return true if an event with the same ID was already ingested
+     */
+    public boolean isDuplicate(UserEvent event) {
+        String eventId = event.getEventId();
+        if (!enabled || eventId == null || eventId.isEmpty()) {
+            return false;
+        }
+
+        String key = key(event);
+        long now = System.currentTimeMillis();
+        synchronized (lock) {
+            if (recentIds.containsKey(key)) {
+                recentHits.increment();
+                return true;
+            }
+            if (!filter.mightContain(key, now)) {
+                remember(key, now);
+                return false;
+            }
+        }
+
+        // Seen by the filter but no longer recent (or a false positive): ask the log, then the store
+        if (writeAheadLogService.isPending(event)) {
+            walHits.increment();
+            return true;
+        }
+        storeLookups.increment();
+        Criteria criteria = new Criteria().andOperator(
+                EventAggregationService.tenantCriteria(event.getTenant()),
+                Criteria.where("eventId").is(eventId));
+        boolean stored = mongoTemplate.exists(Query.query(criteria), UserEvent.class);
+        if (stored) {
+            storeHits.increment();
+            return true;
+        }
+        synchronized (lock) {
+            remember(key, now);
+        }
+        return false;
+    }
+
+    /**
+     * Forget the ID of an event that failed to ingest, so the client's retry is accepted
+     */
+    public void forget(UserEvent event) {
+        if (!enabled || event.getEventId() == null) {
+            return;
+        }
+        synchronized (lock) {
+            recentIds.remove(key(event));
+        }
+    }
+
+    /**
+     * Tenant-scoped key of an event's client ID; tenant ids cannot contain ':'
+     */
+    static String key(UserEvent event) {
+        return event.getTenant() + ":" + event.getEventId();
+    }
+
+    private void dropLegacyIndex() {
+        try {
+            IndexOperations indexOps = mongoTemplate.indexOps(UserEvent.class);
+            boolean present = indexOps.getIndexInfo().stream()
+                    .anyMatch(index -> LEGACY_INDEX.equals(index.getName()));
+            if (present) {
+                indexOps.dropIndex(LEGACY_INDEX);
+                log.info("Dropped the global unique index on eventId; event IDs are now unique per tenant");
+            }
+        } catch (Exception e) {
+            log.warn("Could not check for the global unique index on eventId: {}", e.getMessage());
+        }
+    }
+
+    private void remember(String key, long now) {
+        filter.put(key, now);
+        recentIds.put(key, Boolean.TRUE);
+    }
+
+    private double read(ToDoubleFunction<TimePartitionedBloomFilter> reader) {
+        synchronized (lock) {
+            return reader.applyAsDouble(filter);
+        }
+    }
+}
@@ -0,0 +1,270 @@
+package com.ecommerce.analytics.service;
+
+import com.ecommerce.analytics.export.ColumnarEventWriter;
+import com.ecommerce.analytics.export.ColumnarFormat;
+import com.ecommerce.analytics.model.ExportJobStatus;
+import com.ecommerce.analytics.model.UserEvent;
+import com.mongodb.ReadPreference;
+import io.github.bucket4j.Bandwidth;
+import io.github.bucket4j.Bucket;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+
+/**
+ * Exports the event store to hourly columnar partition files for offline analysis.
+ *
+ * Each hour of the requested range is streamed from MongoDB through a cursor
+ * (preferring a secondary) straight into a {@link ColumnarEventWriter}, so
+ * nothing is materialized beyond one row group. Partitions are laid out as
+ * {@code dt=YYYY-MM-DD/hr=HH/events.evc} and only appear once complete, which
+ * makes jobs resumable: hours that already have a partition file are skipped.
+ * Jobs run one at a time on a low-priority thread, throttled to
+ * {@code export.max-events-per-second}.
+ */
+@Service
+@Slf4j
+@RequiredArgsConstructor
+public class EventExportService {
+
+    private static final DateTimeFormatter DAY = DateTimeFormatter.ofPattern("yyyy-MM-dd").withZone(ZoneOffset.UTC);
+    private static final DateTimeFormatter HOUR = DateTimeFormatter.ofPattern("HH").withZone(ZoneOffset.UTC);
+    private static final String PARTITION_FILE = "events" + ColumnarFormat.FILE_EXTENSION;
+    private static final int THROTTLE_BATCH = 256;
+    private static final int MAX_JOBS_KEPT = 20;
+
+    private final MongoTemplate mongoTemplate;
+
+    @Value("${export.directory:./data/export}")
+    private String directory;
+
+    @Value("${export.max-events-per-second:20000}")
+    private int maxEventsPerSecond;
+
+    @Value("${export.row-group-size:65536}")
+    private int rowGroupSize;
+
+    @Value("${export.cursor-batch-size:1000}")
+    private int cursorBatchSize;
+
+    @Value("${export.schedule-enabled:false}")
+    private boolean scheduleEnabled;
+
+    @Value("${export.lookback-hours:24}")
+    private int lookbackHours;
+
+    private final ExecutorService executor = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "event-export");
+        thread.setDaemon(true);
+        thread.setPriority(Thread.MIN_PRIORITY);
+        return thread;
+    });
+
+    private final Map<String, ExportJobStatus> jobs = new LinkedHashMap<>();
+    // Events taken from the throttle at a time; never more than its capacity
+    private int throttleBatch;
+
+    @PostConstruct
+    public void init() {
+        if (maxEventsPerSecond < 1) {
+            throw new IllegalStateException("export.max-events-per-second must be at least 1: " + maxEventsPerSecond);
+        }
+        throttleBatch = Math.min(THROTTLE_BATCH, maxEventsPerSecond);
+    }
+
+    /**
+     * Queue an export of every full hour overlapping [from, to), trimmed to the hours that have ended
+     */
+    public ExportJobStatus startExport(Instant from, Instant to) {
+        if (!from.isBefore(to)) {
+            throw new IllegalArgumentException("Export range must have from before to");
+        }
+        // A partition is never rewritten, so the current hour would stay incomplete for good
+        Instant completed = Instant.now().truncatedTo(ChronoUnit.HOURS);
+        if (to.isAfter(completed)) {
+            to = completed;
+        }
+        Instant firstHour = from.truncatedTo(ChronoUnit.HOURS);
+        if (!firstHour.isBefore(to)) {
+            throw new IllegalArgumentException("Export range must include an hour that has ended");
+        }
+        int hours = (int) Duration.between(firstHour, to).toHours() + (to.truncatedTo(ChronoUnit.HOURS).equals(to) ? 0 : 1);
+
+        ExportJobStatus job = ExportJobStatus.builder()
+                .id(UUID.randomUUID().toString())
+                .status("QUEUED")
+                .from(firstHour.toString())
+                .to(firstHour.plus(Duration.ofHours(hours)).toString())
+                .directory(Paths.get(directory).toAbsolutePath().toString())
+                .partitionsTotal(hours)
+                .build();
+        synchronized (jobs) {
+            jobs.put(job.getId(), job);
+            if (jobs.size() > MAX_JOBS_KEPT) {
+                Iterator<String> oldest = jobs.keySet().iterator();
+                oldest.next();
+                oldest.remove();
+            }
+        }
+
+        executor.submit(() -> run(job, firstHour, hours));
+        log.info("Queued export job {} for {} hours from {}", job.getId(), hours, firstHour);
+        return copy(job);
+    }
+
+    public Optional<ExportJobStatus> getJob(String id) {
+        synchronized (jobs) {
+            ExportJobStatus job = jobs.get(id);
+            return job == null ? Optional.empty() : Optional.of(copy(job));
+        }
+    }
+
+    public List<ExportJobStatus> getJobs() {
+        synchronized (jobs) {
+            List<ExportJobStatus> copies = new ArrayList<>();
+            jobs.values().forEach(job -> copies.add(copy(job)));
+            return copies;
+        }
+    }
+
+    /**
+     * Export the last completed hours - runs hourly when enabled
+     */
+    @Scheduled(cron = "0 5 * * * *")
+    public void scheduledExport() {
+        if (!scheduleEnabled) {
+            return;
+        }
+        Instant to = Instant.now().truncatedTo(ChronoUnit.HOURS);
+        startExport(to.minus(Duration.ofHours(lookbackHours)), to);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+
+    private void run(ExportJobStatus job, Instant firstHour, int hours) {
+        update(job, j -> {
+            j.setStatus("RUNNING");
+            j.setStartedAt(Instant.now().toString());
+        });
+        Bucket throttle = Bucket.builder()
+                .addLimit(Bandwidth.builder()
+                        .capacity(maxEventsPerSecond)
+                        .refillGreedy(maxEventsPerSecond, Duration.ofSeconds(1))
+                        .build())
+                .build();
+
+        try {
+            for (int h = 0; h < hours; h++) {
+                Instant hourStart = firstHour.plus(Duration.ofHours(h));
+                if (hourStart.plus(Duration.ofHours(1)).isAfter(Instant.now())) {
+                    throw new IllegalStateException("Hour " + hourStart + " has not ended");
+                }
+                Path partition = partitionPath(hourStart);
+                if (Files.exists(partition)) {
+                    update(job, j -> j.setPartitionsSkipped(j.getPartitionsSkipped() + 1));
+                    continue;
+                }
+                update(job, j -> j.setCurrentPartition(partition.toString()));
+                long exported = exportHour(hourStart, partition, throttle, job);
+                log.debug("Exported {} events to {}", exported, partition);
+                update(job, j -> j.setPartitionsWritten(j.getPartitionsWritten() + 1));
+            }
+            update(job, j -> {
+                j.setStatus("COMPLETED");
+                j.setCurrentPartition(null);
+                j.setFinishedAt(Instant.now().toString());
+            });
+            log.info("Export job {} completed: {} events", job.getId(), job.getEventsExported());
+
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            fail(job, "Interrupted");
+        } catch (Exception e) {
+            log.error("Export job {} failed: {}", job.getId(), e.getMessage(), e);
+            fail(job, e.getMessage());
+        }
+    }
+
+    private long exportHour(Instant hourStart, Path partition, Bucket throttle, ExportJobStatus job)
+            throws IOException, InterruptedException {
+        Query query = Query.query(Criteria.where("createdAt").gte(hourStart).lt(hourStart.plus(Duration.ofHours(1))))
+                .with(Sort.by("createdAt"))
+                .cursorBatchSize(cursorBatchSize);
+        query.withReadPreference(ReadPreference.secondaryPreferred());
+
+        long count = 0;
+        try (ColumnarEventWriter writer = new ColumnarEventWriter(partition, rowGroupSize);
+             Stream<UserEvent> events = mongoTemplate.stream(query, UserEvent.class)) {
+            Iterator<UserEvent> iterator = events.iterator();
+            while (iterator.hasNext()) {
+                if (count % throttleBatch == 0) {
+                    throttle.asBlocking().consume(throttleBatch);
+                }
+                writer.write(iterator.next());
+                count++;
+                if (count % throttleBatch == 0) {
+                    update(job, j -> j.setEventsExported(j.getEventsExported() + throttleBatch));
+                }
+            }
+            writer.commit();
+        }
+
+        long remainder = count % throttleBatch;
+        update(job, j -> j.setEventsExported(j.getEventsExported() + remainder));
+        return count;
+    }
+
+    private Path partitionPath(Instant hourStart) {
+        return Paths.get(directory, "dt=" + DAY.format(hourStart), "hr=" + HOUR.format(hourStart), PARTITION_FILE);
+    }
+
+    private void fail(ExportJobStatus job, String error) {
+        update(job, j -> {
+            j.setStatus("FAILED");
+            j.setError(error);
+            j.setFinishedAt(Instant.now().toString());
+        });
+    }
+
+    private void update(ExportJobStatus job, Consumer<ExportJobStatus> change) {
+        synchronized (jobs) {
+            change.accept(job);
+        }
+    }
+
+    private static ExportJobStatus copy(ExportJobStatus job) {
+        return job.toBuilder().build();
+    }
+}
@@ -1,9 +1,11 @@
 package com.ecommerce.analytics.service;
 
+import com.ecommerce.analytics.exception.DuplicateEventException;
 import com.ecommerce.analytics.model.UserEvent;
 import com.ecommerce.analytics.repository.EventRepository;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.dao.DuplicateKeyException;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
@@ -19,37 +21,58 @@ import java.time.Instant;
 public class EventIngestionService {
 
     private final EventRepository eventRepository;
+    private final WriteAheadLogService writeAheadLogService;
+    private final EventAggregationService eventAggregationService;
+    private final EventDeduplicationService eventDeduplicationService;
+    private final RecentEventStoreService recentEventStoreService;
 
     /**
      * Ingest a new user event
      * 
      * @param event the event to ingest
      * @return the saved event with generated ID
+     * @throws DuplicateEventException if the event's client event ID was already ingested
      */
     @Transactional
     public UserEvent ingestEvent(UserEvent event) {
         try {
             event.setCreatedAt(Instant.now());
-            // Validate timestamp format
-            validateTimestamp(event.getTimestamp());
+            event.setTenantId(event.getTenant());
+            event.setEventTime(parseTimestamp(event.getTimestamp()));
 
-            UserEvent savedEvent = eventRepository.save(event);
+            if (eventDeduplicationService.isDuplicate(event)) {
+                throw new DuplicateEventException(event.getEventId());
+            }
+
+            // With the WAL enabled the event is acknowledged once it is durable
+            // locally and written to MongoDB in the background
+            UserEvent savedEvent = writeAheadLogService.isEnabled()
+                    ? writeAheadLogService.append(event)
+                    : eventRepository.save(event);
+            eventAggregationService.publish(savedEvent);
+            recentEventStoreService.append(savedEvent);
             log.debug("Event ingested: {} from user: {}",
                     savedEvent.getEventType(), savedEvent.getUserId());
             return savedEvent;
 
+        } catch (DuplicateEventException | IllegalArgumentException e) {
+            throw e;
+        } catch (DuplicateKeyException e) {
+            // A concurrent retry got past the in-memory check; the unique (tenantId, eventId) index kept one copy
+            throw new DuplicateEventException(event.getEventId());
         } catch (Exception e) {
+            eventDeduplicationService.forget(event);
             log.error("Failed to ingest event: {}", e.getMessage());
             throw new RuntimeException("Failed to ingest event: " + e.getMessage(), e);
         }
     }
 
     /**
-     * Validate timestamp format (ISO 8601)
+     * Parse the ISO 8601 timestamp into epoch millis
      */
-    private void validateTimestamp(String timestamp) {
+    private long parseTimestamp(String timestamp) {
         try {
-            Instant.parse(timestamp);
+            return Instant.parse(timestamp).toEpochMilli();
         } catch (Exception e) {
             throw new IllegalArgumentException("Invalid timestamp format. Expected ISO 8601 format.");
         }
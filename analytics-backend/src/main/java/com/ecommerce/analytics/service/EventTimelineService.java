@@ -0,0 +1,116 @@
+package com.ecommerce.analytics.service;
+
+import com.ecommerce.analytics.model.EventCursor;
+import com.ecommerce.analytics.model.UserEvent;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.bson.types.ObjectId;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Iterator;
+import java.util.stream.Stream;
+
+/**
+ * Newest-first event timelines for a user or a page.
+ *
+ * Pages are selected with keyset pagination on (createdAt, _id), matching the
+ * compound indexes on {@link UserEvent}, so every page is an index range scan
+ * no matter how deep the client has paged. Events are written to the response
+ * as they come off the MongoDB cursor; nothing beyond the current document is
+ * held in memory.
+ */
+@Service
+@Slf4j
+@RequiredArgsConstructor
+public class EventTimelineService {
+
+    private final MongoTemplate mongoTemplate;
+    private final ObjectMapper objectMapper;
+
+    @Value("${events.query.default-page-size:100}")
+    private int defaultPageSize;
+
+    @Value("${events.query.max-page-size:1000}")
+    private int maxPageSize;
+
+    /**
+     * Clamp a requested page size to the configured bounds
+     */
+    public int pageSize(Integer requested) {
+        if (requested == null || requested < 1) {
+            return defaultPageSize;
+        }
+        return Math.min(requested, maxPageSize);
+    }
+
+    /**
+     * Stream one page of a user's events as JSON
+     */
+    public void streamUserEvents(String userId, EventCursor cursor, int pageSize, OutputStream out)
+            throws IOException {
+        streamPage("userId", userId, cursor, pageSize, out);
+    }
+
+    /**
+     * Stream one page of a page URL's events as JSON
+     */
+    public void streamPageEvents(String pageUrl, EventCursor cursor, int pageSize, OutputStream out)
+            throws IOException {
+        streamPage("pageUrl", pageUrl, cursor, pageSize, out);
+    }
+
+    private void streamPage(String field, String value, EventCursor cursor, int pageSize, OutputStream out)
+            throws IOException {
+        // One extra document tells us whether another page exists
+        Query query = pageQuery(field, value, cursor)
+                .limit(pageSize + 1)
+                .cursorBatchSize(Math.min(pageSize + 1, 1000));
+
+        try (JsonGenerator json = objectMapper.getFactory().createGenerator(out);
+             Stream<UserEvent> events = mongoTemplate.stream(query, UserEvent.class)) {
+            json.writeStartObject();
+            json.writeArrayFieldStart("events");
+
+            Iterator<UserEvent> iterator = events.iterator();
+            UserEvent last = null;
+            int count = 0;
+            while (count < pageSize && iterator.hasNext()) {
+                last = iterator.next();
+                objectMapper.writeValue(json, last);
+                count++;
+            }
+            boolean more = iterator.hasNext();
+
+            json.writeEndArray();
+            json.writeNumberField("count", count);
+            if (more && last != null) {
+                json.writeStringField("nextCursor", EventCursor.after(last).encode());
+            }
+            json.writeEndObject();
+        }
+    }
+
+    static Query pageQuery(String field, String value, EventCursor cursor) {
+        Criteria criteria = Criteria.where(field).is(value);
+        if (cursor != null) {
+            criteria.orOperator(
+                    Criteria.where("createdAt").lt(cursor.getCreatedAt()),
+                    Criteria.where("createdAt").is(cursor.getCreatedAt()).and("_id").lt(idValue(cursor.getId())));
+        }
+        return Query.query(criteria)
+                .with(Sort.by(Sort.Direction.DESC, "createdAt", "_id"));
+    }
+
+    private static Object idValue(String id) {
+        return ObjectId.isValid(id) ? new ObjectId(id) : id;
+    }
+}
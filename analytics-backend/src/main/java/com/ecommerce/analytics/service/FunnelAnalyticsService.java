@@ -0,0 +1,94 @@
+package com.ecommerce.analytics.service;
+
+import com.ecommerce.analytics.aggregation.FunnelCounts;
+import com.ecommerce.analytics.aggregation.FunnelDefinition;
+import com.ecommerce.analytics.aggregation.FunnelTracker;
+import com.ecommerce.analytics.config.FunnelConfig;
+import com.ecommerce.analytics.model.AnalyticsResponse;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * Service for conversion funnels.
+ * Merges the per-step counters kept by the funnel trackers on a tenant's aggregation lanes.
+ */
+@Service
+@Slf4j
+@RequiredArgsConstructor
+public class FunnelAnalyticsService {
+
+    private final EventAggregationService eventAggregationService;
+    private final FunnelConfig funnelConfig;
+
+    /**
+     * Step-by-step conversion for a funnel of a tenant over the last {@code windowMinutes}.
+     *
+     * Step counts are sessions that reached the step within the window, so a
+     * session that entered before the window still counts at the later steps it
+     * reached inside it. Rates are therefore capped at 1 (and drop-off at 0)
+     * rather than allowed past a whole.
+     *
+     * @return empty if no funnel has the given id
+     * @throws TimeoutException if the tenant's lanes do not answer in time
+     */
+    public Optional<AnalyticsResponse.FunnelResponse> getFunnel(String tenant, String id, int windowMinutes)
+            throws TimeoutException, InterruptedException {
+        Optional<FunnelDefinition> definition = funnelConfig.find(id);
+        if (definition.isEmpty()) {
+            return Optional.empty();
+        }
+        FunnelDefinition funnel = definition.get();
+        int minutes = Math.max(1, Math.min(windowMinutes, funnelConfig.getRetentionMinutes()));
+        int stepCount = funnel.getSteps().size();
+
+        long now = System.currentTimeMillis();
+        long window = Duration.ofMinutes(minutes).toMillis();
+        FunnelCounts counts = FunnelCounts.merge(stepCount, eventAggregationService.queryLanes(tenant,
+                FunnelTracker.class, tracker -> tracker.counts(id, now, window)));
+
+        long entered = counts.getReached()[0];
+        List<AnalyticsResponse.FunnelStep> steps = new ArrayList<>(stepCount);
+        for (int step = 0; step < stepCount; step++) {
+            long sessions = counts.getReached()[step];
+            long previous = step == 0 ? sessions : counts.getReached()[step - 1];
+            double stepConversion = rate(sessions, previous);
+            steps.add(AnalyticsResponse.FunnelStep.builder()
+                    .name(funnel.getSteps().get(step).getName())
+                    .sessions(sessions)
+                    .conversionRate(rate(sessions, entered))
+                    .stepConversionRate(stepConversion)
+                    .dropOffRate(previous == 0 ? 0.0 : 1.0 - stepConversion)
+                    .averageSecondsFromPreviousStep(step == 0 ? 0.0
+                            : ratio(counts.getStepMillis()[step] / 1000.0, sessions))
+                    .build());
+        }
+
+        return Optional.of(AnalyticsResponse.FunnelResponse.builder()
+                .id(id)
+                .name(funnel.getName())
+                .windowMinutes(minutes)
+                .steps(steps)
+                .completionRate(rate(counts.getReached()[stepCount - 1], entered))
+                .timestamp(Instant.now().toString())
+                .build());
+    }
+
+    /**
+     * Share of {@code whole} that {@code part} makes up, at most 1
+     */
+    private static double rate(long part, long whole) {
+        return Math.min(1.0, ratio(part, whole));
+    }
+
+    private static double ratio(double part, double whole) {
+        return whole == 0 ? 0.0 : part / whole;
+    }
+}
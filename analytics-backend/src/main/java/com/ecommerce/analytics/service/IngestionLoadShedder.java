@@ -0,0 +1,134 @@
+package com.ecommerce.analytics.service;
+
+import com.ecommerce.analytics.resilience.AdaptiveConcurrencyLimiter;
+import com.ecommerce.analytics.resilience.AdaptiveConcurrencyLimiter.Priority;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.EnumMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Adaptive load shedding for event ingestion.
+ *
+ * Wraps an {@link AdaptiveConcurrencyLimiter} around the save of each event:
+ * the number of ingests in flight is tuned from how long saves take (MongoDB,
+ * or the WAL fsync) and how far the WAL applier is behind, so ingestion
+ * backs off while MongoDB struggles and opens up while it keeps pace. Event
+ * types are ranked by priority; the low ones are shed first, critical ones
+ * such as {@code purchase} last.
+ */
+@Component
+@Slf4j
+@RequiredArgsConstructor
+public class IngestionLoadShedder {
+
+    private final WriteAheadLogService writeAheadLogService;
+    private final MeterRegistry meterRegistry;
+
+    @Value("${ingestion.shedding.enabled:true}")
+    private boolean enabled;
+
+    @Value("${ingestion.shedding.initial-limit:50}")
+    private int initialLimit;
+
+    @Value("${ingestion.shedding.min-limit:4}")
+    private int minLimit;
+
+    @Value("${ingestion.shedding.max-limit:1000}")
+    private int maxLimit;
+
+    @Value("${ingestion.shedding.smoothing:0.2}")
+    private double smoothing;
+
+    @Value("${ingestion.shedding.latency-tolerance:2.0}")
+    private double latencyTolerance;
+
+    @Value("${ingestion.shedding.critical-event-types:purchase,checkout,add_to_cart}")
+    private List<String> criticalEventTypes;
+
+    @Value("${ingestion.shedding.low-event-types:click,filter,scroll,hover,search}")
+    private List<String> lowEventTypes;
+
+    private AdaptiveConcurrencyLimiter limiter;
+    private Set<String> critical;
+    private Set<String> low;
+    private final Map<Priority, Counter> admitted = new EnumMap<>(Priority.class);
+    private final Map<Priority, Counter> shed = new EnumMap<>(Priority.class);
+
+    @PostConstruct
+    public void init() {
+        limiter = new AdaptiveConcurrencyLimiter(initialLimit, minLimit, maxLimit, smoothing, latencyTolerance);
+        critical = new HashSet<>(criticalEventTypes);
+        low = new HashSet<>(lowEventTypes);
+
+        for (Priority priority : Priority.values()) {
+            String tag = priority.name().toLowerCase();
+            admitted.put(priority, Counter.builder("analytics.ingestion.admission")
+                    .tag("priority", tag).tag("outcome", "admitted").register(meterRegistry));
+            shed.put(priority, Counter.builder("analytics.ingestion.admission")
+                    .tag("priority", tag).tag("outcome", "shed").register(meterRegistry));
+        }
+        Gauge.builder("analytics.ingestion.concurrency.limit", limiter, AdaptiveConcurrencyLimiter::getLimit)
+                .register(meterRegistry);
+        Gauge.builder("analytics.ingestion.concurrency.inflight", limiter, AdaptiveConcurrencyLimiter::getInFlight)
+                .register(meterRegistry);
+        Gauge.builder("analytics.ingestion.latency.recent", limiter, l -> l.getLatency() / 1_000_000)
+                .baseUnit("milliseconds")
+                .register(meterRegistry);
+        Gauge.builder("analytics.ingestion.latency.baseline", limiter, l -> l.getBaselineLatency() / 1_000_000)
+                .baseUnit("milliseconds")
+                .register(meterRegistry);
+
+        if (enabled) {
+            log.info("Adaptive ingestion concurrency limit {} (between {} and {})", initialLimit, minLimit, maxLimit);
+        }
+    }
+
+    public Priority priorityOf(String eventType) {
+        if (critical.contains(eventType)) {
+            return Priority.CRITICAL;
+        }
+        return low.contains(eventType) ? Priority.LOW : Priority.NORMAL;
+    }
+
+    /**
+     * Whether an event of this priority may be ingested now; if so, report
+     * its outcome with exactly one of the {@code on*} methods
+     */
+    public boolean tryAcquire(Priority priority) {
+        if (!enabled) {
+            return true;
+        }
+        boolean acquired = limiter.tryAcquire(priority);
+        (acquired ? admitted : shed).get(priority).increment();
+        return acquired;
+    }
+
+    public void onSuccess(long latencyNanos) {
+        if (enabled) {
+            limiter.onSuccess(latencyNanos, writeAheadLogService.backlogRatio());
+        }
+    }
+
+    public void onDropped() {
+        if (enabled) {
+            limiter.onDropped();
+        }
+    }
+
+    public void onIgnore() {
+        if (enabled) {
+            limiter.onIgnore();
+        }
+    }
+}
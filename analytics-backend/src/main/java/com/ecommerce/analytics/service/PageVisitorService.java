@@ -0,0 +1,61 @@
+package com.ecommerce.analytics.service;
+
+import com.ecommerce.analytics.aggregation.HyperLogLog;
+import com.ecommerce.analytics.aggregation.PageVisitorSketches;
+import com.ecommerce.analytics.config.WindowConfig;
+import com.ecommerce.analytics.model.AnalyticsResponse;
+import lombok.RequiredArgsConstructor;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * Service for per-page unique visitors.
+ * Merges the per-page sketches kept on a tenant's aggregation lanes and ranks pages by their estimates.
+ */
+@Service
+@RequiredArgsConstructor
+public class PageVisitorService {
+
+    private final EventAggregationService eventAggregationService;
+
+    /**
+     * Pages of a tenant with the most unique visitors over a window
+     *
+     * @throws TimeoutException if the tenant's lanes do not answer in time
+     */
+    public AnalyticsResponse.PageVisitorsResponse getTopPagesByVisitors(String tenant, int limit, Duration window)
+            throws TimeoutException, InterruptedException {
+        long now = System.currentTimeMillis();
+        long windowMillis = window.toMillis();
+        Map<String, HyperLogLog> merged = new HashMap<>();
+        for (Map<String, HyperLogLog> lane : eventAggregationService.queryLanes(tenant,
+                PageVisitorSketches.class, sketches -> sketches.visitors(now, windowMillis))) {
+            lane.forEach((page, sketch) -> merged.merge(page, sketch, (into, other) -> {
+                into.merge(other);
+                return into;
+            }));
+        }
+        List<AnalyticsResponse.PageVisitorCount> pages = merged.entrySet().stream()
+                .map(entry -> AnalyticsResponse.PageVisitorCount.builder()
+                        .url(entry.getKey())
+                        .uniqueVisitors(entry.getValue().estimate())
+                        .build())
+                .sorted(Comparator.comparingLong(AnalyticsResponse.PageVisitorCount::getUniqueVisitors)
+                        .reversed())
+                .limit(limit)
+                .toList();
+
+        return AnalyticsResponse.PageVisitorsResponse.builder()
+                .pages(pages)
+                .window(WindowConfig.label(window))
+                .timestamp(Instant.now().toString())
+                .build();
+    }
+}
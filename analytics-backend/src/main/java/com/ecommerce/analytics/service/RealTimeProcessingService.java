@@ -1,159 +1,311 @@
 package com.ecommerce.analytics.service;
 
-import com.ecommerce.analytics.model.UserEvent;
-import com.ecommerce.analytics.repository.EventRepository;
+import com.ecommerce.analytics.aggregation.ActivitySnapshot;
+import com.ecommerce.analytics.config.WindowConfig;
+import com.ecommerce.analytics.monitoring.MetricsCycleProfiler;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.TimeGauge;
+import jakarta.annotation.PostConstruct;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.context.event.EventListener;
 import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.core.ZSetOperations;
 import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Service;
 
+import java.lang.management.ManagementFactory;
 import java.time.Duration;
-import java.time.Instant;
-import java.util.*;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
 import java.util.concurrent.TimeUnit;
-import java.util.stream.Collectors;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicLong;
 
 /**
  * Service for real-time processing of events and updating metrics.
- * Runs periodically to calculate time-windowed metrics.
+ * Periodically publishes time-windowed metrics of every tenant, merged from
+ * the per-lane partial state kept by {@link EventAggregationService}, to
+ * Redis. Every window in {@link WindowConfig} is computed in the same pass and
+ * published under its own keys (e.g. {@code metrics:{acme}:active_users:5m});
+ * the tenant is a hash tag, so on a Redis Cluster each tenant's keys live on
+ * one shard. Tenants are processed one at a time, those that took least time
+ * last cycle first, so a large tenant delays nobody else's metrics. In
+ * cluster mode each replica publishes its partial state and only the holder
+ * of the finalization lease writes the merged metrics (see {@link ClusterMetricsService}).
+ * Nothing is published while the lanes are still being restored after a start
+ * (the previous process's metrics stay up); the first cycle runs as soon as
+ * they are ready. Every cycle is traced step by step by {@link MetricsCycleProfiler}.
  */
 @Service
 @Slf4j
 @RequiredArgsConstructor
 public class RealTimeProcessingService {
 
-    private final EventRepository eventRepository;
     private final RedisTemplate<String, Object> redisTemplate;
+    private final EventAggregationService eventAggregationService;
+    private final ClusterMetricsService clusterMetricsService;
+    private final WindowConfig windowConfig;
+    private final ResponseBytesCache responseBytesCache;
+    private final MeterRegistry meterRegistry;
+    private final MetricsCycleProfiler cycleProfiler;
+
+    // Redis key layout: metrics:{tenant}:<metric>:<window label or userId>
+    private static final String METRICS_PREFIX = "metrics:";
+    private static final String ACTIVE_USERS = "active_users:";
+    private static final String PAGE_VIEWS = "page_views:";
+    private static final String USER_SESSIONS = "sessions:";
+    private static final String SESSION_USERS = "session_users";
+
+    // Per-window keys outlive a missed cycle or two even for short windows
+    private static final long MIN_TTL_SECONDS = 30;
+    // Users whose sessions changed this recently are rewritten; older hashes are still current
+    private static final long SESSION_REWRITE_MARGIN_MS = 30_000;
+
+    private final Map<String, Long> lastSessionsPublished = new HashMap<>();
+    private final Map<String, Long> lastCycleNanos = new HashMap<>();
+    private final AtomicLong firstPublishMillis = new AtomicLong();
 
-    // Redis key constants
-    private static final String ACTIVE_USERS_KEY = "metrics:active_users";
-    private static final String PAGE_VIEWS_KEY = "metrics:page_views";
-    private static final String USER_SESSIONS_PREFIX = "metrics:sessions:";
+    /**
+     * Key of a tenant's active user count for a window
+     */
+    public static String activeUsersKey(String tenant, String windowLabel) {
+        return tenantPrefix(tenant) + ACTIVE_USERS + windowLabel;
+    }
+
+    /**
+     * Key of a tenant's page-view hash for a window
+     */
+    public static String pageViewsKey(String tenant, String windowLabel) {
+        return tenantPrefix(tenant) + PAGE_VIEWS + windowLabel;
+    }
+
+    /**
+     * Prefix of a tenant's per-user session hashes; the userId is appended
+     */
+    public static String userSessionsPrefix(String tenant) {
+        return tenantPrefix(tenant) + USER_SESSIONS;
+    }
+
+    /**
+     * Key of a tenant's sorted set of users with session hashes, scored by
+     * when each was last seen, so readers need not search the keyspace
+     */
+    public static String sessionUsersKey(String tenant) {
+        return tenantPrefix(tenant) + SESSION_USERS;
+    }
 
-    // Time windows
-    private static final Duration ACTIVE_USERS_WINDOW = Duration.ofMinutes(5);
-    private static final Duration PAGE_VIEWS_WINDOW = Duration.ofMinutes(15);
-    private static final Duration ACTIVE_SESSIONS_WINDOW = Duration.ofMinutes(5);
+    private static String tenantPrefix(String tenant) {
+        return METRICS_PREFIX + "{" + tenant + "}:";
+    }
+
+    @PostConstruct
+    public void registerMetrics() {
+        TimeGauge.builder("analytics.startup.first.metrics", firstPublishMillis, TimeUnit.MILLISECONDS,
+                        AtomicLong::get)
+                .description("Time from JVM start until correct metrics were first published")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Publish right away once the lanes are restored, rather than on the next cycle
+     */
+    @EventListener(AggregationReadyEvent.class)
+    public void onAggregationReady() {
+        processMetrics();
+    }
 
     /**
      * Process events and update metrics every 10 seconds
      */
     @Scheduled(fixedDelay = 10000, initialDelay = 5000)
-    public void processMetrics() {
+    public synchronized void processMetrics() {
+        if (!eventAggregationService.isReady()) {
+            log.debug("Aggregation lanes are still being restored; keeping the published metrics");
+            return;
+        }
+        MetricsCycleProfiler.Cycle cycle = cycleProfiler.begin();
+        String outcome = "failed";
         try {
             log.debug("Starting metrics processing...");
 
-            updateActiveUsers();
-            updatePageViews();
-            updateActiveSessions();
+            boolean clustered = clusterMetricsService.isEnabled();
+            List<String> tenants = quickestFirst(eventAggregationService.tenants());
+
+            if (clustered) {
+                long started = System.nanoTime();
+                for (String tenant : tenants) {
+                    try {
+                        ActivitySnapshot partial = eventAggregationService.snapshot(tenant, true);
+                        cycle.scanned(partial);
+                        clusterMetricsService.publishPartial(tenant, partial);
+                    } catch (TimeoutException e) {
+                        log.warn("Lanes of tenant {} did not answer in time; partial metrics not published", tenant);
+                    }
+                }
+                started = cycle.step("partials", started);
+                boolean finalizer = clusterMetricsService.tryAcquireLease();
+                cycle.step("lease", started);
+                if (!finalizer) {
+                    log.debug("Partial metrics published; another replica finalizes");
+                    outcome = "partial_only";
+                    return;
+                }
+                tenants = quickestFirst(clusterMetricsService.liveTenants());
+            }
 
-            log.debug("Metrics processing completed");
+            for (String tenant : tenants) {
+                long tenantStarted = System.nanoTime();
+                boolean timedOut = false;
+                try {
+                    ActivitySnapshot snapshot = clustered
+                            ? clusterMetricsService.mergePartials(tenant)
+                            : eventAggregationService.snapshot(tenant, false);
+                    long started = cycle.step("snapshot", tenantStarted);
+                    cycle.scanned(snapshot);
+                    cycle.redisOperations(updateActiveUsers(tenant, snapshot));
+                    started = cycle.step("users", started);
+                    cycle.redisOperations(updatePageViews(tenant, snapshot));
+                    started = cycle.step("pages", started);
+                    cycle.redisOperations(updateActiveSessions(tenant, snapshot));
+                    cycle.step("sessions", started);
+                } catch (TimeoutException e) {
+                    timedOut = true;
+                    log.warn("Lanes of tenant {} did not answer in time; metrics not published this cycle", tenant);
+                }
+                cycle.tenant(timedOut);
+                lastCycleNanos.put(tenant, System.nanoTime() - tenantStarted);
+            }
+            long responsesStarted = System.nanoTime();
+            responseBytesCache.invalidate(tenants);
+            cycle.step("responses", responsesStarted);
+            outcome = "published";
+
+            if (firstPublishMillis.get() == 0) {
+                long sinceStart = System.currentTimeMillis() - ManagementFactory.getRuntimeMXBean().getStartTime();
+                firstPublishMillis.set(sinceStart);
+                log.info("First metrics published {} ms after JVM start", sinceStart);
+            }
+            log.debug("Metrics processing completed for {} tenants", tenants.size());
 
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
         } catch (Exception e) {
             log.error("Error processing metrics: {}", e.getMessage(), e);
+        } finally {
+            cycleProfiler.finish(cycle, outcome);
         }
     }
 
     /**
-     * Update active users count (last 5 minutes)
+     * Tenants ordered by how long they took last cycle, new ones first
      */
-    private void updateActiveUsers() {
-        Instant cutoffTime = Instant.now().minus(ACTIVE_USERS_WINDOW);
-
-        List<UserEvent> recentEvents = eventRepository.findEventsBetween(
-                cutoffTime, Instant.now());
-
-        long activeUsers = recentEvents.stream()
-                .map(UserEvent::getUserId)
-                .distinct()
-                .count();
-
-        redisTemplate.opsForValue().set(ACTIVE_USERS_KEY, activeUsers);
-        redisTemplate.expire(ACTIVE_USERS_KEY, ACTIVE_USERS_WINDOW.getSeconds(), TimeUnit.SECONDS);
-
-        log.debug("Active users: {}", activeUsers);
+    private List<String> quickestFirst(Collection<String> tenants) {
+        List<String> ordered = new ArrayList<>(tenants);
+        ordered.sort(Comparator.comparingLong(tenant -> lastCycleNanos.getOrDefault(tenant, 0L)));
+        return ordered;
     }
 
     /**
-     * Update page views by URL (last 15 minutes)
+     * Update active users count for every window; returns the Redis operations issued
      */
-    private void updatePageViews() {
-        Instant cutoffTime = Instant.now().minus(PAGE_VIEWS_WINDOW);
-
-        List<UserEvent> recentEvents = eventRepository.findEventsBetween(
-                cutoffTime, Instant.now());
-
-        Map<String, Long> pageViewCounts = recentEvents.stream()
-                .filter(event -> "page_view".equals(event.getEventType()))
-                .collect(Collectors.groupingBy(
-                        UserEvent::getPageUrl,
-                        Collectors.counting()));
-
-        // Clear old data
-        redisTemplate.delete(PAGE_VIEWS_KEY);
-
-        if (!pageViewCounts.isEmpty()) {
-            redisTemplate.opsForHash().putAll(PAGE_VIEWS_KEY, pageViewCounts);
-            redisTemplate.expire(PAGE_VIEWS_KEY, PAGE_VIEWS_WINDOW.getSeconds(), TimeUnit.SECONDS);
+    private int updateActiveUsers(String tenant, ActivitySnapshot snapshot) {
+        List<Duration> windows = windowConfig.getAvailable();
+        for (int w = 0; w < windows.size(); w++) {
+            String key = activeUsersKey(tenant, WindowConfig.label(windows.get(w)));
+            redisTemplate.opsForValue().set(key, snapshot.getActiveUsers(w), ttlSeconds(windows.get(w)),
+                    TimeUnit.SECONDS);
         }
 
-        log.debug("Page views updated: {} pages tracked", pageViewCounts.size());
+        log.debug("Active users of tenant {}: {}", tenant, snapshot.getActiveUsers(0));
+        return windows.size();
     }
 
     /**
-     * Update active sessions for all users (last 5 minutes)
+     * Update page views by URL for every window; returns the Redis operations issued
      */
-    private void updateActiveSessions() {
-        Instant cutoffTime = Instant.now().minus(ACTIVE_SESSIONS_WINDOW);
-
-        List<UserEvent> recentEvents = eventRepository.findEventsBetween(
-                cutoffTime, Instant.now());
-
-        Map<String, Set<String>> userSessions = new HashMap<>();
-
-        for (UserEvent event : recentEvents) {
-            userSessions.computeIfAbsent(event.getUserId(), k -> new HashSet<>())
-                    .add(event.getSessionId());
-        }
-
-        for (Map.Entry<String, Set<String>> entry : userSessions.entrySet()) {
-            String userId = entry.getKey();
-            Set<String> sessions = entry.getValue();
-
-            String key = USER_SESSIONS_PREFIX + userId;
-
-            // Clear old sessions
-            redisTemplate.delete(key);
-
-            for (String sessionId : sessions) {
-                redisTemplate.opsForSet().add(key, sessionId);
+    private int updatePageViews(String tenant, ActivitySnapshot snapshot) {
+        List<Duration> windows = windowConfig.getAvailable();
+        int operations = 0;
+        for (int w = 0; w < windows.size(); w++) {
+            String key = pageViewsKey(tenant, WindowConfig.label(windows.get(w)));
+            Map<String, Long> pageViewCounts = snapshot.getPageViews(w);
+
+            if (pageViewCounts.isEmpty()) {
+                redisTemplate.delete(key);
+                operations++;
+            } else {
+                // Build the new hash aside and swap it in, so readers never see it half written
+                String scratch = clusterMetricsService.scratchKey(key);
+                redisTemplate.delete(scratch);
+                redisTemplate.opsForHash().putAll(scratch, pageViewCounts);
+                clusterMetricsService.replace(scratch, key, ttlSeconds(windows.get(w)));
+                // delete, putAll, and the expire and rename of replace
+                operations += 4;
             }
-
-            // Set TTL
-            redisTemplate.expire(key, ACTIVE_SESSIONS_WINDOW.getSeconds(), TimeUnit.SECONDS);
         }
 
-        log.debug("Active sessions updated for {} users", userSessions.size());
+        log.debug("Page views updated for {} windows", windows.size());
+        return operations;
     }
 
     /**
-     * Cleanup old events - runs daily at 2 AM
+     * Update each user's sessions with their last-seen times, covering the
+     * longest window, and the tenant's index of users by last-seen time;
+     * readers filter by the window they ask for. Returns the Redis operations
+     * issued
      */
-    @Scheduled(cron = "0 0 2 * * *")
-    public void cleanupOldEvents() {
-        try {
-            Instant retentionPeriod = Instant.now().minus(Duration.ofHours(24));
+    private int updateActiveSessions(String tenant, ActivitySnapshot snapshot) {
+        long publishedAt = System.currentTimeMillis();
+        Long lastPublished = lastSessionsPublished.get(tenant);
+        long changedSince = lastPublished == null
+                ? Long.MIN_VALUE
+                : lastPublished - SESSION_REWRITE_MARGIN_MS;
+        long ttl = windowConfig.longest().getSeconds();
+
+        int written = 0;
+        Set<ZSetOperations.TypedTuple<Object>> lastSeen = new HashSet<>();
+        for (Map.Entry<String, Map<String, Long>> entry : snapshot.getUserSessions().entrySet()) {
+            Map<String, Long> sessions = entry.getValue();
+            long userLastSeen = Collections.max(sessions.values());
+            if (userLastSeen < changedSince) {
+                // No new activity: the hash written earlier is unchanged and expires on its own
+                continue;
+            }
 
-            long countBefore = eventRepository.count();
-            eventRepository.deleteByCreatedAtBefore(retentionPeriod);
-            long countAfter = eventRepository.count();
+            String key = userSessionsPrefix(tenant) + entry.getKey();
+            String scratch = clusterMetricsService.scratchKey(key);
 
-            log.info("Cleaned up {} old events. Remaining: {}",
-                    countBefore - countAfter, countAfter);
+            redisTemplate.delete(scratch);
+            redisTemplate.opsForHash().putAll(scratch, sessions);
 
-        } catch (Exception e) {
-            log.error("Failed to cleanup old events: {}", e.getMessage(), e);
+            // Swap in with TTL
+            clusterMetricsService.replace(scratch, key, ttl);
+            lastSeen.add(ZSetOperations.TypedTuple.of(entry.getKey(), (double) userLastSeen));
+            written++;
+        }
+
+        String usersKey = sessionUsersKey(tenant);
+        if (!lastSeen.isEmpty()) {
+            redisTemplate.opsForZSet().add(usersKey, lastSeen);
         }
+        // Users whose hashes have expired drop out of the index
+        redisTemplate.opsForZSet().removeRangeByScore(usersKey, 0, publishedAt - TimeUnit.SECONDS.toMillis(ttl));
+        redisTemplate.expire(usersKey, ttl, TimeUnit.SECONDS);
+        lastSessionsPublished.put(tenant, publishedAt);
+
+        log.debug("Active sessions updated for {} of {} users", written, snapshot.getUserSessions().size());
+        return written * 4 + (lastSeen.isEmpty() ? 2 : 3);
+    }
+
+    private static long ttlSeconds(Duration window) {
+        return Math.max(MIN_TTL_SECONDS, window.getSeconds());
     }
 }
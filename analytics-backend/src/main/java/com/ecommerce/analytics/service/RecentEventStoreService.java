@@ -0,0 +1,182 @@
+package com.ecommerce.analytics.service;
+
+import com.ecommerce.analytics.aggregation.MpscArrayQueue;
+import com.ecommerce.analytics.exception.StoreDisabledException;
+import com.ecommerce.analytics.model.UserEvent;
+import com.ecommerce.analytics.store.ColumnarRingStore;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.Function;
+
+/**
+ * Recent events held off-heap for queries the precomputed metrics don't cover.
+ *
+ * Every ingested event is appended to a {@link ColumnarRingStore} file of a
+ * fixed byte budget, which keeps the newest events that fit; reads are
+ * limited to the configured retention. The file is remapped on restart, so
+ * the recent window survives it. Ingestion only hands events to a bounded
+ * queue; a writer thread appends them, so the occasional dictionary
+ * compaction never runs on an ingestion thread. Events arriving while the
+ * queue is full are dropped from the store (and counted).
+ */
+@Service
+@Slf4j
+@RequiredArgsConstructor
+public class RecentEventStoreService {
+
+    private final MeterRegistry meterRegistry;
+
+    @Value("${recent-events.enabled:true}")
+    @Getter
+    private boolean enabled;
+
+    @Value("${recent-events.file:./data/recent/events.ring}")
+    private String file;
+
+    @Value("${recent-events.budget-mb:256}")
+    private long budgetMb;
+
+    @Value("${recent-events.dictionary-share:0.25}")
+    private double dictionaryShare;
+
+    @Value("${recent-events.retention-minutes:60}")
+    private long retentionMinutes;
+
+    @Value("${recent-events.queue-capacity:65536}")
+    private int queueCapacity;
+
+    private ColumnarRingStore store;
+    private MpscArrayQueue<UserEvent> queue;
+    private Thread writer;
+    private volatile boolean running;
+    private Counter appendFailures;
+    private Counter dropped;
+
+    @PostConstruct
+    public void init() {
+        if (!enabled) {
+            return;
+        }
+        try {
+            store = new ColumnarRingStore(Path.of(file), budgetMb * 1024 * 1024, dictionaryShare);
+        } catch (Exception e) {
+            log.error("Recent event store disabled: could not open {}: {}", file, e.getMessage());
+            enabled = false;
+            return;
+        }
+
+        Gauge.builder("analytics.recent.events.rows", store, ColumnarRingStore::size)
+                .register(meterRegistry);
+        Gauge.builder("analytics.recent.events.dictionary.usage", store, ColumnarRingStore::dictionaryUsage)
+                .register(meterRegistry);
+        appendFailures = Counter.builder("analytics.recent.events.append.failures")
+                .register(meterRegistry);
+        dropped = Counter.builder("analytics.recent.events.dropped")
+                .description("Events not stored because the append queue was full")
+                .register(meterRegistry);
+        queue = new MpscArrayQueue<>(queueCapacity);
+        Gauge.builder("analytics.recent.events.queue", queue, MpscArrayQueue::size)
+                .register(meterRegistry);
+
+        running = true;
+        writer = new Thread(this::writeLoop, "recent-events-writer");
+        writer.setDaemon(true);
+        writer.start();
+        log.info("Recent event store holds up to {} events in {} MB (retention {} minutes)",
+                store.capacity(), budgetMb, retentionMinutes);
+    }
+
+    /**
+     * Queue an ingested event for the store; never blocks and never fails ingestion
+     */
+    public void append(UserEvent event) {
+        if (!enabled) {
+            return;
+        }
+        if (!queue.offer(event)) {
+            dropped.increment();
+        }
+    }
+
+    private void writeLoop() {
+        while (running) {
+            if (!drain()) {
+                LockSupport.parkNanos(TimeUnit.MILLISECONDS.toNanos(1));
+            }
+        }
+        drain();
+    }
+
+    /**
+     * Append every queued event
+     *
+     * @return false if the queue was empty
+     */
+    private boolean drain() {
+        boolean any = false;
+        UserEvent event;
+        while ((event = queue.poll()) != null) {
+            any = true;
+            try {
+                // Same event time the aggregation lanes use, so ad-hoc queries line up with the metrics
+                long time = EventAggregationService.aggregationTime(event);
+                store.append(time, event.getUserId(), event.getPageUrl(), event.getEventType(), event.getSessionId());
+            } catch (Exception e) {
+                appendFailures.increment();
+                log.warn("Could not add event to the recent event store: {}", e.getMessage());
+            }
+        }
+        return any;
+    }
+
+    /**
+     * Run a read against the store
+     *
+     * @throws StoreDisabledException if the store is disabled
+     */
+    public <R> R read(Function<ColumnarRingStore.View, R> reader) {
+        if (!enabled) {
+            throw new StoreDisabledException();
+        }
+        return store.read(reader);
+    }
+
+    /**
+     * Oldest event time reads should include
+     */
+    public long retentionCutoff(long nowMillis) {
+        return nowMillis - Duration.ofMinutes(retentionMinutes).toMillis();
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        if (writer != null) {
+            running = false;
+            try {
+                writer.join(5000);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        if (store != null) {
+            try {
+                store.close();
+            } catch (Exception e) {
+                log.warn("Could not close recent event store: {}", e.getMessage());
+            }
+        }
+    }
+}
@@ -0,0 +1,128 @@
+package com.ecommerce.analytics.service;
+
+import com.ecommerce.analytics.config.RedisConfig;
+import com.ecommerce.analytics.resilience.CircuitBreaker;
+import com.ecommerce.analytics.resilience.GuardedReader;
+import io.lettuce.core.ClientOptions;
+import io.lettuce.core.SocketOptions;
+import io.lettuce.core.cluster.ClusterClientOptions;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.data.redis.RedisProperties;
+import org.springframework.data.redis.connection.lettuce.LettuceClientConfiguration;
+import org.springframework.data.redis.connection.lettuce.LettuceConnectionFactory;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.serializer.GenericJackson2JsonRedisSerializer;
+import org.springframework.data.redis.serializer.StringRedisSerializer;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.function.Function;
+
+/**
+ * Redis reads for the query endpoints.
+ *
+ * Uses its own connection, to the same Redis and with the same credentials
+ * and SSL settings as the application's, but with a tight command timeout
+ * that rejects commands outright while disconnected, so a slow or
+ * unreachable Redis costs a query a few milliseconds rather than the general
+ * client timeout. Reads go through a
+ * {@link GuardedReader}: after repeated failures the circuit opens and queries
+ * are answered from the last good result held in process, marked stale.
+ */
+@Component
+@Slf4j
+@RequiredArgsConstructor
+public class RedisMetricsReader {
+
+    private final MeterRegistry meterRegistry;
+    private final RedisProperties redisProperties;
+
+    @Value("${redis.query.timeout-ms:100}")
+    private long timeoutMs;
+
+    @Value("${redis.query.failure-threshold:3}")
+    private int failureThreshold;
+
+    @Value("${redis.query.open-seconds:5}")
+    private int openSeconds;
+
+    @Value("${redis.query.last-good-capacity:10000}")
+    private int lastGoodCapacity;
+
+    private LettuceConnectionFactory connectionFactory;
+    private RedisTemplate<String, Object> template;
+    private GuardedReader reader;
+
+    @PostConstruct
+    public void init() {
+        Duration timeout = Duration.ofMillis(timeoutMs);
+        ClientOptions.Builder options = redisProperties.getCluster() != null
+                ? ClusterClientOptions.builder()
+                : ClientOptions.builder();
+        LettuceClientConfiguration clientConfig = RedisConfig.clientConfiguration(redisProperties)
+                .commandTimeout(timeout)
+                .clientOptions(options
+                        .disconnectedBehavior(ClientOptions.DisconnectedBehavior.REJECT_COMMANDS)
+                        .socketOptions(SocketOptions.builder().connectTimeout(timeout).build())
+                        .build())
+                .build();
+        connectionFactory = new LettuceConnectionFactory(
+                RedisConfig.connectionConfiguration(redisProperties), clientConfig);
+        connectionFactory.afterPropertiesSet();
+        connectionFactory.start();
+
+        template = new RedisTemplate<>();
+        template.setConnectionFactory(connectionFactory);
+        template.setKeySerializer(new StringRedisSerializer());
+        template.setHashKeySerializer(new StringRedisSerializer());
+        template.setValueSerializer(new GenericJackson2JsonRedisSerializer());
+        template.setHashValueSerializer(new GenericJackson2JsonRedisSerializer());
+        template.afterPropertiesSet();
+
+        reader = new GuardedReader(new CircuitBreaker(failureThreshold, Duration.ofSeconds(openSeconds).toMillis()),
+                lastGoodCapacity);
+
+        Gauge.builder("analytics.redis.reads.circuit.state", reader, r -> r.getBreaker().getState().ordinal())
+                .description("0 closed, 1 half-open, 2 open")
+                .register(meterRegistry);
+        FunctionCounter.builder("analytics.redis.reads.failures", reader, GuardedReader::failures)
+                .register(meterRegistry);
+        FunctionCounter.builder("analytics.redis.reads.fallbacks", reader, GuardedReader::fallbacks)
+                .register(meterRegistry);
+
+        log.info("Query reads from Redis time out after {}ms; circuit opens for {}s after {} failures",
+                timeoutMs, openSeconds, failureThreshold);
+    }
+
+    /**
+     * Run a read against Redis, or serve the last good result for the key if
+     * Redis is failing
+     */
+    public <T> GuardedReader.Reading<T> read(String key, Function<RedisTemplate<String, Object>, T> query) {
+        CircuitBreaker.State before = reader.getBreaker().getState();
+        GuardedReader.Reading<T> reading = reader.read(key, () -> query.apply(template));
+        CircuitBreaker.State after = reader.getBreaker().getState();
+        if (before != after) {
+            if (after == CircuitBreaker.State.OPEN) {
+                log.warn("Redis reads failing; serving last known metrics for {}s", openSeconds);
+            } else if (after == CircuitBreaker.State.CLOSED) {
+                log.info("Redis reads recovered");
+            }
+        }
+        return reading;
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        if (connectionFactory != null) {
+            connectionFactory.destroy();
+        }
+    }
+}
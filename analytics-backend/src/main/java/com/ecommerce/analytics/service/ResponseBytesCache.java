@@ -0,0 +1,238 @@
+package com.ecommerce.analytics.service;
+
+import com.ecommerce.analytics.tenant.TenantRegistry;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Predicate;
+import java.util.function.Supplier;
+import java.util.zip.CRC32;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Serialized responses of the metric endpoints, shared between requests.
+ *
+ * Each distinct request (tenant, endpoint, window, limit) is built and
+ * serialized to JSON and gzip once, then the same bytes are written to every
+ * caller until new metrics are published ({@link #invalidate(Collection)}) or
+ * the entry reaches its maximum age, which covers replicas that read metrics
+ * another replica published. When metrics are published, the shapes requested
+ * since the previous publish are rebuilt right away on the publishing thread,
+ * so requests find them ready; the first request of a new shape builds it.
+ * Builds run outside any map lock, and concurrent misses on one key share one
+ * build. Only tenants this replica admitted or published are cached, so
+ * arbitrary {@code tenant} values cannot crowd out the entries.
+ */
+@Component
+@Slf4j
+@RequiredArgsConstructor
+public class ResponseBytesCache {
+
+    private final ObjectMapper objectMapper;
+    private final MeterRegistry meterRegistry;
+    private final TenantRegistry tenantRegistry;
+
+    @Value("${response-cache.enabled:true}")
+    private boolean enabled;
+
+    @Value("${response-cache.max-age-ms:10000}")
+    private long maxAgeMs;
+
+    @Value("${response-cache.max-entries:1000}")
+    private int maxEntries;
+
+    private final Map<String, Entry> entries = new ConcurrentHashMap<>();
+    // Builds in progress, joined by concurrent misses on the same key
+    private final Map<String, CompletableFuture<Entry>> builds = new ConcurrentHashMap<>();
+    // Request shapes seen since the last publish, rebuilt when the next one happens
+    private final Map<String, Shape<?>> shapes = new ConcurrentHashMap<>();
+    private volatile Set<String> publishedTenants = Set.of();
+    private volatile long generation;
+
+    private Counter hits;
+    private Counter misses;
+    private Counter prebuilt;
+
+    @PostConstruct
+    public void init() {
+        hits = Counter.builder("analytics.response.cache").tag("result", "hit").register(meterRegistry);
+        misses = Counter.builder("analytics.response.cache").tag("result", "miss").register(meterRegistry);
+        prebuilt = Counter.builder("analytics.response.cache").tag("result", "prebuilt").register(meterRegistry);
+    }
+
+    /**
+     * Cached bytes for the tenant's request, building and serializing the
+     * response if there are none for the current metrics
+     *
+     * @param key       the request shape within the tenant (endpoint, window, limit)
+     * @param cacheable whether a freshly built response may be shared
+     */
+    public <T> Entry get(String tenant, String key, Supplier<T> build, Predicate<T> cacheable) {
+        if (!enabled || !isKnown(tenant)) {
+            return serialize(build.get(), generation);
+        }
+        String cacheKey = tenant + ":" + key;
+        Shape<?> shape = shapes.get(cacheKey);
+        if (shape != null) {
+            shape.requested = true;
+        } else if (shapes.size() < maxEntries) {
+            shapes.putIfAbsent(cacheKey, new Shape<>(tenant, build, cacheable));
+        }
+
+        Entry current = entries.get(cacheKey);
+        if (isValid(current, System.currentTimeMillis())) {
+            hits.increment();
+            return current;
+        }
+        return load(cacheKey, build, cacheable, misses);
+    }
+
+    /**
+     * Drop every entry and rebuild the shapes requested since the previous
+     * publish; called on the publishing thread once new metrics are in Redis
+     *
+     * @param tenants the tenants whose metrics were just published
+     */
+    public void invalidate(Collection<String> tenants) {
+        generation++;
+        entries.clear();
+        publishedTenants = Set.copyOf(tenants);
+        if (!enabled) {
+            return;
+        }
+        Iterator<Map.Entry<String, Shape<?>>> iterator = shapes.entrySet().iterator();
+        while (iterator.hasNext()) {
+            Map.Entry<String, Shape<?>> next = iterator.next();
+            Shape<?> shape = next.getValue();
+            if (!shape.requested || !isKnown(shape.tenant)) {
+                iterator.remove();
+                continue;
+            }
+            shape.requested = false;
+            try {
+                prebuild(next.getKey(), shape);
+            } catch (RuntimeException e) {
+                log.debug("Could not prebuild response {}: {}", next.getKey(), e.getMessage());
+            }
+        }
+    }
+
+    private <T> void prebuild(String cacheKey, Shape<T> shape) {
+        load(cacheKey, shape.build, shape.cacheable, prebuilt);
+    }
+
+    /**
+     * Build the key's response, or join the build already running for it
+     */
+    private <T> Entry load(String cacheKey, Supplier<T> build, Predicate<T> cacheable, Counter counter) {
+        CompletableFuture<Entry> mine = new CompletableFuture<>();
+        CompletableFuture<Entry> running = builds.putIfAbsent(cacheKey, mine);
+        if (running != null) {
+            hits.increment();
+            try {
+                return running.join();
+            } catch (CompletionException e) {
+                throw e.getCause() instanceof RuntimeException cause ? cause : e;
+            }
+        }
+
+        counter.increment();
+        try {
+            long buildGeneration = generation;
+            T response = build.get();
+            Entry entry = serialize(response, buildGeneration);
+            // A full cache keeps serving what it holds rather than admitting new keys
+            if (cacheable.test(response) && (entries.size() < maxEntries || entries.containsKey(cacheKey))) {
+                entries.put(cacheKey, entry);
+            }
+            mine.complete(entry);
+            return entry;
+        } catch (RuntimeException e) {
+            mine.completeExceptionally(e);
+            throw e;
+        } finally {
+            builds.remove(cacheKey, mine);
+        }
+    }
+
+    private boolean isKnown(String tenant) {
+        return publishedTenants.contains(tenant) || tenantRegistry.isAdmitted(tenant);
+    }
+
+    private boolean isValid(Entry entry, long now) {
+        return entry != null && entry.generation == generation && now - entry.builtAt < maxAgeMs;
+    }
+
+    private Entry serialize(Object response, long generation) {
+        try {
+            byte[] json = objectMapper.writeValueAsBytes(response);
+            ByteArrayOutputStream compressed = new ByteArrayOutputStream(json.length / 2 + 64);
+            try (GZIPOutputStream gzip = new GZIPOutputStream(compressed)) {
+                gzip.write(json);
+            }
+            CRC32 crc = new CRC32();
+            crc.update(json);
+            String tag = Long.toHexString(crc.getValue());
+            return new Entry(json, compressed.toByteArray(), "\"" + tag + "\"", "\"" + tag + "-gz\"",
+                    System.currentTimeMillis(), generation);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * How to build one request shape again at publish time
+     */
+    private static class Shape<T> {
+        private final String tenant;
+        private final Supplier<T> build;
+        private final Predicate<T> cacheable;
+        private volatile boolean requested = true;
+
+        Shape(String tenant, Supplier<T> build, Predicate<T> cacheable) {
+            this.tenant = tenant;
+            this.build = build;
+            this.cacheable = cacheable;
+        }
+    }
+
+    /**
+     * One serialized response
+     */
+    @Getter
+    public static class Entry {
+        private final byte[] json;
+        private final byte[] gzip;
+        private final String etag;
+        // Strong validators are per representation, so the gzip body has its own
+        private final String gzipEtag;
+        private final long builtAt;
+        private final long generation;
+
+        Entry(byte[] json, byte[] gzip, String etag, String gzipEtag, long builtAt, long generation) {
+            this.json = json;
+            this.gzip = gzip;
+            this.etag = etag;
+            this.gzipEtag = gzipEtag;
+            this.builtAt = builtAt;
+            this.generation = generation;
+        }
+    }
+}
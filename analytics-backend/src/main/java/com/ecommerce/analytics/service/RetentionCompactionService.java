@@ -0,0 +1,350 @@
+package com.ecommerce.analytics.service;
+
+import com.ecommerce.analytics.model.RetentionTier;
+import com.ecommerce.analytics.model.UserEvent;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PostConstruct;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.bson.Document;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.BulkOperations;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.aggregation.Aggregation;
+import org.springframework.data.mongodb.core.aggregation.AggregationOperation;
+import org.springframework.data.mongodb.core.index.Index;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Date;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Tiered retention of event history.
+ *
+ * Raw events are kept for {@code retention.raw-hours}, per-minute rollups
+ * (event counts by tenant, event type and page) for
+ * {@code retention.minute-days} and per-hour rollups for
+ * {@code retention.hour-days}. A background job rolls raw events into
+ * minute buckets and minute buckets into hour buckets, one bounded batch of
+ * source time at a time, and records after each batch how far every tier is
+ * compacted in the {@code compaction_state} collection, so an interrupted
+ * run resumes where it stopped. Rollups are keyed by (tenant, bucket, event
+ * type, page) and overwritten with a full recount of their bucket, so a batch
+ * that is re-run after a crash gives the same result. Raw events are only
+ * compacted once they are older than {@code retention.compaction.settle-seconds}
+ * and the write-ahead log has applied everything that arrived before them. A
+ * tier is only deleted up to where it has been compacted into the next one,
+ * in the same bounded slices of time. In cluster mode only the finalization
+ * lease holder runs the job.
+ */
+@Service
+@Slf4j
+@RequiredArgsConstructor
+public class RetentionCompactionService {
+
+    private static final String STATE_COLLECTION = "compaction_state";
+    private static final String COMPACTED_UNTIL = "compactedUntil";
+
+    private final MongoTemplate mongoTemplate;
+    private final ClusterMetricsService clusterMetricsService;
+    private final WriteAheadLogService writeAheadLogService;
+    private final MeterRegistry meterRegistry;
+
+    @Value("${retention.compaction.enabled:true}")
+    private boolean compactionEnabled;
+
+    @Value("${retention.raw-hours:24}")
+    private long rawHours;
+
+    @Value("${retention.minute-days:30}")
+    private long minuteDays;
+
+    @Value("${retention.hour-days:365}")
+    private long hourDays;
+
+    @Value("${retention.compaction.batch-minutes:60}")
+    private long batchMinutes;
+
+    @Value("${retention.compaction.batch-hours:24}")
+    private long batchHours;
+
+    @Value("${retention.compaction.max-batches:24}")
+    private int maxBatches;
+
+    @Value("${retention.compaction.settle-seconds:120}")
+    private long settleSeconds;
+
+    private final Map<RetentionTier, Instant> compactedUntil = new EnumMap<>(RetentionTier.class);
+    private final Map<RetentionTier, Counter> rollupsWritten = new EnumMap<>(RetentionTier.class);
+    private final Map<RetentionTier, Counter> deleted = new EnumMap<>(RetentionTier.class);
+    private Timer runTimer;
+
+    @PostConstruct
+    public void init() {
+        for (RetentionTier tier : RetentionTier.values()) {
+            deleted.put(tier, Counter.builder("analytics.retention.deleted").tag("tier", tier.label())
+                    .description("Expired documents deleted").register(meterRegistry));
+            if (tier != RetentionTier.RAW) {
+                rollupsWritten.put(tier, Counter.builder("analytics.retention.rollups.written")
+                        .tag("tier", tier.label()).register(meterRegistry));
+                Gauge.builder("analytics.retention.compaction.lag", this, service -> service.lagSeconds(tier))
+                        .tag("tier", tier.label())
+                        .baseUnit("seconds")
+                        .description("How far compaction into the tier trails the clock")
+                        .register(meterRegistry);
+            }
+        }
+        runTimer = Timer.builder("analytics.retention.compaction.run").register(meterRegistry);
+
+        try {
+            for (RetentionTier tier : List.of(RetentionTier.MINUTE, RetentionTier.HOUR)) {
+                mongoTemplate.indexOps(tier.getCollection()).ensureIndex(new Index()
+                        .on("tenantId", Sort.Direction.ASC).on("bucketStart", Sort.Direction.ASC)
+                        .named("tenant_bucket"));
+                mongoTemplate.indexOps(tier.getCollection()).ensureIndex(new Index()
+                        .on("bucketStart", Sort.Direction.ASC).named("bucket"));
+            }
+        } catch (RuntimeException e) {
+            log.warn("Could not create rollup indexes: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * Compact every tier into the next and delete what has expired
+     */
+    @Scheduled(fixedDelayString = "${retention.compaction.interval-ms:300000}",
+            initialDelayString = "${retention.compaction.initial-delay-ms:60000}")
+    public void run() {
+        if (clusterMetricsService.isEnabled() && !clusterMetricsService.holdsLease()) {
+            // Only the lease holder compacts, so replicas don't all run the same batches
+            return;
+        }
+        long started = System.nanoTime();
+        try {
+            if (compactionEnabled) {
+                compact(RetentionTier.MINUTE);
+                compact(RetentionTier.HOUR);
+            }
+            deleteExpired();
+        } catch (Exception e) {
+            log.error("Retention compaction failed: {}", e.getMessage(), e);
+        } finally {
+            runTimer.record(Duration.ofNanos(System.nanoTime() - started));
+        }
+    }
+
+    /**
+     * Time up to which the tier holds the compacted history of the finer one; null before its first batch
+     */
+    public Instant compactedUntil(RetentionTier tier) {
+        Document state = mongoTemplate.findById(tier.label(), Document.class, STATE_COLLECTION);
+        Instant until = state == null || state.getDate(COMPACTED_UNTIL) == null
+                ? null
+                : state.getDate(COMPACTED_UNTIL).toInstant();
+        synchronized (compactedUntil) {
+            if (until != null) {
+                compactedUntil.put(tier, until);
+            }
+        }
+        return until;
+    }
+
+    /**
+     * How long the tier keeps its documents
+     */
+    public Duration retention(RetentionTier tier) {
+        return switch (tier) {
+            case RAW -> Duration.ofHours(rawHours);
+            case MINUTE -> Duration.ofDays(minuteDays);
+            case HOUR -> Duration.ofDays(hourDays);
+        };
+    }
+
+    /**
+     * Roll the finer tier into this one, batch by batch, up to what is complete
+     */
+    void compact(RetentionTier tier) {
+        RetentionTier source = tier == RetentionTier.MINUTE ? RetentionTier.RAW : RetentionTier.MINUTE;
+        Instant limit;
+        if (source == RetentionTier.RAW) {
+            // Leave the last minutes alone until events still in flight have arrived,
+            // and anything the write-ahead log has yet to write to MongoDB
+            Instant settled = Instant.now().minusSeconds(settleSeconds);
+            Instant applied = writeAheadLogService.appliedUntil();
+            if (applied != null && applied.isBefore(settled)) {
+                settled = applied;
+            }
+            limit = settled.truncatedTo(tier.getUnit());
+        } else {
+            Instant sourceUntil = compactedUntil(source);
+            if (sourceUntil == null) {
+                return;
+            }
+            limit = sourceUntil.truncatedTo(tier.getUnit());
+        }
+
+        Instant from = compactedUntil(tier);
+        if (from == null) {
+            Instant earliest = earliest(source);
+            if (earliest == null) {
+                saveCompactedUntil(tier, limit);
+                return;
+            }
+            from = earliest.truncatedTo(tier.getUnit());
+        }
+
+        Duration batch = batch(source);
+        int batches = 0;
+        while (from.isBefore(limit) && batches < maxBatches) {
+            Instant to = from.plus(batch);
+            if (to.isAfter(limit)) {
+                to = limit;
+            }
+            int written = rollup(source, tier, from, to);
+            saveCompactedUntil(tier, to);
+            log.debug("Compacted {} [{}, {}) into {} {} rollups", source.label(), from, to, written, tier.label());
+            from = to;
+            batches++;
+        }
+    }
+
+    /**
+     * Count the source documents of [from, to) into the tier's buckets, replacing those rollups
+     */
+    private int rollup(RetentionTier source, RetentionTier tier, Instant from, Instant to) {
+        String time = "$" + source.getTimeField();
+        Document key = new Document("tenantId", new Document("$ifNull",
+                List.of("$tenantId", UserEvent.DEFAULT_TENANT)))
+                .append("bucketStart", new Document("$dateTrunc",
+                        new Document("date", time).append("unit", tier.label())))
+                .append("eventType", "$eventType")
+                .append("pageUrl", "$pageUrl");
+        Object count = source == RetentionTier.RAW ? 1 : "$count";
+
+        AggregationOperation match = context -> new Document("$match", new Document(source.getTimeField(),
+                new Document("$gte", Date.from(from)).append("$lt", Date.from(to))));
+        AggregationOperation group = context -> new Document("$group", new Document("_id", key)
+                .append("count", new Document("$sum", count)));
+        Aggregation aggregation = Aggregation.newAggregation(match, group)
+                .withOptions(Aggregation.newAggregationOptions().allowDiskUse(true).build());
+
+        List<Document> buckets = mongoTemplate.aggregate(aggregation, source.getCollection(), Document.class)
+                .getMappedResults();
+        if (buckets.isEmpty()) {
+            return 0;
+        }
+        BulkOperations bulk = mongoTemplate.bulkOps(BulkOperations.BulkMode.UNORDERED, tier.getCollection());
+        for (Document bucket : buckets) {
+            Document id = bucket.get("_id", Document.class);
+            bulk.upsert(Query.query(Criteria.where("_id").is(id)), new Update()
+                    .set("tenantId", id.get("tenantId"))
+                    .set("bucketStart", id.get("bucketStart"))
+                    .set("eventType", id.get("eventType"))
+                    .set("pageUrl", id.get("pageUrl"))
+                    .set("count", ((Number) bucket.get("count")).longValue()));
+        }
+        bulk.execute();
+        rollupsWritten.get(tier).increment(buckets.size());
+        return buckets.size();
+    }
+
+    /**
+     * Delete each tier past its retention, but never what the next tier doesn't hold yet
+     */
+    void deleteExpired() {
+        Instant now = Instant.now();
+        Instant rawCutoff = now.minus(retention(RetentionTier.RAW));
+        if (compactionEnabled) {
+            rawCutoff = earlier(rawCutoff, compactedUntil(RetentionTier.MINUTE));
+        }
+        delete(RetentionTier.RAW, rawCutoff);
+        delete(RetentionTier.MINUTE, earlier(now.minus(retention(RetentionTier.MINUTE)),
+                compactedUntil(RetentionTier.HOUR)));
+        delete(RetentionTier.HOUR, now.minus(retention(RetentionTier.HOUR)));
+    }
+
+    /**
+     * Delete the tier's documents before the cutoff, oldest first, one batch
+     * of time per remove and at most {@code max-batches} per run
+     */
+    private void delete(RetentionTier tier, Instant cutoff) {
+        if (cutoff == null) {
+            return;
+        }
+        Instant from = earliest(tier);
+        if (from == null) {
+            return;
+        }
+        Duration batch = batch(tier);
+        long removed = 0;
+        int batches = 0;
+        while (from.isBefore(cutoff) && batches < maxBatches) {
+            Instant to = from.plus(batch);
+            if (to.isAfter(cutoff)) {
+                to = cutoff;
+            }
+            removed += mongoTemplate.remove(Query.query(Criteria.where(tier.getTimeField()).lt(Date.from(to))),
+                    tier.getCollection()).getDeletedCount();
+            from = to;
+            batches++;
+        }
+        if (removed > 0) {
+            deleted.get(tier).increment(removed);
+            log.info("Deleted {} {} documents before {}", removed, tier.label(), from);
+        }
+    }
+
+    /**
+     * Source time handled per batch when compacting or deleting the tier
+     */
+    private Duration batch(RetentionTier tier) {
+        return tier == RetentionTier.RAW ? Duration.ofMinutes(batchMinutes) : Duration.ofHours(batchHours);
+    }
+
+    private Instant earliest(RetentionTier tier) {
+        Query query = new Query().with(Sort.by(Sort.Direction.ASC, tier.getTimeField())).limit(1);
+        query.fields().include(tier.getTimeField());
+        Document first = mongoTemplate.findOne(query, Document.class, tier.getCollection());
+        return first == null || first.getDate(tier.getTimeField()) == null
+                ? null
+                : first.getDate(tier.getTimeField()).toInstant();
+    }
+
+    private void saveCompactedUntil(RetentionTier tier, Instant until) {
+        mongoTemplate.upsert(Query.query(Criteria.where("_id").is(tier.label())),
+                Update.update(COMPACTED_UNTIL, Date.from(until)), STATE_COLLECTION);
+        synchronized (compactedUntil) {
+            compactedUntil.put(tier, until);
+        }
+    }
+
+    /**
+     * The earlier of the two; null (nothing compacted yet) means nothing may go
+     */
+    private static Instant earlier(Instant cutoff, Instant compacted) {
+        if (compacted == null) {
+            return null;
+        }
+        return compacted.isBefore(cutoff) ? compacted : cutoff;
+    }
+
+    private double lagSeconds(RetentionTier tier) {
+        Instant until;
+        synchronized (compactedUntil) {
+            until = compactedUntil.get(tier);
+        }
+        return until == null ? 0 : Duration.between(until, Instant.now()).toSeconds();
+    }
+}
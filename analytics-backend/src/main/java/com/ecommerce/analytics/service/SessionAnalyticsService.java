@@ -0,0 +1,123 @@
+package com.ecommerce.analytics.service;
+
+import com.ecommerce.analytics.aggregation.SessionSummary;
+import com.ecommerce.analytics.aggregation.SessionTracker;
+import com.ecommerce.analytics.aggregation.SessionView;
+import com.ecommerce.analytics.model.AnalyticsResponse;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+/**
+ * Service for session metrics.
+ * Reads the session trackers on a tenant's aggregation lanes and merges their partials.
+ */
+@Service
+@Slf4j
+@RequiredArgsConstructor
+public class SessionAnalyticsService {
+
+    private final EventAggregationService eventAggregationService;
+
+    @Value("${sessions.stats-retention-minutes:60}")
+    private int statsRetentionMinutes;
+
+    /**
+     * A tenant's open sessions plus duration, depth and bounce figures for sessions closed in the window
+     */
+    public AnalyticsResponse.SessionMetricsResponse getSessionMetrics(String tenant, int windowMinutes, int limit) {
+        int minutes = Math.max(1, Math.min(windowMinutes, statsRetentionMinutes));
+        try {
+            long now = System.currentTimeMillis();
+            long window = Duration.ofMinutes(minutes).toMillis();
+            SessionSummary summary = SessionSummary.merge(eventAggregationService.queryLanes(tenant,
+                    SessionTracker.class, tracker -> tracker.summary(now, window)));
+
+            long closed = summary.getClosedSessions();
+            return AnalyticsResponse.SessionMetricsResponse.builder()
+                    .windowMinutes(minutes)
+                    .openSessions(summary.getOpenSessions())
+                    .closedSessions(closed)
+                    .averageDurationSeconds(average(summary.getTotalDurationMillis() / 1000.0, closed))
+                    .averagePageViews(average(summary.getTotalPageViews(), closed))
+                    .averageEvents(average(summary.getTotalEvents(), closed))
+                    .bounceRate(average(summary.getBounces(), closed))
+                    .topEntryPages(topPages(summary.getEntryPages(), limit))
+                    .topExitPages(topPages(summary.getExitPages(), limit))
+                    .timestamp(Instant.now().toString())
+                    .build();
+
+        } catch (Exception e) {
+            log.error("Error retrieving session metrics: {}", e.getMessage());
+            return AnalyticsResponse.SessionMetricsResponse.builder()
+                    .windowMinutes(minutes)
+                    .topEntryPages(Collections.emptyList())
+                    .topExitPages(Collections.emptyList())
+                    .timestamp(Instant.now().toString())
+                    .build();
+        }
+    }
+
+    /**
+     * Open sessions of one user of a tenant, most recently active first
+     */
+    public AnalyticsResponse.LiveSessionsResponse getLiveSessions(String tenant, String userId) {
+        try {
+            List<SessionView> sessions = eventAggregationService.queryUserLane(
+                    tenant, userId, SessionTracker.class, tracker -> tracker.openSessions(userId))
+                    .orElse(List.of());
+
+            List<AnalyticsResponse.SessionDetail> details = sessions.stream()
+                    .sorted(Comparator.comparingLong(SessionView::getLastSeenMillis).reversed())
+                    .map(session -> AnalyticsResponse.SessionDetail.builder()
+                            .sessionId(session.getSessionId())
+                            .startedAt(Instant.ofEpochMilli(session.getStartMillis()).toString())
+                            .lastSeenAt(Instant.ofEpochMilli(session.getLastSeenMillis()).toString())
+                            .durationSeconds((session.getLastSeenMillis() - session.getStartMillis()) / 1000)
+                            .events(session.getEvents())
+                            .pageViews(session.getPageViews())
+                            .entryPage(session.getEntryPage())
+                            .exitPage(session.getExitPage())
+                            .build())
+                    .collect(Collectors.toList());
+
+            return AnalyticsResponse.LiveSessionsResponse.builder()
+                    .userId(userId)
+                    .sessions(details)
+                    .timestamp(Instant.now().toString())
+                    .build();
+
+        } catch (Exception e) {
+            log.error("Error retrieving live sessions for user {}: {}", userId, e.getMessage());
+            return AnalyticsResponse.LiveSessionsResponse.builder()
+                    .userId(userId)
+                    .sessions(Collections.emptyList())
+                    .timestamp(Instant.now().toString())
+                    .build();
+        }
+    }
+
+    private static double average(double total, long count) {
+        return count == 0 ? 0.0 : total / count;
+    }
+
+    private static List<AnalyticsResponse.PageSessionCount> topPages(Map<String, Long> counts, int limit) {
+        return counts.entrySet().stream()
+                .sorted(Map.Entry.<String, Long>comparingByValue().reversed())
+                .limit(limit)
+                .map(entry -> AnalyticsResponse.PageSessionCount.builder()
+                        .url(entry.getKey())
+                        .sessions(entry.getValue())
+                        .build())
+                .collect(Collectors.toList());
+    }
+}
@@ -0,0 +1,131 @@
+package com.ecommerce.analytics.service;
+
+import com.ecommerce.analytics.model.AnalyticsResponse;
+import com.ecommerce.analytics.model.RetentionTier;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.bson.Document;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.aggregation.Aggregation;
+import org.springframework.data.mongodb.core.aggregation.AggregationOperation;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Long-range event trends over the retention tiers.
+ *
+ * A trend is answered per minute while that needs at most
+ * {@code trends.max-points} buckets and the minute tier still covers its
+ * start, otherwise per hour. It reads the coarsest tier for as much of the
+ * range as that tier has been compacted, then the next finer tier, and raw
+ * events for the part no rollup covers yet, so recent events are always
+ * included.
+ */
+@Service
+@Slf4j
+@RequiredArgsConstructor
+public class TrendQueryService {
+
+    private final MongoTemplate mongoTemplate;
+    private final RetentionCompactionService retentionCompactionService;
+
+    @Value("${trends.max-points:1500}")
+    private int maxPoints;
+
+    /**
+     * Events of a tenant per bucket over the last {@code requestedHours} (up to the hour tier's
+     * retention), optionally of one event type or page
+     */
+    public AnalyticsResponse.TrendResponse getTrend(String tenant, int requestedHours, String eventType,
+            String pageUrl) {
+        long hours = Math.max(1, Math.min(requestedHours,
+                retentionCompactionService.retention(RetentionTier.HOUR).toHours()));
+        Instant now = Instant.now();
+        Instant start = now.minus(Duration.ofHours(hours));
+        RetentionTier resolution = hours * 60 <= maxPoints
+                && !start.isBefore(now.minus(retentionCompactionService.retention(RetentionTier.MINUTE)))
+                ? RetentionTier.MINUTE
+                : RetentionTier.HOUR;
+        Instant from = start.truncatedTo(resolution.getUnit());
+
+        // Each tier answers up to where it is compacted; finer tiers take over from there
+        Instant hourUntil = resolution == RetentionTier.HOUR
+                ? clamp(retentionCompactionService.compactedUntil(RetentionTier.HOUR), from, now)
+                : from;
+        Instant minuteUntil = clamp(retentionCompactionService.compactedUntil(RetentionTier.MINUTE), hourUntil, now);
+
+        Map<Instant, Long> buckets = new TreeMap<>();
+        for (Instant bucket = from; bucket.isBefore(now); bucket = bucket.plus(resolution.getBucket())) {
+            buckets.put(bucket, 0L);
+        }
+        List<String> tiers = new ArrayList<>();
+        read(RetentionTier.HOUR, from, hourUntil, resolution, tenant, eventType, pageUrl, buckets, tiers);
+        read(RetentionTier.MINUTE, hourUntil, minuteUntil, resolution, tenant, eventType, pageUrl, buckets, tiers);
+        read(RetentionTier.RAW, minuteUntil, now, resolution, tenant, eventType, pageUrl, buckets, tiers);
+
+        List<AnalyticsResponse.TrendPoint> points = new ArrayList<>(buckets.size());
+        buckets.forEach((bucket, events) -> points.add(AnalyticsResponse.TrendPoint.builder()
+                .bucketStart(bucket.toString())
+                .events(events)
+                .build()));
+
+        return AnalyticsResponse.TrendResponse.builder()
+                .resolution(resolution.label())
+                .tiers(tiers)
+                .from(from.toString())
+                .to(now.toString())
+                .points(points)
+                .timestamp(Instant.now().toString())
+                .build();
+    }
+
+    /**
+     * Add the tier's events of [from, to) to the buckets of the given resolution
+     */
+    private void read(RetentionTier tier, Instant from, Instant to, RetentionTier resolution, String tenant,
+            String eventType, String pageUrl, Map<Instant, Long> buckets, List<String> tiers) {
+        if (!from.isBefore(to)) {
+            return;
+        }
+        tiers.add(tier.label());
+
+        Criteria criteria = Criteria.where(tier.getTimeField()).gte(Date.from(from)).lt(Date.from(to));
+        criteria = new Criteria().andOperator(criteria, tier == RetentionTier.RAW
+                ? EventAggregationService.tenantCriteria(tenant)
+                : Criteria.where("tenantId").is(tenant));
+        if (eventType != null) {
+            criteria = new Criteria().andOperator(criteria, Criteria.where("eventType").is(eventType));
+        }
+        if (pageUrl != null) {
+            criteria = new Criteria().andOperator(criteria, Criteria.where("pageUrl").is(pageUrl));
+        }
+
+        Object count = tier == RetentionTier.RAW ? 1 : "$count";
+        AggregationOperation group = context -> new Document("$group", new Document("_id",
+                new Document("$dateTrunc", new Document("date", "$" + tier.getTimeField())
+                        .append("unit", resolution.label())))
+                .append("events", new Document("$sum", count)));
+        Aggregation aggregation = Aggregation.newAggregation(Aggregation.match(criteria), group);
+
+        for (Document bucket : mongoTemplate.aggregate(aggregation, tier.getCollection(), Document.class)) {
+            Instant start = bucket.getDate("_id").toInstant();
+            buckets.merge(start, ((Number) bucket.get("events")).longValue(), Long::sum);
+        }
+    }
+
+    private static Instant clamp(Instant value, Instant min, Instant max) {
+        if (value == null || value.isBefore(min)) {
+            return min;
+        }
+        return value.isAfter(max) ? max : value;
+    }
+}
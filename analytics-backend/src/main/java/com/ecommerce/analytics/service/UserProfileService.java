@@ -0,0 +1,272 @@
+package com.ecommerce.analytics.service;
+
+import com.ecommerce.analytics.model.AnalyticsResponse;
+import com.ecommerce.analytics.model.UserEvent;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.bson.Document;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.aggregation.Aggregation;
+import org.springframework.data.mongodb.core.aggregation.AggregationOperation;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+
+/**
+ * Activity profiles of single users for support lookups.
+ *
+ * One MongoDB aggregation, whose match on userId and a createdAt range is
+ * served by the {@code user_timeline} compound index, reads a user's last
+ * 24 hours as per-minute counts by event type and page plus the last event
+ * time of each session. That activity is cached per user in an LRU bounded
+ * by {@code user-profile.cache.max-entries} and
+ * {@code user-profile.cache.ttl-seconds}, and each lookup cuts its window out
+ * of it, so lookups of the same user over different windows share one entry
+ * and one aggregation. Windows resolve to whole minutes. Concurrent lookups
+ * of the same uncached user share one aggregation.
+ */
+@Service
+@Slf4j
+@RequiredArgsConstructor
+public class UserProfileService {
+
+    // Raw events are kept for retention.raw-hours (24)
+    private static final int MAX_WINDOW_MINUTES = 1440;
+    private static final long MINUTE_MS = 60_000L;
+
+    private final MongoTemplate mongoTemplate;
+    private final MeterRegistry meterRegistry;
+
+    @Value("${user-profile.cache.max-entries:10000}")
+    private int maxEntries;
+
+    @Value("${user-profile.cache.ttl-seconds:30}")
+    private long ttlSeconds;
+
+    @Value("${user-profile.top-pages:5}")
+    private int topPages;
+
+    private Map<String, CachedActivity> cache;
+    private Counter hits;
+    private Counter misses;
+    private Counter aggregations;
+
+    @PostConstruct
+    public void init() {
+        cache = new LinkedHashMap<>(256, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, CachedActivity> eldest) {
+                return size() > maxEntries;
+            }
+        };
+        hits = Counter.builder("analytics.user_profile.cache").tag("result", "hit").register(meterRegistry);
+        misses = Counter.builder("analytics.user_profile.cache").tag("result", "miss").register(meterRegistry);
+        aggregations = Counter.builder("analytics.user_profile.aggregations")
+                .description("Profile aggregations run against MongoDB")
+                .register(meterRegistry);
+        Gauge.builder("analytics.user_profile.cache.size", this, service -> service.cacheSize())
+                .register(meterRegistry);
+        Gauge.builder("analytics.user_profile.cache.hit.ratio", this, service -> service.hitRatio())
+                .description("Share of profile lookups served from the cache")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Profile of a tenant's user over the last {@code requestedMinutes} (1 to 1440), from the cache when fresh
+     */
+    public AnalyticsResponse.UserProfileResponse getProfile(String tenant, String userId, int requestedMinutes) {
+        int windowMinutes = Math.max(1, Math.min(requestedMinutes, MAX_WINDOW_MINUTES));
+        String key = tenant + ":" + userId;
+        long now = System.currentTimeMillis();
+        CompletableFuture<UserActivity> activity;
+        boolean load = false;
+        synchronized (this) {
+            CachedActivity cached = cache.get(key);
+            if (cached != null && cached.expiresAt > now) {
+                activity = cached.activity;
+            } else {
+                activity = new CompletableFuture<>();
+                cache.put(key, new CachedActivity(activity, now + Duration.ofSeconds(ttlSeconds).toMillis()));
+                load = true;
+            }
+        }
+
+        if (!load) {
+            hits.increment();
+            return join(activity).profile(userId, windowMinutes, topPages);
+        }
+        misses.increment();
+        try {
+            activity.complete(aggregate(tenant, userId));
+        } catch (RuntimeException e) {
+            synchronized (this) {
+                // Don't cache the failure; the next lookup tries again
+                CachedActivity current = cache.get(key);
+                if (current != null && current.activity == activity) {
+                    cache.remove(key);
+                }
+            }
+            activity.completeExceptionally(e);
+        }
+        return join(activity).profile(userId, windowMinutes, topPages);
+    }
+
+    private UserActivity aggregate(String tenant, String userId) {
+        Instant now = Instant.now();
+        Instant since = now.minus(Duration.ofMinutes(MAX_WINDOW_MINUTES));
+        Criteria criteria = new Criteria().andOperator(
+                Criteria.where("userId").is(userId).and("createdAt").gte(since),
+                EventAggregationService.tenantCriteria(tenant));
+
+        Document bucket = new Document("minute", new Document("$dateTrunc",
+                new Document("date", "$createdAt").append("unit", "minute")))
+                .append("type", "$eventType")
+                .append("page", "$pageUrl");
+        AggregationOperation byMinute = context -> new Document("$group", new Document("_id", bucket)
+                .append("count", new Document("$sum", 1)));
+        AggregationOperation bySession = context -> new Document("$group", new Document("_id", "$sessionId")
+                .append("lastAt", new Document("$max", "$createdAt")));
+        Aggregation aggregation = Aggregation.newAggregation(
+                Aggregation.match(criteria),
+                Aggregation.facet(byMinute).as("buckets")
+                        .and(bySession).as("sessions"));
+
+        aggregations.increment();
+        Document result = mongoTemplate.aggregate(aggregation, UserEvent.class, Document.class)
+                .getUniqueMappedResult();
+        return UserActivity.of(result, now);
+    }
+
+    private static List<Document> facet(Document result, String name) {
+        return result == null ? List.of() : result.getList(name, Document.class, List.of());
+    }
+
+    private static long count(Document document, String field) {
+        Number value = document.get(field, Number.class);
+        return value == null ? 0 : value.longValue();
+    }
+
+    private static UserActivity join(CompletableFuture<UserActivity> activity) {
+        try {
+            return activity.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException cause) {
+                throw cause;
+            }
+            throw e;
+        }
+    }
+
+    private synchronized int cacheSize() {
+        return cache.size();
+    }
+
+    private double hitRatio() {
+        double lookups = hits.count() + misses.count();
+        return lookups == 0 ? 0 : hits.count() / lookups;
+    }
+
+    private record CachedActivity(CompletableFuture<UserActivity> activity, long expiresAt) {
+    }
+
+    private record Bucket(long minute, String type, String page, long count) {
+    }
+
+    /**
+     * A user's last 24 hours: event counts per minute, type and page, and
+     * when each session last had an event
+     */
+    private record UserActivity(List<Bucket> buckets, long[] sessionLastSeen, Instant asOf) {
+
+        static UserActivity of(Document result, Instant asOf) {
+            // Types and pages repeat across minutes; keep one copy of each
+            Map<String, String> strings = new HashMap<>();
+            List<Bucket> buckets = new ArrayList<>();
+            for (Document document : facet(result, "buckets")) {
+                Document id = document.get("_id", Document.class);
+                Date minute = id.getDate("minute");
+                buckets.add(new Bucket(minute.getTime() / MINUTE_MS,
+                        shared(strings, id.getString("type")), shared(strings, id.getString("page")),
+                        count(document, "count")));
+            }
+            long[] sessionLastSeen = facet(result, "sessions").stream()
+                    .map(session -> session.getDate("lastAt"))
+                    .filter(Objects::nonNull)
+                    .mapToLong(Date::getTime)
+                    .sorted()
+                    .toArray();
+            return new UserActivity(buckets, sessionLastSeen, asOf);
+        }
+
+        AnalyticsResponse.UserProfileResponse profile(String userId, int windowMinutes, int topPages) {
+            long since = System.currentTimeMillis() - Duration.ofMinutes(windowMinutes).toMillis();
+            long firstMinute = since / MINUTE_MS;
+            long total = 0;
+            Map<String, Long> byType = new LinkedHashMap<>();
+            Map<String, Long> byPage = new HashMap<>();
+            for (Bucket bucket : buckets) {
+                if (bucket.minute() >= firstMinute) {
+                    total += bucket.count();
+                    byType.merge(bucket.type(), bucket.count(), Long::sum);
+                    byPage.merge(bucket.page(), bucket.count(), Long::sum);
+                }
+            }
+            List<AnalyticsResponse.PageViewCount> pages = byPage.entrySet().stream()
+                    .sorted(Map.Entry.<String, Long>comparingByValue().reversed()
+                            .thenComparing(Map.Entry.comparingByKey(Comparator.nullsFirst(Comparator.naturalOrder()))))
+                    .limit(topPages)
+                    .map(page -> AnalyticsResponse.PageViewCount.builder()
+                            .url(page.getKey())
+                            .views(page.getValue())
+                            .build())
+                    .toList();
+            // Sessions with an event in the window, i.e. whose last event is at or after its start
+            int firstSession = firstAtOrAfter(sessionLastSeen, firstMinute * MINUTE_MS);
+            long lastSeen = sessionLastSeen.length == 0 ? 0 : sessionLastSeen[sessionLastSeen.length - 1];
+
+            return AnalyticsResponse.UserProfileResponse.builder()
+                    .userId(userId)
+                    .windowMinutes(windowMinutes)
+                    .lastSeen(total == 0 ? null : Instant.ofEpochMilli(lastSeen).toString())
+                    .totalEvents(total)
+                    .eventsByType(byType)
+                    .topPages(pages)
+                    .sessions(sessionLastSeen.length - firstSession)
+                    .asOf(asOf.toString())
+                    .build();
+        }
+
+        private static int firstAtOrAfter(long[] sorted, long value) {
+            int index = Arrays.binarySearch(sorted, value);
+            if (index < 0) {
+                return -index - 1;
+            }
+            while (index > 0 && sorted[index - 1] == value) {
+                index--;
+            }
+            return index;
+        }
+
+        private static String shared(Map<String, String> strings, String value) {
+            return value == null ? null : strings.computeIfAbsent(value, v -> v);
+        }
+    }
+}
@@ -0,0 +1,325 @@
+package com.ecommerce.analytics.service;
+
+import com.ecommerce.analytics.model.UserEvent;
+import com.ecommerce.analytics.wal.WalRecordCodec;
+import com.ecommerce.analytics.wal.WriteAheadLog;
+import com.mongodb.bulk.BulkWriteError;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.bson.types.ObjectId;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.data.mongodb.BulkOperationException;
+import org.springframework.data.mongodb.core.BulkOperations;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Optional local write-ahead log in front of MongoDB.
+ *
+ * When enabled, ingestion acknowledges an event as soon as it is durable in
+ * the log and a background applier writes it to MongoDB in batches. The
+ * applier records how far it got in a small position file, so on startup any
+ * unapplied segments left by the previous process are replayed first. Events
+ * carry client-assigned ObjectIds and duplicate-key errors are ignored, which
+ * makes replaying an already-applied tail harmless. {@link #awaitCaughtUp}
+ * lets startup work that reads MongoDB wait until that tail is applied.
+ *
+ * Client event IDs of events in the log but not yet in MongoDB are tracked,
+ * so dedup can see them and a second append of the same ID is rejected
+ * rather than silently dropped by the applier after being counted.
+ */
+@Service
+@Slf4j
+@RequiredArgsConstructor
+public class WriteAheadLogService {
+
+    private static final String POSITION_FILE = "applied.pos";
+    private static final int DUPLICATE_KEY = 11000;
+    private static final long MAX_BACKOFF_MS = 5000;
+
+    private final MongoTemplate mongoTemplate;
+    private final MeterRegistry meterRegistry;
+
+    @Value("${wal.enabled:false}")
+    private boolean enabled;
+
+    @Value("${wal.directory:./data/wal}")
+    private String directory;
+
+    @Value("${wal.segment-size-mb:64}")
+    private int segmentSizeMb;
+
+    @Value("${wal.max-segments:64}")
+    private int maxSegments;
+
+    @Value("${wal.sync-timeout-ms:2000}")
+    private long syncTimeoutMs;
+
+    @Value("${wal.apply-batch-size:500}")
+    private int applyBatchSize;
+
+    private WriteAheadLog writeAheadLog;
+    private Thread applier;
+    private volatile boolean running;
+    private final CountDownLatch tailApplied = new CountDownLatch(1);
+    private final Set<String> pendingEventIds = ConcurrentHashMap.newKeySet();
+    // Arrival time of the oldest event read but not yet applied; MAX_VALUE when there is none, 0 before the applier runs
+    private volatile long oldestUnappliedMillis;
+
+    private Counter appendedCounter;
+    private Counter appliedCounter;
+    private Counter applyFailureCounter;
+
+    @PostConstruct
+    public void start() throws IOException {
+        if (!enabled) {
+            return;
+        }
+
+        Path walDirectory = Path.of(directory);
+        writeAheadLog = new WriteAheadLog(walDirectory, segmentSizeMb * 1024 * 1024, maxSegments);
+
+        appendedCounter = meterRegistry.counter("analytics.wal.appended");
+        appliedCounter = meterRegistry.counter("analytics.wal.applied");
+        applyFailureCounter = meterRegistry.counter("analytics.wal.apply.failures");
+        Gauge.builder("analytics.wal.segments", writeAheadLog, WriteAheadLog::segmentCount)
+                .register(meterRegistry);
+
+        WriteAheadLog.Position appliedPosition = readAppliedPosition(walDirectory);
+        log.info("Write-ahead log enabled in {} (resuming apply from {}, {} client event IDs pending)", walDirectory,
+                appliedPosition == null ? "oldest segment" : appliedPosition, trackPending(appliedPosition));
+        Gauge.builder("analytics.wal.pending.event.ids", pendingEventIds, Set::size)
+                .register(meterRegistry);
+
+        running = true;
+        applier = new Thread(() -> applyLoop(appliedPosition), "wal-applier");
+        applier.setDaemon(true);
+        applier.start();
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Wait until the applier has written to MongoDB everything the log held
+     * at startup; returns right away while the WAL is disabled
+     *
+     * @return false if it had not caught up within the timeout
+     */
+    public boolean awaitCaughtUp(long timeoutMillis) throws InterruptedException {
+        return !enabled || tailApplied.await(timeoutMillis, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Share of the allowed segments in use (0 to 1), i.e. how far MongoDB is
+     * behind the log; 0 while the WAL is disabled
+     */
+    public double backlogRatio() {
+        return enabled ? Math.min(1.0, (double) writeAheadLog.segmentCount() / maxSegments) : 0;
+    }
+
+    /**
+     * Arrival time before which every logged event is in MongoDB; null while
+     * the WAL is disabled
+     */
+    public Instant appliedUntil() {
+        if (!enabled) {
+            return null;
+        }
+        long oldest = oldestUnappliedMillis;
+        return oldest == Long.MAX_VALUE ? Instant.now() : Instant.ofEpochMilli(oldest);
+    }
+
+    /**
+     * Whether an event with the same tenant and client event ID is in the log
+     * but not yet written to MongoDB
+     */
+    public boolean isPending(UserEvent event) {
+        return enabled && event.getEventId() != null
+                && pendingEventIds.contains(EventDeduplicationService.key(event));
+    }
+
+    /**
+     * Make the event durable in the log; it is written to MongoDB asynchronously.
+     * Assigns the document ID up front so the acknowledgement can return it.
+     *
+     * @throws DuplicateKeyException if an event with the same client event ID is still pending
+     */
+    public UserEvent append(UserEvent event) throws IOException {
+        if (event.getId() == null) {
+            event.setId(new ObjectId().toHexString());
+        }
+        String key = event.getEventId() != null ? EventDeduplicationService.key(event) : null;
+        if (key != null && !pendingEventIds.add(key)) {
+            throw new DuplicateKeyException("Event " + key + " is already in the write-ahead log");
+        }
+        try {
+            long sequence = writeAheadLog.append(WalRecordCodec.encode(event));
+            writeAheadLog.awaitDurable(sequence, syncTimeoutMs);
+        } catch (InterruptedException e) {
+            forgetPending(key);
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while waiting for WAL sync", e);
+        } catch (IOException | RuntimeException e) {
+            forgetPending(key);
+            throw e;
+        }
+        appendedCounter.increment();
+        return event;
+    }
+
+    private void forgetPending(String key) {
+        if (key != null) {
+            pendingEventIds.remove(key);
+        }
+    }
+
+    /**
+     * Record the client event IDs of the events the previous process left unapplied
+     *
+     * @return how many there were
+     */
+    private int trackPending(WriteAheadLog.Position from) throws IOException {
+        try (WriteAheadLog.Reader reader = writeAheadLog.reader(from)) {
+            ByteBuffer record;
+            while ((record = reader.next()) != null) {
+                UserEvent event = WalRecordCodec.decode(record);
+                if (event.getEventId() != null) {
+                    pendingEventIds.add(EventDeduplicationService.key(event));
+                }
+            }
+        }
+        return pendingEventIds.size();
+    }
+
+    private void applyLoop(WriteAheadLog.Position from) {
+        long backoffMs = 10;
+        long replayed = 0;
+        boolean caughtUp = false;
+
+        try (WriteAheadLog.Reader reader = writeAheadLog.reader(from)) {
+            List<UserEvent> batch = new ArrayList<>(applyBatchSize);
+            while (running) {
+                if (batch.isEmpty()) {
+                    ByteBuffer record;
+                    while (batch.size() < applyBatchSize && (record = reader.next()) != null) {
+                        batch.add(WalRecordCodec.decode(record));
+                    }
+                }
+                oldestUnappliedMillis = batch.isEmpty() ? Long.MAX_VALUE : arrivalMillis(batch.get(0));
+
+                if (batch.isEmpty()) {
+                    if (!caughtUp) {
+                        caughtUp = true;
+                        tailApplied.countDown();
+                        log.info("WAL replay complete: {} events applied from earlier segments", replayed);
+                    }
+                    LockSupport.parkNanos(TimeUnit.MILLISECONDS.toNanos(5));
+                    continue;
+                }
+
+                try {
+                    insertIgnoringDuplicates(batch);
+                    for (UserEvent event : batch) {
+                        if (event.getEventId() != null) {
+                            pendingEventIds.remove(EventDeduplicationService.key(event));
+                        }
+                    }
+                    appliedCounter.increment(batch.size());
+                    if (!caughtUp) {
+                        replayed += batch.size();
+                    }
+                    batch.clear();
+                    backoffMs = 10;
+
+                    WriteAheadLog.Position position = reader.position();
+                    writeAppliedPosition(position);
+                    writeAheadLog.release(position.getSegmentId());
+
+                } catch (Exception e) {
+                    applyFailureCounter.increment();
+                    log.warn("Applying {} WAL events to MongoDB failed, retrying in {}ms: {}",
+                            batch.size(), backoffMs, e.getMessage());
+                    LockSupport.parkNanos(TimeUnit.MILLISECONDS.toNanos(backoffMs));
+                    backoffMs = Math.min(backoffMs * 2, MAX_BACKOFF_MS);
+                }
+            }
+        } catch (Exception e) {
+            log.error("WAL applier stopped: {}", e.getMessage(), e);
+        }
+    }
+
+    private static long arrivalMillis(UserEvent event) {
+        return event.getCreatedAt() != null ? event.getCreatedAt().toEpochMilli() : 0;
+    }
+
+    private void insertIgnoringDuplicates(List<UserEvent> batch) {
+        try {
+            mongoTemplate.bulkOps(BulkOperations.BulkMode.UNORDERED, UserEvent.class)
+                    .insert(batch)
+                    .execute();
+        } catch (BulkOperationException e) {
+            for (BulkWriteError error : e.getErrors()) {
+                if (error.getCode() != DUPLICATE_KEY) {
+                    throw e;
+                }
+            }
+        }
+    }
+
+    private WriteAheadLog.Position readAppliedPosition(Path walDirectory) throws IOException {
+        Path file = walDirectory.resolve(POSITION_FILE);
+        if (!Files.exists(file)) {
+            return null;
+        }
+        ByteBuffer buffer = ByteBuffer.wrap(Files.readAllBytes(file));
+        return new WriteAheadLog.Position(buffer.getLong(), buffer.getInt());
+    }
+
+    private void writeAppliedPosition(WriteAheadLog.Position position) throws IOException {
+        Path file = Path.of(directory).resolve(POSITION_FILE);
+        Path temp = file.resolveSibling(POSITION_FILE + ".tmp");
+        ByteBuffer buffer = ByteBuffer.allocate(Long.BYTES + Integer.BYTES)
+                .putLong(position.getSegmentId())
+                .putInt(position.getOffset());
+        Files.write(temp, buffer.array());
+        Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    @PreDestroy
+    public void stop() throws IOException {
+        if (!enabled) {
+            return;
+        }
+        running = false;
+        if (applier != null) {
+            try {
+                applier.join(TimeUnit.SECONDS.toMillis(10));
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        writeAheadLog.close();
+    }
+}
@@ -0,0 +1,55 @@
+package com.ecommerce.analytics.store;
+
+/**
+ * Reusable on-heap copy of a run of store rows, one primitive array per
+ * column, for tight loops over plain arrays
+ */
+public class ColumnBlock {
+
+    final long[] times;
+    final int[] users;
+    final int[] pages;
+    final int[] types;
+    final int[] sessions;
+    int size;
+
+    public ColumnBlock(int rows) {
+        this.times = new long[rows];
+        this.users = new int[rows];
+        this.pages = new int[rows];
+        this.types = new int[rows];
+        this.sessions = new int[rows];
+    }
+
+    public int capacity() {
+        return times.length;
+    }
+
+    /** Rows loaded by the last {@link ColumnarRingStore.View#load} */
+    public int size() {
+        return size;
+    }
+
+    public long[] times() {
+        return times;
+    }
+
+    /**
+     * Ids of one dimension column
+     */
+    public int[] column(Dimension dimension) {
+        return switch (dimension) {
+            case USER -> users;
+            case PAGE -> pages;
+            case EVENT_TYPE -> types;
+            case SESSION -> sessions;
+        };
+    }
+
+    /**
+     * Dictionary-encoded columns of the store
+     */
+    public enum Dimension {
+        USER, PAGE, EVENT_TYPE, SESSION
+    }
+}
@@ -0,0 +1,466 @@
+package com.ecommerce.analytics.store;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteOrder;
+import java.nio.IntBuffer;
+import java.nio.LongBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Function;
+
+/**
+ * Fixed-size, memory-mapped, columnar ring of recent events.
+ *
+ * One preallocated file holds a header, five columns of {@code capacity}
+ * slots (event time as a long; user, page, event type and session as int ids)
+ * and a string dictionary region. Row {@code seq} lives in slot
+ * {@code seq % capacity}, so once the ring is full each append overwrites the
+ * oldest row. Everything is little-endian so columns can be bulk-copied into
+ * primitive arrays ({@link ColumnBlock}) cheaply. Dictionary entries are appended as {@code int length | UTF-8};
+ * the header records how many there are, the sequence range of live rows and
+ * is updated only after the data it describes, so reopening the file after a
+ * restart finds a consistent store. When the dictionary region fills up it is
+ * rebuilt from the strings live rows still reference, dropping the older half
+ * of the rows as often as needed to free at least half the region.
+ *
+ * Row data never touches the Java heap; only the dictionary strings do. There
+ * is a single writer at a time; readers run inside {@link #read} against
+ * the rows published when they look, concurrently with appends. A scan that
+ * falls behind a moving writer by nearly a full ring skips the rows about to
+ * be overwritten.
+ */
+@Slf4j
+public class ColumnarRingStore implements Closeable {
+
+    /** Id of a missing value */
+    public static final int NONE = -1;
+
+    private static final int MAGIC = 0x45565247; // "EVRG"
+    private static final int VERSION = 2;
+    private static final int HEADER_BYTES = 64;
+    private static final int ROW_BYTES = Long.BYTES + 4 * Integer.BYTES;
+    private static final int SCAN_CHUNK = 4096;
+
+    private static final int H_MAGIC = 0;
+    private static final int H_VERSION = 4;
+    private static final int H_CAPACITY = 8;
+    private static final int H_DICTIONARY_BYTES = 12;
+    private static final int H_FIRST = 16;
+    private static final int H_END = 24;
+    private static final int H_DICTIONARY_COUNT = 32;
+    private static final int H_DICTIONARY_END = 36;
+    private static final int H_COMPACTING = 40;
+
+    private final Path file;
+    private final RandomAccessFile raf;
+    private final MappedByteBuffer buffer;
+    private final LongBuffer timeColumn;
+    private final IntBuffer userColumn;
+    private final IntBuffer pageColumn;
+    private final IntBuffer typeColumn;
+    private final IntBuffer sessionColumn;
+    private final int capacity;
+    private final int dictionaryBytes;
+    private final int timeOffset;
+    private final int userOffset;
+    private final int pageOffset;
+    private final int typeOffset;
+    private final int sessionOffset;
+    private final int dictionaryOffset;
+
+    private final ReentrantReadWriteLock compactionLock = new ReentrantReadWriteLock();
+    private final Map<String, Integer> ids = new ConcurrentHashMap<>();
+    private volatile String[] strings = new String[1024];
+    private int stringCount;
+    private int dictionaryEnd;
+
+    private volatile long first;
+    private volatile long end;
+
+    /**
+     * Open the store at {@code file}, reusing its contents if it was written
+     * with the same layout, otherwise starting empty
+     *
+     * @param budgetBytes total file size
+     * @param dictionaryShare fraction of the budget reserved for strings
+     */
+    public ColumnarRingStore(Path file, long budgetBytes, double dictionaryShare) throws IOException {
+        if (budgetBytes > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("Store budget must be below 2 GiB");
+        }
+        if (dictionaryShare <= 0 || dictionaryShare >= 1) {
+            throw new IllegalArgumentException("Dictionary share must be between 0 and 1");
+        }
+        this.dictionaryBytes = (int) (budgetBytes * dictionaryShare);
+        this.capacity = (int) ((budgetBytes - HEADER_BYTES - dictionaryBytes) / ROW_BYTES);
+        if (capacity < SCAN_CHUNK) {
+            throw new IllegalArgumentException("Store budget too small for " + SCAN_CHUNK + " rows");
+        }
+        this.timeOffset = HEADER_BYTES;
+        this.userOffset = timeOffset + capacity * Long.BYTES;
+        this.pageOffset = userOffset + capacity * Integer.BYTES;
+        this.typeOffset = pageOffset + capacity * Integer.BYTES;
+        this.sessionOffset = typeOffset + capacity * Integer.BYTES;
+        this.dictionaryOffset = sessionOffset + capacity * Integer.BYTES;
+        int fileBytes = dictionaryOffset + dictionaryBytes;
+
+        this.file = file;
+        if (file.getParent() != null) {
+            Files.createDirectories(file.getParent());
+        }
+        this.raf = new RandomAccessFile(file.toFile(), "rw");
+        boolean reuse = raf.length() == fileBytes;
+        raf.setLength(fileBytes);
+        this.buffer = raf.getChannel().map(FileChannel.MapMode.READ_WRITE, 0, fileBytes);
+        buffer.order(ByteOrder.LITTLE_ENDIAN);
+        this.timeColumn = buffer.slice(timeOffset, capacity * Long.BYTES).order(ByteOrder.LITTLE_ENDIAN).asLongBuffer();
+        this.userColumn = intColumn(userOffset);
+        this.pageColumn = intColumn(pageOffset);
+        this.typeColumn = intColumn(typeOffset);
+        this.sessionColumn = intColumn(sessionOffset);
+
+        if (reuse && matchesLayout() && load()) {
+            log.info("Reopened recent event store {} with {} rows and {} strings", file, size(), stringCount);
+        } else {
+            reset();
+        }
+    }
+
+    /**
+     * Append one event; strings are dictionary-encoded, null becomes {@link #NONE}
+     */
+    public synchronized void append(long timeMillis, String userId, String pageUrl, String eventType,
+            String sessionId) {
+        int user = intern(userId);
+        int page = intern(pageUrl);
+        int type = intern(eventType);
+        int session = intern(sessionId);
+        if (user == NONE && userId != null || page == NONE && pageUrl != null
+                || type == NONE && eventType != null || session == NONE && sessionId != null) {
+            compact();
+            user = intern(userId);
+            page = intern(pageUrl);
+            type = intern(eventType);
+            session = intern(sessionId);
+        }
+
+        long seq = end;
+        int slot = (int) (seq % capacity);
+        buffer.putLong(timeOffset + slot * Long.BYTES, timeMillis);
+        buffer.putInt(userOffset + slot * Integer.BYTES, user);
+        buffer.putInt(pageOffset + slot * Integer.BYTES, page);
+        buffer.putInt(typeOffset + slot * Integer.BYTES, type);
+        buffer.putInt(sessionOffset + slot * Integer.BYTES, session);
+        buffer.putLong(H_END, seq + 1);
+        end = seq + 1;
+    }
+
+    /**
+     * Run a read against the store; the dictionary stays stable until it returns
+     */
+    public <R> R read(Function<View, R> reader) {
+        compactionLock.readLock().lock();
+        try {
+            return reader.apply(new View());
+        } finally {
+            compactionLock.readLock().unlock();
+        }
+    }
+
+    public int capacity() {
+        return capacity;
+    }
+
+    /**
+     * Rows currently held
+     */
+    public long size() {
+        long e = end;
+        return e - Math.max(first, e - capacity);
+    }
+
+    public int dictionarySize() {
+        return stringCount;
+    }
+
+    /**
+     * Fraction of the dictionary region in use
+     */
+    public double dictionaryUsage() {
+        return dictionaryEnd / (double) dictionaryBytes;
+    }
+
+    public Path getFile() {
+        return file;
+    }
+
+    @Override
+    public void close() throws IOException {
+        buffer.force();
+        raf.close();
+    }
+
+    /**
+     * Visitor over the rows of a scan
+     */
+    @FunctionalInterface
+    public interface RowVisitor {
+        void visit(long timeMillis, int user, int page, int eventType, int session);
+    }
+
+    /**
+     * Read access to the rows and dictionary, valid inside {@link #read}
+     */
+    public final class View {
+
+        private final long viewEnd = end;
+        private final long viewFirst = Math.max(first, viewEnd - capacity);
+        // Read after end, so it covers every string the view's rows reference
+        private final int viewStrings = stringCount;
+
+        /** Sequence of the oldest row in this view */
+        public long firstSequence() {
+            return viewFirst;
+        }
+
+        /** Sequence after the newest row in this view */
+        public long endSequence() {
+            return viewEnd;
+        }
+
+        /**
+         * Visit rows with sequence in [{@code fromSeq}, {@code toSeq}) and
+         * time in [{@code fromMillis}, {@code toMillis})
+         */
+        public void scan(long fromSeq, long toSeq, long fromMillis, long toMillis, RowVisitor visitor) {
+            long seq = Math.max(fromSeq, viewFirst);
+            long stop = Math.min(toSeq, viewEnd);
+            while (seq < stop) {
+                // While the writer is moving, skip rows it could overwrite before this chunk is read
+                long writerEnd = end;
+                long overwriteLimit = writerEnd - capacity + (writerEnd != viewEnd ? SCAN_CHUNK : 0);
+                if (seq < overwriteLimit) {
+                    seq = overwriteLimit;
+                    continue;
+                }
+                long chunkEnd = Math.min(stop, seq + SCAN_CHUNK);
+                for (; seq < chunkEnd; seq++) {
+                    int slot = (int) (seq % capacity);
+                    long time = buffer.getLong(timeOffset + slot * Long.BYTES);
+                    if (time < fromMillis || time >= toMillis) {
+                        continue;
+                    }
+                    visitor.visit(time,
+                            buffer.getInt(userOffset + slot * Integer.BYTES),
+                            buffer.getInt(pageOffset + slot * Integer.BYTES),
+                            buffer.getInt(typeOffset + slot * Integer.BYTES),
+                            buffer.getInt(sessionOffset + slot * Integer.BYTES));
+                }
+            }
+        }
+
+        /**
+         * Bulk-copy rows from {@code fromSeq} (up to {@code toSeq} and the
+         * block's capacity) into {@code block}, without wrapping past the end
+         * of the ring
+         *
+         * @return sequence after the last row copied; rows the writer could
+         *         overwrite while copying are skipped. An empty block means
+         *         there are no more rows in range
+         */
+        public long load(long fromSeq, long toSeq, ColumnBlock block) {
+            long seq = Math.max(fromSeq, viewFirst);
+            long writerEnd = end;
+            long overwriteLimit = writerEnd - capacity + (writerEnd != viewEnd ? block.capacity() : 0);
+            seq = Math.max(seq, overwriteLimit);
+            long stop = Math.min(toSeq, viewEnd);
+            if (seq >= stop) {
+                block.size = 0;
+                return seq;
+            }
+            int slot = (int) (seq % capacity);
+            int rows = (int) Math.min(Math.min(stop - seq, block.capacity()), capacity - slot);
+            timeColumn.get(slot, block.times, 0, rows);
+            userColumn.get(slot, block.users, 0, rows);
+            pageColumn.get(slot, block.pages, 0, rows);
+            typeColumn.get(slot, block.types, 0, rows);
+            sessionColumn.get(slot, block.sessions, 0, rows);
+            block.size = rows;
+            return seq + rows;
+        }
+
+        /**
+         * Number of dictionary ids the view's rows can reference
+         */
+        public int dictionarySize() {
+            return viewStrings;
+        }
+
+        /**
+         * String for a dictionary id, or null for {@link #NONE}
+         */
+        public String string(int id) {
+            return id == NONE ? null : strings[id];
+        }
+
+        /**
+         * Dictionary id of a string, or {@link #NONE} if no row holds it
+         */
+        public int id(String value) {
+            Integer id = value == null ? null : ids.get(value);
+            return id != null ? id : NONE;
+        }
+    }
+
+    private int intern(String value) {
+        if (value == null) {
+            return NONE;
+        }
+        Integer existing = ids.get(value);
+        if (existing != null) {
+            return existing;
+        }
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        int needed = Integer.BYTES + bytes.length;
+        if (dictionaryEnd + needed > dictionaryBytes) {
+            return NONE;
+        }
+        int position = dictionaryOffset + dictionaryEnd;
+        buffer.putInt(position, bytes.length);
+        buffer.put(position + Integer.BYTES, bytes);
+        int id = addString(value);
+        dictionaryEnd += needed;
+        buffer.putInt(H_DICTIONARY_END, dictionaryEnd);
+        buffer.putInt(H_DICTIONARY_COUNT, stringCount);
+        return id;
+    }
+
+    private int addString(String value) {
+        String[] current = strings;
+        if (stringCount == current.length) {
+            current = Arrays.copyOf(current, current.length * 2);
+        }
+        int id = stringCount++;
+        current[id] = value;
+        strings = current;
+        ids.put(value, id);
+        return id;
+    }
+
+    /**
+     * Rebuild the dictionary from the strings live rows reference, dropping
+     * older rows until at least half the region is free
+     */
+    private void compact() {
+        compactionLock.writeLock().lock();
+        try {
+            buffer.putInt(H_COMPACTING, 1);
+            long from = Math.max(first, end - capacity);
+            while (true) {
+                rebuildDictionary(from);
+                if (dictionaryEnd <= dictionaryBytes / 2 || from == end) {
+                    break;
+                }
+                from = end - (end - from) / 2;
+            }
+            first = from;
+            buffer.putLong(H_FIRST, from);
+            buffer.putInt(H_COMPACTING, 0);
+            log.info("Compacted recent event store dictionary to {} strings over {} rows", stringCount, size());
+        } finally {
+            compactionLock.writeLock().unlock();
+        }
+    }
+
+    private void rebuildDictionary(long from) {
+        String[] old = strings;
+        int[] remap = new int[stringCount];
+        Arrays.fill(remap, NONE);
+        ids.clear();
+        strings = new String[Math.max(1024, old.length)];
+        stringCount = 0;
+        dictionaryEnd = 0;
+
+        int[] columns = {userOffset, pageOffset, typeOffset, sessionOffset};
+        for (long seq = from; seq < end; seq++) {
+            int slot = (int) (seq % capacity);
+            for (int column : columns) {
+                int position = column + slot * Integer.BYTES;
+                int id = buffer.getInt(position);
+                if (id == NONE) {
+                    continue;
+                }
+                if (remap[id] == NONE) {
+                    remap[id] = intern(old[id]);
+                }
+                buffer.putInt(position, remap[id]);
+            }
+        }
+    }
+
+    private IntBuffer intColumn(int offset) {
+        return buffer.slice(offset, capacity * Integer.BYTES).order(ByteOrder.LITTLE_ENDIAN).asIntBuffer();
+    }
+
+    private boolean matchesLayout() {
+        return buffer.getInt(H_MAGIC) == MAGIC
+                && buffer.getInt(H_VERSION) == VERSION
+                && buffer.getInt(H_CAPACITY) == capacity
+                && buffer.getInt(H_DICTIONARY_BYTES) == dictionaryBytes
+                && buffer.getInt(H_COMPACTING) == 0;
+    }
+
+    private boolean load() {
+        int count = buffer.getInt(H_DICTIONARY_COUNT);
+        int limit = buffer.getInt(H_DICTIONARY_END);
+        int position = 0;
+        for (int i = 0; i < count; i++) {
+            if (position + Integer.BYTES > limit) {
+                return false;
+            }
+            int length = buffer.getInt(dictionaryOffset + position);
+            if (length < 0 || position + Integer.BYTES + length > limit) {
+                return false;
+            }
+            byte[] bytes = new byte[length];
+            buffer.get(dictionaryOffset + position + Integer.BYTES, bytes);
+            addString(new String(bytes, StandardCharsets.UTF_8));
+            position += Integer.BYTES + length;
+        }
+        dictionaryEnd = position;
+        first = buffer.getLong(H_FIRST);
+        end = buffer.getLong(H_END);
+        return first >= 0 && first <= end;
+    }
+
+    private void reset() {
+        ids.clear();
+        strings = new String[1024];
+        stringCount = 0;
+        dictionaryEnd = 0;
+        first = 0;
+        end = 0;
+        buffer.putInt(H_COMPACTING, 1);
+        buffer.putInt(H_MAGIC, MAGIC);
+        buffer.putInt(H_VERSION, VERSION);
+        buffer.putInt(H_CAPACITY, capacity);
+        buffer.putInt(H_DICTIONARY_BYTES, dictionaryBytes);
+        buffer.putLong(H_FIRST, 0);
+        buffer.putLong(H_END, 0);
+        buffer.putInt(H_DICTIONARY_COUNT, 0);
+        buffer.putInt(H_DICTIONARY_END, 0);
+        buffer.putInt(H_COMPACTING, 0);
+        log.info("Created recent event store {} for {} rows", file, capacity);
+    }
+}
@@ -0,0 +1,12 @@
+package com.ecommerce.analytics.tenant;
+
+import lombok.Value;
+
+/**
+ * Published when an idle tenant is dropped from the {@link TenantRegistry};
+ * per-tenant state kept elsewhere should be released with it
+ */
+@Value
+public class TenantEvictedEvent {
+    String tenant;
+}
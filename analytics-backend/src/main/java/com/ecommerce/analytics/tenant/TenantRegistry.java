@@ -0,0 +1,183 @@
+package com.ecommerce.analytics.tenant;
+
+import io.github.bucket4j.Bandwidth;
+import io.github.bucket4j.Bucket;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Tenants (storefronts) accepted for ingestion and their rate limits.
+ *
+ * Every tenant gets its own token bucket, so a storefront exceeding its
+ * allowance is throttled without using up anyone else's; the global bucket
+ * still caps the instance as a whole. A tenant is admitted on its first
+ * event, up to {@code tenants.max}, which bounds the per-tenant state kept
+ * downstream (aggregation lanes, Redis keys, detectors). Tenants without
+ * events for {@code tenants.idle-eviction-minutes} are dropped again and a
+ * {@link TenantEvictedEvent} is published, so made-up tenant ids cannot hold
+ * the slots of real ones for the life of the process.
+ */
+@Component
+@Slf4j
+@RequiredArgsConstructor
+public class TenantRegistry {
+
+    /**
+     * Outcome of asking to ingest one event for a tenant
+     */
+    public enum Admission {
+        ADMITTED,
+        RATE_LIMITED,
+        TOO_MANY_TENANTS
+    }
+
+    private final MeterRegistry meterRegistry;
+    private final ApplicationEventPublisher eventPublisher;
+
+    @Value("${tenants.max:64}")
+    private int maxTenants;
+
+    @Value("${tenants.idle-eviction-minutes:1440}")
+    private long idleEvictionMinutes;
+
+    @Value("${rate-limit.tenant.events-per-second:100}")
+    private int eventsPerSecond;
+
+    @Value("${rate-limit.tenant.burst-capacity:200}")
+    private int burstCapacity;
+
+    @Value("${rate-limit.tenant.overrides:}")
+    private String overrides;
+
+    private final Map<String, Tenant> tenants = new ConcurrentHashMap<>();
+    private final Map<String, Integer> overrideRates = new HashMap<>();
+
+    @PostConstruct
+    public void init() {
+        for (String entry : overrides.split(",")) {
+            if (entry.isBlank()) {
+                continue;
+            }
+            String[] parts = entry.trim().split("=");
+            if (parts.length != 2) {
+                throw new IllegalArgumentException("Invalid tenant rate limit override: " + entry);
+            }
+            overrideRates.put(parts[0].trim(), Integer.parseInt(parts[1].trim()));
+        }
+        Gauge.builder("analytics.tenants.admitted", tenants, Map::size).register(meterRegistry);
+        log.info("Accepting up to {} tenants at {} events/s each ({} overridden)", maxTenants, eventsPerSecond,
+                overrideRates.size());
+    }
+
+    /**
+     * Take one event's worth from the tenant's bucket, admitting the tenant
+     * if it is new and there is room
+     */
+    public Admission tryAdmit(String tenant) {
+        Tenant admitted = admit(tenant);
+        if (admitted == null) {
+            return Admission.TOO_MANY_TENANTS;
+        }
+        return admitted.bucket.tryConsume(1) ? Admission.ADMITTED : Admission.RATE_LIMITED;
+    }
+
+    /**
+     * Admit a tenant whose state is being restored (checkpoint or replay)
+     * without taking from its bucket
+     *
+     * @return false if the tenant is new and there is no room for it
+     */
+    public boolean register(String tenant) {
+        return admit(tenant) != null;
+    }
+
+    /**
+     * Whether the tenant is currently admitted, without admitting it
+     */
+    public boolean isAdmitted(String tenant) {
+        return tenants.containsKey(tenant);
+    }
+
+    /**
+     * Drop tenants that have had no events for the idle timeout
+     */
+    @Scheduled(fixedDelayString = "${tenants.eviction-interval-ms:60000}",
+            initialDelayString = "${tenants.eviction-interval-ms:60000}")
+    public void evictIdle() {
+        evictIdle(System.currentTimeMillis());
+    }
+
+    void evictIdle(long now) {
+        long idleSince = now - TimeUnit.MINUTES.toMillis(idleEvictionMinutes);
+        List<String> evicted = new ArrayList<>();
+        synchronized (tenants) {
+            tenants.entrySet().removeIf(entry -> {
+                boolean idle = entry.getValue().lastSeenMillis < idleSince;
+                if (idle) {
+                    evicted.add(entry.getKey());
+                }
+                return idle;
+            });
+        }
+        for (String tenant : evicted) {
+            log.info("Evicted tenant {} after {} minutes without events", tenant, idleEvictionMinutes);
+            eventPublisher.publishEvent(new TenantEvictedEvent(tenant));
+        }
+    }
+
+    private Tenant admit(String tenant) {
+        Tenant admitted = tenants.get(tenant);
+        if (admitted == null) {
+            synchronized (tenants) {
+                admitted = tenants.get(tenant);
+                if (admitted == null) {
+                    if (tenants.size() >= maxTenants) {
+                        return null;
+                    }
+                    admitted = new Tenant(newBucket(tenant));
+                    tenants.put(tenant, admitted);
+                    log.info("Admitted tenant {}", tenant);
+                }
+            }
+        }
+        admitted.lastSeenMillis = System.currentTimeMillis();
+        return admitted;
+    }
+
+    private Bucket newBucket(String tenant) {
+        int rate = overrideRates.getOrDefault(tenant, eventsPerSecond);
+        // Overridden tenants keep the default ratio of burst to sustained rate
+        long burst = Math.max(1, (long) rate * burstCapacity / Math.max(1, eventsPerSecond));
+        return Bucket.builder()
+                .addLimit(Bandwidth.builder()
+                        .capacity(burst)
+                        .refillIntervally(rate, Duration.ofSeconds(1))
+                        .build())
+                .build();
+    }
+
+    private static final class Tenant {
+
+        private final Bucket bucket;
+        private volatile long lastSeenMillis;
+
+        private Tenant(Bucket bucket) {
+            this.bucket = bucket;
+        }
+    }
+}
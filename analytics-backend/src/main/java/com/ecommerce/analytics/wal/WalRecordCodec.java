@@ -0,0 +1,106 @@
+package com.ecommerce.analytics.wal;
+
+import com.ecommerce.analytics.model.UserEvent;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+
+/**
+ * Binary encoding of {@link UserEvent} records stored in the write-ahead log.
+ * Layout: {@code byte version | string id | string timestamp | string userId |
+ * string eventType | string pageUrl | string sessionId | string eventId |
+ * long createdAtMillis | long eventTimeMillis | string tenantId}, where
+ * strings are {@code int length (-1 = null) | UTF-8 bytes}. Version 1
+ * records, written before client event IDs existed, have no eventId;
+ * versions 1 and 2 have no eventTime; versions 1 to 3 have no tenantId.
+ */
+public final class WalRecordCodec {
+
+    private static final byte VERSION = 4;
+    private static final byte VERSION_WITHOUT_TENANT = 3;
+    private static final byte VERSION_WITHOUT_EVENT_TIME = 2;
+    private static final byte VERSION_WITHOUT_EVENT_ID = 1;
+    private static final long NO_TIME = Long.MIN_VALUE;
+
+    private WalRecordCodec() {
+    }
+
+    public static byte[] encode(UserEvent event) {
+        byte[][] strings = {
+                utf8(event.getId()),
+                utf8(event.getTimestamp()),
+                utf8(event.getUserId()),
+                utf8(event.getEventType()),
+                utf8(event.getPageUrl()),
+                utf8(event.getSessionId()),
+                utf8(event.getEventId())
+        };
+        byte[] tenantId = utf8(event.getTenantId());
+
+        int size = 1 + 2 * Long.BYTES + Integer.BYTES + (tenantId == null ? 0 : tenantId.length);
+        for (byte[] string : strings) {
+            size += Integer.BYTES + (string == null ? 0 : string.length);
+        }
+
+        ByteBuffer buffer = ByteBuffer.allocate(size);
+        buffer.put(VERSION);
+        for (byte[] string : strings) {
+            putString(buffer, string);
+        }
+        buffer.putLong(event.getCreatedAt() == null ? NO_TIME : event.getCreatedAt().toEpochMilli());
+        buffer.putLong(event.getEventTime() == null ? NO_TIME : event.getEventTime());
+        putString(buffer, tenantId);
+        return buffer.array();
+    }
+
+    public static UserEvent decode(ByteBuffer buffer) {
+        byte version = buffer.get();
+        if (version < VERSION_WITHOUT_EVENT_ID || version > VERSION) {
+            throw new IllegalStateException("Unsupported WAL record version " + version);
+        }
+
+        UserEvent event = UserEvent.builder()
+                .id(readString(buffer))
+                .timestamp(readString(buffer))
+                .userId(readString(buffer))
+                .eventType(readString(buffer))
+                .pageUrl(readString(buffer))
+                .sessionId(readString(buffer))
+                .eventId(version > VERSION_WITHOUT_EVENT_ID ? readString(buffer) : null)
+                .build();
+
+        long createdAt = buffer.getLong();
+        event.setCreatedAt(createdAt == NO_TIME ? null : Instant.ofEpochMilli(createdAt));
+        if (version > VERSION_WITHOUT_EVENT_TIME) {
+            long eventTime = buffer.getLong();
+            event.setEventTime(eventTime == NO_TIME ? null : eventTime);
+        }
+        if (version > VERSION_WITHOUT_TENANT) {
+            event.setTenantId(readString(buffer));
+        }
+        return event;
+    }
+
+    private static void putString(ByteBuffer buffer, byte[] string) {
+        if (string == null) {
+            buffer.putInt(-1);
+        } else {
+            buffer.putInt(string.length).put(string);
+        }
+    }
+
+    private static byte[] utf8(String value) {
+        return value == null ? null : value.getBytes(StandardCharsets.UTF_8);
+    }
+
+    private static String readString(ByteBuffer buffer) {
+        int length = buffer.getInt();
+        if (length < 0) {
+            return null;
+        }
+        byte[] bytes = new byte[length];
+        buffer.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,441 @@
+package com.ecommerce.analytics.wal;
+
+import lombok.Value;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.stream.Stream;
+import java.util.zip.CRC32C;
+
+/**
+ * Segmented, memory-mapped, append-only log with group-commit fsync.
+ *
+ * Segments are preallocated files named by a monotonically increasing id.
+ * Each record is laid out as {@code int length | int crc32c | payload}; the
+ * length is written last so a zero length marks the end of the written data.
+ * Appenders copy into the active mapping and return a sequence number; a
+ * single flusher thread forces everything appended so far in one msync and
+ * wakes all appenders waiting on it, so concurrent appends share one fsync.
+ *
+ * A new process always starts a fresh segment; older segments are read back
+ * through {@link Reader} until their first zero length or checksum mismatch.
+ */
+@Slf4j
+public class WriteAheadLog implements Closeable {
+
+    private static final String SEGMENT_SUFFIX = ".wal";
+    private static final int RECORD_HEADER_BYTES = 2 * Integer.BYTES;
+
+    private final Path directory;
+    private final int segmentBytes;
+    private final int maxSegments;
+
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition appended = lock.newCondition();
+    private final Condition durable = lock.newCondition();
+    private final List<Segment> liveSegments = new ArrayList<>();
+    private final Thread flusher;
+
+    private Segment active;
+    // Oldest segment still on disk, including unapplied ones left by a previous process
+    private long oldestSegmentId;
+    private long appendedSequence;
+    private long durableSequence;
+    private IOException flushFailure;
+    private volatile Position durablePosition;
+    private volatile boolean closed;
+
+    public WriteAheadLog(Path directory, int segmentBytes, int maxSegments) throws IOException {
+        this.directory = directory;
+        this.segmentBytes = segmentBytes;
+        this.maxSegments = maxSegments;
+
+        Files.createDirectories(directory);
+        List<Long> existing = segmentIds();
+        long nextId = existing.isEmpty() ? 1 : existing.get(existing.size() - 1) + 1;
+        this.active = Segment.create(segmentPath(nextId), nextId, segmentBytes);
+        this.liveSegments.add(active);
+        this.oldestSegmentId = existing.isEmpty() ? nextId : existing.get(0);
+        this.durablePosition = new Position(nextId, 0);
+
+        this.flusher = new Thread(this::flushLoop, "wal-flusher");
+        this.flusher.setDaemon(true);
+        this.flusher.start();
+    }
+
+    /**
+     * Append a record to the active segment.
+     *
+     * @return sequence number to pass to {@link #awaitDurable}
+     */
+    public long append(byte[] payload) throws IOException {
+        int needed = RECORD_HEADER_BYTES + payload.length;
+        if (needed > segmentBytes) {
+            throw new IllegalArgumentException("Record of " + payload.length + " bytes exceeds WAL segment size");
+        }
+
+        CRC32C crc = new CRC32C();
+        crc.update(payload);
+
+        lock.lock();
+        try {
+            ensureOpen();
+            if (active.writeOffset + needed > segmentBytes) {
+                roll();
+            }
+            MappedByteBuffer buffer = active.buffer;
+            int offset = active.writeOffset;
+            buffer.putInt(offset + Integer.BYTES, (int) crc.getValue());
+            buffer.put(offset + RECORD_HEADER_BYTES, payload);
+            buffer.putInt(offset, payload.length);
+            active.writeOffset += needed;
+
+            long sequence = ++appendedSequence;
+            appended.signal();
+            return sequence;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Block until the record with the given sequence number has been forced to disk
+     */
+    public void awaitDurable(long sequence, long timeoutMillis) throws IOException, InterruptedException {
+        long remaining = TimeUnit.MILLISECONDS.toNanos(timeoutMillis);
+        lock.lock();
+        try {
+            while (durableSequence < sequence) {
+                if (flushFailure != null) {
+                    throw new IOException("WAL flush failed", flushFailure);
+                }
+                if (remaining <= 0) {
+                    throw new IOException("Timed out waiting for WAL sync");
+                }
+                remaining = durable.awaitNanos(remaining);
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Position up to which every appended record is on disk
+     */
+    public Position durablePosition() {
+        return durablePosition;
+    }
+
+    /**
+     * Open a reader starting at the given position (or the oldest segment when null)
+     */
+    public Reader reader(Position from) throws IOException {
+        if (from == null) {
+            List<Long> ids = segmentIds();
+            from = new Position(ids.isEmpty() ? active.id : ids.get(0), 0);
+        }
+        return new Reader(from);
+    }
+
+    /**
+     * Delete every segment older than the given one; called once those records are applied
+     */
+    public void release(long segmentId) throws IOException {
+        List<Segment> released = new ArrayList<>();
+        lock.lock();
+        try {
+            liveSegments.removeIf(segment -> {
+                boolean old = segment.id < segmentId && segment != active;
+                if (old) {
+                    released.add(segment);
+                }
+                return old;
+            });
+            oldestSegmentId = Math.max(oldestSegmentId, Math.min(segmentId, active.id));
+        } finally {
+            lock.unlock();
+        }
+        for (Segment segment : released) {
+            segment.close();
+        }
+        for (long id : segmentIds()) {
+            if (id < segmentId && id != active.id) {
+                Files.deleteIfExists(segmentPath(id));
+            }
+        }
+    }
+
+    /**
+     * Number of segment files currently on disk
+     */
+    public int segmentCount() {
+        try {
+            return segmentIds().size();
+        } catch (IOException e) {
+            return -1;
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        lock.lock();
+        try {
+            if (closed) {
+                return;
+            }
+            closed = true;
+            appended.signalAll();
+        } finally {
+            lock.unlock();
+        }
+        try {
+            flusher.join(TimeUnit.SECONDS.toMillis(5));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        lock.lock();
+        try {
+            for (Segment segment : liveSegments) {
+                segment.buffer.force();
+                segment.close();
+            }
+            liveSegments.clear();
+            durableSequence = appendedSequence;
+            durable.signalAll();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Seal the active segment and continue in a fresh one. Called with the lock held.
+     */
+    private void roll() throws IOException {
+        if (active.id - oldestSegmentId + 1 >= maxSegments) {
+            throw new IOException("Write-ahead log is full (" + maxSegments + " unapplied segments)");
+        }
+
+        active.buffer.force();
+        active.forcedOffset = active.writeOffset;
+
+        long nextId = active.id + 1;
+        active = Segment.create(segmentPath(nextId), nextId, segmentBytes);
+        liveSegments.add(active);
+
+        durableSequence = appendedSequence;
+        durablePosition = new Position(nextId, 0);
+        durable.signalAll();
+    }
+
+    private void flushLoop() {
+        while (true) {
+            Segment segment;
+            long target;
+            int from;
+            int to;
+
+            lock.lock();
+            try {
+                while (appendedSequence == durableSequence && !closed) {
+                    appended.awaitUninterruptibly();
+                }
+                if (closed) {
+                    return;
+                }
+                segment = active;
+                target = appendedSequence;
+                from = segment.forcedOffset;
+                to = segment.writeOffset;
+            } finally {
+                lock.unlock();
+            }
+
+            IOException failure = null;
+            try {
+                if (to > from) {
+                    segment.buffer.force(from, to - from);
+                }
+            } catch (UncheckedIOException e) {
+                failure = e.getCause();
+            }
+
+            lock.lock();
+            try {
+                if (failure != null) {
+                    log.error("WAL flush failed: {}", failure.getMessage());
+                    flushFailure = failure;
+                } else if (target > durableSequence) {
+                    segment.forcedOffset = Math.max(segment.forcedOffset, to);
+                    durableSequence = target;
+                    if (segment == active) {
+                        durablePosition = new Position(segment.id, to);
+                    }
+                }
+                durable.signalAll();
+            } finally {
+                lock.unlock();
+            }
+            if (failure != null) {
+                return;
+            }
+        }
+    }
+
+    private void ensureOpen() throws IOException {
+        if (closed) {
+            throw new IOException("Write-ahead log is closed");
+        }
+        if (flushFailure != null) {
+            throw new IOException("WAL flush failed", flushFailure);
+        }
+    }
+
+    private List<Long> segmentIds() throws IOException {
+        try (Stream<Path> files = Files.list(directory)) {
+            return files.map(path -> path.getFileName().toString())
+                    .filter(name -> name.endsWith(SEGMENT_SUFFIX))
+                    .map(name -> Long.parseLong(name.substring(0, name.length() - SEGMENT_SUFFIX.length())))
+                    .sorted()
+                    .toList();
+        }
+    }
+
+    private Path segmentPath(long id) {
+        return directory.resolve(String.format("%020d%s", id, SEGMENT_SUFFIX));
+    }
+
+    /**
+     * Location of a record boundary within the log
+     */
+    @Value
+    public static class Position {
+        long segmentId;
+        int offset;
+    }
+
+    /**
+     * Sequential reader over durable records. Not thread-safe.
+     */
+    public final class Reader implements Closeable {
+
+        private long segmentId;
+        private int offset;
+        private FileChannel channel;
+        private MappedByteBuffer buffer;
+
+        private Reader(Position from) {
+            this.segmentId = from.getSegmentId();
+            this.offset = from.getOffset();
+        }
+
+        /**
+         * Next durable record payload, or null when the reader has caught up
+         */
+        public ByteBuffer next() throws IOException {
+            while (true) {
+                Position limit = durablePosition;
+                if (segmentId > limit.getSegmentId()) {
+                    return null;
+                }
+                if (buffer == null && !map()) {
+                    if (segmentId < limit.getSegmentId()) {
+                        advance();
+                        continue;
+                    }
+                    return null;
+                }
+
+                int end = segmentId == limit.getSegmentId() ? limit.getOffset() : buffer.capacity();
+                if (offset + RECORD_HEADER_BYTES <= end) {
+                    int length = buffer.getInt(offset);
+                    if (length > 0 && offset + RECORD_HEADER_BYTES + length <= end) {
+                        ByteBuffer payload = buffer.slice(offset + RECORD_HEADER_BYTES, length);
+                        CRC32C crc = new CRC32C();
+                        crc.update(payload.duplicate());
+                        if ((int) crc.getValue() == buffer.getInt(offset + Integer.BYTES)) {
+                            offset += RECORD_HEADER_BYTES + length;
+                            return payload;
+                        }
+                        log.warn("WAL checksum mismatch in segment {} at offset {}; skipping rest of segment",
+                                segmentId, offset);
+                    }
+                }
+
+                if (segmentId < limit.getSegmentId()) {
+                    advance();
+                    continue;
+                }
+                return null;
+            }
+        }
+
+        /**
+         * Position just past the last record returned by {@link #next()}
+         */
+        public Position position() {
+            return new Position(segmentId, offset);
+        }
+
+        @Override
+        public void close() throws IOException {
+            buffer = null;
+            if (channel != null) {
+                channel.close();
+                channel = null;
+            }
+        }
+
+        private boolean map() throws IOException {
+            Path path = segmentPath(segmentId);
+            if (!Files.exists(path)) {
+                return false;
+            }
+            channel = FileChannel.open(path, StandardOpenOption.READ);
+            buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            return true;
+        }
+
+        private void advance() throws IOException {
+            close();
+            segmentId++;
+            offset = 0;
+        }
+    }
+
+    private static final class Segment {
+        private final long id;
+        private final FileChannel channel;
+        private final MappedByteBuffer buffer;
+        private int writeOffset;
+        private int forcedOffset;
+
+        private Segment(long id, FileChannel channel, MappedByteBuffer buffer) {
+            this.id = id;
+            this.channel = channel;
+            this.buffer = buffer;
+        }
+
+        static Segment create(Path path, long id, int size) throws IOException {
+            FileChannel channel = FileChannel.open(path,
+                    StandardOpenOption.CREATE_NEW, StandardOpenOption.READ, StandardOpenOption.WRITE);
+            return new Segment(id, channel, channel.map(FileChannel.MapMode.READ_WRITE, 0, size));
+        }
+
+        void close() throws IOException {
+            channel.close();
+        }
+    }
+}
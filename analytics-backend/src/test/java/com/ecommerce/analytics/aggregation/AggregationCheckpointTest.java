@@ -0,0 +1,159 @@
+package com.ecommerce.analytics.aggregation;
+
+import com.ecommerce.analytics.model.UserEvent;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit tests for lane checkpoints: handler state, applied event ids and the checkpoint file
+ */
+class AggregationCheckpointTest {
+
+    private static final long RETENTION_MS = 60 * 60_000L;
+    private static final long GAP_MS = 30 * 60_000L;
+    private static final FunnelDefinition PURCHASE = new FunnelDefinition("purchase", "Purchase", List.of(
+            new FunnelDefinition.Step("home", "page_view", "/home"),
+            new FunnelDefinition.Step("cart", "add_to_cart", null)));
+
+    @TempDir
+    Path directory;
+
+    private final List<AggregationLanes> started = new ArrayList<>();
+
+    @AfterEach
+    void tearDown() {
+        started.forEach(AggregationLanes::close);
+    }
+
+    @Test
+    void testRestore_shouldReproduceEveryHandlersState() throws Exception {
+        long now = System.currentTimeMillis();
+        AggregationLanes source = start(lanes(RETENTION_MS));
+        for (int i = 0; i < 200; i++) {
+            // Spread over 20 minutes, well inside the session gap so no session closes meanwhile
+            long time = now - (i % 20) * 60_000L;
+            String user = "usr_" + (i % 30);
+            String session = "sess_" + (i % 30) + "_" + (i / 30 % 2);
+            source.publish(event("evt_" + i, user, "page_view", i % 3 == 0 ? "/home" : "/products", session, time));
+            if (i % 5 == 0) {
+                source.publish(event("cart_" + i, user, "add_to_cart", "/products", session, time + 1_000));
+            }
+        }
+
+        Path file = directory.resolve("lanes.ckpt");
+        CheckpointFile.write(file, now, now, source.checkpoint(now, 5000));
+        AggregationLanes restored = lanes(RETENTION_MS);
+        restored.restore(CheckpointFile.read(file).getLaneStates());
+        start(restored);
+
+        long[] windows = {5 * 60_000L, RETENTION_MS};
+        ActivitySnapshot expected = activity(source, now, windows);
+        ActivitySnapshot actual = activity(restored, now, windows);
+        for (int w = 0; w < windows.length; w++) {
+            assertEquals(expected.getActiveUsers(w), actual.getActiveUsers(w));
+            assertEquals(expected.getPageViews(w), actual.getPageViews(w));
+        }
+        assertEquals(expected.getUserSessions(), actual.getUserSessions());
+
+        SessionSummary expectedSessions = SessionSummary.merge(source.query(SessionTracker.class,
+                tracker -> tracker.summary(now, RETENTION_MS), 5000));
+        SessionSummary actualSessions = SessionSummary.merge(restored.query(SessionTracker.class,
+                tracker -> tracker.summary(now, RETENTION_MS), 5000));
+        assertEquals(60, actualSessions.getOpenSessions());
+        assertEquals(expectedSessions.getOpenSessions(), actualSessions.getOpenSessions());
+        assertEquals(openSessions(source, "usr_7"), openSessions(restored, "usr_7"));
+
+        assertArrayEquals(funnel(source, now).getReached(), funnel(restored, now).getReached());
+        assertArrayEquals(funnel(source, now).getStepMillis(), funnel(restored, now).getStepMillis());
+    }
+
+    @Test
+    void testCheckpoint_shouldListEventsAppliedSinceTheReplayPoint() throws Exception {
+        long now = System.currentTimeMillis();
+        AggregationLanes source = lanes(RETENTION_MS);
+        source.trackAppliedEvents(60_000);
+        start(source);
+        source.publish(event("evt_old", "usr_1", "page_view", "/home", "sess_1", now - 20_000));
+        source.publish(event("evt_new", "usr_2", "page_view", "/home", "sess_2", now - 5_000));
+        source.publish(event("evt_newer", "usr_3", "page_view", "/home", "sess_3", now));
+
+        List<byte[]> states = source.checkpoint(now - 10_000, 5000);
+
+        assertEquals(Set.of("evt_new", "evt_newer"), lanes(RETENTION_MS).restore(states));
+    }
+
+    @Test
+    void testRestore_shouldRejectCorruptFilesAndOtherConfigurations() throws Exception {
+        long now = System.currentTimeMillis();
+        AggregationLanes source = start(lanes(RETENTION_MS));
+        source.publish(event("evt_1", "usr_1", "page_view", "/home", "sess_1", now));
+        Path file = directory.resolve("lanes.ckpt");
+        CheckpointFile.write(file, now, now, source.checkpoint(now, 5000));
+        List<byte[]> states = CheckpointFile.read(file).getLaneStates();
+
+        // Minute buckets sized for another retention
+        assertThrows(IOException.class, () -> lanes(2 * RETENTION_MS).restore(states));
+
+        byte[] bytes = Files.readAllBytes(file);
+        bytes[bytes.length / 2] ^= 0x5A;
+        Files.write(file, bytes);
+        assertThrows(IOException.class, () -> CheckpointFile.read(file));
+        assertNull(CheckpointFile.read(directory.resolve("missing.ckpt")));
+    }
+
+    private AggregationLanes lanes(long retentionMillis) {
+        return new AggregationLanes(2, 1024, List.of(
+                lane -> new UserActivityState(retentionMillis),
+                lane -> new SessionTracker(GAP_MS, retentionMillis),
+                lane -> new FunnelTracker(List.of(PURCHASE), retentionMillis, GAP_MS)),
+                event -> event.getCreatedAt().toEpochMilli());
+    }
+
+    private AggregationLanes start(AggregationLanes lanes) {
+        lanes.start();
+        started.add(lanes);
+        return lanes;
+    }
+
+    private static ActivitySnapshot activity(AggregationLanes lanes, long now, long[] windows) throws Exception {
+        return ActivitySnapshot.merge(lanes.query(UserActivityState.class,
+                state -> state.snapshot(now, windows, false), 5000));
+    }
+
+    private static List<SessionView> openSessions(AggregationLanes lanes, String userId) throws Exception {
+        List<SessionView> sessions = new ArrayList<>(lanes.queryLane(lanes.laneFor(userId), SessionTracker.class,
+                tracker -> tracker.openSessions(userId), 5000));
+        sessions.sort(Comparator.comparing(SessionView::getSessionId));
+        return sessions;
+    }
+
+    private static FunnelCounts funnel(AggregationLanes lanes, long now) throws Exception {
+        return FunnelCounts.merge(2, lanes.query(FunnelTracker.class,
+                tracker -> tracker.counts("purchase", now, RETENTION_MS), 5000));
+    }
+
+    private static UserEvent event(String id, String userId, String eventType, String pageUrl, String sessionId,
+            long timeMillis) {
+        return UserEvent.builder()
+                .id(id)
+                .timestamp(Instant.ofEpochMilli(timeMillis).toString())
+                .userId(userId)
+                .eventType(eventType)
+                .pageUrl(pageUrl)
+                .sessionId(sessionId)
+                .createdAt(Instant.ofEpochMilli(timeMillis))
+                .build();
+    }
+}
@@ -0,0 +1,163 @@
+package com.ecommerce.analytics.aggregation;
+
+import com.ecommerce.analytics.model.UserEvent;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit tests for AggregationLanes and the per-lane UserActivityState
+ */
+class AggregationLanesTest {
+
+    private static final long RETENTION_MS = 15 * 60_000L;
+
+    private AggregationLanes lanes;
+
+    @AfterEach
+    void tearDown() {
+        if (lanes != null) {
+            lanes.close();
+        }
+    }
+
+    @Test
+    void testLaneFor_shouldBeStablePerUser() {
+        lanes = start(4);
+
+        for (int i = 0; i < 100; i++) {
+            String userId = "usr_" + i;
+            int lane = lanes.laneFor(userId);
+            assertTrue(lane >= 0 && lane < 4);
+            assertEquals(lane, lanes.laneFor(userId));
+        }
+    }
+
+    @Test
+    void testSnapshot_shouldMergePartialsAcrossLanes() throws Exception {
+        lanes = start(4);
+        long now = System.currentTimeMillis();
+
+        for (int i = 0; i < 50; i++) {
+            lanes.publish(event("usr_" + i, "page_view", "/home", "sess_" + i, now));
+            lanes.publish(event("usr_" + i, "click", "/home", "sess_" + i, now));
+        }
+        lanes.publish(event("usr_0", "page_view", "/cart", "sess_extra", now));
+        // Outside the 5 minute user window but inside retention
+        lanes.publish(event("usr_old", "page_view", "/home", "sess_old", now - 10 * 60_000L));
+
+        ActivitySnapshot snapshot = ActivitySnapshot.merge(lanes.query(UserActivityState.class,
+                state -> state.snapshot(now, new long[]{5 * 60_000L, 15 * 60_000L}, false), 5000));
+
+        assertEquals(50, snapshot.getActiveUsers(0));
+        assertEquals(51, snapshot.getActiveUsers(1));
+        assertEquals(50L, snapshot.getPageViews(0).get("/home"));
+        assertEquals(51L, snapshot.getPageViews(1).get("/home"));
+        assertEquals(1L, snapshot.getPageViews(0).get("/cart"));
+        assertEquals(51, snapshot.getUserSessions().size());
+        assertEquals(2, snapshot.getUserSessions().get("usr_0").size());
+        assertEquals(now - 10 * 60_000L, snapshot.getUserSessions().get("usr_old").get("sess_old"));
+    }
+
+    @Test
+    void testPublish_concurrentProducersShouldDeliverEveryEventOnce() throws Exception {
+        // Small queues so producers hit backpressure
+        lanes = new AggregationLanes(2, 64, List.of(lane -> new UserActivityState(RETENTION_MS)),
+                event -> event.getCreatedAt().toEpochMilli());
+        lanes.start();
+        long now = System.currentTimeMillis();
+        int producers = 4;
+        int perProducer = 20_000;
+
+        ExecutorService executor = Executors.newFixedThreadPool(producers);
+        List<Future<?>> futures = new ArrayList<>();
+        for (int p = 0; p < producers; p++) {
+            int producer = p;
+            futures.add(executor.submit(() -> {
+                for (int i = 0; i < perProducer; i++) {
+                    lanes.publish(event("usr_" + producer + "_" + (i % 100), "page_view", "/p", "s", now));
+                }
+            }));
+        }
+        for (Future<?> future : futures) {
+            future.get();
+        }
+        executor.shutdown();
+
+        ActivitySnapshot snapshot = ActivitySnapshot.merge(lanes.query(UserActivityState.class,
+                state -> state.snapshot(now, new long[]{RETENTION_MS}, false), 5000));
+
+        assertEquals(producers * perProducer, snapshot.getPageViews(0).get("/p"));
+        assertEquals(producers * 100, snapshot.getActiveUsers(0));
+        assertEquals(producers * perProducer, lanes.processedEvents(0) + lanes.processedEvents(1));
+    }
+
+    @Test
+    void testPublish_lateEventsShouldCountInTheirOwnBucketUntilTooLate() throws Exception {
+        lanes = new AggregationLanes(1, 1024, List.of(lane -> new UserActivityState(RETENTION_MS)),
+                event -> event.getCreatedAt().toEpochMilli(), 5_000, 60_000);
+        lanes.start();
+        long now = System.currentTimeMillis();
+
+        lanes.publish(event("usr_1", "page_view", "/home", "sess_1", now));
+        // Behind the watermark but within the allowed lateness: counted 30 seconds back
+        lanes.publish(event("usr_2", "page_view", "/late", "sess_2", now - 30_000));
+        // Beyond the allowed lateness
+        lanes.publish(event("usr_3", "page_view", "/too-late", "sess_3", now - 5 * 60_000L));
+        // Backfilled history is applied however late
+        lanes.backfill(event("usr_4", "page_view", "/history", "sess_4", now - 10 * 60_000L));
+
+        ActivitySnapshot snapshot = ActivitySnapshot.merge(lanes.query(UserActivityState.class,
+                state -> state.snapshot(now, new long[]{10_000L, RETENTION_MS}, false), 5000));
+
+        assertEquals(1L, snapshot.getPageViews(0).get("/home"));
+        assertNull(snapshot.getPageViews(0).get("/late"));
+        assertEquals(1L, snapshot.getPageViews(1).get("/late"));
+        assertNull(snapshot.getPageViews(1).get("/too-late"));
+        assertEquals(1L, snapshot.getPageViews(1).get("/history"));
+        assertEquals(now - 5_000, lanes.watermark(0));
+        assertEquals(2, lanes.lateEvents(0));
+        assertEquals(1, lanes.droppedEvents(0));
+    }
+
+    @Test
+    void testMpscArrayQueue_shouldRejectWhenFullAndPreserveOrder() {
+        MpscArrayQueue<Integer> queue = new MpscArrayQueue<>(4);
+
+        for (int i = 0; i < queue.capacity(); i++) {
+            assertTrue(queue.offer(i));
+        }
+        assertFalse(queue.offer(99));
+        for (int i = 0; i < queue.capacity(); i++) {
+            assertEquals(i, queue.poll());
+        }
+        assertNull(queue.poll());
+    }
+
+    private AggregationLanes start(int laneCount) {
+        AggregationLanes started = new AggregationLanes(laneCount, 1024,
+                List.of(lane -> new UserActivityState(RETENTION_MS)),
+                event -> event.getCreatedAt().toEpochMilli());
+        started.start();
+        return started;
+    }
+
+    private UserEvent event(String userId, String eventType, String pageUrl, String sessionId, long timeMillis) {
+        return UserEvent.builder()
+                .timestamp(Instant.ofEpochMilli(timeMillis).toString())
+                .userId(userId)
+                .eventType(eventType)
+                .pageUrl(pageUrl)
+                .sessionId(sessionId)
+                .createdAt(Instant.ofEpochMilli(timeMillis))
+                .build();
+    }
+}
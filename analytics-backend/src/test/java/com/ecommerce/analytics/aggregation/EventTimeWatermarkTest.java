@@ -0,0 +1,55 @@
+package com.ecommerce.analytics.aggregation;
+
+import com.ecommerce.analytics.aggregation.EventTimeWatermark.Lateness;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit tests for EventTimeWatermark
+ */
+class EventTimeWatermarkTest {
+
+    private static final long DISORDER_MS = 5_000;
+    private static final long LATENESS_MS = 60_000;
+
+    @Test
+    void testObserve_shouldTrailNewestEventTimeByTheDisorder() {
+        EventTimeWatermark watermark = new EventTimeWatermark(DISORDER_MS, LATENESS_MS);
+        assertEquals(EventTimeWatermark.NONE, watermark.watermark());
+
+        assertEquals(Lateness.ON_TIME, watermark.observe(100_000, false));
+        assertEquals(95_000, watermark.watermark());
+        // Out of order but within the disorder: on time, watermark unchanged
+        assertEquals(Lateness.ON_TIME, watermark.observe(97_000, false));
+        assertEquals(95_000, watermark.watermark());
+        assertEquals(Lateness.ON_TIME, watermark.observe(110_000, false));
+        assertEquals(105_000, watermark.watermark());
+    }
+
+    @Test
+    void testObserve_shouldApplyLateEventsUntilTheAllowedLateness() {
+        EventTimeWatermark watermark = new EventTimeWatermark(DISORDER_MS, LATENESS_MS);
+        watermark.observe(100_000, false);
+
+        assertEquals(Lateness.LATE, watermark.observe(90_000, false));
+        assertEquals(Lateness.LATE, watermark.observe(95_000 - LATENESS_MS, false));
+        assertEquals(Lateness.DROPPED, watermark.observe(94_999 - LATENESS_MS, false));
+        assertEquals(Lateness.LATE, watermark.observe(0, true));
+        assertEquals(95_000, watermark.watermark());
+        assertEquals(3, watermark.lateEvents());
+        assertEquals(1, watermark.droppedEvents());
+    }
+
+    @Test
+    void testAdvance_shouldFollowTheClockOnceIdle() {
+        EventTimeWatermark watermark = new EventTimeWatermark(DISORDER_MS, LATENESS_MS);
+        // No watermark before the first event
+        assertEquals(EventTimeWatermark.NONE, watermark.advance(1_000_000));
+
+        watermark.observe(100_000, false);
+        assertEquals(95_000, watermark.advance(1_000_000));
+        assertEquals(95_000, watermark.advance(1_000_000 + DISORDER_MS - 1));
+        assertEquals(1_000_000, watermark.advance(1_000_000 + DISORDER_MS));
+    }
+}
@@ -0,0 +1,100 @@
+package com.ecommerce.analytics.aggregation;
+
+import com.ecommerce.analytics.model.UserEvent;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit tests for FunnelTracker
+ */
+class FunnelTrackerTest {
+
+    private static final long HOUR_MS = 60 * 60_000L;
+
+    private FunnelDefinition purchase;
+    private FunnelTracker tracker;
+    private long now;
+
+    @BeforeEach
+    void setUp() {
+        purchase = new FunnelDefinition("purchase", "Purchase", List.of(
+                new FunnelDefinition.Step("home", "page_view", "/home"),
+                new FunnelDefinition.Step("product", "page_view", "/products"),
+                new FunnelDefinition.Step("add_to_cart", "add_to_cart", null)));
+        tracker = new FunnelTracker(List.of(purchase), HOUR_MS, HOUR_MS);
+        now = System.currentTimeMillis();
+    }
+
+    @Test
+    void testOnEvent_shouldAdvanceOnlyInStepOrder() {
+        // Reaches every step
+        tracker.onEvent(event("sess_1", "page_view", "/home"), now);
+        tracker.onEvent(event("sess_1", "click", "/home"), now + 1_000);
+        tracker.onEvent(event("sess_1", "page_view", "/products/books"), now + 4_000);
+        tracker.onEvent(event("sess_1", "add_to_cart", "/products/books"), now + 10_000);
+
+        // Skips the home page, so never enters
+        tracker.onEvent(event("sess_2", "page_view", "/products/books"), now);
+        tracker.onEvent(event("sess_2", "add_to_cart", "/products/books"), now + 1_000);
+
+        // Drops off after the product page
+        tracker.onEvent(event("sess_3", "page_view", "/home"), now);
+        tracker.onEvent(event("sess_3", "page_view", "/products/sports"), now + 2_000);
+
+        FunnelCounts counts = tracker.counts("purchase", now + 10_000, HOUR_MS);
+
+        assertArrayEquals(new long[]{2, 2, 1}, counts.getReached());
+        assertEquals(4_000 + 2_000, counts.getStepMillis()[1]);
+        assertEquals(6_000, counts.getStepMillis()[2]);
+    }
+
+    @Test
+    void testOnEvent_completedSessionShouldRestartOnFirstStep() {
+        for (int round = 0; round < 2; round++) {
+            long t = now + round * 20_000L;
+            tracker.onEvent(event("sess_1", "page_view", "/home"), t);
+            tracker.onEvent(event("sess_1", "page_view", "/products"), t + 1_000);
+            tracker.onEvent(event("sess_1", "add_to_cart", "/products"), t + 2_000);
+        }
+
+        FunnelCounts counts = tracker.counts("purchase", now + 40_000, HOUR_MS);
+        assertArrayEquals(new long[]{2, 2, 2}, counts.getReached());
+    }
+
+    @Test
+    void testCounts_shouldMergeAcrossLanesAndRejectUnknownFunnel() {
+        FunnelTracker otherLane = new FunnelTracker(List.of(purchase), HOUR_MS, HOUR_MS);
+        tracker.onEvent(event("sess_1", "page_view", "/home"), now);
+        otherLane.onEvent(event("sess_2", "page_view", "/home"), now);
+        otherLane.onEvent(event("sess_2", "page_view", "/products"), now + 1_000);
+
+        FunnelCounts merged = FunnelCounts.merge(3, List.of(
+                tracker.counts("purchase", now + 1_000, HOUR_MS),
+                otherLane.counts("purchase", now + 1_000, HOUR_MS)));
+
+        assertArrayEquals(new long[]{2, 1, 0}, merged.getReached());
+        assertNull(tracker.counts("signup", now, HOUR_MS));
+    }
+
+    @Test
+    void testOnTick_shouldDropIdleSessions() {
+        tracker.onEvent(event("sess_1", "page_view", "/home"), now);
+        assertEquals(1, tracker.trackedSessions());
+
+        tracker.onTick(now + HOUR_MS + 1);
+        assertEquals(0, tracker.trackedSessions());
+    }
+
+    private UserEvent event(String sessionId, String eventType, String pageUrl) {
+        return UserEvent.builder()
+                .userId("usr_1")
+                .sessionId(sessionId)
+                .eventType(eventType)
+                .pageUrl(pageUrl)
+                .build();
+    }
+}
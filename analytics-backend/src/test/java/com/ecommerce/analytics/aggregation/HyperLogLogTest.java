@@ -0,0 +1,75 @@
+package com.ecommerce.analytics.aggregation;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit tests for HyperLogLog
+ */
+class HyperLogLogTest {
+
+    @Test
+    void testEstimate_shouldBeExactForFewItemsAndWithinErrorForMany() {
+        HyperLogLog small = new HyperLogLog(11);
+        for (int i = 0; i < 3; i++) {
+            small.add("usr_" + i);
+            small.add("usr_" + i);
+        }
+        assertEquals(3, small.estimate());
+        assertTrue(small.isSparse());
+
+        HyperLogLog large = new HyperLogLog(11);
+        for (int i = 0; i < 100_000; i++) {
+            large.add("usr_" + i);
+        }
+        assertFalse(large.isSparse());
+        assertEquals(2048, large.sizeInBytes());
+        // Standard error is about 2.3%; allow three of them
+        assertEquals(100_000, large.estimate(), 7_000);
+    }
+
+    @Test
+    void testMerge_shouldEstimateTheUnion() {
+        HyperLogLog first = new HyperLogLog(11);
+        HyperLogLog second = new HyperLogLog(11);
+        for (int i = 0; i < 20_000; i++) {
+            first.add("usr_" + i);
+        }
+        for (int i = 10_000; i < 30_000; i++) {
+            second.add("usr_" + i);
+        }
+        HyperLogLog sparse = new HyperLogLog(11);
+        sparse.add("usr_1");
+        sparse.add("usr_99999");
+
+        first.merge(second);
+        first.merge(sparse);
+
+        assertEquals(30_000, first.estimate(), 2_100);
+        assertThrows(IllegalArgumentException.class, () -> first.merge(new HyperLogLog(10)));
+    }
+
+    @Test
+    void testWriteTo_shouldRoundTripSparseAndDenseSketches() throws Exception {
+        for (int items : new int[]{5, 5_000}) {
+            HyperLogLog sketch = new HyperLogLog(11);
+            for (int i = 0; i < items; i++) {
+                sketch.add("usr_" + i);
+            }
+
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            sketch.writeTo(new DataOutputStream(bytes));
+            HyperLogLog restored = HyperLogLog.readFrom(
+                    new DataInputStream(new ByteArrayInputStream(bytes.toByteArray())));
+
+            assertEquals(sketch.estimate(), restored.estimate());
+            assertEquals(sketch.isSparse(), restored.isSparse());
+        }
+    }
+}
@@ -0,0 +1,83 @@
+package com.ecommerce.analytics.aggregation;
+
+import com.ecommerce.analytics.model.UserEvent;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit tests for PageVisitorSketches
+ */
+class PageVisitorSketchesTest {
+
+    private static final long MINUTE_MS = 60_000L;
+    private static final long HOUR_MS = 60 * MINUTE_MS;
+
+    // Aligned to a minute boundary plus 30 seconds, so bucket edges are predictable
+    private static final long NOW = 1_710_513_000_000L + 30_000L;
+
+    private static UserEvent view(String userId, String page) {
+        return UserEvent.builder().userId(userId).eventType("page_view").pageUrl(page).sessionId("s").build();
+    }
+
+    @Test
+    void testVisitors_shouldCountEachUserOncePerPageAcrossBuckets() {
+        PageVisitorSketches sketches = new PageVisitorSketches(HOUR_MS, MINUTE_MS, 11);
+        sketches.onEvent(view("usr_1", "/home"), NOW);
+        sketches.onEvent(view("usr_1", "/home"), NOW - 3 * MINUTE_MS);
+        sketches.onEvent(view("usr_2", "/home"), NOW - 3 * MINUTE_MS);
+        sketches.onEvent(view("usr_3", "/home"), NOW - 30 * MINUTE_MS);
+        sketches.onEvent(view("usr_1", "/cart"), NOW);
+        sketches.onEvent(UserEvent.builder().userId("usr_4").eventType("click").pageUrl("/home").build(), NOW);
+
+        Map<String, HyperLogLog> fiveMinutes = sketches.visitors(NOW, 5 * MINUTE_MS);
+        assertEquals(2, fiveMinutes.get("/home").estimate());
+        assertEquals(1, fiveMinutes.get("/cart").estimate());
+        assertEquals(3, sketches.visitors(NOW, HOUR_MS).get("/home").estimate());
+        // A one-minute window starts at the previous bucket boundary
+        assertNull(sketches.visitors(NOW, MINUTE_MS).get("/nowhere"));
+        assertEquals(1, sketches.visitors(NOW, MINUTE_MS).get("/home").estimate());
+    }
+
+    @Test
+    void testOnTick_shouldEvictExpiredBucketsAndEmptyPages() {
+        PageVisitorSketches sketches = new PageVisitorSketches(5 * MINUTE_MS, MINUTE_MS, 11);
+        sketches.onEvent(view("usr_1", "/home"), NOW);
+        assertTrue(sketches.sizeInBytes() > 0);
+
+        sketches.onTick(NOW + HOUR_MS);
+
+        assertTrue(sketches.visitors(NOW + HOUR_MS, 5 * MINUTE_MS).isEmpty());
+        assertEquals(0, sketches.sizeInBytes());
+        // Events older than the ring are ignored
+        sketches.onEvent(view("usr_2", "/home"), NOW + HOUR_MS);
+        sketches.onEvent(view("usr_3", "/home"), NOW);
+        assertEquals(1, sketches.visitors(NOW + HOUR_MS, 5 * MINUTE_MS).get("/home").estimate());
+    }
+
+    @Test
+    void testReadState_shouldRestoreSketchesAndRejectOtherConfiguration() throws Exception {
+        PageVisitorSketches sketches = new PageVisitorSketches(HOUR_MS, MINUTE_MS, 11);
+        for (int i = 0; i < 500; i++) {
+            sketches.onEvent(view("usr_" + i, "/home"), NOW - (i % 10) * MINUTE_MS);
+        }
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        sketches.writeState(new DataOutputStream(bytes));
+
+        PageVisitorSketches restored = new PageVisitorSketches(HOUR_MS, MINUTE_MS, 11);
+        restored.readState(new DataInputStream(new ByteArrayInputStream(bytes.toByteArray())));
+        assertEquals(sketches.visitors(NOW, HOUR_MS).get("/home").estimate(),
+                restored.visitors(NOW, HOUR_MS).get("/home").estimate());
+
+        PageVisitorSketches otherPrecision = new PageVisitorSketches(HOUR_MS, MINUTE_MS, 12);
+        assertThrows(IOException.class, () -> otherPrecision.readState(
+                new DataInputStream(new ByteArrayInputStream(bytes.toByteArray()))));
+    }
+}
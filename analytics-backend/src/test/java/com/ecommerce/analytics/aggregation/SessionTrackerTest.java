@@ -0,0 +1,103 @@
+package com.ecommerce.analytics.aggregation;
+
+import com.ecommerce.analytics.model.UserEvent;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit tests for SessionTracker
+ */
+class SessionTrackerTest {
+
+    private static final long GAP_MS = 60_000L;
+    private static final long RETENTION_MS = 60 * 60_000L;
+
+    private SessionTracker tracker;
+    private long now;
+
+    @BeforeEach
+    void setUp() {
+        tracker = new SessionTracker(GAP_MS, RETENTION_MS);
+        now = System.currentTimeMillis();
+        tracker.onTick(now);
+    }
+
+    @Test
+    void testOnTick_shouldCloseSessionAfterInactivityGap() {
+        tracker.onEvent(event("sess_1", "page_view", "/home"), now);
+        tracker.onEvent(event("sess_1", "page_view", "/products"), now + 10_000);
+        tracker.onEvent(event("sess_1", "click", "/cart"), now + 20_000);
+
+        tracker.onTick(now + 30_000);
+        assertEquals(1, tracker.openSessionCount());
+
+        tracker.onTick(now + 20_000 + GAP_MS + 2_000);
+        assertEquals(0, tracker.openSessionCount());
+
+        SessionSummary summary = tracker.summary(now + 20_000 + GAP_MS + 2_000, RETENTION_MS);
+        assertEquals(1, summary.getClosedSessions());
+        assertEquals(20_000, summary.getTotalDurationMillis());
+        assertEquals(3, summary.getTotalEvents());
+        assertEquals(2, summary.getTotalPageViews());
+        assertEquals(0, summary.getBounces());
+        assertEquals(1L, summary.getEntryPages().get("/home"));
+        assertEquals(1L, summary.getExitPages().get("/cart"));
+    }
+
+    @Test
+    void testOnTick_activityShouldKeepSessionOpenPastFirstDeadline() {
+        tracker.onEvent(event("sess_1", "page_view", "/home"), now);
+        for (long t = 10_000; t <= 3 * GAP_MS; t += 10_000) {
+            tracker.onEvent(event("sess_1", "click", "/home"), now + t);
+            tracker.onTick(now + t);
+        }
+        assertEquals(1, tracker.openSessionCount());
+
+        tracker.onTick(now + 4 * GAP_MS + 2_000);
+        assertEquals(0, tracker.openSessionCount());
+    }
+
+    @Test
+    void testSummary_singlePageSessionShouldCountAsBounce() {
+        tracker.onEvent(event("sess_1", "page_view", "/home"), now);
+        tracker.onEvent(event("sess_2", "page_view", "/home"), now);
+        tracker.onEvent(event("sess_2", "page_view", "/cart"), now + 1_000);
+
+        long later = now + GAP_MS + 3_000;
+        tracker.onTick(later);
+
+        SessionSummary summary = SessionSummary.merge(List.of(tracker.summary(later, RETENTION_MS)));
+        assertEquals(2, summary.getClosedSessions());
+        assertEquals(1, summary.getBounces());
+        assertEquals(2L, summary.getEntryPages().get("/home"));
+    }
+
+    @Test
+    void testOpenSessions_shouldTrackEntryAndExitForOutOfOrderEvents() {
+        tracker.onEvent(event("sess_1", "page_view", "/products"), now + 5_000);
+        tracker.onEvent(event("sess_1", "page_view", "/home"), now);
+        tracker.onEvent(event("sess_1", "page_view", "/checkout"), now + 9_000);
+
+        List<SessionView> sessions = tracker.openSessions("usr_1");
+        assertEquals(1, sessions.size());
+        SessionView session = sessions.get(0);
+        assertEquals("/home", session.getEntryPage());
+        assertEquals("/checkout", session.getExitPage());
+        assertEquals(now, session.getStartMillis());
+        assertEquals(3, session.getPageViews());
+        assertTrue(tracker.openSessions("usr_2").isEmpty());
+    }
+
+    private UserEvent event(String sessionId, String eventType, String pageUrl) {
+        return UserEvent.builder()
+                .userId("usr_1")
+                .sessionId(sessionId)
+                .eventType(eventType)
+                .pageUrl(pageUrl)
+                .build();
+    }
+}
@@ -0,0 +1,79 @@
+package com.ecommerce.analytics.aggregation;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit tests for WindowCounts
+ */
+class WindowCountsTest {
+
+    private static final long SECOND_MS = 1000L;
+    private static final long MINUTE_MS = 60_000L;
+    private static final long HOUR_MS = 60 * MINUTE_MS;
+
+    // Aligned to a minute boundary plus 30 seconds, so minute edges are predictable
+    private static final long NOW = 1_710_513_000_000L + 30 * SECOND_MS;
+
+    @Test
+    void testSum_shortWindowsShouldBeExactToTheSecond() {
+        WindowCounts counts = new WindowCounts(HOUR_MS);
+        counts.add("/home", NOW, 1);
+        counts.add("/home", NOW - 10 * SECOND_MS, 1);
+        counts.add("/home", NOW - 40 * SECOND_MS, 1);
+
+        assertEquals(1L, counts.sum(NOW, 5 * SECOND_MS).get("/home"));
+        assertEquals(2L, counts.sum(NOW, 30 * SECOND_MS).get("/home"));
+        assertEquals(3L, counts.sum(NOW, MINUTE_MS).get("/home"));
+    }
+
+    @Test
+    void testSums_shouldAnswerEveryWindowFromOnePass() {
+        WindowCounts counts = new WindowCounts(HOUR_MS);
+        counts.add("/home", NOW, 1);
+        counts.add("/home", NOW - 3 * MINUTE_MS, 2);
+        counts.add("/home", NOW - 10 * MINUTE_MS, 4);
+        counts.add("/home", NOW - 50 * MINUTE_MS, 8);
+        counts.add("/cart", NOW - 50 * MINUTE_MS, 1);
+
+        List<Map<String, Long>> sums = counts.sums(NOW,
+                new long[]{MINUTE_MS, 5 * MINUTE_MS, 15 * MINUTE_MS, HOUR_MS});
+
+        assertEquals(1L, sums.get(0).get("/home"));
+        assertEquals(3L, sums.get(1).get("/home"));
+        assertEquals(7L, sums.get(2).get("/home"));
+        assertEquals(15L, sums.get(3).get("/home"));
+        assertNull(sums.get(2).get("/cart"));
+        assertEquals(1L, sums.get(3).get("/cart"));
+    }
+
+    @Test
+    void testAdd_ringWrapShouldResetReusedSlots() {
+        WindowCounts counts = new WindowCounts(5 * MINUTE_MS);
+        counts.add("/home", NOW, 5);
+
+        // Two hours later both rings have wrapped onto the same slots
+        long later = NOW + 2 * HOUR_MS;
+        counts.add("/home", later, 1);
+
+        assertEquals(1L, counts.sum(later, 5 * MINUTE_MS).get("/home"));
+        assertEquals(1L, counts.sum(later, 10 * SECOND_MS).get("/home"));
+    }
+
+    @Test
+    void testEvict_shouldDropKeysWithNothingRecent() {
+        WindowCounts counts = new WindowCounts(HOUR_MS);
+        counts.add("/old", NOW - 30 * MINUTE_MS, 1);
+        counts.add("/new", NOW, 1);
+
+        counts.evict(NOW - 10 * MINUTE_MS);
+
+        Map<String, Long> totals = counts.sum(NOW, HOUR_MS);
+        assertFalse(totals.containsKey("/old"));
+        assertEquals(1L, totals.get("/new"));
+    }
+}
@@ -0,0 +1,93 @@
+package com.ecommerce.analytics.anomaly;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit tests for SeriesDetector and AlertFeed
+ */
+class SeriesDetectorTest {
+
+    private static final long SECOND = 1000L;
+
+    @Test
+    void testAdvance_shouldFlagSpikeAndDropAfterWarmup() {
+        SeriesDetector detector = new SeriesDetector(0.1, 4.0, 5, 30, 0, 60_000, 100);
+        long now = 0;
+
+        // Noisy baseline around 100/s
+        for (int i = 0; i < 200; i++) {
+            now += SECOND;
+            detector.record("events", 100 + (i % 5) - 2, now);
+            assertTrue(detector.advance(now).isEmpty());
+        }
+
+        now += SECOND;
+        detector.record("events", 400, now);
+        List<AnomalyAlert> spike = detector.advance(now);
+        assertEquals(1, spike.size());
+        assertEquals(AnomalyAlert.Kind.SPIKE, spike.get(0).getKind());
+        assertEquals(100, spike.get(0).getExpected(), 5);
+
+        // The burst barely moves the baseline
+        assertEquals(100, detector.expected("events"), 5);
+
+        now += SECOND;
+        // Nothing recorded: a rate series sees zero
+        List<AnomalyAlert> drop = detector.advance(now);
+        assertEquals(1, drop.size());
+        assertEquals(AnomalyAlert.Kind.DROP, drop.get(0).getKind());
+    }
+
+    @Test
+    void testAdvance_shouldStayQuietDuringWarmupAndBelowMinDeviation() {
+        SeriesDetector detector = new SeriesDetector(0.1, 4.0, 5, 30, 0, 60_000, 100);
+        long now = 0;
+        for (int i = 0; i < 10; i++) {
+            now += SECOND;
+            detector.record("events:page:/home", i % 2 == 0 ? 1 : 500, now);
+            assertTrue(detector.advance(now).isEmpty());
+        }
+
+        SeriesDetector quiet = new SeriesDetector(0.1, 4.0, 5, 5, 0, 60_000, 100);
+        for (int i = 0; i < 50; i++) {
+            now += SECOND;
+            quiet.record("events:page:/rare", 1, now);
+            quiet.advance(now);
+        }
+        now += SECOND;
+        quiet.record("events:page:/rare", 4, now);
+        assertTrue(quiet.advance(now).isEmpty());
+    }
+
+    @Test
+    void testAdvance_shouldEnforceSeriesLimitAndEvictIdleSeries() {
+        SeriesDetector detector = new SeriesDetector(0.1, 4.0, 5, 30, 0, 60_000, 2);
+        detector.record("a", 1, 0);
+        detector.record("b", 1, 0);
+        detector.record("c", 1, 0);
+        detector.advance(0);
+        assertEquals(2, detector.seriesCount());
+        assertEquals(1, detector.rejectedSeries());
+
+        detector.record("b", 1, 70_000);
+        detector.advance(70_000);
+        assertEquals(1, detector.seriesCount());
+        assertTrue(Double.isNaN(detector.expected("a")));
+    }
+
+    @Test
+    void testAlertFeed_shouldReturnNewestFirstAfterId() {
+        AlertFeed feed = new AlertFeed(3);
+        for (int i = 0; i < 5; i++) {
+            feed.add(new AnomalyAlert(0, "s" + i, AnomalyAlert.Kind.SPIKE, i, 0, 0, i));
+        }
+
+        List<AnomalyAlert> all = feed.since(0, 10);
+        assertEquals(List.of(5L, 4L, 3L), all.stream().map(AnomalyAlert::getId).toList());
+        assertEquals(List.of(5L), feed.since(4, 10).stream().map(AnomalyAlert::getId).toList());
+    }
+}
@@ -0,0 +1,94 @@
+package com.ecommerce.analytics.benchmark;
+
+import com.ecommerce.analytics.aggregation.AggregationLanes;
+import com.ecommerce.analytics.aggregation.UserActivityState;
+import com.ecommerce.analytics.model.UserEvent;
+import org.openjdk.jmh.annotations.*;
+
+import java.time.Instant;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Aggregation throughput with several concurrent producers.
+ * {@code lanes} publishes onto single-writer lanes (throughput is bounded by
+ * how fast the lanes drain); {@code sharedMaps} updates the same state in
+ * shared concurrent maps from every producer for comparison.
+ *
+ * Run with: mvn -Pbenchmark test-compile exec:exec -Dbenchmark.includes=AggregationLanesBenchmark
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@Threads(4)
+@State(Scope.Benchmark)
+public class AggregationLanesBenchmark {
+
+    private static final int USERS = 10_000;
+    private static final String[] PAGES = {"/home", "/products", "/cart", "/checkout", "/search", "/account"};
+
+    @Param({"1", "2", "4", "8"})
+    public int laneCount;
+
+    private UserEvent[] events;
+    private AggregationLanes lanes;
+
+    private final Map<String, Long> lastSeen = new ConcurrentHashMap<>();
+    private final Map<String, Set<String>> sessions = new ConcurrentHashMap<>();
+    private final Map<String, LongAdder> pageViews = new ConcurrentHashMap<>();
+
+    @State(Scope.Thread)
+    public static class Cursor {
+        int next = ThreadLocalRandom.current().nextInt(1 << 16);
+    }
+
+    @Setup
+    public void setUp() {
+        long now = System.currentTimeMillis();
+        events = new UserEvent[1 << 16];
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        for (int i = 0; i < events.length; i++) {
+            int user = random.nextInt(USERS);
+            events[i] = UserEvent.builder()
+                    .userId("usr_" + user)
+                    .eventType(random.nextInt(10) < 7 ? "page_view" : "click")
+                    .pageUrl(PAGES[random.nextInt(PAGES.length)])
+                    .sessionId("sess_" + user + "_" + random.nextInt(3))
+                    .createdAt(Instant.ofEpochMilli(now))
+                    .build();
+        }
+
+        long retention = TimeUnit.MINUTES.toMillis(15);
+        lanes = new AggregationLanes(laneCount, 16384, List.of(lane -> new UserActivityState(retention)),
+                event -> event.getCreatedAt().toEpochMilli());
+        lanes.start();
+    }
+
+    @TearDown
+    public void tearDown() {
+        lanes.close();
+    }
+
+    @Benchmark
+    public void lanes(Cursor cursor) {
+        lanes.publish(events[cursor.next++ & (events.length - 1)]);
+    }
+
+    @Benchmark
+    public void sharedMaps(Cursor cursor) {
+        UserEvent event = events[cursor.next++ & (events.length - 1)];
+        long time = event.getCreatedAt().toEpochMilli();
+        lastSeen.merge(event.getUserId(), time, Math::max);
+        sessions.computeIfAbsent(event.getUserId(), user -> ConcurrentHashMap.newKeySet()).add(event.getSessionId());
+        if ("page_view".equals(event.getEventType())) {
+            pageViews.computeIfAbsent(event.getPageUrl(), page -> new LongAdder()).increment();
+        }
+    }
+}
@@ -0,0 +1,110 @@
+package com.ecommerce.analytics.benchmark;
+
+import com.ecommerce.analytics.query.GroupByEngine;
+import com.ecommerce.analytics.query.GroupByQuery;
+import com.ecommerce.analytics.store.ColumnBlock.Dimension;
+import com.ecommerce.analytics.store.ColumnarRingStore;
+import org.openjdk.jmh.annotations.*;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Ad-hoc group-by scan speed over a full recent event store.
+ * Each operation scans every row; the {@code rows} counter is rows per
+ * second, and rows per second per core is that divided by {@code parallelism}.
+ *
+ * Run with: mvn -Pbenchmark test-compile exec:exec -Dbenchmark.includes=GroupByScanBenchmark
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class GroupByScanBenchmark {
+
+    private static final String[] PAGES = {"/home", "/products/1", "/products/2", "/products/3", "/cart",
+            "/checkout", "/search", "/account", "/help", "/help/faq"};
+    private static final String[] TYPES = {"page_view", "click", "add_to_cart", "purchase"};
+
+    @Param({"1", "2", "4", "8"})
+    public int parallelism;
+
+    private Path file;
+    private ColumnarRingStore store;
+    private ForkJoinPool pool;
+    private GroupByEngine engine;
+    private GroupByQuery clicksPerPage;
+    private GroupByQuery distinctUsersPerPage;
+
+    @AuxCounters(AuxCounters.Type.OPERATIONS)
+    @State(Scope.Thread)
+    public static class Rows {
+        public long rows;
+    }
+
+    @Setup
+    public void setUp() throws Exception {
+        file = Files.createTempFile("groupby-bench", ".ring");
+        store = new ColumnarRingStore(file, 512L * 1024 * 1024, 0.1);
+        Random random = new Random(7);
+        for (int i = 0; i < store.capacity(); i++) {
+            int user = random.nextInt(100_000);
+            store.append(i, "usr_" + user, PAGES[random.nextInt(PAGES.length)],
+                    TYPES[random.nextInt(TYPES.length)], "sess_" + user + "_" + random.nextInt(3));
+        }
+        pool = new ForkJoinPool(parallelism);
+        engine = new GroupByEngine(pool);
+
+        clicksPerPage = GroupByQuery.builder()
+                .groupBy(Dimension.PAGE)
+                .aggregate(GroupByQuery.Aggregate.COUNT)
+                .filter(new GroupByQuery.Filter(Dimension.EVENT_TYPE, GroupByQuery.Op.EQ, "click"))
+                .filter(new GroupByQuery.Filter(Dimension.PAGE, GroupByQuery.Op.NOT_PREFIX, "/help"))
+                .fromMillis(0)
+                .toMillis(Long.MAX_VALUE)
+                .limit(20)
+                .build();
+        distinctUsersPerPage = GroupByQuery.builder()
+                .groupBy(Dimension.PAGE)
+                .aggregate(GroupByQuery.Aggregate.DISTINCT_COUNT)
+                .distinctOn(Dimension.USER)
+                .fromMillis(0)
+                .toMillis(Long.MAX_VALUE)
+                .limit(20)
+                .build();
+    }
+
+    @TearDown
+    public void tearDown() throws Exception {
+        pool.shutdownNow();
+        store.close();
+        Files.deleteIfExists(file);
+    }
+
+    @Benchmark
+    public GroupByQuery.Result countWithFilters(Rows rows) {
+        GroupByQuery.Result result = store.read(view -> run(view, clicksPerPage));
+        rows.rows += result.getRowsScanned();
+        return result;
+    }
+
+    @Benchmark
+    public GroupByQuery.Result distinctCount(Rows rows) {
+        GroupByQuery.Result result = store.read(view -> run(view, distinctUsersPerPage));
+        rows.rows += result.getRowsScanned();
+        return result;
+    }
+
+    private GroupByQuery.Result run(ColumnarRingStore.View view, GroupByQuery query) {
+        try {
+            return engine.execute(view, query, TimeUnit.MINUTES.toMillis(1));
+        } catch (Exception e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
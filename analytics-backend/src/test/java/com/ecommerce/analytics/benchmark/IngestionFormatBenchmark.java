@@ -0,0 +1,110 @@
+package com.ecommerce.analytics.benchmark;
+
+import com.ecommerce.analytics.model.UserEvent;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.fasterxml.jackson.dataformat.cbor.databind.CBORMapper;
+import com.fasterxml.jackson.dataformat.smile.databind.SmileMapper;
+import com.github.luben.zstd.Zstd;
+import com.github.luben.zstd.RecyclingBufferPool;
+import com.github.luben.zstd.ZstdInputStream;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.InputStream;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Bytes on the wire and parse throughput of the ingestion body formats.
+ * Each operation decodes one request body (decompressing it first where
+ * applicable) into a {@link UserEvent}. The {@code wireBytes} secondary
+ * result counts the body bytes decoded per second; divided by the
+ * {@code parse} score it gives the average body size of the format.
+ *
+ * Run with: mvn -Pbenchmark test-compile exec:exec -Dbenchmark.includes=IngestionFormatBenchmark
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class IngestionFormatBenchmark {
+
+    private static final String[] PAGES = {"/home", "/products/1234", "/products/98", "/cart", "/checkout",
+            "/search?q=running+shoes", "/account/orders"};
+    private static final String[] TYPES = {"page_view", "click", "add_to_cart", "purchase"};
+    private static final int BODIES = 1024;
+
+    @Param({"json", "json+gzip", "json+zstd", "smile", "cbor"})
+    public String format;
+
+    private ObjectReader reader;
+    private byte[][] bodies;
+    private int next;
+
+    @AuxCounters(AuxCounters.Type.OPERATIONS)
+    @State(Scope.Thread)
+    public static class Wire {
+        public long wireBytes;
+    }
+
+    @Setup
+    public void setUp() throws Exception {
+        ObjectMapper mapper = switch (format) {
+            case "smile" -> new SmileMapper();
+            case "cbor" -> new CBORMapper();
+            default -> new ObjectMapper();
+        };
+        reader = mapper.readerFor(UserEvent.class);
+
+        Random random = new Random(11);
+        bodies = new byte[BODIES][];
+        for (int i = 0; i < BODIES; i++) {
+            int user = random.nextInt(100_000);
+            UserEvent event = UserEvent.builder()
+                    .eventId("evt_" + Long.toHexString(random.nextLong()))
+                    .timestamp("2024-03-15T14:" + (10 + random.nextInt(50)) + ":" + (10 + random.nextInt(50)) + "Z")
+                    .userId("usr_" + user)
+                    .eventType(TYPES[random.nextInt(TYPES.length)])
+                    .pageUrl(PAGES[random.nextInt(PAGES.length)])
+                    .sessionId("sess_" + user + "_" + random.nextInt(5))
+                    .build();
+            byte[] body = mapper.writeValueAsBytes(event);
+            bodies[i] = switch (format) {
+                case "json+gzip" -> gzip(body);
+                case "json+zstd" -> Zstd.compress(body);
+                default -> body;
+            };
+        }
+    }
+
+    @Benchmark
+    public UserEvent parse(Wire wire) throws Exception {
+        byte[] body = bodies[next++ & (BODIES - 1)];
+        wire.wireBytes += body.length;
+        return switch (format) {
+            case "json+gzip" -> read(new GZIPInputStream(new ByteArrayInputStream(body)));
+            case "json+zstd" -> read(new ZstdInputStream(new ByteArrayInputStream(body), RecyclingBufferPool.INSTANCE));
+            default -> reader.readValue(body);
+        };
+    }
+
+    private UserEvent read(InputStream in) throws Exception {
+        try (in) {
+            return reader.readValue(in.readAllBytes());
+        }
+    }
+
+    private static byte[] gzip(byte[] data) throws Exception {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try (GZIPOutputStream gzip = new GZIPOutputStream(out)) {
+            gzip.write(data);
+        }
+        return out.toByteArray();
+    }
+}
@@ -2,6 +2,8 @@ package com.ecommerce.analytics.controller;
 
 import com.ecommerce.analytics.model.UserEvent;
 import com.ecommerce.analytics.service.EventIngestionService;
+import com.ecommerce.analytics.service.IngestionLoadShedder;
+import com.ecommerce.analytics.tenant.TenantRegistry;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import io.github.bucket4j.Bucket;
 import org.junit.jupiter.api.BeforeEach;
@@ -35,6 +37,12 @@ class EventIngestionControllerTest {
     @MockBean
     private Bucket eventIngestionBucket;
 
+    @MockBean
+    private TenantRegistry tenantRegistry;
+
+    @MockBean
+    private IngestionLoadShedder loadShedder;
+
     private UserEvent testEvent;
 
     @BeforeEach
@@ -47,8 +55,10 @@ class EventIngestionControllerTest {
                 .sessionId("sess_456")
                 .build();
 
-        // Mock bucket to always allow requests
+        // Mock buckets to always allow requests
         when(eventIngestionBucket.tryConsume(1)).thenReturn(true);
+        when(tenantRegistry.tryAdmit(any())).thenReturn(TenantRegistry.Admission.ADMITTED);
+        when(loadShedder.tryAcquire(any())).thenReturn(true);
     }
 
     @Test
@@ -0,0 +1,209 @@
+package com.ecommerce.analytics.controller;
+
+import com.ecommerce.analytics.config.RequestDecompressionFilter;
+import com.ecommerce.analytics.exception.GlobalExceptionHandler;
+import com.ecommerce.analytics.model.UserEvent;
+import com.ecommerce.analytics.service.EventIngestionService;
+import com.ecommerce.analytics.service.IngestionLoadShedder;
+import com.ecommerce.analytics.tenant.TenantRegistry;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.dataformat.cbor.databind.CBORMapper;
+import com.fasterxml.jackson.dataformat.smile.databind.SmileMapper;
+import com.github.luben.zstd.Zstd;
+import io.github.bucket4j.Bucket;
+import jakarta.servlet.ReadListener;
+import jakarta.servlet.ServletInputStream;
+import jakarta.servlet.ServletRequest;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.setup.MockMvcBuilders;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.zip.GZIPOutputStream;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
+
+/**
+ * Compressed and binary request bodies on the ingestion endpoint
+ */
+class EventIngestionFormatsTest {
+
+    private static final MediaType SMILE = MediaType.parseMediaType("application/x-jackson-smile");
+    private static final MediaType CBOR = MediaType.parseMediaType("application/cbor");
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private EventIngestionService eventIngestionService;
+    private MockMvc mockMvc;
+    private UserEvent testEvent;
+
+    @BeforeEach
+    void setUp() {
+        eventIngestionService = mock(EventIngestionService.class);
+        Bucket bucket = mock(Bucket.class);
+        when(bucket.tryConsume(1)).thenReturn(true);
+        TenantRegistry tenantRegistry = mock(TenantRegistry.class);
+        when(tenantRegistry.tryAdmit(any())).thenReturn(TenantRegistry.Admission.ADMITTED);
+        IngestionLoadShedder loadShedder = mock(IngestionLoadShedder.class);
+        when(loadShedder.tryAcquire(any())).thenReturn(true);
+        when(eventIngestionService.ingestEvent(any(UserEvent.class)))
+                .thenReturn(UserEvent.builder().id("event_1").build());
+
+        mockMvc = MockMvcBuilders.standaloneSetup(new EventIngestionController(eventIngestionService, bucket,
+                        tenantRegistry, loadShedder))
+                .setControllerAdvice(new GlobalExceptionHandler())
+                .addFilters(new RequestDecompressionFilter(objectMapper, 1024))
+                .build();
+
+        testEvent = UserEvent.builder()
+                .eventId("evt_1")
+                .tenantId("store_1")
+                .timestamp("2024-03-15T14:30:00Z")
+                .userId("usr_123")
+                .eventType("page_view")
+                .pageUrl("/home")
+                .sessionId("sess_456")
+                .build();
+    }
+
+    @Test
+    void testIngestEvent_shouldAcceptGzipAndZstdCompressedJson() throws Exception {
+        byte[] json = objectMapper.writeValueAsBytes(testEvent);
+
+        mockMvc.perform(post("/api/events")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .header(HttpHeaders.CONTENT_ENCODING, "gzip")
+                        .content(gzip(json)))
+                .andExpect(status().isCreated())
+                .andExpect(jsonPath("$.eventId").value("event_1"));
+
+        mockMvc.perform(post("/api/events")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .header(HttpHeaders.CONTENT_ENCODING, "zstd")
+                        .content(Zstd.compress(json)))
+                .andExpect(status().isCreated());
+
+        ArgumentCaptor<UserEvent> captor = ArgumentCaptor.forClass(UserEvent.class);
+        verify(eventIngestionService, times(2)).ingestEvent(captor.capture());
+        assertEquals(testEvent, captor.getAllValues().get(1));
+    }
+
+    @Test
+    void testIngestEvent_shouldAcceptSmileAndCborBodies() throws Exception {
+        mockMvc.perform(post("/api/events")
+                        .contentType(SMILE)
+                        .content(new SmileMapper().writeValueAsBytes(testEvent)))
+                .andExpect(status().isCreated());
+
+        mockMvc.perform(post("/api/events")
+                        .contentType(CBOR)
+                        .header(HttpHeaders.CONTENT_ENCODING, "gzip")
+                        .content(gzip(new CBORMapper().writeValueAsBytes(testEvent))))
+                .andExpect(status().isCreated());
+
+        ArgumentCaptor<UserEvent> captor = ArgumentCaptor.forClass(UserEvent.class);
+        verify(eventIngestionService, times(2)).ingestEvent(captor.capture());
+        assertEquals(testEvent, captor.getAllValues().get(0));
+        assertEquals(testEvent, captor.getAllValues().get(1));
+    }
+
+    @Test
+    void testIngestEvent_shouldValidateBinaryBodiesLikeJson() throws Exception {
+        testEvent.setUserId("");
+
+        mockMvc.perform(post("/api/events")
+                        .contentType(CBOR)
+                        .content(new CBORMapper().writeValueAsBytes(testEvent)))
+                .andExpect(status().isBadRequest())
+                .andExpect(jsonPath("$.validationErrors.userId").exists());
+    }
+
+    @Test
+    void testIngestEvent_shouldRejectOversizedCorruptAndUnknownEncodings() throws Exception {
+        byte[] oversized = new byte[4096];
+
+        mockMvc.perform(post("/api/events")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .header(HttpHeaders.CONTENT_ENCODING, "gzip")
+                        .content(gzip(oversized)))
+                .andExpect(status().isPayloadTooLarge());
+
+        mockMvc.perform(post("/api/events")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .header(HttpHeaders.CONTENT_ENCODING, "zstd")
+                        .content(objectMapper.writeValueAsBytes(testEvent)))
+                .andExpect(status().isBadRequest());
+
+        mockMvc.perform(post("/api/events")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .header(HttpHeaders.CONTENT_ENCODING, "br")
+                        .content(new byte[]{1, 2, 3}))
+                .andExpect(status().isUnsupportedMediaType());
+
+        verify(eventIngestionService, never()).ingestEvent(any(UserEvent.class));
+    }
+
+    @Test
+    void testDecompressedBody_shouldSupportAsyncReads() throws Exception {
+        byte[] json = objectMapper.writeValueAsBytes(testEvent);
+        MockHttpServletRequest request = new MockHttpServletRequest("POST", "/api/events");
+        request.addHeader(HttpHeaders.CONTENT_ENCODING, "gzip");
+        request.setContent(gzip(json));
+        AtomicReference<ServletRequest> forwarded = new AtomicReference<>();
+
+        new RequestDecompressionFilter(objectMapper, 1024).doFilter(request, new MockHttpServletResponse(),
+                (req, res) -> forwarded.set(req));
+
+        ServletInputStream in = forwarded.get().getInputStream();
+        ByteArrayOutputStream read = new ByteArrayOutputStream();
+        AtomicBoolean allRead = new AtomicBoolean();
+        in.setReadListener(new ReadListener() {
+            @Override
+            public void onDataAvailable() throws IOException {
+                byte[] chunk = new byte[16];
+                while (in.isReady() && !in.isFinished()) {
+                    read.write(chunk, 0, in.read(chunk));
+                }
+            }
+
+            @Override
+            public void onAllDataRead() {
+                allRead.set(true);
+            }
+
+            @Override
+            public void onError(Throwable t) {
+                throw new AssertionError(t);
+            }
+        });
+
+        assertTrue(allRead.get());
+        assertArrayEquals(json, read.toByteArray());
+    }
+
+    private static byte[] gzip(byte[] data) throws Exception {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try (GZIPOutputStream gzip = new GZIPOutputStream(out)) {
+            gzip.write(data);
+        }
+        return out.toByteArray();
+    }
+}
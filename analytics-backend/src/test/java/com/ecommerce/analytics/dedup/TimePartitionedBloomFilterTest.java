@@ -0,0 +1,56 @@
+package com.ecommerce.analytics.dedup;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit tests for TimePartitionedBloomFilter
+ */
+class TimePartitionedBloomFilterTest {
+
+    private static final long WINDOW_MS = 60_000L;
+
+    @Test
+    void testPut_shouldBeFoundUntilItsPartitionRotatesOut() {
+        TimePartitionedBloomFilter filter = new TimePartitionedBloomFilter(4, WINDOW_MS, 1000, 0.01);
+        long now = 1_000_000L;
+
+        filter.put("evt_1", now);
+        assertTrue(filter.mightContain("evt_1", now + 1));
+        assertTrue(filter.mightContain("evt_1", now + WINDOW_MS - 1));
+
+        filter.put("evt_2", now + WINDOW_MS / 2);
+        assertFalse(filter.mightContain("evt_1", now + WINDOW_MS));
+        assertTrue(filter.mightContain("evt_2", now + WINDOW_MS));
+    }
+
+    @Test
+    void testMightContain_falsePositivesShouldStayNearTarget() {
+        TimePartitionedBloomFilter filter = new TimePartitionedBloomFilter(1, WINDOW_MS, 10_000, 0.01);
+        long now = 1_000_000L;
+        for (int i = 0; i < 10_000; i++) {
+            filter.put("evt_" + i, now);
+        }
+
+        int falsePositives = 0;
+        for (int i = 0; i < 10_000; i++) {
+            if (filter.mightContain("other_" + i, now)) {
+                falsePositives++;
+            }
+        }
+        assertTrue(falsePositives < 200, "false positives: " + falsePositives);
+        assertEquals(0.01, filter.expectedFalsePositiveRate(), 0.005);
+        assertEquals(0.5, filter.saturation(), 0.05);
+    }
+
+    @Test
+    void testAdvance_idleForWholeWindowShouldForgetEverything() {
+        TimePartitionedBloomFilter filter = new TimePartitionedBloomFilter(3, WINDOW_MS, 1000, 0.01);
+        long now = 1_000_000L;
+        filter.put("evt_1", now);
+
+        assertFalse(filter.mightContain("evt_1", now + 5 * WINDOW_MS));
+        assertEquals(0.0, filter.saturation());
+    }
+}
@@ -0,0 +1,138 @@
+package com.ecommerce.analytics.export;
+
+import com.ecommerce.analytics.model.UserEvent;
+import org.bson.types.ObjectId;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit tests for ColumnarEventWriter and ColumnarEventReader
+ */
+class ColumnarEventWriterTest {
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void testWriteAndRead_shouldRoundTripAcrossRowGroups() throws Exception {
+        Path file = directory.resolve("dt=2024-01-15/hr=10/events.evc");
+        Instant base = Instant.parse("2024-01-15T10:00:00Z");
+        List<UserEvent> written = new ArrayList<>();
+        try (ColumnarEventWriter writer = new ColumnarEventWriter(file, 100)) {
+            for (int i = 0; i < 250; i++) {
+                UserEvent event = UserEvent.builder()
+                        .id(new ObjectId().toHexString())
+                        .timestamp(base.plusMillis(i * 10L).toString())
+                        .userId("usr_" + (i % 7))
+                        .eventType(i % 3 == 0 ? "click" : "page_view")
+                        .pageUrl("/products/" + (i % 5))
+                        .sessionId("sess_" + (i % 11))
+                        .createdAt(base.plusMillis(i * 10L + 3))
+                        .build();
+                writer.write(event);
+                written.add(event);
+            }
+            writer.commit();
+        }
+
+        try (ColumnarEventReader reader = new ColumnarEventReader(file)) {
+            for (UserEvent expected : written) {
+                assertTrue(reader.hasNext());
+                assertEquals(expected, reader.next());
+            }
+            assertFalse(reader.hasNext());
+            assertEquals(250, reader.getTotalRows());
+        }
+    }
+
+    @Test
+    void testWriteAndRead_shouldKeepNullsAndNonObjectIds() throws Exception {
+        Path file = directory.resolve("events.evc");
+        UserEvent event = UserEvent.builder()
+                .id("not-an-object-id")
+                .timestamp("2024-01-15T10:00:00Z")
+                .userId("usr_1")
+                .eventType("page_view")
+                .pageUrl(null)
+                .sessionId("sess_1")
+                .createdAt(Instant.parse("2024-01-15T10:00:00.123Z"))
+                .build();
+        try (ColumnarEventWriter writer = new ColumnarEventWriter(file, 16)) {
+            writer.write(event);
+            writer.commit();
+        }
+
+        try (ColumnarEventReader reader = new ColumnarEventReader(file)) {
+            assertEquals(event, reader.next());
+            assertFalse(reader.hasNext());
+        }
+    }
+
+    @Test
+    void testWriteAndRead_shouldKeepTenantEventIdAndEventTime() throws Exception {
+        Path file = directory.resolve("events.evc");
+        List<UserEvent> written = new ArrayList<>();
+        for (int i = 0; i < 20; i++) {
+            written.add(UserEvent.builder()
+                    .id(new ObjectId().toHexString())
+                    .eventId(i % 4 == 0 ? null : "evt_" + i)
+                    .tenantId(i % 2 == 0 ? "acme" : "globex")
+                    .timestamp("2024-01-15T10:00:00Z")
+                    .eventTime(i % 3 == 0 ? null : 1705312800000L + i)
+                    .userId("usr_1")
+                    .eventType("page_view")
+                    .pageUrl("/home")
+                    .sessionId("sess_1")
+                    .createdAt(i % 5 == 0 ? null : Instant.parse("2024-01-15T10:00:00Z").plusMillis(i))
+                    .build());
+        }
+        try (ColumnarEventWriter writer = new ColumnarEventWriter(file, 8)) {
+            for (UserEvent event : written) {
+                writer.write(event);
+            }
+            writer.commit();
+        }
+
+        try (ColumnarEventReader reader = new ColumnarEventReader(file)) {
+            for (UserEvent expected : written) {
+                assertEquals(expected, reader.next());
+            }
+            assertFalse(reader.hasNext());
+        }
+    }
+
+    @Test
+    void testCommit_shouldWriteReadableEmptyPartition() throws Exception {
+        Path file = directory.resolve("events.evc");
+        try (ColumnarEventWriter writer = new ColumnarEventWriter(file, 16)) {
+            writer.commit();
+        }
+
+        try (ColumnarEventReader reader = new ColumnarEventReader(file)) {
+            assertFalse(reader.hasNext());
+            assertEquals(0, reader.getTotalRows());
+        }
+    }
+
+    @Test
+    void testClose_withoutCommitShouldLeaveNoPartition() throws Exception {
+        Path file = directory.resolve("events.evc");
+        try (ColumnarEventWriter writer = new ColumnarEventWriter(file, 16)) {
+            writer.write(UserEvent.builder().userId("usr_1").eventType("click").pageUrl("/home")
+                    .sessionId("sess_1").createdAt(Instant.now()).build());
+        }
+
+        assertFalse(Files.exists(file));
+        try (var files = Files.list(directory)) {
+            assertEquals(0, files.count());
+        }
+    }
+}
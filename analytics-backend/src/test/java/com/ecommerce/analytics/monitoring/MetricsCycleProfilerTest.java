@@ -0,0 +1,89 @@
+package com.ecommerce.analytics.monitoring;
+
+import com.ecommerce.analytics.aggregation.ActivitySnapshot;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class MetricsCycleProfilerTest {
+
+    private MeterRegistry meterRegistry;
+    private MetricsCycleProfiler profiler;
+
+    @BeforeEach
+    void setUp() {
+        meterRegistry = new SimpleMeterRegistry();
+        profiler = new MetricsCycleProfiler(meterRegistry);
+        ReflectionTestUtils.setField(profiler, "history", 3);
+        ReflectionTestUtils.setField(profiler, "budgetMillis", 5000L);
+        profiler.registerMetrics();
+    }
+
+    @Test
+    void testFinish_shouldRecordStepsScansAndRedisOperations() {
+        ActivitySnapshot snapshot = ActivitySnapshot.empty(2);
+        snapshot.getPageViews(0).put("/home", 3L);
+        snapshot.getUserSessions().put("usr_1", Map.of("sess_1", 1L));
+
+        MetricsCycleProfiler.Cycle cycle = profiler.begin();
+        long started = System.nanoTime();
+        cycle.scanned(snapshot);
+        started = cycle.step("snapshot", started);
+        cycle.redisOperations(6);
+        cycle.step("users", started);
+        cycle.tenant(false);
+        cycle.tenant(true);
+
+        CycleProfile profile = profiler.finish(cycle, "published");
+
+        assertEquals("published", profile.getOutcome());
+        assertEquals(List.of("snapshot", "users"), List.copyOf(profile.getStepsMs().keySet()));
+        // Two window entries, one page, one user, one session
+        assertEquals(5, profile.getEntriesScanned());
+        assertEquals(2 * 8 + ("/home".length() + 8) + "usr_1".length() + ("sess_1".length() + 8),
+                profile.getBytesScanned());
+        assertEquals(6, profile.getRedisOperations());
+        assertEquals(2, profile.getTenants());
+        assertEquals(1, profile.getTimedOutTenants());
+        assertFalse(profile.isOverrun());
+        assertEquals(1, meterRegistry.get("analytics.metrics.cycle.step").tag("step", "users").timer().count());
+        assertEquals(6, meterRegistry.get("analytics.metrics.cycle.redis.operations").summary().totalAmount());
+    }
+
+    @Test
+    void testFinish_shouldCountSlowCyclesAsOverrunsAndMeasureLagBetweenPublishes() throws Exception {
+        ReflectionTestUtils.setField(profiler, "budgetMillis", 0L);
+
+        CycleProfile first = profiler.finish(profiler.begin(), "published");
+        Thread.sleep(5);
+        profiler.finish(profiler.begin(), "failed");
+        CycleProfile third = profiler.finish(profiler.begin(), "published");
+
+        assertEquals(0, first.getLagMs());
+        assertTrue(third.getLagMs() >= 5);
+        assertTrue(third.isOverrun());
+        assertEquals(3, meterRegistry.get("analytics.metrics.cycle.overruns").counter().count());
+        assertTrue(meterRegistry.get("analytics.metrics.cycle.staleness").timeGauge().value() >= 0);
+    }
+
+    @Test
+    void testRecent_shouldKeepOnlyTheLastCyclesNewestFirst() {
+        for (int i = 0; i < 5; i++) {
+            MetricsCycleProfiler.Cycle cycle = profiler.begin();
+            cycle.redisOperations(i);
+            profiler.finish(cycle, "published");
+        }
+
+        List<CycleProfile> recent = profiler.recent();
+        assertEquals(3, recent.size());
+        assertEquals(4, recent.get(0).getRedisOperations());
+        assertEquals(2, recent.get(2).getRedisOperations());
+    }
+}
@@ -0,0 +1,155 @@
+package com.ecommerce.analytics.query;
+
+import com.ecommerce.analytics.store.ColumnBlock.Dimension;
+import com.ecommerce.analytics.store.ColumnarRingStore;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Path;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.ForkJoinPool;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class GroupByEngineTest {
+
+    private static final String[] PAGES = {"/home", "/products/1", "/products/2", "/cart", "/help", "/help/faq"};
+    private static final String[] TYPES = {"page_view", "click", "add_to_cart"};
+
+    @TempDir
+    Path dir;
+
+    private ColumnarRingStore store;
+    private ForkJoinPool pool;
+    private GroupByEngine engine;
+
+    // Reference data kept alongside the store
+    private int rows;
+    private long[] times;
+    private String[] users;
+    private String[] pages;
+    private String[] types;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        store = new ColumnarRingStore(dir.resolve("events.ring"), 32L * 1024 * 1024, 0.25);
+        pool = new ForkJoinPool(4);
+        engine = new GroupByEngine(pool);
+
+        // Enough rows to split into several leaf tasks
+        rows = (int) (GroupByEngine.LEAF_ROWS * 3 + 123);
+        times = new long[rows];
+        users = new String[rows];
+        pages = new String[rows];
+        types = new String[rows];
+        Random random = new Random(42);
+        for (int i = 0; i < rows; i++) {
+            times[i] = 1_000_000L + i;
+            users[i] = "usr_" + random.nextInt(500);
+            pages[i] = PAGES[random.nextInt(PAGES.length)];
+            types[i] = TYPES[random.nextInt(TYPES.length)];
+            store.append(times[i], users[i], pages[i], types[i], "sess_" + users[i]);
+        }
+    }
+
+    @AfterEach
+    void tearDown() throws Exception {
+        pool.shutdownNow();
+        store.close();
+    }
+
+    @Test
+    void testExecute_shouldCountClicksPerPageExcludingHelp() throws Exception {
+        long from = times[rows / 3];
+        long to = times[rows - 10];
+        GroupByQuery query = GroupByQuery.builder()
+                .groupBy(Dimension.PAGE)
+                .aggregate(GroupByQuery.Aggregate.COUNT)
+                .filter(new GroupByQuery.Filter(Dimension.EVENT_TYPE, GroupByQuery.Op.EQ, "click"))
+                .filter(new GroupByQuery.Filter(Dimension.PAGE, GroupByQuery.Op.NOT_PREFIX, "/help"))
+                .fromMillis(from)
+                .toMillis(to)
+                .limit(10)
+                .build();
+
+        GroupByQuery.Result result = store.read(view -> run(view, query));
+
+        Map<String, Long> expected = new HashMap<>();
+        for (int i = 0; i < rows; i++) {
+            if (times[i] >= from && times[i] < to && types[i].equals("click") && !pages[i].startsWith("/help")) {
+                expected.merge(pages[i], 1L, Long::sum);
+            }
+        }
+        Map<String, Long> actual = new HashMap<>();
+        result.getGroups().forEach(group -> actual.put(group.getKey(), group.getValue()));
+        assertEquals(expected, actual);
+        assertEquals(rows, result.getRowsScanned());
+        assertEquals(expected.values().stream().mapToLong(Long::longValue).sum(), result.getRowsMatched());
+        for (int i = 1; i < result.getGroups().size(); i++) {
+            assertTrue(result.getGroups().get(i - 1).getValue() >= result.getGroups().get(i).getValue());
+        }
+    }
+
+    @Test
+    void testExecute_shouldCountDistinctUsersPerEventTypeOnProductPages() throws Exception {
+        GroupByQuery query = GroupByQuery.builder()
+                .groupBy(Dimension.EVENT_TYPE)
+                .aggregate(GroupByQuery.Aggregate.DISTINCT_COUNT)
+                .distinctOn(Dimension.USER)
+                .filter(new GroupByQuery.Filter(Dimension.PAGE, GroupByQuery.Op.PREFIX, "/products"))
+                .fromMillis(0)
+                .toMillis(Long.MAX_VALUE)
+                .limit(10)
+                .build();
+
+        GroupByQuery.Result result = store.read(view -> run(view, query));
+
+        Map<String, Set<String>> expected = new HashMap<>();
+        for (int i = 0; i < rows; i++) {
+            if (pages[i].startsWith("/products")) {
+                expected.computeIfAbsent(types[i], type -> new HashSet<>()).add(users[i]);
+            }
+        }
+        assertEquals(expected.size(), result.getTotalGroups());
+        result.getGroups().forEach(group ->
+                assertEquals(expected.get(group.getKey()).size(), group.getValue(), group.getKey()));
+    }
+
+    @Test
+    void testExecute_shouldMatchNothingForUnknownFilterValueAndCapGroupsAtLimit() throws Exception {
+        GroupByQuery none = GroupByQuery.builder()
+                .groupBy(Dimension.PAGE)
+                .aggregate(GroupByQuery.Aggregate.COUNT)
+                .filter(new GroupByQuery.Filter(Dimension.PAGE, GroupByQuery.Op.EQ, "/nowhere"))
+                .fromMillis(0)
+                .toMillis(Long.MAX_VALUE)
+                .limit(10)
+                .build();
+        assertTrue(store.read(view -> run(view, none)).getGroups().isEmpty());
+
+        GroupByQuery top = GroupByQuery.builder()
+                .groupBy(Dimension.USER)
+                .aggregate(GroupByQuery.Aggregate.COUNT)
+                .fromMillis(0)
+                .toMillis(Long.MAX_VALUE)
+                .limit(5)
+                .build();
+        GroupByQuery.Result result = store.read(view -> run(view, top));
+        assertEquals(5, result.getGroups().size());
+        assertEquals(500, result.getTotalGroups());
+    }
+
+    private GroupByQuery.Result run(ColumnarRingStore.View view, GroupByQuery query) {
+        try {
+            return engine.execute(view, query, 10_000);
+        } catch (Exception e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
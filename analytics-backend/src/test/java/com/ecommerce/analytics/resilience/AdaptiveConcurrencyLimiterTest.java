@@ -0,0 +1,88 @@
+package com.ecommerce.analytics.resilience;
+
+import com.ecommerce.analytics.resilience.AdaptiveConcurrencyLimiter.Priority;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class AdaptiveConcurrencyLimiterTest {
+
+    private static final long FAST = 2_000_000;
+
+    /**
+     * Run {@code rounds} rounds of {@code concurrency} calls that each take {@code latencyNanos}
+     */
+    private static void load(AdaptiveConcurrencyLimiter limiter, int rounds, int concurrency, long latencyNanos,
+            double queuePressure) {
+        for (int round = 0; round < rounds; round++) {
+            int acquired = 0;
+            while (acquired < concurrency && limiter.tryAcquire(Priority.CRITICAL)) {
+                acquired++;
+            }
+            for (int i = 0; i < acquired; i++) {
+                limiter.onSuccess(latencyNanos, queuePressure);
+            }
+        }
+    }
+
+    @Test
+    void testOnSuccess_shouldGrowLimitAtBaselineLatencyAndShrinkWhenItClimbs() {
+        AdaptiveConcurrencyLimiter limiter = new AdaptiveConcurrencyLimiter(20, 4, 1000, 0.2, 2.0);
+
+        load(limiter, 50, 1000, FAST, 0);
+        int grown = limiter.getLimit();
+        assertTrue(grown > 100, "limit should grow under healthy latency, was " + grown);
+
+        // Shortly after the slowdown, before the baseline has caught up with it
+        load(limiter, 1, 200, 10 * FAST, 0);
+        assertTrue(limiter.getLimit() < grown / 2, "limit should shrink when latency climbs, was "
+                + limiter.getLimit());
+        assertEquals(0, limiter.getInFlight());
+    }
+
+    @Test
+    void testOnSuccess_shouldNotGrowLimitWhileCallsLeaveItUnused() {
+        AdaptiveConcurrencyLimiter limiter = new AdaptiveConcurrencyLimiter(20, 4, 1000, 0.2, 2.0);
+
+        load(limiter, 200, 2, FAST, 0);
+
+        assertEquals(20, limiter.getLimit());
+    }
+
+    @Test
+    void testOnDropped_shouldShrinkLimitDownToMinimumUnderQueuePressureAndFailures() {
+        AdaptiveConcurrencyLimiter limiter = new AdaptiveConcurrencyLimiter(100, 4, 1000, 0.2, 2.0);
+        load(limiter, 10, 100, FAST, 0);
+        int healthy = limiter.getLimit();
+
+        load(limiter, 10, 100, FAST, 1.0);
+        assertTrue(limiter.getLimit() < healthy);
+
+        for (int i = 0; i < 100; i++) {
+            assertTrue(limiter.tryAcquire(Priority.CRITICAL));
+            limiter.onDropped();
+        }
+        assertEquals(4, limiter.getLimit());
+    }
+
+    @Test
+    void testTryAcquire_shouldShedLowerPrioritiesFirst() {
+        AdaptiveConcurrencyLimiter limiter = new AdaptiveConcurrencyLimiter(10, 4, 1000, 0.2, 2.0);
+
+        for (int i = 0; i < 5; i++) {
+            assertTrue(limiter.tryAcquire(Priority.LOW));
+        }
+        assertFalse(limiter.tryAcquire(Priority.LOW));
+        assertTrue(limiter.tryAcquire(Priority.NORMAL));
+        assertTrue(limiter.tryAcquire(Priority.NORMAL));
+        assertTrue(limiter.tryAcquire(Priority.NORMAL));
+        assertFalse(limiter.tryAcquire(Priority.NORMAL));
+        assertTrue(limiter.tryAcquire(Priority.CRITICAL));
+        assertTrue(limiter.tryAcquire(Priority.CRITICAL));
+        assertFalse(limiter.tryAcquire(Priority.CRITICAL));
+
+        limiter.onIgnore();
+        assertTrue(limiter.tryAcquire(Priority.CRITICAL));
+        assertEquals(10, limiter.getLimit());
+    }
+}
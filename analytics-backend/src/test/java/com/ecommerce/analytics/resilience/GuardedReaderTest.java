@@ -0,0 +1,87 @@
+package com.ecommerce.analytics.resilience;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class GuardedReaderTest {
+
+    private final AtomicLong clock = new AtomicLong(1_000_000L);
+
+    @Test
+    void testTryAcquire_shouldOpenAfterConsecutiveFailuresAndCloseOnSuccessfulTrial() {
+        CircuitBreaker breaker = new CircuitBreaker(2, 5000, clock::get);
+
+        assertTrue(breaker.tryAcquire());
+        breaker.onFailure();
+        assertEquals(CircuitBreaker.State.CLOSED, breaker.getState());
+        assertTrue(breaker.tryAcquire());
+        breaker.onFailure();
+        assertEquals(CircuitBreaker.State.OPEN, breaker.getState());
+        assertFalse(breaker.tryAcquire());
+
+        clock.addAndGet(5000);
+        assertTrue(breaker.tryAcquire());
+        assertEquals(CircuitBreaker.State.HALF_OPEN, breaker.getState());
+        assertFalse(breaker.tryAcquire(), "only one trial call at a time");
+        breaker.onSuccess();
+        assertEquals(CircuitBreaker.State.CLOSED, breaker.getState());
+    }
+
+    @Test
+    void testOnFailure_shouldReopenForAFullDurationAfterFailedTrial() {
+        CircuitBreaker breaker = new CircuitBreaker(1, 5000, clock::get);
+        breaker.tryAcquire();
+        breaker.onFailure();
+
+        clock.addAndGet(5000);
+        assertTrue(breaker.tryAcquire());
+        breaker.onFailure();
+        assertEquals(CircuitBreaker.State.OPEN, breaker.getState());
+
+        clock.addAndGet(4999);
+        assertFalse(breaker.tryAcquire());
+        clock.addAndGet(1);
+        assertTrue(breaker.tryAcquire());
+    }
+
+    @Test
+    void testRead_shouldServeLastGoodValueAsStaleWithoutCallingSourceWhileOpen() {
+        GuardedReader reader = new GuardedReader(new CircuitBreaker(1, 5000, clock::get), 10, clock::get);
+        AtomicInteger calls = new AtomicInteger();
+
+        GuardedReader.Reading<Long> fresh = reader.read("active", () -> {
+            calls.incrementAndGet();
+            return 42L;
+        });
+        assertFalse(fresh.isStale());
+        long readAt = clock.get();
+
+        clock.addAndGet(1000);
+        GuardedReader.Reading<Long> failed = reader.read("active", () -> {
+            calls.incrementAndGet();
+            throw new IllegalStateException("redis down");
+        });
+        assertTrue(failed.isStale());
+        assertEquals(42L, failed.getValue());
+        assertEquals(readAt, failed.getAsOf().toEpochMilli());
+
+        GuardedReader.Reading<Long> open = reader.read("active", () -> {
+            calls.incrementAndGet();
+            return 7L;
+        });
+        assertTrue(open.isStale());
+        assertEquals(42L, open.getValue());
+        assertEquals(2, calls.get(), "open breaker must not reach the source");
+
+        GuardedReader.Reading<Long> unknown = reader.read("other", () -> 1L);
+        assertTrue(unknown.isStale());
+        assertNull(unknown.getValue());
+        assertNull(unknown.getAsOf());
+        assertEquals(1, reader.failures());
+        assertEquals(3, reader.fallbacks());
+    }
+}
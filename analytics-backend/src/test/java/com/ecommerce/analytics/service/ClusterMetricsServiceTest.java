@@ -0,0 +1,159 @@
+package com.ecommerce.analytics.service;
+
+import com.ecommerce.analytics.aggregation.ActivitySnapshot;
+import com.ecommerce.analytics.config.WindowConfig;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.redis.core.HashOperations;
+import org.springframework.data.redis.core.HyperLogLogOperations;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.core.ValueOperations;
+import org.springframework.data.redis.core.ZSetOperations;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.time.Duration;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyDouble;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+/**
+ * Unit tests for ClusterMetricsService
+ */
+@SuppressWarnings("unchecked")
+class ClusterMetricsServiceTest {
+
+    private static final String LEASE_KEY = "metrics:finalizer:lease";
+
+    private RedisTemplate<String, Object> redisTemplate;
+    private ValueOperations<String, Object> valueOperations;
+    private ZSetOperations<String, Object> zSetOperations;
+    private HashOperations<String, Object, Object> hashOperations;
+    private HyperLogLogOperations<String, Object> hyperLogLogOperations;
+    private ClusterMetricsService service;
+
+    @BeforeEach
+    void setUp() {
+        redisTemplate = mock(RedisTemplate.class);
+        valueOperations = mock(ValueOperations.class);
+        zSetOperations = mock(ZSetOperations.class);
+        hashOperations = mock(HashOperations.class);
+        hyperLogLogOperations = mock(HyperLogLogOperations.class);
+        when(redisTemplate.opsForValue()).thenReturn(valueOperations);
+        when(redisTemplate.opsForZSet()).thenReturn(zSetOperations);
+        when(redisTemplate.<Object, Object>opsForHash()).thenReturn(hashOperations);
+        when(redisTemplate.opsForHyperLogLog()).thenReturn(hyperLogLogOperations);
+
+        WindowConfig windowConfig = new WindowConfig();
+        windowConfig.setAvailable(List.of(Duration.ofMinutes(1)));
+        service = new ClusterMetricsService(redisTemplate, windowConfig);
+        ReflectionTestUtils.setField(service, "enabled", true);
+        ReflectionTestUtils.setField(service, "configuredInstanceId", "replica-a");
+        ReflectionTestUtils.setField(service, "leaseTtlSeconds", 30);
+        service.init();
+    }
+
+    @Test
+    void testTryAcquireLease_shouldTakeFreeLease() {
+        renewReturns(0L);
+        when(valueOperations.setIfAbsent(LEASE_KEY, "replica-a", Duration.ofSeconds(30))).thenReturn(true);
+
+        assertTrue(service.tryAcquireLease());
+        assertTrue(service.holdsLease());
+    }
+
+    @Test
+    void testTryAcquireLease_shouldRenewHeldLeaseWithoutSettingIt() {
+        renewReturns(1L);
+
+        assertTrue(service.tryAcquireLease());
+        assertTrue(service.holdsLease());
+        verify(redisTemplate).execute(any(), eq(List.of(LEASE_KEY)), eq("replica-a"),
+                eq(TimeUnit.SECONDS.toMillis(30)));
+        verify(valueOperations, never()).setIfAbsent(anyString(), any(), any(Duration.class));
+    }
+
+    @Test
+    void testTryAcquireLease_shouldReportLostLease() {
+        renewReturns(1L);
+        assertTrue(service.tryAcquireLease());
+
+        // Another replica took the lease after ours expired
+        renewReturns(0L);
+        when(valueOperations.setIfAbsent(LEASE_KEY, "replica-a", Duration.ofSeconds(30))).thenReturn(false);
+
+        assertFalse(service.tryAcquireLease());
+        assertFalse(service.holdsLease());
+    }
+
+    @Test
+    void testPublishPartial_shouldRenameScratchKeysIntoPlace() {
+        ActivitySnapshot snapshot = ActivitySnapshot.empty(1);
+        snapshot.getActiveUserIds(0).addAll(List.of("usr_1", "usr_2"));
+        snapshot.getPageViews(0).put("/home", 3L);
+        snapshot.getUserSessions().put("usr_1", Map.of("sess_1", 1000L));
+
+        service.publishPartial("acme", snapshot);
+
+        String users = "metrics:partial:{acme}:replica-a:users:1m";
+        String pageViews = "metrics:partial:{acme}:replica-a:page_views:1m";
+        verify(hyperLogLogOperations).add(users + ":next:replica-a", "usr_1", "usr_2");
+        verify(redisTemplate).rename(users + ":next:replica-a", users);
+        verify(hashOperations).putAll(pageViews + ":next:replica-a", Map.of("/home", 3L));
+        verify(redisTemplate).rename(pageViews + ":next:replica-a", pageViews);
+        verify(redisTemplate).rename("metrics:partial:{acme}:replica-a:sessions:next:replica-a",
+                "metrics:partial:{acme}:replica-a:sessions");
+        verify(zSetOperations).add(eq("metrics:tenants"), eq("acme"), anyDouble());
+        verify(zSetOperations).add(eq("metrics:replicas"), eq("replica-a"), anyDouble());
+    }
+
+    @Test
+    void testMergePartials_shouldCombineEveryLiveReplica() {
+        when(zSetOperations.range("metrics:replicas", 0, -1))
+                .thenReturn(new LinkedHashSet<>(List.of("replica-a", "replica-b")));
+        when(hashOperations.entries("metrics:partial:{acme}:replica-a:page_views:1m"))
+                .thenReturn(Map.of("/home", 3L, "/cart", 1L));
+        when(hashOperations.entries("metrics:partial:{acme}:replica-b:page_views:1m"))
+                .thenReturn(Map.of("/home", 2));
+        when(hashOperations.entries("metrics:partial:{acme}:replica-a:sessions"))
+                .thenReturn(Map.of("usr_1", Map.of("sess_1", 1000L)));
+        when(hashOperations.entries("metrics:partial:{acme}:replica-b:sessions"))
+                .thenReturn(Map.of("usr_1", Map.of("sess_1", 2000L, "sess_2", 1500L),
+                        "usr_2", Map.of("sess_3", 1200L)));
+        when(hyperLogLogOperations.size("metrics:partial:{acme}:replica-a:users:1m",
+                "metrics:partial:{acme}:replica-b:users:1m")).thenReturn(7L);
+
+        ActivitySnapshot merged = service.mergePartials("acme");
+
+        verify(zSetOperations).removeRangeByScore(eq("metrics:replicas"), eq(0.0), anyDouble());
+        assertEquals(7L, merged.getActiveUsers(0));
+        assertEquals(Map.of("/home", 5L, "/cart", 1L), merged.getPageViews(0));
+        assertEquals(Map.of("sess_1", 2000L, "sess_2", 1500L), merged.getUserSessions().get("usr_1"));
+        assertEquals(Map.of("sess_3", 1200L), merged.getUserSessions().get("usr_2"));
+    }
+
+    @Test
+    void testMergePartials_withoutLiveReplicasShouldBeEmpty() {
+        when(zSetOperations.range("metrics:replicas", 0, -1)).thenReturn(Set.of());
+
+        ActivitySnapshot merged = service.mergePartials("acme");
+
+        assertEquals(0L, merged.getActiveUsers(0));
+        assertTrue(merged.getPageViews(0).isEmpty());
+        verify(hyperLogLogOperations, never()).size(any());
+    }
+
+    private void renewReturns(Long result) {
+        when(redisTemplate.execute(any(), anyList(), eq("replica-a"), anyLong())).thenReturn(result);
+    }
+}
@@ -0,0 +1,166 @@
+package com.ecommerce.analytics.service;
+
+import com.ecommerce.analytics.model.UserEvent;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.index.IndexInfo;
+import org.springframework.data.mongodb.core.index.IndexOperations;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+/**
+ * Unit tests for EventDeduplicationService
+ */
+class EventDeduplicationServiceTest {
+
+    private MongoTemplate mongoTemplate;
+    private IndexOperations indexOps;
+    private WriteAheadLogService writeAheadLogService;
+    private MeterRegistry meterRegistry;
+    private EventDeduplicationService service;
+
+    @BeforeEach
+    void setUp() {
+        mongoTemplate = mock(MongoTemplate.class);
+        indexOps = mock(IndexOperations.class);
+        when(mongoTemplate.indexOps(UserEvent.class)).thenReturn(indexOps);
+        when(indexOps.getIndexInfo()).thenReturn(List.of(
+                new IndexInfo(List.of(), "eventId", true, true, null)));
+        meterRegistry = new SimpleMeterRegistry();
+        writeAheadLogService = mock(WriteAheadLogService.class);
+        service = new EventDeduplicationService(mongoTemplate, writeAheadLogService, meterRegistry);
+        ReflectionTestUtils.setField(service, "enabled", true);
+        ReflectionTestUtils.setField(service, "windowMinutes", 60);
+        ReflectionTestUtils.setField(service, "partitions", 2);
+        ReflectionTestUtils.setField(service, "expectedIdsPerPartition", 1000L);
+        ReflectionTestUtils.setField(service, "falsePositiveRate", 0.001);
+        ReflectionTestUtils.setField(service, "recentIdsCapacity", 2);
+        service.init();
+        clearInvocations(mongoTemplate);
+    }
+
+    @Test
+    void testInit_shouldDropGlobalEventIdIndex() {
+        verify(indexOps).dropIndex("eventId");
+    }
+
+    @Test
+    void testIsDuplicate_withoutEventIdShouldNeverMatch() {
+        UserEvent event = event(null);
+
+        assertFalse(service.isDuplicate(event));
+        assertFalse(service.isDuplicate(event));
+        verifyNoInteractions(mongoTemplate);
+    }
+
+    @Test
+    void testIsDuplicate_shouldCatchRecentRetryWithoutStoreLookup() {
+        assertFalse(service.isDuplicate(event("evt_1")));
+        assertTrue(service.isDuplicate(event("evt_1")));
+
+        verifyNoInteractions(mongoTemplate);
+        assertEquals(1.0, meterRegistry.counter("analytics.dedup.duplicates", "source", "recent").count());
+    }
+
+    @Test
+    void testIsDuplicate_shouldAskStoreOnlyForFilterHitsNoLongerRecent() {
+        assertFalse(service.isDuplicate(event("evt_1")));
+        // Push evt_1 out of the two-entry LRU; the filter still remembers it
+        assertFalse(service.isDuplicate(event("evt_2")));
+        assertFalse(service.isDuplicate(event("evt_3")));
+        verifyNoInteractions(mongoTemplate);
+
+        when(mongoTemplate.exists(any(Query.class), eq(UserEvent.class))).thenReturn(true);
+        assertTrue(service.isDuplicate(event("evt_1")));
+
+        verify(mongoTemplate).exists(any(Query.class), eq(UserEvent.class));
+        assertEquals(1.0, meterRegistry.counter("analytics.dedup.duplicates", "source", "store").count());
+    }
+
+    @Test
+    void testIsDuplicate_shouldCatchRetryStillInWriteAheadLog() {
+        service.isDuplicate(event("evt_1"));
+        service.isDuplicate(event("evt_2"));
+        service.isDuplicate(event("evt_3"));
+        when(writeAheadLogService.isPending(any(UserEvent.class))).thenReturn(true);
+
+        assertTrue(service.isDuplicate(event("evt_1")));
+        verify(mongoTemplate, never()).exists(any(Query.class), eq(UserEvent.class));
+        assertEquals(1.0, meterRegistry.counter("analytics.dedup.duplicates", "source", "wal").count());
+    }
+
+    @Test
+    void testIsDuplicate_shouldAcceptFilterHitMissingFromStore() {
+        service.isDuplicate(event("evt_1"));
+        service.isDuplicate(event("evt_2"));
+        service.isDuplicate(event("evt_3"));
+        when(mongoTemplate.exists(any(Query.class), eq(UserEvent.class))).thenReturn(false);
+
+        assertFalse(service.isDuplicate(event("evt_1")));
+        // Remembered again as recent, so the next retry needs no lookup
+        assertTrue(service.isDuplicate(event("evt_1")));
+        verify(mongoTemplate, times(1)).exists(any(Query.class), eq(UserEvent.class));
+    }
+
+    @Test
+    void testIsDuplicate_shouldScopeIdsByTenant() {
+        assertFalse(service.isDuplicate(event("evt_1")));
+
+        when(mongoTemplate.exists(any(Query.class), eq(UserEvent.class))).thenReturn(false);
+        assertFalse(service.isDuplicate(event("acme", "evt_1")));
+        assertTrue(service.isDuplicate(event("acme", "evt_1")));
+        assertTrue(service.isDuplicate(event("evt_1")));
+    }
+
+    @Test
+    void testIsDuplicate_shouldAskStoreWithinTenant() {
+        service.isDuplicate(event("acme", "evt_1"));
+        service.isDuplicate(event("acme", "evt_2"));
+        service.isDuplicate(event("acme", "evt_3"));
+
+        service.isDuplicate(event("acme", "evt_1"));
+
+        ArgumentCaptor<Query> query = ArgumentCaptor.forClass(Query.class);
+        verify(mongoTemplate).exists(query.capture(), eq(UserEvent.class));
+        String json = query.getValue().getQueryObject().toJson();
+        assertTrue(json.contains("\"tenantId\": \"acme\""), json);
+        assertTrue(json.contains("\"eventId\": \"evt_1\""), json);
+    }
+
+    @Test
+    void testForget_shouldAcceptRetryOfFailedEvent() {
+        assertFalse(service.isDuplicate(event("evt_1")));
+        service.forget(event("evt_1"));
+        when(mongoTemplate.exists(any(Query.class), eq(UserEvent.class))).thenReturn(false);
+
+        assertFalse(service.isDuplicate(event("evt_1")));
+        verify(mongoTemplate).exists(any(Query.class), eq(UserEvent.class));
+    }
+
+    private static UserEvent event(String eventId) {
+        return event(null, eventId);
+    }
+
+    private static UserEvent event(String tenantId, String eventId) {
+        return UserEvent.builder()
+                .tenantId(tenantId)
+                .eventId(eventId)
+                .timestamp("2024-03-15T14:30:00Z")
+                .userId("usr_1")
+                .eventType("page_view")
+                .pageUrl("/home")
+                .sessionId("sess_1")
+                .build();
+    }
+}
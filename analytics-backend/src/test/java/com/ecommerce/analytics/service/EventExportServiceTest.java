@@ -0,0 +1,111 @@
+package com.ecommerce.analytics.service;
+
+import com.ecommerce.analytics.model.ExportJobStatus;
+import com.ecommerce.analytics.model.UserEvent;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+/**
+ * Unit tests for EventExportService
+ */
+class EventExportServiceTest {
+
+    @TempDir
+    Path directory;
+
+    private MongoTemplate mongoTemplate;
+    private EventExportService service;
+
+    @BeforeEach
+    void setUp() {
+        mongoTemplate = mock(MongoTemplate.class);
+        when(mongoTemplate.stream(any(Query.class), eq(UserEvent.class))).thenAnswer(invocation -> Stream.empty());
+        service = new EventExportService(mongoTemplate);
+        ReflectionTestUtils.setField(service, "directory", directory.toString());
+        ReflectionTestUtils.setField(service, "maxEventsPerSecond", 20000);
+        ReflectionTestUtils.setField(service, "rowGroupSize", 100);
+        ReflectionTestUtils.setField(service, "cursorBatchSize", 100);
+        service.init();
+    }
+
+    @AfterEach
+    void tearDown() {
+        service.shutdown();
+    }
+
+    @Test
+    void testStartExport_shouldTrimRangeToEndedHours() {
+        Instant currentHour = Instant.now().truncatedTo(ChronoUnit.HOURS);
+
+        ExportJobStatus job = service.startExport(currentHour.minus(Duration.ofHours(2)),
+                currentHour.plus(Duration.ofHours(3)));
+
+        assertEquals(currentHour.toString(), job.getTo());
+        assertEquals(2, job.getPartitionsTotal());
+    }
+
+    @Test
+    void testStartExport_shouldRejectRangeWithoutEndedHour() {
+        Instant currentHour = Instant.now().truncatedTo(ChronoUnit.HOURS);
+
+        assertThrows(IllegalArgumentException.class,
+                () -> service.startExport(currentHour, currentHour.plus(Duration.ofHours(1))));
+    }
+
+    @Test
+    void testStartExport_shouldThrottleBelowBatchSize() throws Exception {
+        when(mongoTemplate.stream(any(Query.class), eq(UserEvent.class)))
+                .thenAnswer(invocation -> Stream.generate(EventExportServiceTest::event).limit(300));
+        ReflectionTestUtils.setField(service, "maxEventsPerSecond", 200);
+        service.init();
+        Instant previousHour = Instant.now().truncatedTo(ChronoUnit.HOURS).minus(Duration.ofHours(1));
+
+        ExportJobStatus job = service.startExport(previousHour, previousHour.plus(Duration.ofHours(1)));
+
+        long deadline = System.currentTimeMillis() + 10_000;
+        ExportJobStatus status = service.getJob(job.getId()).orElseThrow();
+        while (!"COMPLETED".equals(status.getStatus()) && !"FAILED".equals(status.getStatus())
+                && System.currentTimeMillis() < deadline) {
+            Thread.sleep(50);
+            status = service.getJob(job.getId()).orElseThrow();
+        }
+        assertEquals("COMPLETED", status.getStatus(), status.getError());
+        assertEquals(300, status.getEventsExported());
+    }
+
+    @Test
+    void testInit_shouldRejectNonPositiveRate() {
+        ReflectionTestUtils.setField(service, "maxEventsPerSecond", 0);
+
+        assertThrows(IllegalStateException.class, service::init);
+    }
+
+    private static UserEvent event() {
+        return UserEvent.builder()
+                .eventId("evt_1")
+                .tenantId(UserEvent.DEFAULT_TENANT)
+                .timestamp("2024-03-15T14:30:00Z")
+                .userId("usr_1")
+                .eventType("page_view")
+                .pageUrl("/home")
+                .sessionId("sess_1")
+                .createdAt(Instant.now())
+                .build();
+    }
+}
@@ -1,5 +1,6 @@
 package com.ecommerce.analytics.service;
 
+import com.ecommerce.analytics.exception.DuplicateEventException;
 import com.ecommerce.analytics.model.UserEvent;
 import com.ecommerce.analytics.repository.EventRepository;
 import org.junit.jupiter.api.BeforeEach;
@@ -24,6 +25,18 @@ class EventIngestionServiceTest {
     @Mock
     private EventRepository eventRepository;
 
+    @Mock
+    private WriteAheadLogService writeAheadLogService;
+
+    @Mock
+    private EventAggregationService eventAggregationService;
+
+    @Mock
+    private EventDeduplicationService eventDeduplicationService;
+
+    @Mock
+    private RecentEventStoreService recentEventStoreService;
+
     @InjectMocks
     private EventIngestionService eventIngestionService;
 
@@ -62,7 +75,55 @@ class EventIngestionServiceTest {
         assertNotNull(result);
         assertEquals("event_12345", result.getId());
         assertEquals("usr_123", result.getUserId());
+        assertEquals(UserEvent.DEFAULT_TENANT, testEvent.getTenantId());
         verify(eventRepository, times(1)).save(any(UserEvent.class));
+        verify(eventAggregationService, times(1)).publish(savedEvent);
+        verify(recentEventStoreService).append(savedEvent);
+    }
+
+    @Test
+    void testIngestEvent_WriteAheadLogEnabled() throws Exception {
+        // Arrange
+        when(writeAheadLogService.isEnabled()).thenReturn(true);
+        when(writeAheadLogService.append(any(UserEvent.class))).thenAnswer(invocation -> {
+            UserEvent event = invocation.getArgument(0);
+            event.setId("event_wal");
+            return event;
+        });
+
+        // Act
+        UserEvent result = eventIngestionService.ingestEvent(testEvent);
+
+        // Assert
+        assertEquals("event_wal", result.getId());
+        assertNotNull(result.getCreatedAt());
+        assertEquals(Instant.parse(testEvent.getTimestamp()).toEpochMilli(), result.getEventTime());
+        verify(eventRepository, never()).save(any(UserEvent.class));
+    }
+
+    @Test
+    void testIngestEvent_DuplicateEventId() {
+        // Arrange
+        testEvent.setEventId("evt_789");
+        when(eventDeduplicationService.isDuplicate(testEvent)).thenReturn(true);
+
+        // Act & Assert
+        DuplicateEventException e = assertThrows(DuplicateEventException.class,
+                () -> eventIngestionService.ingestEvent(testEvent));
+        assertEquals("evt_789", e.getEventId());
+        verify(eventRepository, never()).save(any(UserEvent.class));
+        verify(eventAggregationService, never()).publish(any(UserEvent.class));
+    }
+
+    @Test
+    void testIngestEvent_FailedSaveForgetsEventId() {
+        // Arrange
+        testEvent.setEventId("evt_789");
+        when(eventRepository.save(any(UserEvent.class))).thenThrow(new IllegalStateException("mongo down"));
+
+        // Act & Assert
+        assertThrows(RuntimeException.class, () -> eventIngestionService.ingestEvent(testEvent));
+        verify(eventDeduplicationService).forget(testEvent);
     }
 
     @Test
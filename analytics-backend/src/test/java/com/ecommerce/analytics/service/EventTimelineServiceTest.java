@@ -0,0 +1,118 @@
+package com.ecommerce.analytics.service;
+
+import com.ecommerce.analytics.model.EventCursor;
+import com.ecommerce.analytics.model.UserEvent;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+import org.bson.Document;
+import org.bson.types.ObjectId;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Query;
+
+import java.io.ByteArrayOutputStream;
+import java.time.Instant;
+import java.util.List;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+/**
+ * Unit tests for EventTimelineService
+ */
+@ExtendWith(MockitoExtension.class)
+class EventTimelineServiceTest {
+
+    @Mock
+    private MongoTemplate mongoTemplate;
+
+    private final ObjectMapper objectMapper = new ObjectMapper().registerModule(new JavaTimeModule());
+
+    private EventTimelineService eventTimelineService;
+
+    @BeforeEach
+    void setUp() {
+        eventTimelineService = new EventTimelineService(mongoTemplate, objectMapper);
+    }
+
+    @Test
+    void testStreamUserEvents_shouldReturnCursorWhenMoreEventsExist() throws Exception {
+        Instant now = Instant.parse("2024-03-15T14:30:00Z");
+        UserEvent first = event(now);
+        UserEvent second = event(now.minusSeconds(1));
+        UserEvent extra = event(now.minusSeconds(2));
+        when(mongoTemplate.stream(any(Query.class), eq(UserEvent.class)))
+                .thenReturn(Stream.of(first, second, extra));
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        eventTimelineService.streamUserEvents("usr_123", null, 2, out);
+
+        JsonNode body = objectMapper.readTree(out.toByteArray());
+        assertEquals(2, body.get("count").asInt());
+        assertEquals(first.getId(), body.get("events").get(0).get("id").asText());
+        assertEquals("usr_123", body.get("events").get(1).get("user_id").asText());
+        assertEquals(EventCursor.after(second), EventCursor.decode(body.get("nextCursor").asText()));
+
+        ArgumentCaptor<Query> query = ArgumentCaptor.forClass(Query.class);
+        verify(mongoTemplate).stream(query.capture(), eq(UserEvent.class));
+        assertEquals(3, query.getValue().getLimit());
+    }
+
+    @Test
+    void testStreamUserEvents_lastPageShouldHaveNoCursor() throws Exception {
+        when(mongoTemplate.stream(any(Query.class), eq(UserEvent.class)))
+                .thenReturn(Stream.of(event(Instant.now())));
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        eventTimelineService.streamUserEvents("usr_123", null, 2, out);
+
+        JsonNode body = objectMapper.readTree(out.toByteArray());
+        assertEquals(1, body.get("count").asInt());
+        assertFalse(body.has("nextCursor"));
+    }
+
+    @Test
+    void testPageQuery_shouldSeekPastCursorOnCreatedAtAndId() {
+        Instant createdAt = Instant.parse("2024-03-15T14:30:00Z");
+        ObjectId id = new ObjectId();
+
+        Query query = EventTimelineService.pageQuery("pageUrl", "/home", new EventCursor(createdAt, id.toHexString()));
+
+        Document filter = query.getQueryObject();
+        assertEquals("/home", filter.get("pageUrl"));
+        List<?> or = (List<?>) filter.get("$or");
+        assertEquals(new Document("createdAt", new Document("$lt", createdAt)), or.get(0));
+        assertEquals(new Document("createdAt", createdAt).append("_id", new Document("$lt", id)), or.get(1));
+        assertEquals(new Document("createdAt", -1).append("_id", -1), query.getSortObject());
+    }
+
+    @Test
+    void testCursor_shouldRoundTripAndRejectGarbage() {
+        EventCursor cursor = new EventCursor(Instant.ofEpochMilli(1710513000123L), new ObjectId().toHexString());
+
+        assertEquals(cursor, EventCursor.decode(cursor.encode()));
+        assertThrows(IllegalArgumentException.class, () -> EventCursor.decode("not a cursor"));
+        assertThrows(IllegalArgumentException.class, () -> EventCursor.decode("bm9jb2xvbg"));
+    }
+
+    private static UserEvent event(Instant createdAt) {
+        return UserEvent.builder()
+                .id(new ObjectId().toHexString())
+                .timestamp(createdAt.toString())
+                .userId("usr_123")
+                .eventType("page_view")
+                .pageUrl("/home")
+                .sessionId("sess_456")
+                .createdAt(createdAt)
+                .build();
+    }
+}
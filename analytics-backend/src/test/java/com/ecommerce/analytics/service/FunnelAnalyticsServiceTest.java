@@ -0,0 +1,70 @@
+package com.ecommerce.analytics.service;
+
+import com.ecommerce.analytics.aggregation.FunnelCounts;
+import com.ecommerce.analytics.aggregation.FunnelDefinition;
+import com.ecommerce.analytics.aggregation.FunnelTracker;
+import com.ecommerce.analytics.config.FunnelConfig;
+import com.ecommerce.analytics.model.AnalyticsResponse;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.concurrent.TimeoutException;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+/**
+ * Unit tests for FunnelAnalyticsService
+ */
+class FunnelAnalyticsServiceTest {
+
+    private EventAggregationService eventAggregationService;
+    private FunnelAnalyticsService service;
+
+    @BeforeEach
+    void setUp() {
+        eventAggregationService = mock(EventAggregationService.class);
+        FunnelConfig funnelConfig = new FunnelConfig();
+        funnelConfig.setDefinitions(List.of(new FunnelDefinition("purchase", "Purchase", List.of(
+                new FunnelDefinition.Step("home", "page_view", "/home"),
+                new FunnelDefinition.Step("product", "page_view", "/products"),
+                new FunnelDefinition.Step("checkout", "page_view", "/checkout")))));
+        service = new FunnelAnalyticsService(eventAggregationService, funnelConfig);
+    }
+
+    @Test
+    void testGetFunnel_shouldCapRatesWhenLaterStepsOutnumberEarlierOnes() throws Exception {
+        // Sessions that entered before the window reach the later steps inside it
+        when(eventAggregationService.queryLanes(eq("acme"), eq(FunnelTracker.class), any()))
+                .thenReturn(List.of(new FunnelCounts(new long[]{10, 20, 5}, new long[3])));
+
+        AnalyticsResponse.FunnelResponse funnel = service.getFunnel("acme", "purchase", 60).orElseThrow();
+
+        AnalyticsResponse.FunnelStep product = funnel.getSteps().get(1);
+        assertEquals(20, product.getSessions());
+        assertEquals(1.0, product.getConversionRate());
+        assertEquals(1.0, product.getStepConversionRate());
+        assertEquals(0.0, product.getDropOffRate());
+        AnalyticsResponse.FunnelStep checkout = funnel.getSteps().get(2);
+        assertEquals(0.25, checkout.getStepConversionRate());
+        assertEquals(0.75, checkout.getDropOffRate());
+        assertEquals(0.5, funnel.getCompletionRate());
+    }
+
+    @Test
+    void testGetFunnel_shouldPropagateLaneTimeouts() throws Exception {
+        when(eventAggregationService.queryLanes(eq("acme"), eq(FunnelTracker.class), any()))
+                .thenThrow(new TimeoutException("lanes busy"));
+
+        assertThrows(TimeoutException.class, () -> service.getFunnel("acme", "purchase", 60));
+    }
+
+    @Test
+    void testGetFunnel_shouldBeEmptyForUnknownFunnel() throws Exception {
+        assertTrue(service.getFunnel("acme", "signup", 60).isEmpty());
+        verifyNoInteractions(eventAggregationService);
+    }
+}
@@ -0,0 +1,166 @@
+package com.ecommerce.analytics.service;
+
+import com.ecommerce.analytics.model.AnalyticsResponse;
+import com.ecommerce.analytics.tenant.TenantRegistry;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.io.ByteArrayInputStream;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.zip.GZIPInputStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class ResponseBytesCacheTest {
+
+    private final AtomicInteger builds = new AtomicInteger();
+    private ResponseBytesCache cache;
+
+    @BeforeEach
+    void setUp() {
+        TenantRegistry tenantRegistry = mock(TenantRegistry.class);
+        when(tenantRegistry.isAdmitted("acme")).thenReturn(true);
+        cache = new ResponseBytesCache(new ObjectMapper(), new SimpleMeterRegistry(), tenantRegistry);
+        ReflectionTestUtils.setField(cache, "enabled", true);
+        ReflectionTestUtils.setField(cache, "maxAgeMs", 60_000L);
+        ReflectionTestUtils.setField(cache, "maxEntries", 100);
+        cache.init();
+    }
+
+    @Test
+    void testGet_shouldServeSameBytesUntilInvalidated() throws Exception {
+        AtomicLong published = new AtomicLong(42);
+        ResponseBytesCache.Entry first = cache.get("acme", "active-users:5m",
+                () -> response(published.get(), false), r -> !r.isStale());
+        published.set(43);
+        ResponseBytesCache.Entry second = cache.get("acme", "active-users:5m",
+                () -> response(published.get(), false), r -> !r.isStale());
+
+        assertSame(first, second);
+        assertEquals(1, builds.get());
+        String json = new String(first.getJson());
+        assertTrue(json.contains("\"activeUsers\":42"), json);
+        try (GZIPInputStream gzip = new GZIPInputStream(new ByteArrayInputStream(first.getGzip()))) {
+            assertEquals(json, new String(gzip.readAllBytes()));
+        }
+
+        cache.invalidate(List.of("acme"));
+        assertEquals(2, builds.get());
+        ResponseBytesCache.Entry third = cache.get("acme", "active-users:5m",
+                () -> response(published.get(), false), r -> !r.isStale());
+        assertEquals(2, builds.get());
+        assertTrue(new String(third.getJson()).contains("\"activeUsers\":43"));
+        assertNotEquals(first.getEtag(), third.getEtag());
+    }
+
+    @Test
+    void testGet_shouldGiveGzipBodyItsOwnEtag() {
+        ResponseBytesCache.Entry entry = cache.get("acme", "active-users:5m", () -> response(42, false), r -> !r.isStale());
+
+        assertTrue(entry.getEtag().startsWith("\"") && entry.getEtag().endsWith("\""));
+        assertTrue(entry.getGzipEtag().startsWith("\"") && entry.getGzipEtag().endsWith("\""));
+        assertNotEquals(entry.getEtag(), entry.getGzipEtag());
+    }
+
+    @Test
+    void testGet_shouldNotShareStaleResponses() {
+        cache.get("acme", "active-users:5m", () -> response(42, true), r -> !r.isStale());
+        cache.get("acme", "active-users:5m", () -> response(42, true), r -> !r.isStale());
+
+        assertEquals(2, builds.get());
+    }
+
+    @Test
+    void testInvalidate_shouldPrebuildOnlyShapesRequestedSincePreviousPublish() {
+        cache.get("acme", "active-users:5m", () -> response(42, false), r -> !r.isStale());
+
+        cache.invalidate(List.of("acme"));
+        assertEquals(2, builds.get());
+        cache.get("acme", "active-users:5m", () -> response(42, false), r -> !r.isStale());
+        assertEquals(2, builds.get());
+
+        // Not asked for again since: rebuilt once more, then forgotten
+        cache.invalidate(List.of("acme"));
+        cache.invalidate(List.of("acme"));
+        assertEquals(3, builds.get());
+    }
+
+    @Test
+    void testGet_shouldNotCacheTenantsNeitherAdmittedNorPublished() {
+        cache.get("unknown", "active-users:5m", () -> response(42, false), r -> !r.isStale());
+        cache.get("unknown", "active-users:5m", () -> response(42, false), r -> !r.isStale());
+        assertEquals(2, builds.get());
+
+        cache.invalidate(List.of("unknown"));
+        cache.get("unknown", "active-users:5m", () -> response(42, false), r -> !r.isStale());
+        cache.get("unknown", "active-users:5m", () -> response(42, false), r -> !r.isStale());
+        assertEquals(3, builds.get());
+    }
+
+    @Test
+    void testGet_shouldKeepEntriesWhenFull() {
+        ReflectionTestUtils.setField(cache, "maxEntries", 1);
+        cache.get("acme", "active-users:5m", () -> response(42, false), r -> !r.isStale());
+        cache.get("acme", "active-users:15m", () -> response(42, false), r -> !r.isStale());
+        cache.get("acme", "active-users:15m", () -> response(42, false), r -> !r.isStale());
+        assertEquals(3, builds.get());
+
+        cache.get("acme", "active-users:5m", () -> response(42, false), r -> !r.isStale());
+        assertEquals(3, builds.get());
+    }
+
+    @Test
+    void testGet_shouldShareOneBuildBetweenConcurrentMisses() throws Exception {
+        CountDownLatch building = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+        try {
+            Future<ResponseBytesCache.Entry> first = executor.submit(() -> cache.get("acme", "active-users:5m", () -> {
+                building.countDown();
+                await(release);
+                return response(42, false);
+            }, r -> !r.isStale()));
+            assertTrue(building.await(5, TimeUnit.SECONDS));
+            Future<ResponseBytesCache.Entry> second = executor.submit(
+                    () -> cache.get("acme", "active-users:5m", () -> response(43, false), r -> !r.isStale()));
+
+            // Other keys are not held up by the running build
+            cache.get("acme", "top-pages:15m:5", () -> response(1, false), r -> !r.isStale());
+            release.countDown();
+
+            assertSame(first.get(5, TimeUnit.SECONDS), second.get(5, TimeUnit.SECONDS));
+            assertEquals(2, builds.get());
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            latch.await(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private AnalyticsResponse.ActiveUsersResponse response(long users, boolean stale) {
+        builds.incrementAndGet();
+        return AnalyticsResponse.ActiveUsersResponse.builder()
+                .activeUsers(users)
+                .window("5m")
+                .stale(stale)
+                .build();
+    }
+}
@@ -0,0 +1,183 @@
+package com.ecommerce.analytics.service;
+
+import com.ecommerce.analytics.model.RetentionTier;
+import com.mongodb.client.result.DeleteResult;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.bson.Document;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.data.mongodb.core.BulkOperations;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.aggregation.Aggregation;
+import org.springframework.data.mongodb.core.aggregation.AggregationResults;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+/**
+ * Unit tests for RetentionCompactionService
+ */
+class RetentionCompactionServiceTest {
+
+    private MongoTemplate mongoTemplate;
+    private BulkOperations bulk;
+    private WriteAheadLogService writeAheadLogService;
+    private RetentionCompactionService service;
+    private final Map<String, Date> state = new HashMap<>();
+    // Oldest document per collection, as the earliest-time lookup sees it
+    private final Map<String, Document> earliest = new HashMap<>();
+
+    @BeforeEach
+    void setUp() {
+        mongoTemplate = mock(MongoTemplate.class);
+        bulk = mock(BulkOperations.class, RETURNS_SELF);
+        ClusterMetricsService clusterMetricsService = mock(ClusterMetricsService.class);
+        writeAheadLogService = mock(WriteAheadLogService.class);
+        service = new RetentionCompactionService(mongoTemplate, clusterMetricsService, writeAheadLogService,
+                new SimpleMeterRegistry());
+        ReflectionTestUtils.setField(service, "compactionEnabled", true);
+        ReflectionTestUtils.setField(service, "rawHours", 24L);
+        ReflectionTestUtils.setField(service, "minuteDays", 30L);
+        ReflectionTestUtils.setField(service, "hourDays", 365L);
+        ReflectionTestUtils.setField(service, "batchMinutes", 60L);
+        ReflectionTestUtils.setField(service, "batchHours", 24L);
+        ReflectionTestUtils.setField(service, "maxBatches", 3);
+        ReflectionTestUtils.setField(service, "settleSeconds", 120L);
+        service.init();
+
+        // compaction_state backed by a map
+        when(mongoTemplate.findById(anyString(), eq(Document.class), eq("compaction_state")))
+                .thenAnswer(invocation -> {
+                    Date until = state.get(invocation.<String>getArgument(0));
+                    return until == null ? null : new Document("compactedUntil", until);
+                });
+        when(mongoTemplate.upsert(any(Query.class), any(Update.class), eq("compaction_state")))
+                .thenAnswer(invocation -> {
+                    Query query = invocation.getArgument(0);
+                    Update update = invocation.getArgument(1);
+                    state.put(query.getQueryObject().getString("_id"),
+                            update.getUpdateObject().get("$set", Document.class).getDate("compactedUntil"));
+                    return null;
+                });
+        when(mongoTemplate.aggregate(any(Aggregation.class), anyString(), eq(Document.class)))
+                .thenAnswer(invocation -> new AggregationResults<>(List.of(new Document("_id",
+                        new Document("tenantId", "default").append("bucketStart", new Date())
+                                .append("eventType", "page_view").append("pageUrl", "/home"))
+                        .append("count", 3)), new Document()));
+        when(mongoTemplate.bulkOps(any(BulkOperations.BulkMode.class), anyString())).thenReturn(bulk);
+        when(mongoTemplate.remove(any(Query.class), anyString())).thenReturn(DeleteResult.acknowledged(0));
+        when(mongoTemplate.findOne(any(Query.class), eq(Document.class), anyString()))
+                .thenAnswer(invocation -> earliest.get(invocation.<String>getArgument(2)));
+    }
+
+    @Test
+    void testCompact_shouldResumeFromCheckpointInBoundedBatches() {
+        Instant checkpoint = Instant.now().minus(Duration.ofHours(10)).truncatedTo(ChronoUnit.MINUTES);
+        state.put("minute", Date.from(checkpoint));
+
+        service.compact(RetentionTier.MINUTE);
+
+        // Three one-hour batches, each recorded once written
+        verify(mongoTemplate, times(3)).aggregate(any(Aggregation.class), eq("events"), eq(Document.class));
+        verify(mongoTemplate, times(3)).bulkOps(BulkOperations.BulkMode.UNORDERED, "event_rollups_minute");
+        verify(bulk, times(3)).execute();
+        assertEquals(checkpoint.plus(Duration.ofHours(3)), service.compactedUntil(RetentionTier.MINUTE));
+
+        service.compact(RetentionTier.MINUTE);
+        assertEquals(checkpoint.plus(Duration.ofHours(6)), service.compactedUntil(RetentionTier.MINUTE));
+    }
+
+    @Test
+    void testCompact_shouldStopShortOfUnsettledEvents() {
+        Instant checkpoint = Instant.now().minus(Duration.ofMinutes(30)).truncatedTo(ChronoUnit.MINUTES);
+        state.put("minute", Date.from(checkpoint));
+
+        service.compact(RetentionTier.MINUTE);
+
+        Instant until = service.compactedUntil(RetentionTier.MINUTE);
+        assertTrue(until.isBefore(Instant.now().minusSeconds(119)));
+        assertEquals(until, until.truncatedTo(ChronoUnit.MINUTES));
+    }
+
+    @Test
+    void testCompact_shouldNotRollUpPastTheSourceTier() {
+        Instant minuteUntil = Instant.now().minus(Duration.ofHours(5)).truncatedTo(ChronoUnit.MINUTES);
+        state.put("minute", Date.from(minuteUntil));
+        state.put("hour", Date.from(minuteUntil.minus(Duration.ofHours(60)).truncatedTo(ChronoUnit.HOURS)));
+
+        service.compact(RetentionTier.HOUR);
+
+        verify(mongoTemplate, times(3)).aggregate(any(Aggregation.class), eq("event_rollups_minute"),
+                eq(Document.class));
+        assertEquals(minuteUntil.truncatedTo(ChronoUnit.HOURS), service.compactedUntil(RetentionTier.HOUR));
+    }
+
+    @Test
+    void testCompact_shouldWaitForEventsStillInWriteAheadLog() {
+        Instant checkpoint = Instant.now().minus(Duration.ofHours(10)).truncatedTo(ChronoUnit.MINUTES);
+        state.put("minute", Date.from(checkpoint));
+        Instant applied = checkpoint.plus(Duration.ofMinutes(90)).plusSeconds(30);
+        when(writeAheadLogService.appliedUntil()).thenReturn(applied);
+
+        service.compact(RetentionTier.MINUTE);
+
+        verify(mongoTemplate, times(2)).aggregate(any(Aggregation.class), eq("events"), eq(Document.class));
+        assertEquals(applied.truncatedTo(ChronoUnit.MINUTES), service.compactedUntil(RetentionTier.MINUTE));
+    }
+
+    @Test
+    void testDeleteExpired_shouldKeepWhatIsNotCompactedYet() {
+        Instant minuteUntil = Instant.now().minus(Duration.ofHours(30));
+        state.put("minute", Date.from(minuteUntil));
+        earliest.put("events", new Document("createdAt", Date.from(minuteUntil.minus(Duration.ofMinutes(90)))));
+
+        service.deleteExpired();
+
+        // One-hour slices, the last one ending at what the minute tier holds
+        ArgumentCaptor<Query> query = ArgumentCaptor.forClass(Query.class);
+        verify(mongoTemplate, times(2)).remove(query.capture(), eq("events"));
+        Date cutoff = query.getValue().getQueryObject().get("createdAt", Document.class).get("$lt", Date.class);
+        assertEquals(Date.from(minuteUntil), cutoff);
+        // No hour rollups yet, so every minute rollup stays
+        verify(mongoTemplate, never()).remove(any(Query.class), eq("event_rollups_minute"));
+    }
+
+    @Test
+    void testDeleteExpired_shouldDeleteLongBacklogInBoundedSlices() {
+        Instant oldest = Instant.now().minus(Duration.ofDays(400)).truncatedTo(ChronoUnit.HOURS);
+        earliest.put("event_rollups_hour", new Document("bucketStart", Date.from(oldest)));
+
+        service.deleteExpired();
+
+        ArgumentCaptor<Query> query = ArgumentCaptor.forClass(Query.class);
+        verify(mongoTemplate, times(3)).remove(query.capture(), eq("event_rollups_hour"));
+        List<Date> cutoffs = query.getAllValues().stream()
+                .map(q -> q.getQueryObject().get("bucketStart", Document.class).get("$lt", Date.class))
+                .toList();
+        assertEquals(List.of(Date.from(oldest.plus(Duration.ofDays(1))), Date.from(oldest.plus(Duration.ofDays(2))),
+                Date.from(oldest.plus(Duration.ofDays(3)))), cutoffs);
+    }
+
+    @Test
+    void testDeleteExpired_shouldDeleteNothingBeforeFirstCompaction() {
+        service.deleteExpired();
+
+        verify(mongoTemplate, never()).remove(any(Query.class), eq("events"));
+        verify(mongoTemplate, never()).remove(any(Query.class), eq("event_rollups_minute"));
+    }
+}
@@ -0,0 +1,228 @@
+package com.ecommerce.analytics.service;
+
+import com.ecommerce.analytics.model.AnalyticsResponse;
+import com.ecommerce.analytics.model.RetentionTier;
+import org.bson.Document;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.aggregation.Aggregation;
+import org.springframework.data.mongodb.core.aggregation.AggregationResults;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+/**
+ * Unit tests for TrendQueryService
+ */
+class TrendQueryServiceTest {
+
+    // Events each collection reports in the first bucket of the range it is asked for
+    private static final Map<String, Long> EVENTS = Map.of(
+            "event_rollups_hour", 5L, "event_rollups_minute", 7L, "events", 11L);
+
+    private RetentionCompactionService retentionCompactionService;
+    private TrendQueryService service;
+    private final List<Read> reads = new ArrayList<>();
+
+    @BeforeEach
+    void setUp() {
+        MongoTemplate mongoTemplate = mock(MongoTemplate.class);
+        retentionCompactionService = mock(RetentionCompactionService.class);
+        when(retentionCompactionService.retention(RetentionTier.RAW)).thenReturn(Duration.ofHours(24));
+        when(retentionCompactionService.retention(RetentionTier.MINUTE)).thenReturn(Duration.ofDays(30));
+        when(retentionCompactionService.retention(RetentionTier.HOUR)).thenReturn(Duration.ofDays(365));
+        service = new TrendQueryService(mongoTemplate, retentionCompactionService);
+        ReflectionTestUtils.setField(service, "maxPoints", 1500);
+
+        when(mongoTemplate.aggregate(any(Aggregation.class), anyString(), eq(Document.class)))
+                .thenAnswer(invocation -> {
+                    Aggregation aggregation = invocation.getArgument(0);
+                    String collection = invocation.getArgument(1);
+                    Read read = new Read(collection, aggregation.toPipeline(Aggregation.DEFAULT_CONTEXT));
+                    reads.add(read);
+                    Instant bucket = read.from().truncatedTo(read.unit());
+                    return new AggregationResults<>(List.of(new Document("_id", Date.from(bucket))
+                            .append("events", EVENTS.get(collection))), new Document());
+                });
+    }
+
+    @Test
+    void testGetTrend_shouldJoinHourMinuteAndRawTiersWithoutGaps() {
+        Instant now = Instant.now();
+        Instant hourUntil = now.minus(Duration.ofHours(48)).truncatedTo(ChronoUnit.HOURS);
+        Instant minuteUntil = now.minus(Duration.ofHours(3)).truncatedTo(ChronoUnit.MINUTES);
+        when(retentionCompactionService.compactedUntil(RetentionTier.HOUR)).thenReturn(hourUntil);
+        when(retentionCompactionService.compactedUntil(RetentionTier.MINUTE)).thenReturn(minuteUntil);
+
+        AnalyticsResponse.TrendResponse trend = service.getTrend("acme", 168, null, null);
+
+        assertEquals("hour", trend.getResolution());
+        assertEquals(List.of("hour", "minute", "raw"), trend.getTiers());
+        assertEquals(List.of("event_rollups_hour", "event_rollups_minute", "events"),
+                reads.stream().map(Read::collection).toList());
+        assertContiguous(trend);
+        assertEquals(hourUntil, reads.get(0).to());
+        assertEquals(minuteUntil, reads.get(1).to());
+        reads.forEach(read -> assertEquals("hour", read.unitLabel()));
+
+        // Zero-filled hourly points, with each tier's events in the bucket it reported
+        assertPoints(trend, Duration.ofHours(1));
+        Map<String, Long> events = byBucket(trend);
+        assertEquals(5L, events.get(trend.getFrom()));
+        assertEquals(7L, events.get(hourUntil.toString()));
+        assertEquals(11L, events.get(minuteUntil.truncatedTo(ChronoUnit.HOURS).toString()));
+        assertEquals(23L, events.values().stream().mapToLong(Long::longValue).sum());
+    }
+
+    @Test
+    void testGetTrend_shouldReadMinutesForShortRanges() {
+        Instant minuteUntil = Instant.now().minus(Duration.ofHours(1)).truncatedTo(ChronoUnit.MINUTES);
+        when(retentionCompactionService.compactedUntil(RetentionTier.MINUTE)).thenReturn(minuteUntil);
+
+        AnalyticsResponse.TrendResponse trend = service.getTrend("acme", 24, null, null);
+
+        assertEquals("minute", trend.getResolution());
+        assertEquals(List.of("minute", "raw"), trend.getTiers());
+        verify(retentionCompactionService, never()).compactedUntil(RetentionTier.HOUR);
+        assertContiguous(trend);
+        reads.forEach(read -> assertEquals("minute", read.unitLabel()));
+        assertPoints(trend, Duration.ofMinutes(1));
+        assertEquals(7L, byBucket(trend).get(trend.getFrom()));
+        assertEquals(11L, byBucket(trend).get(minuteUntil.toString()));
+    }
+
+    @Test
+    void testGetTrend_shouldFallBackToRawEventsBeforeAnyCompaction() {
+        AnalyticsResponse.TrendResponse trend = service.getTrend("acme", 6, null, null);
+
+        assertEquals(List.of("raw"), trend.getTiers());
+        assertEquals(1, reads.size());
+        assertContiguous(trend);
+    }
+
+    @Test
+    void testGetTrend_shouldFilterTenantsPerCollection() {
+        when(retentionCompactionService.compactedUntil(RetentionTier.MINUTE))
+                .thenReturn(Instant.now().minus(Duration.ofHours(1)).truncatedTo(ChronoUnit.MINUTES));
+
+        service.getTrend("default", 6, "purchase", "/checkout");
+
+        String rollupMatch = reads.get(0).match().toJson();
+        String rawMatch = reads.get(1).match().toJson();
+        // Rollups always carry a tenant; raw events stored before tenants existed have none
+        assertTrue(rollupMatch.contains("\"tenantId\": \"default\""), rollupMatch);
+        assertFalse(rollupMatch.contains("$in"), rollupMatch);
+        assertTrue(rawMatch.contains("\"tenantId\": {\"$in\": [\"default\", null]}"), rawMatch);
+        for (Read read : reads) {
+            assertTrue(read.match().toJson().contains("\"eventType\": \"purchase\""));
+            assertTrue(read.match().toJson().contains("\"pageUrl\": \"/checkout\""));
+        }
+    }
+
+    @Test
+    void testGetTrend_shouldClampRangeToHourRetention() {
+        AnalyticsResponse.TrendResponse trend = service.getTrend("acme", 100_000, null, null);
+
+        assertEquals("hour", trend.getResolution());
+        Instant from = Instant.parse(trend.getFrom());
+        assertTrue(Duration.between(from, Instant.now()).toDays() <= 366);
+    }
+
+    /**
+     * The tiers' ranges run back to back from the trend's start to its end
+     */
+    private void assertContiguous(AnalyticsResponse.TrendResponse trend) {
+        assertFalse(reads.isEmpty());
+        assertEquals(Instant.parse(trend.getFrom()), reads.get(0).from());
+        for (int i = 1; i < reads.size(); i++) {
+            assertEquals(reads.get(i - 1).to(), reads.get(i).from());
+            assertTrue(reads.get(i).from().isBefore(reads.get(i).to()));
+        }
+        assertEquals(Instant.parse(trend.getTo()).toEpochMilli(), reads.get(reads.size() - 1).to().toEpochMilli());
+    }
+
+    private static void assertPoints(AnalyticsResponse.TrendResponse trend, Duration step) {
+        Instant expected = Instant.parse(trend.getFrom());
+        for (AnalyticsResponse.TrendPoint point : trend.getPoints()) {
+            assertEquals(expected.toString(), point.getBucketStart());
+            expected = expected.plus(step);
+        }
+        assertFalse(expected.isBefore(Instant.parse(trend.getTo())));
+    }
+
+    private static Map<String, Long> byBucket(AnalyticsResponse.TrendResponse trend) {
+        Map<String, Long> events = new HashMap<>();
+        trend.getPoints().forEach(point -> events.put(point.getBucketStart(), point.getEvents()));
+        return events;
+    }
+
+    private record Read(String collection, List<Document> pipeline) {
+
+        Document match() {
+            return pipeline.get(0).get("$match", Document.class);
+        }
+
+        String timeField() {
+            return "events".equals(collection) ? "createdAt" : "bucketStart";
+        }
+
+        Instant from() {
+            return range().getDate("$gte").toInstant();
+        }
+
+        Instant to() {
+            return range().getDate("$lt").toInstant();
+        }
+
+        String unitLabel() {
+            return pipeline.get(1).get("$group", Document.class).get("_id", Document.class)
+                    .get("$dateTrunc", Document.class).getString("unit");
+        }
+
+        ChronoUnit unit() {
+            return "hour".equals(unitLabel()) ? ChronoUnit.HOURS : ChronoUnit.MINUTES;
+        }
+
+        private Document range() {
+            Document range = find(match(), timeField());
+            assertNotNull(range, "no " + timeField() + " range in " + match().toJson());
+            return range;
+        }
+
+        private static Document find(Object node, String field) {
+            if (node instanceof Document document) {
+                if (document.get(field) instanceof Document range && range.containsKey("$gte")) {
+                    return range;
+                }
+                for (Object value : document.values()) {
+                    Document found = find(value, field);
+                    if (found != null) {
+                        return found;
+                    }
+                }
+            } else if (node instanceof List<?> list) {
+                for (Object value : list) {
+                    Document found = find(value, field);
+                    if (found != null) {
+                        return found;
+                    }
+                }
+            }
+            return null;
+        }
+    }
+}
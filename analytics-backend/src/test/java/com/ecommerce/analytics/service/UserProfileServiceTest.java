@@ -0,0 +1,150 @@
+package com.ecommerce.analytics.service;
+
+import com.ecommerce.analytics.model.AnalyticsResponse;
+import com.ecommerce.analytics.model.UserEvent;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.bson.Document;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.aggregation.Aggregation;
+import org.springframework.data.mongodb.core.aggregation.AggregationResults;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+/**
+ * Unit tests for UserProfileService
+ */
+class UserProfileServiceTest {
+
+    private static final Instant NOW = Instant.now().truncatedTo(ChronoUnit.MINUTES);
+    private static final Instant LAST_SEEN = NOW.minus(Duration.ofMinutes(10)).plusSeconds(12);
+
+    private MongoTemplate mongoTemplate;
+    private MeterRegistry meterRegistry;
+    private UserProfileService service;
+
+    @BeforeEach
+    void setUp() {
+        mongoTemplate = mock(MongoTemplate.class);
+        meterRegistry = new SimpleMeterRegistry();
+        service = new UserProfileService(mongoTemplate, meterRegistry);
+        ReflectionTestUtils.setField(service, "maxEntries", 2);
+        ReflectionTestUtils.setField(service, "ttlSeconds", 30L);
+        ReflectionTestUtils.setField(service, "topPages", 5);
+        service.init();
+
+        Document result = new Document()
+                .append("buckets", List.of(
+                        bucket(10, "page_view", "/home", 4),
+                        bucket(10, "click", "/products", 2),
+                        bucket(30, "page_view", "/cart", 1),
+                        bucket(120, "purchase", "/checkout", 3)))
+                .append("sessions", List.of(
+                        new Document("_id", "sess_1").append("lastAt", Date.from(LAST_SEEN)),
+                        new Document("_id", "sess_2").append("lastAt", Date.from(NOW.minus(Duration.ofMinutes(30)))),
+                        new Document("_id", "sess_0").append("lastAt", Date.from(NOW.minus(Duration.ofMinutes(120))))));
+        when(mongoTemplate.aggregate(any(Aggregation.class), eq(UserEvent.class), eq(Document.class)))
+                .thenAnswer(invocation -> new AggregationResults<>(List.of(result), new Document()));
+    }
+
+    @Test
+    void testGetProfile_shouldMapEveryFacet() {
+        AnalyticsResponse.UserProfileResponse profile = service.getProfile("default", "usr_123", 60);
+
+        assertEquals("usr_123", profile.getUserId());
+        assertEquals(60, profile.getWindowMinutes());
+        assertEquals(LAST_SEEN.toString(), profile.getLastSeen());
+        assertEquals(7, profile.getTotalEvents());
+        assertEquals(Map.of("page_view", 5L, "click", 2L), profile.getEventsByType());
+        assertEquals("/home", profile.getTopPages().get(0).getUrl());
+        assertEquals(4, profile.getTopPages().get(0).getViews());
+        assertEquals(List.of("/home", "/products", "/cart"),
+                profile.getTopPages().stream().map(AnalyticsResponse.PageViewCount::getUrl).toList());
+        assertEquals(2, profile.getSessions());
+    }
+
+    @Test
+    void testGetProfile_shouldCutEveryWindowFromOneCachedAggregate() {
+        AnalyticsResponse.UserProfileResponse day = service.getProfile("default", "usr_123", 1440);
+        AnalyticsResponse.UserProfileResponse recent = service.getProfile("default", "usr_123", 15);
+
+        verify(mongoTemplate, times(1)).aggregate(any(Aggregation.class), eq(UserEvent.class), eq(Document.class));
+        assertEquals(10, day.getTotalEvents());
+        assertEquals(3, day.getSessions());
+        assertEquals(3L, day.getEventsByType().get("purchase"));
+        assertEquals(6, recent.getTotalEvents());
+        assertEquals(1, recent.getSessions());
+        assertEquals(15, recent.getWindowMinutes());
+    }
+
+    @Test
+    void testGetProfile_emptyResultShouldGiveEmptyProfile() {
+        when(mongoTemplate.aggregate(any(Aggregation.class), eq(UserEvent.class), eq(Document.class)))
+                .thenReturn(new AggregationResults<>(List.of(new Document()), new Document()));
+
+        AnalyticsResponse.UserProfileResponse profile = service.getProfile("default", "usr_404", 99_999);
+
+        assertNull(profile.getLastSeen());
+        assertEquals(0, profile.getTotalEvents());
+        assertTrue(profile.getEventsByType().isEmpty());
+        assertEquals(1440, profile.getWindowMinutes());
+    }
+
+    @Test
+    void testGetProfile_shouldServeRepeatLookupsFromTheCache() {
+        service.getProfile("default", "usr_123", 60);
+        service.getProfile("default", "usr_123", 60);
+        service.getProfile("acme", "usr_123", 60);
+
+        verify(mongoTemplate, times(2)).aggregate(any(Aggregation.class), eq(UserEvent.class), eq(Document.class));
+        assertEquals(1, meterRegistry.get("analytics.user_profile.cache").tag("result", "hit").counter().count());
+        assertEquals(1.0 / 3, meterRegistry.get("analytics.user_profile.cache.hit.ratio").gauge().value(), 1e-9);
+    }
+
+    @Test
+    void testGetProfile_shouldEvictLeastRecentlyUsedAndExpiredEntries() {
+        service.getProfile("default", "usr_1", 60);
+        service.getProfile("default", "usr_2", 60);
+        service.getProfile("default", "usr_1", 60);
+        // usr_2 is the least recently used and makes room for usr_3
+        service.getProfile("default", "usr_3", 60);
+        assertEquals(2, meterRegistry.get("analytics.user_profile.cache.size").gauge().value());
+        service.getProfile("default", "usr_1", 60);
+        service.getProfile("default", "usr_2", 60);
+        verify(mongoTemplate, times(4)).aggregate(any(Aggregation.class), eq(UserEvent.class), eq(Document.class));
+
+        ReflectionTestUtils.setField(service, "ttlSeconds", 0L);
+        service.getProfile("default", "usr_9", 60);
+        service.getProfile("default", "usr_9", 60);
+        verify(mongoTemplate, times(6)).aggregate(any(Aggregation.class), eq(UserEvent.class), eq(Document.class));
+    }
+
+    @Test
+    void testGetProfile_failureShouldNotBeCached() {
+        when(mongoTemplate.aggregate(any(Aggregation.class), eq(UserEvent.class), eq(Document.class)))
+                .thenThrow(new IllegalStateException("mongo down"));
+
+        assertThrows(IllegalStateException.class, () -> service.getProfile("default", "usr_123", 60));
+        assertThrows(IllegalStateException.class, () -> service.getProfile("default", "usr_123", 60));
+        verify(mongoTemplate, times(2)).aggregate(any(Aggregation.class), eq(UserEvent.class), eq(Document.class));
+    }
+
+    private static Document bucket(int minutesAgo, String type, String page, int count) {
+        return new Document("_id", new Document("minute", Date.from(NOW.minus(Duration.ofMinutes(minutesAgo))))
+                .append("type", type).append("page", page))
+                .append("count", count);
+    }
+}
@@ -0,0 +1,154 @@
+package com.ecommerce.analytics.service;
+
+import com.ecommerce.analytics.model.UserEvent;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.data.mongodb.core.BulkOperations;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.nio.file.Path;
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+/**
+ * Unit tests for WriteAheadLogService
+ */
+class WriteAheadLogServiceTest {
+
+    @TempDir
+    Path directory;
+
+    private final List<WriteAheadLogService> services = new ArrayList<>();
+
+    @AfterEach
+    void tearDown() throws Exception {
+        for (WriteAheadLogService service : services) {
+            service.stop();
+        }
+    }
+
+    @Test
+    void testAwaitCaughtUp_shouldWaitForTailLeftByPreviousProcess() throws Exception {
+        // MongoDB is down, so the event stays in the log
+        MongoTemplate down = mock(MongoTemplate.class);
+        when(down.bulkOps(any(BulkOperations.BulkMode.class), eq(UserEvent.class)))
+                .thenThrow(new IllegalStateException("mongo down"));
+        WriteAheadLogService first = start(down);
+        first.append(event("evt_1"));
+        first.stop();
+        services.remove(first);
+
+        MongoTemplate up = mock(MongoTemplate.class);
+        BulkOperations bulk = mock(BulkOperations.class, RETURNS_SELF);
+        when(up.bulkOps(any(BulkOperations.BulkMode.class), eq(UserEvent.class))).thenReturn(bulk);
+        WriteAheadLogService restarted = start(up);
+
+        assertTrue(restarted.awaitCaughtUp(5000));
+        verify(bulk).insert(anyList());
+        verify(bulk).execute();
+    }
+
+    @Test
+    void testAppend_shouldTrackEventIdsUntilApplied() throws Exception {
+        MongoTemplate down = mock(MongoTemplate.class);
+        when(down.bulkOps(any(BulkOperations.BulkMode.class), eq(UserEvent.class)))
+                .thenThrow(new IllegalStateException("mongo down"));
+        WriteAheadLogService service = start(down);
+
+        service.append(event("evt_1"));
+
+        assertTrue(service.isPending(event("evt_1")));
+        UserEvent otherTenant = event("evt_1");
+        otherTenant.setTenantId("acme");
+        assertFalse(service.isPending(otherTenant));
+        assertThrows(DuplicateKeyException.class, () -> service.append(event("evt_1")));
+        service.append(event(null));
+    }
+
+    @Test
+    void testStart_shouldTrackEventIdsLeftByPreviousProcess() throws Exception {
+        MongoTemplate down = mock(MongoTemplate.class);
+        when(down.bulkOps(any(BulkOperations.BulkMode.class), eq(UserEvent.class)))
+                .thenThrow(new IllegalStateException("mongo down"));
+        WriteAheadLogService first = start(down);
+        first.append(event("evt_1"));
+        first.stop();
+        services.remove(first);
+
+        WriteAheadLogService restarted = start(down);
+        assertTrue(restarted.isPending(event("evt_1")));
+
+        MongoTemplate up = mock(MongoTemplate.class);
+        BulkOperations bulk = mock(BulkOperations.class, RETURNS_SELF);
+        when(up.bulkOps(any(BulkOperations.BulkMode.class), eq(UserEvent.class))).thenReturn(bulk);
+        restarted.stop();
+        services.remove(restarted);
+        WriteAheadLogService applied = start(up);
+        assertTrue(applied.awaitCaughtUp(5000));
+        assertFalse(applied.isPending(event("evt_1")));
+    }
+
+    @Test
+    void testAppliedUntil_shouldHoldAtOldestEventNotInMongo() throws Exception {
+        MongoTemplate down = mock(MongoTemplate.class);
+        when(down.bulkOps(any(BulkOperations.BulkMode.class), eq(UserEvent.class)))
+                .thenThrow(new IllegalStateException("mongo down"));
+        WriteAheadLogService service = start(down);
+        UserEvent event = event("evt_1");
+        service.append(event);
+        Instant arrival = event.getCreatedAt().truncatedTo(ChronoUnit.MILLIS);
+
+        long deadline = System.currentTimeMillis() + 5000;
+        while (!service.appliedUntil().equals(arrival) && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        assertEquals(arrival, service.appliedUntil());
+        assertNull(new WriteAheadLogService(down, new SimpleMeterRegistry()).appliedUntil());
+    }
+
+    @Test
+    void testAwaitCaughtUp_shouldReturnAtOnceWhenDisabled() throws Exception {
+        WriteAheadLogService service = new WriteAheadLogService(mock(MongoTemplate.class), new SimpleMeterRegistry());
+
+        assertTrue(service.awaitCaughtUp(0));
+    }
+
+    private WriteAheadLogService start(MongoTemplate mongoTemplate) throws Exception {
+        WriteAheadLogService service = new WriteAheadLogService(mongoTemplate, new SimpleMeterRegistry());
+        ReflectionTestUtils.setField(service, "enabled", true);
+        ReflectionTestUtils.setField(service, "directory", directory.toString());
+        ReflectionTestUtils.setField(service, "segmentSizeMb", 1);
+        ReflectionTestUtils.setField(service, "maxSegments", 4);
+        ReflectionTestUtils.setField(service, "syncTimeoutMs", 2000L);
+        ReflectionTestUtils.setField(service, "applyBatchSize", 10);
+        service.start();
+        services.add(service);
+        return service;
+    }
+
+    private static UserEvent event(String eventId) {
+        return UserEvent.builder()
+                .eventId(eventId)
+                .tenantId(UserEvent.DEFAULT_TENANT)
+                .timestamp("2024-03-15T14:30:00Z")
+                .eventTime(Instant.parse("2024-03-15T14:30:00Z").toEpochMilli())
+                .userId("usr_1")
+                .eventType("page_view")
+                .pageUrl("/home")
+                .sessionId("sess_1")
+                .createdAt(Instant.now())
+                .build();
+    }
+}
@@ -0,0 +1,105 @@
+package com.ecommerce.analytics.store;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ColumnarRingStoreTest {
+
+    private static final long BUDGET = 1024 * 1024;
+
+    @TempDir
+    Path dir;
+
+    @Test
+    void testRead_shouldScanRowsInTimeRangeWithDecodedStrings() throws Exception {
+        try (ColumnarRingStore store = new ColumnarRingStore(dir.resolve("events.ring"), BUDGET, 0.25)) {
+            store.append(1000, "usr_1", "/home", "page_view", "sess_1");
+            store.append(2000, "usr_2", "/cart", "add_to_cart", "sess_2");
+            store.append(3000, "usr_1", null, "click", "sess_1");
+
+            List<String> rows = store.read(view -> {
+                List<String> out = new ArrayList<>();
+                view.scan(view.firstSequence(), view.endSequence(), 1500, 4000,
+                        (time, user, page, type, session) -> out.add(time + " " + view.string(user) + " "
+                                + view.string(page) + " " + view.string(type) + " " + view.string(session)));
+                return out;
+            });
+
+            assertEquals(List.of("2000 usr_2 /cart add_to_cart sess_2", "3000 usr_1 null click sess_1"), rows);
+            assertEquals(ColumnarRingStore.NONE, (int) store.read(view -> view.id("/missing")));
+        }
+    }
+
+    @Test
+    void testAppend_shouldOverwriteOldestRowsOnceFull() throws Exception {
+        try (ColumnarRingStore store = new ColumnarRingStore(dir.resolve("events.ring"), BUDGET, 0.25)) {
+            int capacity = store.capacity();
+            for (int i = 0; i < capacity + 10; i++) {
+                store.append(i, "usr_" + (i % 100), "/p", "page_view", "sess_" + (i % 100));
+            }
+
+            assertEquals(capacity, store.size());
+            long oldest = store.read(view -> {
+                long[] min = {Long.MAX_VALUE};
+                view.scan(view.firstSequence(), view.endSequence(), 0, Long.MAX_VALUE,
+                        (time, user, page, type, session) -> min[0] = Math.min(min[0], time));
+                return min[0];
+            });
+            assertEquals(10, oldest);
+        }
+    }
+
+    @Test
+    void testAppend_shouldCompactDictionaryWhenFullKeepingLiveStrings() throws Exception {
+        try (ColumnarRingStore store = new ColumnarRingStore(dir.resolve("events.ring"), BUDGET, 0.05)) {
+            // Far more distinct sessions than the dictionary region can hold at once
+            int events = 200_000;
+            for (int i = 0; i < events; i++) {
+                store.append(i, "usr_1", "/home", "page_view", "session_number_" + i);
+            }
+
+            assertTrue(store.dictionaryUsage() <= 1.0);
+            long newest = events - 1;
+            String session = store.read(view -> {
+                String[] found = new String[1];
+                view.scan(view.endSequence() - 1, view.endSequence(), 0, Long.MAX_VALUE,
+                        (time, user, page, type, s) -> found[0] = view.string(s));
+                return found[0];
+            });
+            assertEquals("session_number_" + newest, session);
+            assertTrue(store.size() > 0);
+        }
+    }
+
+    @Test
+    void testOpen_shouldReopenExistingFileAfterRestart() throws Exception {
+        Path file = dir.resolve("events.ring");
+        try (ColumnarRingStore store = new ColumnarRingStore(file, BUDGET, 0.25)) {
+            store.append(1000, "usr_1", "/home", "page_view", "sess_1");
+            store.append(2000, "usr_2", "/cart", "page_view", "sess_2");
+        }
+
+        try (ColumnarRingStore store = new ColumnarRingStore(file, BUDGET, 0.25)) {
+            assertEquals(2, store.size());
+            store.append(3000, "usr_1", "/checkout", "page_view", "sess_1");
+            List<String> users = store.read(view -> {
+                List<String> out = new ArrayList<>();
+                view.scan(view.firstSequence(), view.endSequence(), 0, Long.MAX_VALUE,
+                        (time, user, page, type, session) -> out.add(view.string(user)));
+                return out;
+            });
+            assertEquals(List.of("usr_1", "usr_2", "usr_1"), users);
+        }
+
+        // A different budget is a different layout: start over
+        try (ColumnarRingStore store = new ColumnarRingStore(file, BUDGET * 2, 0.25)) {
+            assertEquals(0, store.size());
+        }
+    }
+}
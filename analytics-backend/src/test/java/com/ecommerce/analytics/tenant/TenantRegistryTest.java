@@ -0,0 +1,90 @@
+package com.ecommerce.analytics.tenant;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+
+class TenantRegistryTest {
+
+    private final ApplicationEventPublisher eventPublisher = mock(ApplicationEventPublisher.class);
+
+    private TenantRegistry registry(int maxTenants, String overrides) {
+        TenantRegistry registry = new TenantRegistry(new SimpleMeterRegistry(), eventPublisher);
+        ReflectionTestUtils.setField(registry, "maxTenants", maxTenants);
+        ReflectionTestUtils.setField(registry, "idleEvictionMinutes", 60L);
+        ReflectionTestUtils.setField(registry, "eventsPerSecond", 5);
+        ReflectionTestUtils.setField(registry, "burstCapacity", 10);
+        ReflectionTestUtils.setField(registry, "overrides", overrides);
+        registry.init();
+        return registry;
+    }
+
+    @Test
+    void testTryAdmit_shouldThrottleBusyTenantWithoutAffectingOthers() {
+        TenantRegistry registry = registry(8, "");
+
+        for (int i = 0; i < 10; i++) {
+            assertEquals(TenantRegistry.Admission.ADMITTED, registry.tryAdmit("big"));
+        }
+        assertEquals(TenantRegistry.Admission.RATE_LIMITED, registry.tryAdmit("big"));
+        assertEquals(TenantRegistry.Admission.ADMITTED, registry.tryAdmit("small"));
+    }
+
+    @Test
+    void testTryAdmit_shouldGiveOverriddenTenantItsOwnRateWithDefaultBurstRatio() {
+        TenantRegistry registry = registry(8, "big=50, tiny=1");
+
+        for (int i = 0; i < 100; i++) {
+            assertEquals(TenantRegistry.Admission.ADMITTED, registry.tryAdmit("big"));
+        }
+        assertEquals(TenantRegistry.Admission.RATE_LIMITED, registry.tryAdmit("big"));
+
+        assertEquals(TenantRegistry.Admission.ADMITTED, registry.tryAdmit("tiny"));
+        assertEquals(TenantRegistry.Admission.ADMITTED, registry.tryAdmit("tiny"));
+        assertEquals(TenantRegistry.Admission.RATE_LIMITED, registry.tryAdmit("tiny"));
+    }
+
+    @Test
+    void testTryAdmit_shouldRejectNewTenantsOnceLimitIsReached() {
+        TenantRegistry registry = registry(2, "");
+
+        assertEquals(TenantRegistry.Admission.ADMITTED, registry.tryAdmit("a"));
+        assertEquals(TenantRegistry.Admission.ADMITTED, registry.tryAdmit("b"));
+        assertEquals(TenantRegistry.Admission.TOO_MANY_TENANTS, registry.tryAdmit("c"));
+        assertEquals(TenantRegistry.Admission.ADMITTED, registry.tryAdmit("a"));
+    }
+
+    @Test
+    void testEvictIdle_shouldFreeSlotsOfIdleTenants() {
+        TenantRegistry registry = registry(2, "");
+        registry.tryAdmit("a");
+        registry.tryAdmit("b");
+        long now = System.currentTimeMillis();
+
+        registry.evictIdle(now + TimeUnit.MINUTES.toMillis(59));
+        assertEquals(TenantRegistry.Admission.TOO_MANY_TENANTS, registry.tryAdmit("c"));
+
+        registry.evictIdle(now + TimeUnit.MINUTES.toMillis(61));
+        verify(eventPublisher).publishEvent(new TenantEvictedEvent("a"));
+        verify(eventPublisher).publishEvent(new TenantEvictedEvent("b"));
+        assertEquals(TenantRegistry.Admission.ADMITTED, registry.tryAdmit("c"));
+    }
+
+    @Test
+    void testRegister_shouldAdmitWithoutTakingFromBucket() {
+        TenantRegistry registry = registry(1, "");
+
+        assertTrue(registry.register("a"));
+        assertFalse(registry.register("b"));
+        for (int i = 0; i < 10; i++) {
+            assertEquals(TenantRegistry.Admission.ADMITTED, registry.tryAdmit("a"));
+        }
+    }
+}
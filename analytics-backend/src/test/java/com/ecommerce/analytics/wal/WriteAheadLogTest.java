@@ -0,0 +1,161 @@
+package com.ecommerce.analytics.wal;
+
+import com.ecommerce.analytics.model.UserEvent;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit tests for WriteAheadLog
+ */
+class WriteAheadLogTest {
+
+    @TempDir
+    Path walDirectory;
+
+    @Test
+    void testAppendAndRead_shouldReturnDurableRecordsInOrder() throws Exception {
+        try (WriteAheadLog wal = new WriteAheadLog(walDirectory, 1024 * 1024, 8)) {
+            long last = 0;
+            for (int i = 0; i < 100; i++) {
+                last = wal.append(WalRecordCodec.encode(event("usr_" + i)));
+            }
+            wal.awaitDurable(last, 5000);
+
+            try (WriteAheadLog.Reader reader = wal.reader(null)) {
+                for (int i = 0; i < 100; i++) {
+                    ByteBuffer record = reader.next();
+                    assertNotNull(record);
+                    UserEvent decoded = WalRecordCodec.decode(record);
+                    assertEquals("usr_" + i, decoded.getUserId());
+                    assertEquals("evt_usr_" + i, decoded.getEventId());
+                }
+                assertNull(reader.next());
+            }
+        }
+    }
+
+    @Test
+    void testConcurrentAppends_shouldAllBecomeDurable() throws Exception {
+        try (WriteAheadLog wal = new WriteAheadLog(walDirectory, 1024 * 1024, 8)) {
+            ExecutorService executor = Executors.newFixedThreadPool(8);
+            List<Future<?>> futures = new ArrayList<>();
+            for (int t = 0; t < 8; t++) {
+                int thread = t;
+                futures.add(executor.submit(() -> {
+                    for (int i = 0; i < 200; i++) {
+                        long sequence = wal.append(WalRecordCodec.encode(event("usr_" + thread + "_" + i)));
+                        wal.awaitDurable(sequence, 5000);
+                    }
+                    return null;
+                }));
+            }
+            for (Future<?> future : futures) {
+                future.get();
+            }
+            executor.shutdown();
+
+            int count = 0;
+            try (WriteAheadLog.Reader reader = wal.reader(null)) {
+                while (reader.next() != null) {
+                    count++;
+                }
+            }
+            assertEquals(1600, count);
+        }
+    }
+
+    @Test
+    void testRestart_shouldReplayUnappliedSegmentsAcrossRolls() throws Exception {
+        WriteAheadLog.Position applied;
+        try (WriteAheadLog wal = new WriteAheadLog(walDirectory, 4096, 64)) {
+            long last = 0;
+            for (int i = 0; i < 200; i++) {
+                last = wal.append(WalRecordCodec.encode(event("usr_" + i)));
+            }
+            wal.awaitDurable(last, 5000);
+            assertTrue(wal.segmentCount() > 1, "small segments should have rolled");
+
+            try (WriteAheadLog.Reader reader = wal.reader(null)) {
+                for (int i = 0; i < 50; i++) {
+                    reader.next();
+                }
+                applied = reader.position();
+            }
+            wal.release(applied.getSegmentId());
+        }
+
+        try (WriteAheadLog wal = new WriteAheadLog(walDirectory, 4096, 64);
+                WriteAheadLog.Reader reader = wal.reader(applied)) {
+            for (int i = 50; i < 200; i++) {
+                ByteBuffer record = reader.next();
+                assertNotNull(record, "missing record " + i);
+                assertEquals("usr_" + i, WalRecordCodec.decode(record).getUserId());
+            }
+            assertNull(reader.next());
+        }
+    }
+
+    @Test
+    void testRestart_shouldCountUnappliedSegmentsTowardsLimit() throws Exception {
+        try (WriteAheadLog wal = new WriteAheadLog(walDirectory, 4096, 4)) {
+            while (wal.segmentCount() < 3) {
+                wal.append(WalRecordCodec.encode(event("usr_1")));
+            }
+        }
+
+        try (WriteAheadLog wal = new WriteAheadLog(walDirectory, 4096, 4)) {
+            assertEquals(4, wal.segmentCount());
+            assertThrows(IOException.class, () -> {
+                for (int i = 0; i < 200; i++) {
+                    wal.append(WalRecordCodec.encode(event("usr_" + i)));
+                }
+            });
+
+            wal.release(3);
+            wal.append(WalRecordCodec.encode(event("usr_1")));
+        }
+    }
+
+    @Test
+    void testCodec_shouldRoundTripAllFields() {
+        UserEvent event = event("usr_1");
+        event.setId("65f4a3b2c1d0e9f8a7b6c5d4");
+
+        UserEvent decoded = WalRecordCodec.decode(ByteBuffer.wrap(WalRecordCodec.encode(event)));
+
+        assertEquals(event, decoded);
+    }
+
+    @Test
+    void testAppend_shouldRejectRecordLargerThanSegment() throws IOException {
+        try (WriteAheadLog wal = new WriteAheadLog(walDirectory, 64, 8)) {
+            assertThrows(IllegalArgumentException.class, () -> wal.append(new byte[128]));
+        }
+    }
+
+    private static UserEvent event(String userId) {
+        return UserEvent.builder()
+                .timestamp("2024-03-15T14:30:00Z")
+                .userId(userId)
+                .eventType("page_view")
+                .pageUrl("/home")
+                .sessionId("sess_1")
+                .eventId("evt_" + userId)
+                .tenantId("store_1")
+                .eventTime(1_710_513_000_000L)
+                .createdAt(Instant.ofEpochMilli(1_710_513_000_000L))
+                .build();
+    }
+}
@@ -77,4 +77,58 @@ public class GeneratorConfig {
      * Delay before starting generation (in milliseconds)
      */
     private long startupDelayMs = 5000;
+
+    /**
+     * Dedicated generation threads sharing eventsPerSecond between them.
+     * 0 keeps the single scheduled generator (~100 events/second).
+     */
+    private int workerThreads = 0;
+
+    /**
+     * Generation mode: "random" synthesizes events, "replay" plays back a recorded trace
+     */
+    private String mode = "random";
+
+    /**
+     * When set, every generated event is appended to this trace file
+     */
+    private String traceRecordPath;
+
+    /**
+     * Trace file played back in replay mode
+     */
+    private String traceReplayPath;
+
+    /**
+     * Optional JSON-lines capture (e.g. a mongoexport of the events collection)
+     * converted into the replay trace file before playback starts
+     */
+    private String traceImportPath;
+
+    /**
+     * Replace an existing replay trace with the import; otherwise an existing trace is kept
+     */
+    private boolean traceImportOverwrite = false;
+
+    /**
+     * Replay speed multiplier (1.0 = original timing, 0 = as fast as possible)
+     */
+    private double replaySpeed = 1.0;
+
+    /**
+     * Restart from the beginning of the trace when it is exhausted
+     */
+    private boolean replayLoop = false;
+
+    /**
+     * Number of concurrent senders used during replay
+     */
+    private int replayThreads = 4;
+
+    /**
+     * Whether the generator plays back a recorded trace instead of random events
+     */
+    public boolean isReplayMode() {
+        return "replay".equalsIgnoreCase(mode);
+    }
 }
@@ -2,19 +2,27 @@ package com.ecommerce.generator.service;
 
 import com.ecommerce.generator.config.GeneratorConfig;
 import com.ecommerce.generator.model.UserEvent;
-import lombok.RequiredArgsConstructor;
+import com.ecommerce.generator.trace.TraceWriter;
+import jakarta.annotation.PreDestroy;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.boot.context.event.ApplicationReadyEvent;
 import org.springframework.context.event.EventListener;
+import org.springframework.http.HttpMethod;
 import org.springframework.http.HttpStatus;
-import org.springframework.http.ResponseEntity;
+import org.springframework.http.HttpStatusCode;
+import org.springframework.http.MediaType;
+import org.springframework.http.client.ClientHttpResponse;
 import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Service;
 import org.springframework.web.client.RestTemplate;
 
-import java.util.*;
-import java.util.concurrent.ConcurrentHashMap;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
 import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
 
 /**
  * Service responsible for generating and sending mock user events.
@@ -23,24 +31,34 @@ import java.util.concurrent.atomic.AtomicLong;
  */
 @Service
 @Slf4j
-@RequiredArgsConstructor
 public class EventGeneratorService {
 
     private final GeneratorConfig config;
     private final RestTemplate restTemplate = new RestTemplate();
-    private final Random random = new Random();
 
-    // Track active sessions per user
-    private final Map<String, Set<String>> userSessions = new ConcurrentHashMap<>();
+    // Pre-built user/session pools and per-thread randomness
+    private final EventSynthesizer synthesizer;
 
-    // Dynamic user pool size (changes every 5 seconds)
-    private volatile int currentUserPoolSize = 100;
+    // One reusable payload buffer per sending thread
+    private final ThreadLocal<EventJsonWriter> jsonWriters = ThreadLocal.withInitial(EventJsonWriter::new);
 
     // Statistics
     private final AtomicLong totalEventsSent = new AtomicLong(0);
     private final AtomicLong successfulEvents = new AtomicLong(0);
     private final AtomicLong failedEvents = new AtomicLong(0);
 
+    // Optional trace recording of generated events
+    private volatile TraceWriter traceWriter;
+
+    // Dedicated generation workers (used when generator.worker-threads > 0)
+    private final List<Thread> workers = new ArrayList<>();
+    private volatile boolean running = true;
+
+    public EventGeneratorService(GeneratorConfig config) {
+        this.config = config;
+        this.synthesizer = new EventSynthesizer(config);
+    }
+
     /**
      * Start generating events after application is ready
      */
@@ -54,8 +72,11 @@ public class EventGeneratorService {
             log.info("  - User pool size: {}", config.getUserPoolSize());
             log.info("  - Startup delay: {}ms", config.getStartupDelayMs());
 
+            openTraceRecording();
+
             try {
                 Thread.sleep(config.getStartupDelayMs());
+                startWorkers();
                 log.info("Event generation started!");
             } catch (InterruptedException e) {
                 Thread.currentThread().interrupt();
@@ -72,12 +93,16 @@ public class EventGeneratorService {
      */
     @Scheduled(fixedDelay = 10)
     public void generateAndSendEvent() {
-        if (!config.isEnabled()) {
+        if (!config.isEnabled() || config.isReplayMode() || config.getWorkerThreads() > 0) {
             return;
         }
+        generateAndSendOne();
+    }
 
+    private void generateAndSendOne() {
         try {
             UserEvent event = generateRandomEvent();
+            recordEvent(event);
             sendEvent(event);
         } catch (Exception e) {
             log.error("Error generating/sending event", e);
@@ -85,16 +110,45 @@ public class EventGeneratorService {
         }
     }
 
+    /**
+     * Start paced generation workers that share the configured events-per-second
+     * target. Each worker draws randomness from its own ThreadLocalRandom.
+     */
+    private void startWorkers() {
+        int threads = config.getWorkerThreads();
+        if (threads <= 0 || config.isReplayMode()) {
+            return;
+        }
+        long intervalNanos = Math.max(1L, 1_000_000_000L * threads / Math.max(1, config.getEventsPerSecond()));
+        for (int i = 0; i < threads; i++) {
+            Thread worker = new Thread(() -> runWorker(intervalNanos), "generator-worker-" + i);
+            worker.setDaemon(true);
+            workers.add(worker);
+            worker.start();
+        }
+        log.info("Started {} generation workers", threads);
+    }
+
+    private void runWorker(long intervalNanos) {
+        long next = System.nanoTime();
+        while (running) {
+            generateAndSendOne();
+            next += intervalNanos;
+            long wait = next - System.nanoTime();
+            if (wait > 0) {
+                LockSupport.parkNanos(wait);
+            } else if (wait < -1_000_000_000L) {
+                // Fell more than a second behind; don't try to catch up in a burst
+                next = System.nanoTime();
+            }
+        }
+    }
+
     /**
      * Generate a random user event with realistic data
      */
     private UserEvent generateRandomEvent() {
-        String userId = generateUserId();
-        String sessionId = getOrCreateSessionId(userId);
-        String eventType = selectRandom(config.getEventTypes());
-        String pageUrl = selectRandom(config.getPageUrls());
-
-        return UserEvent.create(userId, eventType, pageUrl, sessionId);
+        return synthesizer.next();
     }
 
     /**
@@ -103,68 +157,91 @@ public class EventGeneratorService {
      */
     @Scheduled(fixedRate = 5000)
     public void updateUserPoolSize() {
-        currentUserPoolSize = 800 + random.nextInt(201);
-        log.debug("User pool size updated to: {}", currentUserPoolSize);
+        synthesizer.setUserPoolSize(800 + ThreadLocalRandom.current().nextInt(201));
+        log.debug("User pool size updated to: {}", synthesizer.getUserPoolSize());
     }
 
     /**
-     * Generate a user ID from the dynamic user pool
+     * Open the trace file that generated events are recorded to, if configured
      */
-    private String generateUserId() {
-        int userNumber = random.nextInt(currentUserPoolSize) + 1;
-        return String.format("usr_%d", userNumber);
+    private void openTraceRecording() {
+        String path = config.getTraceRecordPath();
+        if (path == null || path.isBlank()) {
+            return;
+        }
+        try {
+            traceWriter = TraceWriter.open(Path.of(path));
+            log.info("  - Recording trace to: {}", path);
+        } catch (IOException e) {
+            log.error("Failed to open trace file {}: {}", path, e.getMessage());
+        }
     }
 
     /**
-     * Get an existing session or create a new one for the user.
-     * Users can have 1-3 concurrent sessions.
+     * Append a generated event to the trace file
      */
-    private String getOrCreateSessionId(String userId) {
-        userSessions.putIfAbsent(userId, ConcurrentHashMap.newKeySet());
-        Set<String> sessions = userSessions.get(userId);
-
-        // Randomly decide to create a new session or use existing
-        if (sessions.isEmpty() || (sessions.size() < config.getMaxSessionsPerUser() && random.nextDouble() < 0.1)) {
-            String newSessionId = String.format("sess_%s_%d",
-                    userId.replace("usr_", ""),
-                    UUID.randomUUID().getMostSignificantBits() & Long.MAX_VALUE);
-            sessions.add(newSessionId);
-
-            // Occasionally clean up old sessions to keep realistic count
-            if (sessions.size() > config.getMaxSessionsPerUser()) {
-                String oldSession = sessions.iterator().next();
-                sessions.remove(oldSession);
-            }
-
-            return newSessionId;
+    private void recordEvent(UserEvent event) {
+        TraceWriter writer = traceWriter;
+        if (writer == null) {
+            return;
+        }
+        try {
+            writer.append(System.currentTimeMillis(), event.getUserId(), event.getEventType(),
+                    event.getPageUrl(), event.getSessionId());
+        } catch (IOException e) {
+            log.error("Failed to record event, disabling trace recording: {}", e.getMessage());
+            traceWriter = null;
         }
-
-        // Return a random existing session
-        List<String> sessionList = new ArrayList<>(sessions);
-        return sessionList.get(random.nextInt(sessionList.size()));
     }
 
     /**
-     * Select a random element from a list
+     * Flush recorded events to disk so a crash loses at most one second of trace
      */
-    private <T> T selectRandom(List<T> list) {
-        return list.get(random.nextInt(list.size()));
+    @Scheduled(fixedRate = 1000)
+    public void flushTrace() {
+        TraceWriter writer = traceWriter;
+        if (writer == null) {
+            return;
+        }
+        try {
+            writer.flush();
+        } catch (IOException e) {
+            log.error("Failed to flush trace file: {}", e.getMessage());
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() throws IOException {
+        running = false;
+        workers.forEach(Thread::interrupt);
+
+        TraceWriter writer = traceWriter;
+        traceWriter = null;
+        if (writer != null) {
+            writer.close();
+            log.info("Trace recording closed: {} events recorded", writer.getRecordsWritten());
+        }
     }
 
     /**
      * Send event to the backend API
      */
-    private void sendEvent(UserEvent event) {
+    void sendEvent(UserEvent event) {
         try {
-            ResponseEntity<String> response = restTemplate.postForEntity(
+            EventJsonWriter json = jsonWriters.get().write(event);
+            HttpStatusCode status = restTemplate.execute(
                     config.getBackendUrl(),
-                    event,
-                    String.class);
+                    HttpMethod.POST,
+                    request -> {
+                        request.getHeaders().setContentType(MediaType.APPLICATION_JSON);
+                        request.getHeaders().setContentLength(json.length());
+                        json.writeTo(request.getBody());
+                    },
+                    ClientHttpResponse::getStatusCode);
 
             totalEventsSent.incrementAndGet();
 
-            if (response.getStatusCode() == HttpStatus.CREATED ||
-                    response.getStatusCode() == HttpStatus.OK) {
+            if (status == HttpStatus.CREATED || status == HttpStatus.OK) {
                 successfulEvents.incrementAndGet();
 
                 if (totalEventsSent.get() % 100 == 0) {
@@ -176,7 +253,7 @@ public class EventGeneratorService {
             } else {
                 failedEvents.incrementAndGet();
                 log.warn("Unexpected response status: {} for event: {}",
-                        response.getStatusCode(), event);
+                        status, event);
             }
 
         } catch (Exception e) {
@@ -201,8 +278,8 @@ public class EventGeneratorService {
                     failedEvents.get(),
                     (successfulEvents.get() * 100.0 / totalEventsSent.get()));
             log.info("Active Users: {} | Total Sessions: {}",
-                    userSessions.size(),
-                    userSessions.values().stream().mapToInt(Set::size).sum());
+                    synthesizer.activeUserCount(),
+                    synthesizer.totalSessionCount());
             log.info("==================================");
         }
     }
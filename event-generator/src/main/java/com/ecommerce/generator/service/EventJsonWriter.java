@@ -0,0 +1,120 @@
+package com.ecommerce.generator.service;
+
+import com.ecommerce.generator.model.UserEvent;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Reusable JSON encoder for {@link UserEvent} payloads.
+ * Writes the same wire format Jackson produces for the model into a byte
+ * buffer that is kept and reused across events, so serializing an event does
+ * not allocate. Instances are not thread-safe; keep one per sending thread.
+ */
+public final class EventJsonWriter {
+
+    private static final byte[] TIMESTAMP = ascii("{\"timestamp\":");
+    private static final byte[] USER_ID = ascii(",\"user_id\":");
+    private static final byte[] EVENT_TYPE = ascii(",\"event_type\":");
+    private static final byte[] PAGE_URL = ascii(",\"page_url\":");
+    private static final byte[] SESSION_ID = ascii(",\"session_id\":");
+    private static final byte[] NULL = ascii("null");
+    private static final byte[] HEX = ascii("0123456789abcdef");
+
+    private byte[] buffer = new byte[256];
+    private int length;
+
+    /**
+     * Encode the event, replacing the previous buffer contents
+     */
+    public EventJsonWriter write(UserEvent event) {
+        length = 0;
+        put(TIMESTAMP);
+        putString(event.getTimestamp());
+        put(USER_ID);
+        putString(event.getUserId());
+        put(EVENT_TYPE);
+        putString(event.getEventType());
+        put(PAGE_URL);
+        putString(event.getPageUrl());
+        put(SESSION_ID);
+        putString(event.getSessionId());
+        putByte('}');
+        return this;
+    }
+
+    /**
+     * Copy the encoded payload to a request body
+     */
+    public void writeTo(OutputStream out) throws IOException {
+        out.write(buffer, 0, length);
+    }
+
+    public int length() {
+        return length;
+    }
+
+    private void putString(String value) {
+        if (value == null) {
+            put(NULL);
+            return;
+        }
+        ensure(value.length() * 6 + 2);
+        buffer[length++] = '"';
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c == '"' || c == '\\') {
+                buffer[length++] = '\\';
+                buffer[length++] = (byte) c;
+            } else if (c < 0x20) {
+                buffer[length++] = '\\';
+                buffer[length++] = 'u';
+                buffer[length++] = '0';
+                buffer[length++] = '0';
+                buffer[length++] = HEX[c >> 4];
+                buffer[length++] = HEX[c & 0xF];
+            } else if (c < 0x80) {
+                buffer[length++] = (byte) c;
+            } else if (c < 0x800) {
+                buffer[length++] = (byte) (0xC0 | (c >> 6));
+                buffer[length++] = (byte) (0x80 | (c & 0x3F));
+            } else if (Character.isHighSurrogate(c) && i + 1 < value.length()
+                    && Character.isLowSurrogate(value.charAt(i + 1))) {
+                int codePoint = Character.toCodePoint(c, value.charAt(++i));
+                buffer[length++] = (byte) (0xF0 | (codePoint >> 18));
+                buffer[length++] = (byte) (0x80 | ((codePoint >> 12) & 0x3F));
+                buffer[length++] = (byte) (0x80 | ((codePoint >> 6) & 0x3F));
+                buffer[length++] = (byte) (0x80 | (codePoint & 0x3F));
+            } else {
+                buffer[length++] = (byte) (0xE0 | (c >> 12));
+                buffer[length++] = (byte) (0x80 | ((c >> 6) & 0x3F));
+                buffer[length++] = (byte) (0x80 | (c & 0x3F));
+            }
+        }
+        buffer[length++] = '"';
+    }
+
+    private void put(byte[] bytes) {
+        ensure(bytes.length);
+        System.arraycopy(bytes, 0, buffer, length, bytes.length);
+        length += bytes.length;
+    }
+
+    private void putByte(char c) {
+        ensure(1);
+        buffer[length++] = (byte) c;
+    }
+
+    private void ensure(int extra) {
+        if (length + extra > buffer.length) {
+            byte[] grown = new byte[Math.max(buffer.length * 2, length + extra)];
+            System.arraycopy(buffer, 0, grown, 0, length);
+            buffer = grown;
+        }
+    }
+
+    private static byte[] ascii(String value) {
+        return value.getBytes(StandardCharsets.US_ASCII);
+    }
+}
@@ -0,0 +1,181 @@
+package com.ecommerce.generator.service;
+
+import com.ecommerce.generator.config.GeneratorConfig;
+import com.ecommerce.generator.model.UserEvent;
+
+import java.time.Instant;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Allocation-lean source of random user events.
+ * User IDs are built once up front, each user's sessions live in a fixed
+ * slot array and randomness comes from {@link ThreadLocalRandom}, so any
+ * number of workers can synthesize events without sharing a contended
+ * generator. In steady state an event costs one {@link UserEvent} object;
+ * strings are only created when a new session is opened or the clock ticks
+ * over to the next millisecond.
+ */
+public class EventSynthesizer {
+
+    private static final String USER_PREFIX = "usr_";
+    private static final int MIN_USER_CAPACITY = 1000;
+    private static final double NEW_SESSION_PROBABILITY = 0.1;
+
+    private final String[] userIds;
+    private final UserSessions[] sessions;
+    private final String[] eventTypes;
+    private final String[] pageUrls;
+    private final int maxSessionsPerUser;
+
+    private volatile int userPoolSize;
+    private volatile CachedTimestamp cachedTimestamp = new CachedTimestamp(Long.MIN_VALUE, "");
+
+    public EventSynthesizer(GeneratorConfig config) {
+        int capacity = Math.max(config.getUserPoolSize(), MIN_USER_CAPACITY);
+        this.userIds = new String[capacity];
+        this.sessions = new UserSessions[capacity];
+        this.maxSessionsPerUser = Math.max(1, config.getMaxSessionsPerUser());
+        for (int i = 0; i < capacity; i++) {
+            userIds[i] = USER_PREFIX + (i + 1);
+            sessions[i] = new UserSessions(maxSessionsPerUser);
+        }
+        this.eventTypes = config.getEventTypes().toArray(new String[0]);
+        this.pageUrls = config.getPageUrls().toArray(new String[0]);
+        this.userPoolSize = Math.max(1, Math.min(config.getUserPoolSize(), capacity));
+    }
+
+    /**
+     * Synthesize the next random event
+     */
+    public UserEvent next() {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        int user = randomUserIndex();
+        return UserEvent.builder()
+                .timestamp(timestamp())
+                .userId(userIds[user])
+                .eventType(eventTypes[random.nextInt(eventTypes.length)])
+                .pageUrl(pageUrls[random.nextInt(pageUrls.length)])
+                .sessionId(sessionFor(user))
+                .build();
+    }
+
+    /**
+     * Pick a user index from the currently active part of the pool
+     */
+    public int randomUserIndex() {
+        return ThreadLocalRandom.current().nextInt(userPoolSize);
+    }
+
+    public String userId(int userIndex) {
+        return userIds[userIndex];
+    }
+
+    /**
+     * Resolve a {@code usr_N} identifier back to its pool index without allocating
+     */
+    public int userIndexOf(String userId) {
+        int index = 0;
+        boolean prefixed = userId.startsWith(USER_PREFIX) && userId.length() > USER_PREFIX.length();
+        for (int i = USER_PREFIX.length(); prefixed && i < userId.length(); i++) {
+            char c = userId.charAt(i);
+            if (c < '0' || c > '9' || index > userIds.length) {
+                prefixed = false;
+            } else {
+                index = index * 10 + (c - '0');
+            }
+        }
+        if (prefixed && index >= 1 && index <= userIds.length) {
+            return index - 1;
+        }
+        return Math.floorMod(userId.hashCode(), userIds.length);
+    }
+
+    /**
+     * Return an existing session for the user or open a new one.
+     * Users hold up to {@code maxSessionsPerUser} concurrent sessions.
+     */
+    public String sessionFor(int userIndex) {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        UserSessions userSessions = sessions[userIndex];
+        synchronized (userSessions) {
+            if (userSessions.count == 0
+                    || (userSessions.count < maxSessionsPerUser && random.nextDouble() < NEW_SESSION_PROBABILITY)) {
+                String sessionId = "sess_" + (userIndex + 1) + "_" + (random.nextLong() & Long.MAX_VALUE);
+                userSessions.slots[userSessions.count++] = sessionId;
+                return sessionId;
+            }
+            return userSessions.slots[random.nextInt(userSessions.count)];
+        }
+    }
+
+    /**
+     * Resize the active part of the user pool (clamped to the pre-built capacity)
+     */
+    public void setUserPoolSize(int size) {
+        this.userPoolSize = Math.max(1, Math.min(size, userIds.length));
+    }
+
+    public int getUserPoolSize() {
+        return userPoolSize;
+    }
+
+    /**
+     * ISO 8601 timestamp for the current millisecond, formatted at most once per millisecond
+     */
+    public String timestamp() {
+        long now = System.currentTimeMillis();
+        CachedTimestamp cached = cachedTimestamp;
+        if (cached.millis != now) {
+            cached = new CachedTimestamp(now, Instant.ofEpochMilli(now).toString());
+            cachedTimestamp = cached;
+        }
+        return cached.text;
+    }
+
+    /**
+     * Number of users that have opened at least one session
+     */
+    public int activeUserCount() {
+        int active = 0;
+        for (UserSessions userSessions : sessions) {
+            synchronized (userSessions) {
+                if (userSessions.count > 0) {
+                    active++;
+                }
+            }
+        }
+        return active;
+    }
+
+    /**
+     * Number of sessions currently held across all users
+     */
+    public int totalSessionCount() {
+        int total = 0;
+        for (UserSessions userSessions : sessions) {
+            synchronized (userSessions) {
+                total += userSessions.count;
+            }
+        }
+        return total;
+    }
+
+    private static final class UserSessions {
+        private final String[] slots;
+        private int count;
+
+        private UserSessions(int capacity) {
+            this.slots = new String[capacity];
+        }
+    }
+
+    private static final class CachedTimestamp {
+        private final long millis;
+        private final String text;
+
+        private CachedTimestamp(long millis, String text) {
+            this.millis = millis;
+            this.text = text;
+        }
+    }
+}
@@ -0,0 +1,159 @@
+package com.ecommerce.generator.service;
+
+import com.ecommerce.generator.config.GeneratorConfig;
+import com.ecommerce.generator.model.UserEvent;
+import com.ecommerce.generator.trace.TraceImporter;
+import com.ecommerce.generator.trace.TraceReader;
+import com.ecommerce.generator.trace.TraceRecord;
+import com.ecommerce.generator.trace.TraceWriter;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.time.Instant;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Replays a recorded event trace against the backend.
+ * Events keep their original user and session IDs and are paced by their
+ * original inter-arrival times, scaled by the configured replay speed.
+ */
+@Service
+@Slf4j
+@RequiredArgsConstructor
+public class TraceReplayService {
+
+    private final GeneratorConfig config;
+    private final EventGeneratorService eventGeneratorService;
+
+    private final AtomicLong replayedEvents = new AtomicLong(0);
+    private volatile boolean running;
+    private Thread replayThread;
+    private ThreadPoolExecutor senders;
+
+    /**
+     * Start the replay thread once the application is ready
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void onApplicationReady() {
+        if (!config.isEnabled() || !config.isReplayMode()) {
+            return;
+        }
+        if (config.getTraceReplayPath() == null || config.getTraceReplayPath().isBlank()) {
+            log.error("Replay mode requires generator.trace-replay-path");
+            return;
+        }
+
+        int threads = Math.max(1, config.getReplayThreads());
+        senders = new ThreadPoolExecutor(threads, threads, 0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(threads * 256), new ThreadPoolExecutor.CallerRunsPolicy());
+
+        running = true;
+        replayThread = new Thread(this::run, "trace-replay");
+        replayThread.setDaemon(true);
+        replayThread.start();
+    }
+
+    private void run() {
+        try {
+            Thread.sleep(config.getStartupDelayMs());
+            Path trace = Path.of(config.getTraceReplayPath());
+            importCapture(trace);
+
+            log.info("Replaying trace {} at {}", trace,
+                    config.getReplaySpeed() > 0 ? config.getReplaySpeed() + "x" : "maximum speed");
+            do {
+                replayOnce(trace);
+            } while (running && config.isReplayLoop());
+            log.info("Trace replay finished: {} events replayed", replayedEvents.get());
+
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (Exception e) {
+            log.error("Trace replay failed: {}", e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Convert a JSON-lines capture into the replay trace when one is configured.
+     * An existing trace is kept unless {@code generator.trace-import-overwrite}
+     * is set, and is only replaced once the import has completed.
+     */
+    private void importCapture(Path trace) throws Exception {
+        if (config.getTraceImportPath() == null || config.getTraceImportPath().isBlank()) {
+            return;
+        }
+        Path capture = Path.of(config.getTraceImportPath());
+        if (capture.toAbsolutePath().normalize().equals(trace.toAbsolutePath().normalize())) {
+            throw new IllegalStateException("Trace import path and replay path must differ: " + trace);
+        }
+        if (Files.exists(trace) && !config.isTraceImportOverwrite()) {
+            log.info("Trace {} already exists; not importing {} (set generator.trace-import-overwrite to replace it)",
+                    trace, capture);
+            return;
+        }
+
+        Path imported = trace.resolveSibling(trace.getFileName() + ".importing");
+        Files.deleteIfExists(imported);
+        long events;
+        try (TraceWriter writer = TraceWriter.open(imported)) {
+            events = TraceImporter.importJsonLines(capture, writer);
+        } catch (Exception e) {
+            Files.deleteIfExists(imported);
+            throw e;
+        }
+        Files.move(imported, trace, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        log.info("Imported {} captured events into {}", events, trace);
+    }
+
+    private void replayOnce(Path trace) throws Exception {
+        double speed = config.getReplaySpeed();
+        long startNanos = System.nanoTime();
+        long firstMillis = Long.MIN_VALUE;
+
+        try (TraceReader reader = TraceReader.open(trace)) {
+            while (running && reader.hasNext()) {
+                TraceRecord record = reader.next();
+                if (firstMillis == Long.MIN_VALUE) {
+                    firstMillis = record.getEpochMillis();
+                }
+
+                if (speed > 0) {
+                    long dueNanos = startNanos + (long) ((record.getEpochMillis() - firstMillis) * 1_000_000L / speed);
+                    long waitNanos = dueNanos - System.nanoTime();
+                    if (waitNanos > 0) {
+                        LockSupport.parkNanos(waitNanos);
+                    }
+                }
+
+                UserEvent event = record.toEvent(Instant.now());
+                senders.execute(() -> eventGeneratorService.sendEvent(event));
+
+                if (replayedEvents.incrementAndGet() % 10000 == 0) {
+                    log.info("Replayed {} events", replayedEvents.get());
+                }
+            }
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        running = false;
+        if (replayThread != null) {
+            replayThread.interrupt();
+        }
+        if (senders != null) {
+            senders.shutdown();
+        }
+    }
+}
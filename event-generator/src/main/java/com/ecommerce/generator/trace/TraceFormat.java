@@ -0,0 +1,60 @@
+package com.ecommerce.generator.trace;
+
+import java.nio.ByteBuffer;
+
+/**
+ * On-disk layout of recorded event traces.
+ *
+ * A trace file is a header followed by independently decodable blocks:
+ * <pre>
+ * header : int magic | byte version
+ * block  : int compressedLength | int rawLength | int recordCount | long baseMillis | deflated payload
+ * record : zigzag varlong deltaMillis | userId | eventType | pageUrl | sessionId
+ * string : varint ref (0 = literal follows: varint length + UTF-8 bytes, else dictionary index + 1)
+ * </pre>
+ * Timestamps are delta-encoded against the previous record and strings are
+ * dictionary-coded per block, so a block never depends on another one and a
+ * torn trailing block can simply be ignored.
+ */
+public final class TraceFormat {
+
+    public static final int MAGIC = 0x45565452; // "EVTR"
+    public static final byte VERSION = 1;
+    public static final int HEADER_SIZE = Integer.BYTES + 1;
+    public static final int BLOCK_HEADER_SIZE = 3 * Integer.BYTES + Long.BYTES;
+
+    private TraceFormat() {
+    }
+
+    static void putVarLong(ByteBuffer buffer, long value) {
+        while ((value & ~0x7FL) != 0) {
+            buffer.put((byte) ((value & 0x7F) | 0x80));
+            value >>>= 7;
+        }
+        buffer.put((byte) value);
+    }
+
+    static long getVarLong(ByteBuffer buffer) {
+        long result = 0;
+        int shift = 0;
+        while (true) {
+            byte b = buffer.get();
+            result |= (long) (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                return result;
+            }
+            shift += 7;
+            if (shift > 63) {
+                throw new IllegalStateException("Malformed varint in trace block");
+            }
+        }
+    }
+
+    static long zigZag(long value) {
+        return (value << 1) ^ (value >> 63);
+    }
+
+    static long unZigZag(long value) {
+        return (value >>> 1) ^ -(value & 1);
+    }
+}
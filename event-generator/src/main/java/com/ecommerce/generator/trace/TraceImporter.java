@@ -0,0 +1,67 @@
+package com.ecommerce.generator.trace;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.MappingIterator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.time.Instant;
+
+/**
+ * Converts captured JSON-lines event streams into trace files.
+ * Accepts both the ingestion payload shape ({@code user_id}, {@code page_url}, ...)
+ * and the stored document shape produced by
+ * {@code mongoexport --collection events --sort '{createdAt: 1}'}.
+ */
+public final class TraceImporter {
+
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+
+    private TraceImporter() {
+    }
+
+    /**
+     * Append every event in the JSON-lines file to the trace
+     *
+     * @return number of events imported
+     */
+    public static long importJsonLines(Path source, TraceWriter writer) throws IOException {
+        long imported = 0;
+        try (MappingIterator<JsonNode> lines = MAPPER.readerFor(JsonNode.class).readValues(source.toFile())) {
+            while (lines.hasNext()) {
+                JsonNode node = lines.next();
+                Instant time = eventTime(node);
+                if (time == null) {
+                    continue;
+                }
+                writer.append(time.toEpochMilli(),
+                        text(node, "user_id", "userId"),
+                        text(node, "event_type", "eventType"),
+                        text(node, "page_url", "pageUrl"),
+                        text(node, "session_id", "sessionId"));
+                imported++;
+            }
+        }
+        writer.flush();
+        return imported;
+    }
+
+    private static Instant eventTime(JsonNode node) {
+        String timestamp = text(node, "timestamp", "timestamp");
+        if (timestamp == null) {
+            JsonNode createdAt = node.path("createdAt");
+            timestamp = createdAt.has("$date") ? createdAt.get("$date").asText() : createdAt.asText(null);
+        }
+        try {
+            return timestamp == null ? null : Instant.parse(timestamp);
+        } catch (Exception e) {
+            return null;
+        }
+    }
+
+    private static String text(JsonNode node, String snakeCase, String camelCase) {
+        JsonNode value = node.has(snakeCase) ? node.get(snakeCase) : node.get(camelCase);
+        return value == null || value.isNull() ? null : value.asText();
+    }
+}
@@ -0,0 +1,169 @@
+package com.ecommerce.generator.trace;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.zip.DataFormatException;
+import java.util.zip.Inflater;
+
+/**
+ * Streaming reader for event trace files.
+ * The file is memory-mapped in bounded windows and inflated one block at a
+ * time, so heap use is independent of the trace size. A truncated trailing
+ * block ends the iteration instead of failing it.
+ */
+public class TraceReader implements Iterator<TraceRecord>, Closeable {
+
+    private static final long MAX_WINDOW_BYTES = 256L * 1024 * 1024;
+
+    private final FileChannel channel;
+    private final long fileSize;
+    private final Inflater inflater = new Inflater();
+    private final List<String> dictionary = new ArrayList<>();
+
+    private MappedByteBuffer window;
+    private long windowStart;
+    private long nextBlock = TraceFormat.HEADER_SIZE;
+
+    private ByteBuffer block = ByteBuffer.allocate(0);
+    private int remainingInBlock;
+    private long lastMillis;
+
+    private TraceReader(FileChannel channel) throws IOException {
+        this.channel = channel;
+        this.fileSize = channel.size();
+    }
+
+    /**
+     * Open a trace file for sequential reading
+     */
+    public static TraceReader open(Path path) throws IOException {
+        FileChannel channel = FileChannel.open(path, StandardOpenOption.READ);
+        try {
+            TraceReader reader = new TraceReader(channel);
+            reader.readHeader();
+            return reader;
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    @Override
+    public boolean hasNext() {
+        try {
+            return remainingInBlock > 0 || loadNextBlock();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    @Override
+    public TraceRecord next() {
+        if (!hasNext()) {
+            throw new NoSuchElementException();
+        }
+        long millis = lastMillis + TraceFormat.unZigZag(TraceFormat.getVarLong(block));
+        String userId = readString();
+        String eventType = readString();
+        String pageUrl = readString();
+        String sessionId = readString();
+
+        lastMillis = millis;
+        remainingInBlock--;
+        return new TraceRecord(millis, userId, eventType, pageUrl, sessionId);
+    }
+
+    @Override
+    public void close() throws IOException {
+        inflater.end();
+        window = null;
+        channel.close();
+    }
+
+    private void readHeader() throws IOException {
+        if (fileSize < TraceFormat.HEADER_SIZE) {
+            throw new IOException("Not a trace file (too short)");
+        }
+        ByteBuffer header = map(0, TraceFormat.HEADER_SIZE);
+        if (header.getInt() != TraceFormat.MAGIC || header.get() != TraceFormat.VERSION) {
+            throw new IOException("Not a trace file (bad header)");
+        }
+    }
+
+    private boolean loadNextBlock() throws IOException {
+        if (nextBlock + TraceFormat.BLOCK_HEADER_SIZE > fileSize) {
+            return false;
+        }
+        ByteBuffer header = map(nextBlock, TraceFormat.BLOCK_HEADER_SIZE);
+        int compressedLength = header.getInt();
+        int rawLength = header.getInt();
+        int recordCount = header.getInt();
+        long baseMillis = header.getLong();
+
+        long blockEnd = nextBlock + TraceFormat.BLOCK_HEADER_SIZE + compressedLength;
+        if (compressedLength <= 0 || blockEnd > fileSize) {
+            return false;
+        }
+
+        ByteBuffer payload = map(nextBlock + TraceFormat.BLOCK_HEADER_SIZE, compressedLength);
+        if (block.capacity() < rawLength) {
+            block = ByteBuffer.allocate(rawLength);
+        }
+        block.clear().limit(rawLength);
+
+        inflater.reset();
+        inflater.setInput(payload);
+        try {
+            while (block.hasRemaining() && !inflater.finished()) {
+                if (inflater.inflate(block) == 0 && inflater.needsInput()) {
+                    break;
+                }
+            }
+        } catch (DataFormatException e) {
+            throw new IOException("Corrupt trace block at offset " + nextBlock, e);
+        }
+        block.flip();
+
+        dictionary.clear();
+        lastMillis = baseMillis;
+        remainingInBlock = recordCount;
+        nextBlock = blockEnd;
+        return recordCount > 0 || loadNextBlock();
+    }
+
+    private String readString() {
+        int ref = (int) TraceFormat.getVarLong(block);
+        if (ref > 0) {
+            return dictionary.get(ref - 1);
+        }
+        int length = (int) TraceFormat.getVarLong(block);
+        String value = new String(block.array(), block.position(), length, StandardCharsets.UTF_8);
+        block.position(block.position() + length);
+        dictionary.add(value);
+        return value;
+    }
+
+    /**
+     * Return a view over [position, position + length), remapping the window
+     * when the range falls outside the currently mapped region.
+     */
+    private ByteBuffer map(long position, int length) throws IOException {
+        if (window == null || position < windowStart || position + length > windowStart + window.capacity()) {
+            long size = Math.max(length, Math.min(MAX_WINDOW_BYTES, fileSize - position));
+            window = channel.map(FileChannel.MapMode.READ_ONLY, position, size);
+            windowStart = position;
+        }
+        return window.slice((int) (position - windowStart), length);
+    }
+}
@@ -0,0 +1,32 @@
+package com.ecommerce.generator.trace;
+
+import com.ecommerce.generator.model.UserEvent;
+import lombok.Value;
+
+import java.time.Instant;
+
+/**
+ * A single event read back from a trace file, with its original event time.
+ */
+@Value
+public class TraceRecord {
+
+    long epochMillis;
+    String userId;
+    String eventType;
+    String pageUrl;
+    String sessionId;
+
+    /**
+     * Convert to an event stamped with the given timestamp
+     */
+    public UserEvent toEvent(Instant timestamp) {
+        return UserEvent.builder()
+                .timestamp(timestamp.toString())
+                .userId(userId)
+                .eventType(eventType)
+                .pageUrl(pageUrl)
+                .sessionId(sessionId)
+                .build();
+    }
+}
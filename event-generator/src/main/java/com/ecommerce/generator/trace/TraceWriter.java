@@ -0,0 +1,221 @@
+package com.ecommerce.generator.trace;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.zip.Deflater;
+
+/**
+ * Append-only writer for event trace files.
+ * Records are buffered into blocks which are deflated and appended as a unit.
+ * Opening an existing file truncates any torn trailing block left behind by a
+ * crash, then continues appending after the last complete block.
+ */
+public class TraceWriter implements Closeable {
+
+    private static final int MAX_BLOCK_RECORDS = 4096;
+    private static final int MAX_BLOCK_BYTES = 256 * 1024;
+
+    private final FileChannel channel;
+    private final Deflater deflater = new Deflater(Deflater.DEFAULT_COMPRESSION);
+    private final Map<String, Integer> dictionary = new HashMap<>();
+    private final ByteBuffer blockHeader = ByteBuffer.allocate(TraceFormat.BLOCK_HEADER_SIZE);
+
+    private ByteBuffer raw = ByteBuffer.allocate(MAX_BLOCK_BYTES + 4096);
+    private byte[] compressed = new byte[MAX_BLOCK_BYTES];
+    private int recordCount;
+    private long baseMillis;
+    private long lastMillis;
+    private long recordsWritten;
+
+    private TraceWriter(FileChannel channel) {
+        this.channel = channel;
+    }
+
+    /**
+     * Open a trace file for appending, creating it if necessary
+     */
+    public static TraceWriter open(Path path) throws IOException {
+        FileChannel channel = FileChannel.open(path,
+                StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        try {
+            long end = channel.size() == 0 ? writeHeader(channel) : validEnd(channel);
+            channel.truncate(end);
+            channel.position(end);
+            return new TraceWriter(channel);
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    /**
+     * Append one event to the current block
+     */
+    public synchronized void append(long epochMillis, String userId, String eventType,
+            String pageUrl, String sessionId) throws IOException {
+        if (recordCount == 0) {
+            baseMillis = epochMillis;
+            lastMillis = epochMillis;
+        }
+
+        ensureCapacity(10 + 4 * 6
+                + maxEncodedLength(userId) + maxEncodedLength(eventType)
+                + maxEncodedLength(pageUrl) + maxEncodedLength(sessionId));
+
+        TraceFormat.putVarLong(raw, TraceFormat.zigZag(epochMillis - lastMillis));
+        putString(userId);
+        putString(eventType);
+        putString(pageUrl);
+        putString(sessionId);
+
+        lastMillis = epochMillis;
+        recordCount++;
+        recordsWritten++;
+
+        if (recordCount >= MAX_BLOCK_RECORDS || raw.position() >= MAX_BLOCK_BYTES) {
+            writeBlock();
+        }
+    }
+
+    /**
+     * Write out the pending block and force it to disk
+     */
+    public synchronized void flush() throws IOException {
+        writeBlock();
+        channel.force(false);
+    }
+
+    /**
+     * Total records appended through this writer
+     */
+    public synchronized long getRecordsWritten() {
+        return recordsWritten;
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        try {
+            flush();
+        } finally {
+            deflater.end();
+            channel.close();
+        }
+    }
+
+    private void putString(String value) {
+        if (value == null) {
+            value = "";
+        }
+        Integer index = dictionary.get(value);
+        if (index != null) {
+            TraceFormat.putVarLong(raw, index + 1L);
+            return;
+        }
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        raw.put((byte) 0);
+        TraceFormat.putVarLong(raw, bytes.length);
+        raw.put(bytes);
+        dictionary.put(value, dictionary.size());
+    }
+
+    private void writeBlock() throws IOException {
+        if (recordCount == 0) {
+            return;
+        }
+
+        deflater.reset();
+        deflater.setInput(raw.array(), 0, raw.position());
+        deflater.finish();
+        int compressedLength = 0;
+        while (!deflater.finished()) {
+            if (compressedLength == compressed.length) {
+                byte[] grown = new byte[compressed.length * 2];
+                System.arraycopy(compressed, 0, grown, 0, compressedLength);
+                compressed = grown;
+            }
+            compressedLength += deflater.deflate(compressed, compressedLength, compressed.length - compressedLength);
+        }
+
+        blockHeader.clear();
+        blockHeader.putInt(compressedLength)
+                .putInt(raw.position())
+                .putInt(recordCount)
+                .putLong(baseMillis)
+                .flip();
+        ByteBuffer payload = ByteBuffer.wrap(compressed, 0, compressedLength);
+        while (blockHeader.hasRemaining() || payload.hasRemaining()) {
+            channel.write(new ByteBuffer[] { blockHeader, payload });
+        }
+
+        raw.clear();
+        dictionary.clear();
+        recordCount = 0;
+    }
+
+    private void ensureCapacity(int bytes) throws IOException {
+        if (raw.remaining() >= bytes) {
+            return;
+        }
+        writeBlock();
+        if (raw.capacity() < bytes) {
+            raw = ByteBuffer.allocate(bytes);
+        }
+    }
+
+    private static int maxEncodedLength(String value) {
+        return value == null ? 0 : value.length() * 3;
+    }
+
+    private static long writeHeader(FileChannel channel) throws IOException {
+        ByteBuffer header = ByteBuffer.allocate(TraceFormat.HEADER_SIZE);
+        header.putInt(TraceFormat.MAGIC).put(TraceFormat.VERSION).flip();
+        while (header.hasRemaining()) {
+            channel.write(header, header.position());
+        }
+        return TraceFormat.HEADER_SIZE;
+    }
+
+    /**
+     * Walk the block headers of an existing file and return the offset just
+     * past the last block that was written completely.
+     */
+    private static long validEnd(FileChannel channel) throws IOException {
+        long size = channel.size();
+        ByteBuffer header = ByteBuffer.allocate(TraceFormat.BLOCK_HEADER_SIZE);
+        readFully(channel, header.limit(TraceFormat.HEADER_SIZE), 0);
+        header.flip();
+        if (header.remaining() < TraceFormat.HEADER_SIZE
+                || header.getInt() != TraceFormat.MAGIC || header.get() != TraceFormat.VERSION) {
+            throw new IOException("Not a trace file (bad header)");
+        }
+
+        long position = TraceFormat.HEADER_SIZE;
+        while (position + TraceFormat.BLOCK_HEADER_SIZE <= size) {
+            header.clear();
+            readFully(channel, header, position);
+            header.flip();
+            int compressedLength = header.getInt();
+            if (compressedLength <= 0 || position + TraceFormat.BLOCK_HEADER_SIZE + compressedLength > size) {
+                break;
+            }
+            position += TraceFormat.BLOCK_HEADER_SIZE + compressedLength;
+        }
+        return position;
+    }
+
+    private static void readFully(FileChannel channel, ByteBuffer buffer, long position) throws IOException {
+        while (buffer.hasRemaining()) {
+            int read = channel.read(buffer, position + buffer.position());
+            if (read < 0) {
+                return;
+            }
+        }
+    }
+}
@@ -0,0 +1,82 @@
+package com.ecommerce.generator.benchmark;
+
+import com.ecommerce.generator.config.GeneratorConfig;
+import com.ecommerce.generator.model.UserEvent;
+import com.ecommerce.generator.service.EventJsonWriter;
+import com.ecommerce.generator.service.EventSynthesizer;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Events/sec per core for event synthesis plus payload serialization.
+ * {@code legacy} reproduces the previous hot loop (String.format, UUID,
+ * ArrayList copy, shared Random, Jackson) for comparison.
+ *
+ * Run with: mvn -Pbenchmark test-compile exec:exec -Dbenchmark.includes=EventSynthesisBenchmark
+ * and add {@code -prof gc} after the include pattern to see allocation per event.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@Threads(1)
+@State(Scope.Benchmark)
+public class EventSynthesisBenchmark {
+
+    private final GeneratorConfig config = new GeneratorConfig();
+    private EventSynthesizer synthesizer;
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final Random sharedRandom = new Random();
+    private final Map<String, Set<String>> legacySessions = new ConcurrentHashMap<>();
+
+    @State(Scope.Thread)
+    public static class WriterState {
+        final EventJsonWriter writer = new EventJsonWriter();
+    }
+
+    @Setup
+    public void setUp() {
+        synthesizer = new EventSynthesizer(config);
+        synthesizer.setUserPoolSize(1000);
+    }
+
+    @Benchmark
+    public int synthesizeAndSerialize(WriterState state) {
+        return state.writer.write(synthesizer.next()).length();
+    }
+
+    @Benchmark
+    public UserEvent synthesizeOnly() {
+        return synthesizer.next();
+    }
+
+    @Benchmark
+    public int legacy() throws JsonProcessingException {
+        String userId = String.format("usr_%d", sharedRandom.nextInt(1000) + 1);
+        legacySessions.putIfAbsent(userId, ConcurrentHashMap.newKeySet());
+        Set<String> sessions = legacySessions.get(userId);
+
+        String sessionId;
+        if (sessions.isEmpty() || (sessions.size() < config.getMaxSessionsPerUser() && sharedRandom.nextDouble() < 0.1)) {
+            sessionId = String.format("sess_%s_%d", userId.replace("usr_", ""),
+                    UUID.randomUUID().getMostSignificantBits() & Long.MAX_VALUE);
+            sessions.add(sessionId);
+        } else {
+            List<String> sessionList = new ArrayList<>(sessions);
+            sessionId = sessionList.get(sharedRandom.nextInt(sessionList.size()));
+        }
+
+        UserEvent event = UserEvent.create(userId,
+                config.getEventTypes().get(sharedRandom.nextInt(config.getEventTypes().size())),
+                config.getPageUrls().get(sharedRandom.nextInt(config.getPageUrls().size())),
+                sessionId);
+        return objectMapper.writeValueAsBytes(event).length;
+    }
+}
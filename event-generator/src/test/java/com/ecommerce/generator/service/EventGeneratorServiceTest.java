@@ -10,8 +10,6 @@ import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
 import org.springframework.test.util.ReflectionTestUtils;
 
-import java.util.List;
-
 import static org.junit.jupiter.api.Assertions.*;
 
 /**
@@ -55,63 +53,6 @@ class EventGeneratorServiceTest {
         assertTrue(event.getSessionId().startsWith("sess_"));
     }
 
-    @Test
-    void testGenerateUserId_shouldBeWithinUserPool() {
-        for (int i = 0; i < 100; i++) {
-            String userId = ReflectionTestUtils.invokeMethod(service, "generateUserId");
-            
-            assertNotNull(userId);
-            assertTrue(userId.startsWith("usr_"));
-            
-            // Extract user number and verify it's within pool
-            String numberPart = userId.replace("usr_", "");
-            int userNumber = Integer.parseInt(numberPart);
-            
-            assertTrue(userNumber >= 1 && userNumber <= config.getUserPoolSize(),
-                    "User number should be between 1 and " + config.getUserPoolSize());
-        }
-    }
-
-    @Test
-    void testGetOrCreateSessionId_shouldCreateSessionForNewUser() {
-        String userId = "usr_1";
-        
-        String sessionId = ReflectionTestUtils.invokeMethod(service, "getOrCreateSessionId", userId);
-        
-        assertNotNull(sessionId);
-        assertTrue(sessionId.startsWith("sess_"));
-    }
-
-    @Test
-    void testGetOrCreateSessionId_shouldReuseExistingSession() {
-        String userId = "usr_1";
-        
-        // Create first session
-        String sessionId1 = ReflectionTestUtils.invokeMethod(service, "getOrCreateSessionId", userId);
-        
-        // Subsequent calls should sometimes return the same session
-        boolean foundSameSession = false;
-        for (int i = 0; i < 50; i++) {
-            String sessionId = ReflectionTestUtils.invokeMethod(service, "getOrCreateSessionId", userId);
-            if (sessionId.equals(sessionId1)) {
-                foundSameSession = true;
-                break;
-            }
-        }
-        
-        assertTrue(foundSameSession, "Should reuse existing sessions");
-    }
-
-    @Test
-    void testSelectRandom_shouldReturnElementFromList() {
-        List<String> testList = List.of("A", "B", "C", "D");
-        
-        for (int i = 0; i < 20; i++) {
-            String selected = ReflectionTestUtils.invokeMethod(service, "selectRandom", testList);
-            assertTrue(testList.contains(selected));
-        }
-    }
-
     @Test
     void testUserEventCreate_shouldHaveCorrectFormat() {
         UserEvent event = UserEvent.create("usr_123", "page_view", "/home", "sess_456");
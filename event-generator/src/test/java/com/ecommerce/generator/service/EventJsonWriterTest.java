@@ -0,0 +1,58 @@
+package com.ecommerce.generator.service;
+
+import com.ecommerce.generator.model.UserEvent;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit tests for EventJsonWriter
+ */
+class EventJsonWriterTest {
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    @Test
+    void testWrite_shouldMatchJacksonOutput() throws IOException {
+        UserEvent event = UserEvent.create("usr_123", "page_view", "/home", "sess_456");
+
+        assertEquals(objectMapper.writeValueAsString(event), encode(new EventJsonWriter(), event));
+    }
+
+    @Test
+    void testWrite_shouldEscapeAndEncodeNonAsciiValues() throws IOException {
+        UserEvent event = UserEvent.builder()
+                .timestamp("2024-03-15T14:30:00Z")
+                .userId("usr_\"quoted\"\\")
+                .eventType("search\n")
+                .pageUrl("/products/café/€/😀")
+                .sessionId(null)
+                .build();
+
+        String json = encode(new EventJsonWriter(), event);
+
+        assertEquals(event, objectMapper.readValue(json, UserEvent.class));
+    }
+
+    @Test
+    void testWrite_shouldReuseBufferAcrossEvents() throws IOException {
+        EventJsonWriter writer = new EventJsonWriter();
+        UserEvent longEvent = UserEvent.create("usr_1", "click", "/" + "x".repeat(1000), "sess_1");
+        UserEvent shortEvent = UserEvent.create("usr_2", "click", "/cart", "sess_2");
+
+        encode(writer, longEvent);
+
+        assertEquals(objectMapper.writeValueAsString(shortEvent), encode(writer, shortEvent));
+    }
+
+    private static String encode(EventJsonWriter writer, UserEvent event) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        writer.write(event).writeTo(out);
+        return out.toString(StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,73 @@
+package com.ecommerce.generator.service;
+
+import com.ecommerce.generator.config.GeneratorConfig;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit tests for EventSynthesizer
+ */
+class EventSynthesizerTest {
+
+    private GeneratorConfig config;
+    private EventSynthesizer synthesizer;
+
+    @BeforeEach
+    void setUp() {
+        config = new GeneratorConfig();
+        config.setUserPoolSize(10);
+        config.setMaxSessionsPerUser(3);
+
+        synthesizer = new EventSynthesizer(config);
+    }
+
+    @Test
+    void testRandomUserIndex_shouldBeWithinUserPool() {
+        for (int i = 0; i < 100; i++) {
+            String userId = synthesizer.userId(synthesizer.randomUserIndex());
+
+            assertNotNull(userId);
+            assertTrue(userId.startsWith("usr_"));
+
+            // Extract user number and verify it's within pool
+            int userNumber = Integer.parseInt(userId.replace("usr_", ""));
+            assertTrue(userNumber >= 1 && userNumber <= config.getUserPoolSize(),
+                    "User number should be between 1 and " + config.getUserPoolSize());
+        }
+    }
+
+    @Test
+    void testUserIndexOf_shouldResolvePoolUserIds() {
+        assertEquals(0, synthesizer.userIndexOf("usr_1"));
+        assertEquals("usr_7", synthesizer.userId(synthesizer.userIndexOf("usr_7")));
+    }
+
+    @Test
+    void testSessionFor_shouldCreateSessionForNewUser() {
+        String sessionId = synthesizer.sessionFor(synthesizer.userIndexOf("usr_1"));
+
+        assertNotNull(sessionId);
+        assertTrue(sessionId.startsWith("sess_"));
+    }
+
+    @Test
+    void testSessionFor_shouldReuseExistingSession() {
+        int user = synthesizer.userIndexOf("usr_1");
+
+        // Create first session
+        String sessionId1 = synthesizer.sessionFor(user);
+
+        // Subsequent calls should sometimes return the same session
+        boolean foundSameSession = false;
+        for (int i = 0; i < 50; i++) {
+            if (synthesizer.sessionFor(user).equals(sessionId1)) {
+                foundSameSession = true;
+                break;
+            }
+        }
+
+        assertTrue(foundSameSession, "Should reuse existing sessions");
+    }
+}
@@ -0,0 +1,99 @@
+package com.ecommerce.generator.trace;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit tests for the trace file writer and reader
+ */
+class TraceFileTest {
+
+    @TempDir
+    Path tempDir;
+
+    @Test
+    void testRoundTrip_shouldPreserveOrderTimingAndFields() throws IOException {
+        Path trace = tempDir.resolve("events.trace");
+        long start = 1_710_513_000_000L;
+
+        try (TraceWriter writer = TraceWriter.open(trace)) {
+            for (int i = 0; i < 10_000; i++) {
+                writer.append(start + i * 7L, "usr_" + (i % 50), "page_view", "/products/" + (i % 15), "sess_" + (i % 120));
+            }
+        }
+
+        try (TraceReader reader = TraceReader.open(trace)) {
+            for (int i = 0; i < 10_000; i++) {
+                assertTrue(reader.hasNext());
+                TraceRecord record = reader.next();
+                assertEquals(start + i * 7L, record.getEpochMillis());
+                assertEquals("usr_" + (i % 50), record.getUserId());
+                assertEquals("page_view", record.getEventType());
+                assertEquals("/products/" + (i % 15), record.getPageUrl());
+                assertEquals("sess_" + (i % 120), record.getSessionId());
+            }
+            assertFalse(reader.hasNext());
+        }
+
+        // Dictionary coding and deflate should keep the trace far below the raw JSON size
+        assertTrue(Files.size(trace) < 10_000 * 10);
+    }
+
+    @Test
+    void testReopen_shouldAppendAfterExistingBlocks() throws IOException {
+        Path trace = tempDir.resolve("append.trace");
+
+        try (TraceWriter writer = TraceWriter.open(trace)) {
+            writer.append(1000L, "usr_1", "click", "/home", "sess_1");
+        }
+        try (TraceWriter writer = TraceWriter.open(trace)) {
+            writer.append(2000L, "usr_2", "search", "/search", "sess_2");
+        }
+
+        try (TraceReader reader = TraceReader.open(trace)) {
+            assertEquals("usr_1", reader.next().getUserId());
+            assertEquals(2000L, reader.next().getEpochMillis());
+            assertFalse(reader.hasNext());
+        }
+    }
+
+    @Test
+    void testTornTrailingBlock_shouldBeIgnoredAndTruncatedOnReopen() throws IOException {
+        Path trace = tempDir.resolve("torn.trace");
+
+        try (TraceWriter writer = TraceWriter.open(trace)) {
+            writer.append(1000L, "usr_1", "click", "/home", "sess_1");
+            writer.flush();
+            writer.append(2000L, "usr_2", "click", "/cart", "sess_2");
+        }
+        long completeSize;
+        try (TraceWriter writer = TraceWriter.open(trace)) {
+            completeSize = Files.size(trace);
+        }
+        try (FileChannel channel = FileChannel.open(trace, StandardOpenOption.WRITE)) {
+            channel.truncate(completeSize - 3);
+        }
+
+        try (TraceReader reader = TraceReader.open(trace)) {
+            assertEquals("usr_1", reader.next().getUserId());
+            assertFalse(reader.hasNext());
+        }
+
+        try (TraceWriter writer = TraceWriter.open(trace)) {
+            writer.append(3000L, "usr_3", "click", "/deals", "sess_3");
+        }
+        try (TraceReader reader = TraceReader.open(trace)) {
+            assertEquals("usr_1", reader.next().getUserId());
+            assertEquals("usr_3", reader.next().getUserId());
+            assertFalse(reader.hasNext());
+        }
+    }
+}